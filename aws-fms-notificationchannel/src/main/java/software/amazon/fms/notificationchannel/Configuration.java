@@ -1,8 +1,50 @@
 package software.amazon.fms.notificationchannel;
 
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
 class Configuration extends BaseConfiguration {
 
+    /** Resource schema file, on the classpath of the handler. */
+    static final String SCHEMA_FILENAME = "aws-fms-notificationchannel.json";
+
     public Configuration() {
-        super("aws-fms-notificationchannel.json");
+        super(SCHEMA_FILENAME);
+    }
+
+    /**
+     * Provide the resource schema the wrapper validates every request against. The schema is parsed once per JVM,
+     * on first use, and the same document is returned to every invocation on a warm instance.
+     * @return The resource schema, which callers must not modify.
+     */
+    @Override
+    public JSONObject resourceSchemaJSONObject() {
+
+        return SchemaHolder.RESOURCE_SCHEMA;
+    }
+
+    /**
+     * Read and parse the resource schema.
+     * @return The resource schema.
+     */
+    static JSONObject loadResourceSchema() {
+
+        try (InputStream schema = Objects.requireNonNull(
+                Configuration.class.getClassLoader().getResourceAsStream(SCHEMA_FILENAME), SCHEMA_FILENAME)) {
+            return new JSONObject(new JSONTokener(schema));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Loaded by the JVM on first use, which makes the parse lazy and thread safe without locking. */
+    private static final class SchemaHolder {
+
+        private static final JSONObject RESOURCE_SCHEMA = loadResourceSchema();
     }
 }
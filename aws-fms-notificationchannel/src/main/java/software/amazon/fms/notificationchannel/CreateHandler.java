@@ -24,6 +24,11 @@ public class CreateHandler extends NotificationChannelHandler {
         return true;
     }
 
+    @Override
+    protected boolean recordsResults() {
+        return true;
+    }
+
     @Override
     protected PutNotificationChannelResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
@@ -24,6 +24,11 @@ public class DeleteHandler extends NotificationChannelHandler {
         return true;
     }
 
+    @Override
+    protected boolean recordsResults() {
+        return true;
+    }
+
     @Override
     protected DeleteNotificationChannelResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
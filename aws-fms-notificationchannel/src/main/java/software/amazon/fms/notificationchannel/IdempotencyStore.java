@@ -0,0 +1,113 @@
+package software.amazon.fms.notificationchannel;
+
+import software.amazon.awssdk.services.fms.model.GetNotificationChannelResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Results of handler requests, kept on a warm handler instance and keyed by client request token.
+ *
+ * CloudFormation re-invokes a handler with the same client request token when an invocation times out or its response
+ * is lost. Notification channel requests make a single change, so only completed requests are remembered: without the
+ * recorded result a repeated create would fail because the channel already exists, and a repeated delete because it
+ * no longer does.
+ */
+class IdempotencyStore {
+
+    /** Time in milliseconds a request is remembered after it completed. */
+    static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** Maximum number of requests remembered, the least recently used request is forgotten first. */
+    static final int MAX_ENTRIES = 256;
+
+    /** Separator used when building keys, never part of a handler name. */
+    private static final String KEY_SEPARATOR = "|";
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Create a store that uses the system clock.
+     * @param ttlMillis Time in milliseconds a request is remembered after it completed.
+     * @param maxEntries Maximum number of requests remembered.
+     */
+    IdempotencyStore(final long ttlMillis, final int maxEntries) {
+
+        this(ttlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a store with a custom clock, for use in tests.
+     * @param ttlMillis Time in milliseconds a request is remembered after it completed.
+     * @param maxEntries Maximum number of requests remembered.
+     * @param clock Clock returning the current time in milliseconds.
+     */
+    IdempotencyStore(final long ttlMillis, final int maxEntries, final LongSupplier clock) {
+
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Build a key scoping a client request token to the handler serving it.
+     * @param handlerName Name of the handler, requests of different actions never share a key.
+     * @param clientRequestToken Token of the CloudFormation request.
+     * @return Key, or null if the request has no token.
+     */
+    static String key(final String handlerName, final String clientRequestToken) {
+
+        return clientRequestToken == null ? null : handlerName + KEY_SEPARATOR + clientRequestToken;
+    }
+
+    /**
+     * Retrieve the result of a completed request.
+     * @param key Key built with {@link #key(String, String)}.
+     * @return The notification channel the request found before its change, or null if the request has not completed.
+     */
+    synchronized GetNotificationChannelResponse response(final String key) {
+
+        final Entry entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.recordedAt > ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry == null ? null : entry.response;
+    }
+
+    /**
+     * Record the result of a completed request.
+     * @param key Key built with {@link #key(String, String)}.
+     * @param response The notification channel the request found before its change.
+     */
+    synchronized void recordResponse(final String key, final GetNotificationChannelResponse response) {
+
+        entries.put(key, new Entry(response, clock.getAsLong()));
+
+        // forget the least recently used requests once the store is over capacity
+        final Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() > maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final GetNotificationChannelResponse response;
+        private final long recordedAt;
+
+        private Entry(final GetNotificationChannelResponse response, final long recordedAt) {
+
+            this.response = response;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
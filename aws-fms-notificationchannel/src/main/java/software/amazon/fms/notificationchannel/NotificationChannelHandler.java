@@ -19,6 +19,10 @@ import java.util.Collections;
 
 abstract class NotificationChannelHandler extends BaseHandler<CallbackContext> {
 
+    /** Results of requests served by this warm instance, shared by every handler. */
+    static final IdempotencyStore IDEMPOTENCY_STORE =
+            new IdempotencyStore(IdempotencyStore.TTL_MILLIS, IdempotencyStore.MAX_ENTRIES);
+
     /** FMS client instance to make requests on behalf of CloudFormation. */
     protected final FmsClient client;
 
@@ -64,6 +68,15 @@ abstract class NotificationChannelHandler extends BaseHandler<CallbackContext> {
         return false;
     }
 
+    /**
+     * Flag to record the result of a completed request, so a re-invocation with the same client request token returns
+     * it instead of failing on the change the first invocation already made. Reads and lists are never replayed.
+     * @return A flag indicating if results are recorded and replayed.
+     */
+    boolean recordsResults() {
+        return false;
+    }
+
     /**
      * Hook called by handleRequest to make the primary action (create, read, etc..) request on the FMS API.
      * @param proxy AWS proxy to make requests.
@@ -120,6 +133,17 @@ abstract class NotificationChannelHandler extends BaseHandler<CallbackContext> {
             final CallbackContext callbackContext,
             final Logger logger) {
 
+        // a re-invocation with the same client request token returns the recorded result
+        final String idempotencyKey = recordsResults()
+                ? IdempotencyStore.key(getClass().getSimpleName(), request.getClientRequestToken())
+                : null;
+        final GetNotificationChannelResponse recordedResponse =
+                idempotencyKey == null ? null : IDEMPOTENCY_STORE.response(idempotencyKey);
+        if (recordedResponse != null) {
+            logger.log(String.format("Returning the recorded result of request %s", request.getClientRequestToken()));
+            return constructSuccessProgressEvent(recordedResponse, request, proxy);
+        }
+
         GetNotificationChannelResponse getNotificationChannelResponse;
         try {
             // attempt to get an existing notification channel
@@ -165,6 +189,9 @@ abstract class NotificationChannelHandler extends BaseHandler<CallbackContext> {
         }
 
         // let each handler construct its own success progress event with resource model(s)
+        if (idempotencyKey != null) {
+            IDEMPOTENCY_STORE.recordResponse(idempotencyKey, getNotificationChannelResponse);
+        }
         return constructSuccessProgressEvent(getNotificationChannelResponse, request, proxy);
     }
 }
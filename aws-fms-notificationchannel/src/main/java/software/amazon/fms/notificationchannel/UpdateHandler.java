@@ -25,6 +25,11 @@ public class UpdateHandler extends NotificationChannelHandler {
         return true;
     }
 
+    @Override
+    protected boolean recordsResults() {
+        return true;
+    }
+
     @Override
     protected PutNotificationChannelResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
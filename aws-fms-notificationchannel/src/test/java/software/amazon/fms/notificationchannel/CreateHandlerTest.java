@@ -20,6 +20,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -111,6 +112,45 @@ class CreateHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestRepeatedClientRequestToken() {
+        // stub the response for the read request
+        final GetNotificationChannelResponse describeGetResponse = GetNotificationChannelResponse.builder().build();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetNotificationChannelRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the create request
+        final PutNotificationChannelResponse describePutResponse = PutNotificationChannelResponse.builder().build();
+        doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutNotificationChannelRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // create the create request and send it twice, as CloudFormation does after a lost response
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(model)
+                .clientRequestToken(UUID.randomUUID().toString())
+                .build();
+        handler.handleRequest(proxy, request, null, logger);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the repeated request does not find the channel it created already existing
+        verify(proxy, times(2)).injectCredentialsAndInvokeV2(captor.capture(), any());
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModel()).isEqualTo(request.getDesiredResourceState());
+        assertThat(response.getErrorCode()).isNull();
+    }
+
     @Test
     void handleRequestReadResourceAlreadyExists() {
         // stub the response for the read request
@@ -0,0 +1,321 @@
+package software.amazon.fms.policy;
+
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.EvaluationResult;
+import software.amazon.awssdk.services.fms.model.GetComplianceDetailRequest;
+import software.amazon.awssdk.services.fms.model.ListComplianceStatusRequest;
+import software.amazon.awssdk.services.fms.model.ListComplianceStatusResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.PolicyComplianceDetail;
+import software.amazon.awssdk.services.fms.model.PolicyComplianceStatus;
+import software.amazon.awssdk.services.fms.model.PolicyComplianceStatusType;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.fms.policy.helpers.ThrottleAwareExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Aggregates the compliance of every member account with FMS policies into a {@link ComplianceSummary}.
+ *
+ * The compliance status of each policy is paged on the executor's workers, so policies are read concurrently.
+ * Violator counts are summed from the evaluation results of each status, since GetComplianceDetail lists at most a
+ * limited number of violators. Each non-compliant member account still gets a GetComplianceDetail read, queued on the
+ * same workers as soon as its status page arrives, which tells whether FMS truncated the violators of the account.
+ * Compliant accounts have no violators, so they are summarized from their status alone. Workers only return rows, the
+ * aggregating thread adds them to the summary once every status page of their policy was read, so a policy whose
+ * paging fails has no rows and no read adds one after the summary is built.
+ *
+ * Compliance details are cached per policy and member account, and a cached detail is used until it is older than
+ * the time to live or than the last update of the account's compliance status, whichever comes first.
+ */
+public class ComplianceAggregator {
+
+    /** Default time in milliseconds a compliance detail is used without reading it again. */
+    static final long DEFAULT_DETAIL_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /** Page size used for ListPolicies and ListComplianceStatus. */
+    static final int MAX_RESULTS = 100;
+
+    /** Time in milliseconds an aggregation waits for its reads. */
+    static final long READ_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /** Separator used when building cache keys, never part of a policy ID or account ID. */
+    private static final String KEY_SEPARATOR = "|";
+
+    private final FmsClient client;
+    private final ThrottleAwareExecutor executor;
+    private final long detailTtlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CachedDetail> details = new ConcurrentHashMap<>();
+
+    /**
+     * Create an aggregator that uses the system clock.
+     *
+     * @param client The FmsClient to use.
+     * @param executor Executor running the FMS reads, which bounds how many are in flight.
+     * @param detailTtlMillis Time in milliseconds a compliance detail is used without reading it again.
+     */
+    public ComplianceAggregator(
+            final FmsClient client,
+            final ThrottleAwareExecutor executor,
+            final long detailTtlMillis) {
+
+        this(client, executor, detailTtlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Create an aggregator with a custom clock, for use in tests.
+     *
+     * @param client The FmsClient to use.
+     * @param executor Executor running the FMS reads, which bounds how many are in flight.
+     * @param detailTtlMillis Time in milliseconds a compliance detail is used without reading it again.
+     * @param clock Clock returning the current time in milliseconds.
+     */
+    ComplianceAggregator(
+            final FmsClient client,
+            final ThrottleAwareExecutor executor,
+            final long detailTtlMillis,
+            final LongSupplier clock) {
+
+        this.client = client;
+        this.executor = executor;
+        this.detailTtlMillis = detailTtlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Aggregate the compliance of every policy.
+     *
+     * @return The summary.
+     */
+    public ComplianceSummary aggregate() {
+
+        final List<String> policyIds = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final String pageToken = nextToken;
+            final ListPoliciesResponse listPoliciesResponse = executor.call(() -> client.listPolicies(
+                    ListPoliciesRequest.builder()
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            listPoliciesResponse.policyList().stream().map(PolicySummary::policyId).forEach(policyIds::add);
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        return aggregate(policyIds);
+    }
+
+    /**
+     * Aggregate the compliance of some policies.
+     *
+     * @param policyIds IDs of the policies.
+     * @return The summary.
+     */
+    public ComplianceSummary aggregate(final Collection<String> policyIds) {
+
+        final long deadlineMillis = System.currentTimeMillis() + READ_TIMEOUT_MILLIS;
+        final ComplianceSummary.Builder summary = new ComplianceSummary.Builder();
+        evictExpiredDetails();
+
+        // page the status of every policy, each page queues the detail reads of its non-compliant accounts
+        final List<Future<List<Future<Row>>>> policyReads = new ArrayList<>(policyIds.size());
+        for (final String policyId : policyIds) {
+            policyReads.add(executor.submit(() -> readPolicy(policyId)));
+        }
+
+        // the rows are only awaited here, so no worker ever waits for another
+        final List<Future<Row>> rowReads = new ArrayList<>();
+        for (final Future<List<Future<Row>>> policyRead : policyReads) {
+            final List<Future<Row>> reads = await(policyRead, deadlineMillis);
+            if (reads == null) {
+                summary.addFailure();
+            } else {
+                rowReads.addAll(reads);
+            }
+        }
+        for (final Future<Row> rowRead : rowReads) {
+            final Row row = await(rowRead, deadlineMillis);
+            if (row == null) {
+                summary.addFailure();
+            } else {
+                summary.add(row.policyId, row.memberAccount, row.compliant, row.violatorCount, row.truncated);
+            }
+        }
+        return summary.build();
+    }
+
+    /**
+     * Get the number of cached compliance details.
+     *
+     * @return Number of policy and member account pairs with a cached detail.
+     */
+    public int cachedDetailCount() {
+
+        return details.size();
+    }
+
+    /**
+     * Page the compliance status of a policy, queueing the detail read of each non-compliant account.
+     *
+     * @param policyId ID of the policy.
+     * @return The rows of the policy, compliant rows already complete.
+     */
+    private List<Future<Row>> readPolicy(final String policyId) {
+
+        final List<Future<Row>> rows = new ArrayList<>();
+        try {
+            String nextToken = null;
+            do {
+                final String pageToken = nextToken;
+                final ListComplianceStatusResponse listComplianceStatusResponse = executor.call(
+                        () -> client.listComplianceStatus(ListComplianceStatusRequest.builder()
+                                .policyId(policyId)
+                                .nextToken(pageToken)
+                                .maxResults(MAX_RESULTS)
+                                .build()));
+                for (final PolicyComplianceStatus status : listComplianceStatusResponse.policyComplianceStatusList()) {
+                    if (isCompliant(status)) {
+                        rows.add(CompletableFuture.completedFuture(
+                                new Row(policyId, status.memberAccount(), true, 0, false)));
+                    } else {
+                        rows.add(executor.submit(() -> new Row(
+                                policyId,
+                                status.memberAccount(),
+                                false,
+                                violatorCount(status),
+                                Boolean.TRUE.equals(complianceDetail(policyId, status).evaluationLimitExceeded()))));
+                    }
+                }
+                nextToken = listComplianceStatusResponse.nextToken();
+            } while (nextToken != null);
+        } catch (RuntimeException e) {
+            // the policy is counted as one failed read, the detail reads queued for its earlier pages are not needed
+            rows.forEach(row -> row.cancel(true));
+            throw e;
+        }
+        return rows;
+    }
+
+    private PolicyComplianceDetail complianceDetail(final String policyId, final PolicyComplianceStatus status) {
+
+        final String key = policyId + KEY_SEPARATOR + status.memberAccount();
+        final CachedDetail cached = details.get(key);
+        final long now = clock.getAsLong();
+        if (cached != null
+                && now - cached.fetchedAt <= detailTtlMillis
+                && (status.lastUpdated() == null || status.lastUpdated().toEpochMilli() <= cached.fetchedAt)) {
+            return cached.detail;
+        }
+        final PolicyComplianceDetail detail = executor.call(() -> client.getComplianceDetail(
+                GetComplianceDetailRequest.builder()
+                        .policyId(policyId)
+                        .memberAccount(status.memberAccount())
+                        .build()))
+                .policyComplianceDetail();
+        details.put(key, new CachedDetail(detail, now));
+        return detail;
+    }
+
+    private void evictExpiredDetails() {
+
+        final long now = clock.getAsLong();
+        details.values().removeIf(cached -> now - cached.fetchedAt > detailTtlMillis);
+    }
+
+    /**
+     * Determine whether a member account complies with a policy.
+     *
+     * @param status Compliance status of the account.
+     * @return True if no evaluation of the account is non-compliant.
+     */
+    static boolean isCompliant(final PolicyComplianceStatus status) {
+
+        for (final EvaluationResult evaluationResult : status.evaluationResults()) {
+            if (evaluationResult.complianceStatus() == PolicyComplianceStatusType.NON_COMPLIANT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count the resources of a member account that violate a policy.
+     *
+     * @param status Compliance status of the account.
+     * @return Sum of the violator counts of its evaluations.
+     */
+    static int violatorCount(final PolicyComplianceStatus status) {
+
+        long violatorCount = 0;
+        for (final EvaluationResult evaluationResult : status.evaluationResults()) {
+            if (evaluationResult.violatorCount() != null) {
+                violatorCount += evaluationResult.violatorCount();
+            }
+        }
+        return (int) Math.min(violatorCount, Integer.MAX_VALUE);
+    }
+
+    private static <T> T await(final Future<T> future, final long deadlineMillis) {
+
+        final long remainingMillis = deadlineMillis - System.currentTimeMillis();
+        try {
+            if (remainingMillis > 0) {
+                return future.get(remainingMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            // failed and unfinished reads are counted by the caller
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        future.cancel(true);
+        return null;
+    }
+
+    /** Row of the summary, read on a worker and added by the aggregating thread. */
+    private static class Row {
+
+        private final String policyId;
+        private final String memberAccount;
+        private final boolean compliant;
+        private final int violatorCount;
+        private final boolean truncated;
+
+        Row(
+                final String policyId,
+                final String memberAccount,
+                final boolean compliant,
+                final int violatorCount,
+                final boolean truncated) {
+
+            this.policyId = policyId;
+            this.memberAccount = memberAccount;
+            this.compliant = compliant;
+            this.violatorCount = violatorCount;
+            this.truncated = truncated;
+        }
+    }
+
+    /** Compliance detail and the time it was read. */
+    private static class CachedDetail {
+
+        private final PolicyComplianceDetail detail;
+        private final long fetchedAt;
+
+        CachedDetail(final PolicyComplianceDetail detail, final long fetchedAt) {
+
+            this.detail = detail;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
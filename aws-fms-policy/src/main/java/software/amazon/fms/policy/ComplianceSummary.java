@@ -0,0 +1,255 @@
+package software.amazon.fms.policy;
+
+import software.amazon.fms.policy.helpers.AccountIdSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compliance of member accounts with FMS policies, one row per policy and member account.
+ *
+ * Rows are held in columns instead of one object per row: an ordinal into the policy IDs, the account as a long, a bit
+ * for non-compliant rows, the number of violating resources and a bit for rows whose compliance detail FMS truncated.
+ * Violator counts come from the compliance status, so they are complete even when the detail is not. A summary of a
+ * thousand policies over ten thousand accounts therefore takes a few hundred bytes per policy and sixteen bytes per
+ * row. Rows are in the order they were added, which for an aggregation depends on the order its reads completed.
+ */
+public class ComplianceSummary {
+
+    private final List<String> policyIds;
+    private final int[] policies;
+    private final long[] accounts;
+    private final BitSet nonCompliant;
+    private final int[] violatorCounts;
+    private final BitSet truncated;
+    private final int size;
+    private final int failedCount;
+
+    private ComplianceSummary(final Builder builder) {
+
+        this.policyIds = Collections.unmodifiableList(new ArrayList<>(builder.policyIds));
+        this.policies = Arrays.copyOf(builder.policies, builder.size);
+        this.accounts = Arrays.copyOf(builder.accounts, builder.size);
+        this.nonCompliant = (BitSet) builder.nonCompliant.clone();
+        this.violatorCounts = Arrays.copyOf(builder.violatorCounts, builder.size);
+        this.truncated = (BitSet) builder.truncated.clone();
+        this.size = builder.size;
+        this.failedCount = builder.failedCount;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return Number of policy and member account pairs.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Get the number of reads that failed, whose policies or accounts have no rows.
+     *
+     * @return Number of failed reads.
+     */
+    public int getFailedCount() {
+
+        return failedCount;
+    }
+
+    /**
+     * Get the policies with at least one row.
+     *
+     * @return IDs of the policies, in the order they were first added.
+     */
+    public List<String> getPolicyIds() {
+
+        return policyIds;
+    }
+
+    /**
+     * Get the policy of a row.
+     *
+     * @param row Row index.
+     * @return ID of the policy.
+     */
+    public String getPolicyId(final int row) {
+
+        return policyIds.get(policies[row]);
+    }
+
+    /**
+     * Get the member account of a row.
+     *
+     * @param row Row index.
+     * @return Account ID of the member account.
+     */
+    public String getMemberAccount(final int row) {
+
+        return AccountIdSet.formatAccountId(accounts[row]);
+    }
+
+    /**
+     * Determine whether the member account of a row complies with its policy.
+     *
+     * @param row Row index.
+     * @return True if every evaluation of the account is compliant.
+     */
+    public boolean isCompliant(final int row) {
+
+        return !nonCompliant.get(row);
+    }
+
+    /**
+     * Get the number of resources of a row that violate its policy.
+     *
+     * @param row Row index.
+     * @return Number of violators, zero for a compliant row.
+     */
+    public int getViolatorCount(final int row) {
+
+        return violatorCounts[row];
+    }
+
+    /**
+     * Determine whether FMS truncated the compliance detail of a row, listing fewer violators than it counted.
+     *
+     * @param row Row index.
+     * @return True if the evaluation limit of the detail was exceeded.
+     */
+    public boolean isTruncated(final int row) {
+
+        return truncated.get(row);
+    }
+
+    /**
+     * Find the member accounts that do not comply with a policy.
+     *
+     * @param policyId ID of the policy.
+     * @return The non-compliant accounts, empty if the policy has none or no rows.
+     */
+    public AccountIdSet nonCompliantAccounts(final String policyId) {
+
+        final int policy = policyIds.indexOf(policyId);
+        final long[] found = new long[size];
+        int count = 0;
+        for (int row = nonCompliant.nextSetBit(0); row >= 0; row = nonCompliant.nextSetBit(row + 1)) {
+            if (policies[row] == policy) {
+                found[count++] = accounts[row];
+            }
+        }
+        return count == 0 ? AccountIdSet.EMPTY : AccountIdSet.of(Arrays.copyOf(found, count));
+    }
+
+    /**
+     * Count the violating resources of each policy.
+     *
+     * @return Number of violators of each policy with rows, keyed and sorted by policy ID.
+     */
+    public Map<String, Long> violatorCountsByPolicy() {
+
+        final long[] totals = new long[policyIds.size()];
+        for (int row = 0; row < size; row++) {
+            totals[policies[row]] += violatorCounts[row];
+        }
+        final Map<String, Long> counts = new TreeMap<>();
+        for (int policy = 0; policy < totals.length; policy++) {
+            counts.put(policyIds.get(policy), totals[policy]);
+        }
+        return counts;
+    }
+
+    /**
+     * Count the non-compliant rows.
+     *
+     * @return Number of policy and member account pairs that are not compliant.
+     */
+    public int nonCompliantCount() {
+
+        return nonCompliant.cardinality();
+    }
+
+    /**
+     * Count the rows whose compliance detail was truncated.
+     *
+     * @return Number of policy and member account pairs whose detail lists only some of their violators.
+     */
+    public int truncatedCount() {
+
+        return truncated.cardinality();
+    }
+
+    /**
+     * Collects the rows of a summary, safe to use from several threads.
+     */
+    static class Builder {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final List<String> policyIds = new ArrayList<>();
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private int[] policies = new int[INITIAL_CAPACITY];
+        private long[] accounts = new long[INITIAL_CAPACITY];
+        private final BitSet nonCompliant = new BitSet();
+        private int[] violatorCounts = new int[INITIAL_CAPACITY];
+        private final BitSet truncated = new BitSet();
+        private int size;
+        private int failedCount;
+
+        /**
+         * Add a row.
+         *
+         * @param policyId ID of the policy.
+         * @param memberAccount Account ID of the member account.
+         * @param compliant Whether the account complies with the policy.
+         * @param violatorCount Number of resources violating the policy.
+         * @param detailTruncated Whether FMS truncated the compliance detail of the account.
+         * @throws IllegalArgumentException If the member account is not an account ID.
+         */
+        synchronized void add(
+                final String policyId,
+                final String memberAccount,
+                final boolean compliant,
+                final int violatorCount,
+                final boolean detailTruncated) {
+
+            final long account = AccountIdSet.parseAccountId(memberAccount);
+            if (account < 0) {
+                throw new IllegalArgumentException(String.format("Not an account ID: %s", memberAccount));
+            }
+            if (size == accounts.length) {
+                policies = Arrays.copyOf(policies, size * 2);
+                accounts = Arrays.copyOf(accounts, size * 2);
+                violatorCounts = Arrays.copyOf(violatorCounts, size * 2);
+            }
+            policies[size] = ordinals.computeIfAbsent(policyId, id -> {
+                policyIds.add(id);
+                return policyIds.size() - 1;
+            });
+            accounts[size] = account;
+            nonCompliant.set(size, !compliant);
+            violatorCounts[size] = violatorCount;
+            truncated.set(size, detailTruncated);
+            size++;
+        }
+
+        /**
+         * Record a read that failed.
+         */
+        synchronized void addFailure() {
+
+            failedCount++;
+        }
+
+        synchronized ComplianceSummary build() {
+
+            return new ComplianceSummary(this);
+        }
+    }
+}
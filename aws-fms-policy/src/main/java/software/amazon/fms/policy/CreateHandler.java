@@ -2,6 +2,7 @@ package software.amazon.fms.policy;
 
 import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeletePolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
 import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.PutPolicyRequest;
 import software.amazon.awssdk.services.fms.model.PutPolicyResponse;
@@ -12,6 +13,7 @@ import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
 import software.amazon.fms.policy.helpers.FmsHelper;
 
 import java.util.List;
@@ -26,15 +28,60 @@ public class CreateHandler extends PolicyHandler<PutPolicyResponse> {
         super(client);
     }
 
+    @Override
+    boolean recordsResults() {
+
+        return true;
+    }
+
+    /** Step recorded once the policy has been created. */
+    static final String PUT_POLICY_STEP = "PutPolicy";
+
+    @Override
+    protected List<String> validateRequest(final ResourceHandlerRequest<ResourceModel> request) {
+
+        return POLICY_VALIDATOR.validate(request.getDesiredResourceState());
+    }
+
+    @Override
+    protected PutPolicyResponse makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final Logger logger) {
+
+        return makeRequest(proxy, request, CallbackContext.builder().build(), ExecutionBudget.unlimited(), logger);
+    }
+
     @Override
     protected PutPolicyResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
             final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
             final Logger logger) {
 
+        // a re-invocation after the policy was created reads it instead of creating another one
+        if (progress.hasCompleted(PUT_POLICY_STEP)) {
+            logger.log(String.format("Policy %s was already created, retrieving it", progress.getResourceId()));
+            final GetPolicyResponse getPolicyResponse = proxy.injectCredentialsAndInvokeV2(
+                    GetPolicyRequest.builder().policyId(progress.getResourceId()).build(),
+                    client::getPolicy);
+            logRequest(getPolicyResponse, logger);
+            return PutPolicyResponse.builder()
+                    .policy(getPolicyResponse.policy())
+                    .policyArn(getPolicyResponse.policyArn())
+                    .build();
+        }
+
+        // reject entries FMS would otherwise remediate into every VPC without effect
+        validateNetworkAclEntries(request.getDesiredResourceState(), logger);
+
         // make the create request
         final PutPolicyRequest.Builder putPolicyRequestBuilder = PutPolicyRequest.builder()
-                .policy(FmsHelper.convertCFNResourceModelToFMSPolicy(request.getDesiredResourceState()));
+                .policy(FmsHelper.convertCFNResourceModelToFMSPolicy(
+                        request.getDesiredResourceState(),
+                        null,
+                        entrySet -> aggregateNetworkAclEntries(entrySet, logger)));
         final List<Tag> tags = FmsHelper.convertCFNTagMapToFMSTagSet(request.getDesiredResourceTags());
         if (!tags.isEmpty()) {
             putPolicyRequestBuilder.tagList(tags);
@@ -43,9 +90,20 @@ public class CreateHandler extends PolicyHandler<PutPolicyResponse> {
                 putPolicyRequestBuilder.build(),
                 client::putPolicy);
         logRequest(response, logger);
+        progress.setResourceId(response.policy().policyId());
+        markCompleted(progress, PUT_POLICY_STEP);
         return response;
     }
 
+    @Override
+    void updateScopeIndex(
+            final PolicyScopeIndex scopeIndex,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ProgressEvent<ResourceModel, CallbackContext> progressEvent) {
+
+        scopeIndex.put(progressEvent.getResourceModel());
+    }
+
     @Override
     protected ProgressEvent<ResourceModel, CallbackContext> constructSuccessProgressEvent(
             final PutPolicyResponse response,
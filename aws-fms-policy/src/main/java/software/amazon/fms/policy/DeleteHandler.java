@@ -3,14 +3,34 @@ package software.amazon.fms.policy;
 import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeletePolicyRequest;
 import software.amazon.awssdk.services.fms.model.DeletePolicyResponse;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.PutPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
 
 public class DeleteHandler extends PolicyHandler<DeletePolicyResponse> {
 
+    /** Step recorded once the delete request has been made. */
+    static final String DELETE_POLICY_STEP = "DeletePolicy";
+
+    /** Step recorded once the policy and its resources are gone. */
+    static final String STABILIZED_STEP = "Stabilized";
+
+    /** Delay in seconds before the first stabilization poll, doubled for every poll after it. */
+    static final int INITIAL_POLL_DELAY_SECONDS = 15;
+
+    /** Longest delay in seconds between two stabilization polls. */
+    static final int MAX_POLL_DELAY_SECONDS = 300;
+
+    /** Number of polls after which the delete is reported as not stabilized, about two hours of polling. */
+    static final int MAX_POLLS = 30;
+
     DeleteHandler() {
         super();
     }
@@ -19,12 +39,35 @@ public class DeleteHandler extends PolicyHandler<DeletePolicyResponse> {
         super(client);
     }
 
+    @Override
+    boolean recordsResults() {
+
+        return true;
+    }
+
     @Override
     protected DeletePolicyResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
             final ResourceHandlerRequest<ResourceModel> request,
             final Logger logger) {
 
+        return makeRequest(proxy, request, CallbackContext.builder().build(), ExecutionBudget.unlimited(), logger);
+    }
+
+    @Override
+    protected DeletePolicyResponse makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger) {
+
+        // a callback after the delete request polls for the policy resources to be cleaned up
+        if (progress.hasCompleted(DELETE_POLICY_STEP)) {
+            pollPolicy(proxy, request, progress, logger);
+            return DeletePolicyResponse.builder().build();
+        }
+
         // build the delete request
         final DeletePolicyRequest.Builder deletePolicyRequest = DeletePolicyRequest.builder()
                 .policyId(request.getDesiredResourceState().getId())
@@ -48,9 +91,57 @@ public class DeleteHandler extends PolicyHandler<DeletePolicyResponse> {
                 deletePolicyRequest.build(),
                 client::deletePolicy);
         logRequest(response, logger);
+        markCompleted(progress, DELETE_POLICY_STEP);
         return response;
     }
 
+    /**
+     * Check whether the policy still exists, marking the delete as stabilized once it does not.
+     * @param proxy AWS proxy to make requests.
+     * @param request CloudFormation's handler request.
+     * @param progress Progress of the delete request.
+     * @param logger CloudWatch logger.
+     */
+    private void pollPolicy(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final Logger logger) {
+
+        progress.setPollCount(progress.getPollCount() + 1);
+        try {
+            final GetPolicyResponse getPolicyResponse = proxy.injectCredentialsAndInvokeV2(
+                    GetPolicyRequest.builder().policyId(request.getDesiredResourceState().getId()).build(),
+                    client::getPolicy);
+            logRequest(getPolicyResponse, logger);
+            logger.log(String.format("Policy resources are still being cleaned up after %d poll/s",
+                    progress.getPollCount()));
+        } catch (ResourceNotFoundException e) {
+            logger.log(String.format("Policy deleted after %d poll/s", progress.getPollCount()));
+            markCompleted(progress, STABILIZED_STEP);
+        }
+    }
+
+    /**
+     * Delay before the next stabilization poll, growing with the number of polls made.
+     * @param pollCount Number of polls made so far.
+     * @return Delay in seconds.
+     */
+    static int pollDelaySeconds(final int pollCount) {
+
+        final long delay = (long) INITIAL_POLL_DELAY_SECONDS << Math.min(pollCount, 16);
+        return (int) Math.min(delay, MAX_POLL_DELAY_SECONDS);
+    }
+
+    @Override
+    void updateScopeIndex(
+            final PolicyScopeIndex scopeIndex,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ProgressEvent<ResourceModel, CallbackContext> progressEvent) {
+
+        scopeIndex.remove(request.getDesiredResourceState().getId());
+    }
+
     @Override
     protected ProgressEvent<ResourceModel, CallbackContext> constructSuccessProgressEvent(
             final DeletePolicyResponse response,
@@ -58,4 +149,28 @@ public class DeleteHandler extends PolicyHandler<DeletePolicyResponse> {
             final AmazonWebServicesClientProxy proxy) {
         return ProgressEvent.defaultSuccessHandler(null);
     }
+
+    @Override
+    ProgressEvent<ResourceModel, CallbackContext> constructProgressEvent(
+            final DeletePolicyResponse response,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final AmazonWebServicesClientProxy proxy) {
+
+        // without resource cleanup the policy is gone as soon as the delete request returns
+        if (!Boolean.TRUE.equals(request.getDesiredResourceState().getDeleteAllPolicyResources())
+                || progress.hasCompleted(STABILIZED_STEP)) {
+            return constructSuccessProgressEvent(response, request, proxy);
+        }
+        if (progress.getPollCount() >= MAX_POLLS) {
+            return ProgressEvent.failed(null, null, HandlerErrorCode.NotStabilized, String.format(
+                    "Policy resources were still being cleaned up after %d polls", progress.getPollCount()));
+        }
+
+        // let CloudFormation invoke the handler again after the delay instead of waiting here, the model is handed back
+        // as the desired state of the callback so it must still carry the policy ID
+        return ProgressEvent.defaultInProgressHandler(
+                progress, pollDelaySeconds(progress.getPollCount()), request.getDesiredResourceState());
+    }
 }
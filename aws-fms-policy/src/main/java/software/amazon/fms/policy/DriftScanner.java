@@ -0,0 +1,681 @@
+package software.amazon.fms.policy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesResponse;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.Resource;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.fms.model.ResourceSet;
+import software.amazon.awssdk.services.fms.model.ResourceSetSummary;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.fms.policy.helpers.AdaptiveConcurrencyLimiter;
+import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.HashHelper;
+import software.amazon.fms.policy.helpers.ParallelHelper;
+import software.amazon.fms.policy.helpers.PolicyComparator;
+import software.amazon.fms.policy.helpers.Retrier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Detects drift of FMS policies and resource sets from their last-applied state, sweep after sweep.
+ *
+ * The scanner keeps one entry per resource with the content hash of its last-applied state and of its live state.
+ * Policy hashes are taken from the converted resource model with {@link PolicyComparator}, so a policy only drifts when
+ * its content does. Resource set hashes cover the name, description, resource types and tags of the set, and a
+ * digest of its associated resources. A resource seen for the first time is adopted: its live state becomes its
+ * last-applied state unless one was recorded.
+ *
+ * Every sweep reads every listed resource, since listings leave out most of what can change, but skips the reads of
+ * unchanged resources that cost the most. A policy or resource set whose update token is unchanged keeps its live hash
+ * without its tags being listed. Associations do not change the update token of a resource set, and listing them
+ * takes a page per hundred resources, so they are only listed when the set is new, its update token or the last
+ * update time in its listing changed, or its entry is due for verification; only a changed digest has the tags listed
+ * again. Tags do not change update tokens either, so every resource has its tags listed once its entry is older than
+ * the verification age, and an association change the last update time does not show is found the same way.
+ *
+ * Reads are paced by an AIMD limiter kept across sweeps, so the scanner settles under the rate FMS allows, and a
+ * throttled read is retried by a {@link Retrier}. Scheduled sweeps are spread by a random share of the
+ * interval, so scanners of several accounts started together do not sweep together.
+ */
+public class DriftScanner {
+
+    /** Resource type of policy entries. */
+    public static final String POLICY_TYPE = "AWS::FMS::Policy";
+
+    /** Resource type of resource set entries. */
+    public static final String RESOURCE_SET_TYPE = "AWS::FMS::ResourceSet";
+
+    /** Default number of reads in flight before the first one completes. */
+    static final int DEFAULT_INITIAL_CONCURRENCY = 2;
+
+    /** Default highest number of reads in flight. */
+    static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    /** Default age in milliseconds after which an unchanged resource is read in full to verify it. */
+    static final long DEFAULT_VERIFICATION_AGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    /** Default share of the sweep interval by which each scheduled sweep is moved earlier or later. */
+    static final double DEFAULT_JITTER = 0.2;
+
+    /** Page size used for ListPolicies, ListResourceSets and ListResourceSetResources. */
+    static final int MAX_RESULTS = 100;
+
+    /** Number of attempts of a read FMS keeps throttling. */
+    static final int MAX_ATTEMPTS = 8;
+
+    /** Delay in milliseconds after the first throttled attempt of a read, doubled after each further one. */
+    static final long BASE_RETRY_DELAY_MILLIS = 200;
+
+    /** Longest delay in milliseconds between two attempts of a read. */
+    static final long MAX_RETRY_DELAY_MILLIS = 20_000;
+
+    /** Time in milliseconds a sweep waits for its reads. */
+    static final long SWEEP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, Entry> entries;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Retrier retries;
+    private final int maxConcurrency;
+    private final long verificationAgeMillis;
+    private final LongSupplier clock;
+
+    /**
+     * Create a scanner with no entries that uses the system clock.
+     *
+     * @param maxConcurrency Highest number of reads in flight.
+     * @param verificationAgeMillis Age in milliseconds after which an unchanged resource is read in full.
+     */
+    public DriftScanner(final int maxConcurrency, final long verificationAgeMillis) {
+
+        this(new TreeMap<>(), maxConcurrency, verificationAgeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a scanner with a custom clock, for use in tests.
+     *
+     * @param entries Entries by resource key.
+     * @param maxConcurrency Highest number of reads in flight.
+     * @param verificationAgeMillis Age in milliseconds after which an unchanged resource is read in full.
+     * @param clock Clock returning the current time in milliseconds.
+     */
+    DriftScanner(
+            final Map<String, Entry> entries,
+            final int maxConcurrency,
+            final long verificationAgeMillis,
+            final LongSupplier clock) {
+
+        this.entries = entries;
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                Math.min(DEFAULT_INITIAL_CONCURRENCY, maxConcurrency), 1, maxConcurrency);
+        this.retries = new Retrier(MAX_ATTEMPTS, BASE_RETRY_DELAY_MILLIS, MAX_RETRY_DELAY_MILLIS);
+        this.maxConcurrency = maxConcurrency;
+        this.verificationAgeMillis = verificationAgeMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Sweep once, or periodically when an interval is given, saving the scanner state after every sweep.
+     *
+     * @param args State file path and an optional interval in minutes between sweeps.
+     * @throws IOException If the state file cannot be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: DriftScanner <state.json> [intervalMinutes]");
+        }
+        final Path path = Paths.get(args[0]);
+        final DriftScanner scanner = load(path, DEFAULT_MAX_CONCURRENCY, DEFAULT_VERIFICATION_AGE_MILLIS);
+        final FmsClient client = FmsClient.create();
+        final Consumer<ScanResult> listener = result -> {
+            print(result);
+            try {
+                scanner.save(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        if (args.length < 2) {
+            listener.accept(scanner.scan(client));
+            client.close();
+            return;
+        }
+
+        // the scheduler thread keeps the JVM running until the process is stopped
+        scanner.schedule(
+                Executors.newSingleThreadScheduledExecutor(),
+                client,
+                TimeUnit.MINUTES.toMillis(Long.parseLong(args[1])),
+                DEFAULT_JITTER,
+                listener);
+    }
+
+    /**
+     * Load the scanner state, or create a scanner with no entries if the state file does not exist.
+     *
+     * @param path State file.
+     * @param maxConcurrency Highest number of reads in flight.
+     * @param verificationAgeMillis Age in milliseconds after which an unchanged resource is read in full.
+     * @return The scanner.
+     * @throws IOException If the state file cannot be read.
+     */
+    public static DriftScanner load(
+            final Path path,
+            final int maxConcurrency,
+            final long verificationAgeMillis) throws IOException {
+
+        if (!Files.exists(path)) {
+            return new DriftScanner(maxConcurrency, verificationAgeMillis);
+        }
+        final Map<String, Entry> entries = OBJECT_MAPPER.readValue(
+                path.toFile(),
+                new TypeReference<TreeMap<String, Entry>>() { });
+        return new DriftScanner(entries, maxConcurrency, verificationAgeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Save the scanner state, replacing the state file atomically.
+     *
+     * @param path State file.
+     * @throws IOException If the state file cannot be written.
+     */
+    public synchronized void save(final Path path) throws IOException {
+
+        final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        OBJECT_MAPPER.writeValue(temporaryPath.toFile(), entries);
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the scanner entries.
+     *
+     * @return Unmodifiable copy of the entries, keyed by resource key.
+     */
+    public synchronized Map<String, Entry> getEntries() {
+
+        return Collections.unmodifiableMap(new TreeMap<>(entries));
+    }
+
+    /**
+     * Record the model last applied to a policy, such as the result of a CloudFormation create or update.
+     *
+     * @param model Applied resource model, with its policy ID.
+     */
+    public synchronized void recordApplied(final ResourceModel model) {
+
+        final Entry entry = entries.computeIfAbsent(resourceKey(POLICY_TYPE, model.getId()), key -> newEntry(
+                POLICY_TYPE, model.getId(), model.getPolicyName()));
+        entry.setAppliedHash(PolicyComparator.contentHash(model));
+    }
+
+    /**
+     * Accept the live state of a resource as its last-applied state, so its drift is no longer reported.
+     *
+     * @param resourceKey Key of the resource, as returned by {@link #resourceKey(String, String)}.
+     */
+    public synchronized void acceptLive(final String resourceKey) {
+
+        final Entry entry = entries.get(resourceKey);
+        if (entry != null) {
+            entry.setAppliedHash(entry.getLiveHash());
+        }
+    }
+
+    /**
+     * Sweep every policy and resource set.
+     *
+     * @param client The FmsClient to use.
+     * @return Resources drifted from their last-applied state, and counts of the reads made.
+     */
+    public synchronized ScanResult scan(final FmsClient client) {
+
+        final long now = clock.getAsLong();
+        final long throttledBefore = retries.getThrottleCount();
+        final SweepCounters counters = new SweepCounters();
+
+        // list both resource kinds, a resource that is no longer listed was deleted
+        final Map<String, PolicySummary> policies = listPolicies(client);
+        final Map<String, ResourceSetSummary> resourceSets = listResourceSets(client);
+        final List<Drift> drifted = new ArrayList<>();
+        entries.entrySet().removeIf(keyedEntry -> {
+            final Entry entry = keyedEntry.getValue();
+            final boolean listed = POLICY_TYPE.equals(entry.getType())
+                    ? policies.containsKey(entry.getId())
+                    : resourceSets.containsKey(entry.getId());
+            if (!listed && entry.getLiveHash() != null) {
+                drifted.add(new Drift(entry.getType(), entry.getId(), entry.getName(), entry.getAppliedHash(), null));
+            }
+            return !listed;
+        });
+
+        // read every listed resource, each read decides whether the resource changed
+        final List<Supplier<Boolean>> reads = new ArrayList<>();
+        for (final PolicySummary summary : policies.values()) {
+            reads.add(() -> readPolicy(client, summary, now, counters));
+        }
+        for (final ResourceSetSummary summary : resourceSets.values()) {
+            reads.add(() -> readResourceSet(client, summary, now, counters));
+        }
+        final List<Boolean> results = ParallelHelper.runConcurrently(
+                reads,
+                maxConcurrency,
+                System.currentTimeMillis() + SWEEP_TIMEOUT_MILLIS);
+        final long failed = results.stream().filter(result -> result == null || !result).count();
+
+        // report every resource whose live state differs from its last-applied state
+        for (final Entry entry : entries.values()) {
+            if (entry.getAppliedHash() == null && entry.getLiveHash() != null) {
+                entry.setAppliedHash(entry.getLiveHash());
+            } else if (entry.getLiveHash() != null && !entry.getLiveHash().equals(entry.getAppliedHash())) {
+                drifted.add(new Drift(
+                        entry.getType(),
+                        entry.getId(),
+                        entry.getName(),
+                        entry.getAppliedHash(),
+                        entry.getLiveHash()));
+            }
+        }
+
+        return new ScanResult(
+                drifted,
+                policies.size() + resourceSets.size(),
+                counters.unchanged.get(),
+                counters.resourcesRead.get(),
+                counters.tagListsRead.get(),
+                counters.associationListsRead.get(),
+                (int) failed,
+                (int) (retries.getThrottleCount() - throttledBefore),
+                limiter.getLimit());
+    }
+
+    /**
+     * Sweep periodically, each sweep moved earlier or later by a random share of the interval.
+     *
+     * @param scheduler Scheduler running the sweeps.
+     * @param client The FmsClient to use.
+     * @param intervalMillis Average time in milliseconds between two sweeps.
+     * @param jitter Share of the interval by which each sweep is moved, between 0 and 1.
+     * @param listener Receives the result of every sweep.
+     */
+    public void schedule(
+            final ScheduledExecutorService scheduler,
+            final FmsClient client,
+            final long intervalMillis,
+            final double jitter,
+            final Consumer<ScanResult> listener) {
+
+        scheduler.schedule(() -> {
+            try {
+                listener.accept(scan(client));
+            } finally {
+                // the next sweep is scheduled even if this one failed, unless the scheduler was shut down
+                if (!scheduler.isShutdown()) {
+                    schedule(scheduler, client, intervalMillis, jitter, listener);
+                }
+            }
+        }, jitteredDelayMillis(intervalMillis, jitter), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Build the key of a resource entry.
+     *
+     * @param type Resource type, {@link #POLICY_TYPE} or {@link #RESOURCE_SET_TYPE}.
+     * @param id Policy or resource set ID.
+     * @return Resource key.
+     */
+    public static String resourceKey(final String type, final String id) {
+
+        return type + "/" + id;
+    }
+
+    /**
+     * Pick the delay before a sweep.
+     *
+     * @param intervalMillis Average time in milliseconds between two sweeps.
+     * @param jitter Share of the interval by which the delay is moved, between 0 and 1.
+     * @return Delay in milliseconds, uniformly distributed around the interval.
+     */
+    static long jitteredDelayMillis(final long intervalMillis, final double jitter) {
+
+        final long spread = (long) (intervalMillis * jitter);
+        return intervalMillis - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1);
+    }
+
+    private static void print(final ScanResult result) {
+
+        result.getDrifted().forEach(drift -> System.out.printf("Drifted: %s %s (%s)%s%n",
+                drift.getType(),
+                drift.getId(),
+                drift.getName(),
+                drift.getLiveHash() == null ? " deleted" : ""));
+        System.out.printf("%d resource/s listed, %d skipped, %d read, %d tag list/s read, %d association list/s read, "
+                        + "%d failed, %d throttled, concurrency %d%n",
+                result.getListed(),
+                result.getSkipped(),
+                result.getResourcesRead(),
+                result.getTagListsRead(),
+                result.getAssociationListsRead(),
+                result.getFailed(),
+                result.getThrottled(),
+                result.getConcurrencyLimit());
+    }
+
+    private boolean readPolicy(
+            final FmsClient client,
+            final PolicySummary summary,
+            final long now,
+            final SweepCounters counters) {
+
+        final GetPolicyResponse getPolicyResponse;
+        try {
+            getPolicyResponse = call(() -> client.getPolicy(GetPolicyRequest.builder()
+                    .policyId(summary.policyId())
+                    .build()));
+        } catch (ResourceNotFoundException e) {
+            // deleted since the listing, the next sweep reports it
+            return true;
+        }
+        counters.resourcesRead.incrementAndGet();
+
+        final String key = resourceKey(POLICY_TYPE, summary.policyId());
+        final Entry entry = existingEntry(key, POLICY_TYPE, summary.policyId(), summary.policyName());
+        final String updateToken = getPolicyResponse.policy().policyUpdateToken();
+        if (entry.getLiveHash() == null
+                || !Objects.equals(updateToken, entry.getUpdateToken())
+                || isVerificationDue(entry, now)) {
+            // the policy content changed, or its tags are due to be verified
+            final List<Tag> tags = listTags(client, getPolicyResponse.policyArn(), counters);
+            final ResourceModel model = CfnHelper.convertFMSPolicyToCFNResourceModel(
+                    getPolicyResponse.policy(),
+                    getPolicyResponse.policyArn(),
+                    tags);
+            updateEntry(entry, PolicyComparator.contentHash(model), updateToken, now);
+        } else {
+            counters.unchanged.incrementAndGet();
+        }
+        entry.setName(summary.policyName());
+        return true;
+    }
+
+    private boolean readResourceSet(
+            final FmsClient client,
+            final ResourceSetSummary summary,
+            final long now,
+            final SweepCounters counters) {
+
+        final GetResourceSetResponse getResourceSetResponse;
+        try {
+            getResourceSetResponse = call(() -> client.getResourceSet(GetResourceSetRequest.builder()
+                    .identifier(summary.id())
+                    .build()));
+        } catch (ResourceNotFoundException e) {
+            return true;
+        }
+        counters.resourcesRead.incrementAndGet();
+
+        final String key = resourceKey(RESOURCE_SET_TYPE, summary.id());
+        final Entry entry = existingEntry(key, RESOURCE_SET_TYPE, summary.id(), summary.name());
+        final ResourceSet resourceSet = getResourceSetResponse.resourceSet();
+        final boolean changed = entry.getLiveHash() == null
+                || !Objects.equals(resourceSet.updateToken(), entry.getUpdateToken())
+                || isVerificationDue(entry, now);
+
+        // associations do not change the update token, so the last update time of the listing tells whether they
+        // may have changed, and the stored digest is kept while it does not move
+        final Long lastUpdateTime = summary.lastUpdateTime() == null ? null : summary.lastUpdateTime().toEpochMilli();
+        final String associationDigest;
+        if (changed || lastUpdateTime == null || !lastUpdateTime.equals(entry.getLastUpdateTime())) {
+            associationDigest = associationDigest(listResources(client, summary.id(), counters));
+        } else {
+            associationDigest = entry.getAssociationDigest();
+        }
+        if (changed || !Objects.equals(associationDigest, entry.getAssociationDigest())) {
+            final List<Tag> tags = listTags(client, getResourceSetResponse.resourceSetArn(), counters);
+            updateEntry(entry, resourceSetHash(resourceSet, tags, associationDigest), resourceSet.updateToken(), now);
+            entry.setAssociationDigest(associationDigest);
+        } else {
+            counters.unchanged.incrementAndGet();
+        }
+        entry.setLastUpdateTime(lastUpdateTime);
+        entry.setName(summary.name());
+        return true;
+    }
+
+    /**
+     * Hash the content of a resource set, leaving out its identifiers, update token and status.
+     *
+     * @param resourceSet FMS resource set.
+     * @param tags Tags of the resource set.
+     * @param associationDigest Digest of the resources associated with the resource set.
+     * @return Lowercase hex encoded hash.
+     */
+    static String resourceSetHash(final ResourceSet resourceSet, final List<Tag> tags, final String associationDigest) {
+
+        final Map<String, Object> content = new TreeMap<>();
+        content.put("Name", resourceSet.name());
+        content.put("Description", resourceSet.description());
+        final List<String> resourceTypes = new ArrayList<>(resourceSet.resourceTypeList());
+        Collections.sort(resourceTypes);
+        content.put("ResourceTypeList", resourceTypes);
+        final Map<String, String> tagMap = new TreeMap<>();
+        tags.forEach(tag -> tagMap.put(tag.key(), tag.value()));
+        content.put("Tags", tagMap);
+        content.put("Resources", associationDigest);
+        return HashHelper.contentHash(content);
+    }
+
+    /**
+     * Digest the resources associated with a resource set, in any order.
+     *
+     * @param resources Associated resources.
+     * @return Lowercase hex encoded hash.
+     */
+    static String associationDigest(final List<Resource> resources) {
+
+        final List<String> associations = new ArrayList<>(resources.size());
+        resources.forEach(resource -> associations.add(resource.accountId() + "/" + resource.uri()));
+        Collections.sort(associations);
+        return HashHelper.contentHash(associations);
+    }
+
+    private List<Resource> listResources(
+            final FmsClient client,
+            final String resourceSetId,
+            final SweepCounters counters) {
+
+        final List<Resource> resources = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final String pageToken = nextToken;
+            final ListResourceSetResourcesResponse listResourceSetResourcesResponse = call(
+                    () -> client.listResourceSetResources(ListResourceSetResourcesRequest.builder()
+                            .identifier(resourceSetId)
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            resources.addAll(listResourceSetResourcesResponse.items());
+            nextToken = listResourceSetResourcesResponse.nextToken();
+        } while (nextToken != null);
+        counters.associationListsRead.incrementAndGet();
+        return resources;
+    }
+
+    private List<Tag> listTags(final FmsClient client, final String resourceArn, final SweepCounters counters) {
+
+        final List<Tag> tags = call(() -> client.listTagsForResource(ListTagsForResourceRequest.builder()
+                .resourceArn(resourceArn)
+                .build())).tagList();
+        counters.tagListsRead.incrementAndGet();
+        return tags;
+    }
+
+    private Map<String, PolicySummary> listPolicies(final FmsClient client) {
+
+        final Map<String, PolicySummary> summaries = new LinkedHashMap<>();
+        String nextToken = null;
+        do {
+            final String pageToken = nextToken;
+            final ListPoliciesResponse listPoliciesResponse = call(() -> client.listPolicies(
+                    ListPoliciesRequest.builder()
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            listPoliciesResponse.policyList().forEach(summary -> summaries.put(summary.policyId(), summary));
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        return summaries;
+    }
+
+    private Map<String, ResourceSetSummary> listResourceSets(final FmsClient client) {
+
+        final Map<String, ResourceSetSummary> summaries = new LinkedHashMap<>();
+        String nextToken = null;
+        do {
+            final String pageToken = nextToken;
+            final ListResourceSetsResponse listResourceSetsResponse = call(() -> client.listResourceSets(
+                    ListResourceSetsRequest.builder()
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            listResourceSetsResponse.resourceSets().forEach(summary -> summaries.put(summary.id(), summary));
+            nextToken = listResourceSetsResponse.nextToken();
+        } while (nextToken != null);
+        return summaries;
+    }
+
+    /**
+     * Make an FMS read within the concurrency limit, retrying it while it is throttled.
+     *
+     * @param read FMS read.
+     * @param <T> Type of the response.
+     * @return The response.
+     */
+    private <T> T call(final Supplier<T> read) {
+
+        return retries.call(() -> limiter.call(read));
+    }
+
+    private boolean isVerificationDue(final Entry entry, final long now) {
+
+        return now - entry.getVerifiedAt() >= verificationAgeMillis;
+    }
+
+    private static Entry newEntry(final String type, final String id, final String name) {
+
+        return new Entry(type, id, name, null, null, null, null, null, 0);
+    }
+
+    private Entry existingEntry(final String key, final String type, final String id, final String name) {
+
+        // reads run on worker threads while the sweep holds the scanner lock, each resource is read by one of them
+        synchronized (entries) {
+            return entries.computeIfAbsent(key, missing -> newEntry(type, id, name));
+        }
+    }
+
+    private static void updateEntry(
+            final Entry entry,
+            final String liveHash,
+            final String updateToken,
+            final long now) {
+
+        entry.setLiveHash(liveHash);
+        entry.setUpdateToken(updateToken);
+        entry.setVerifiedAt(now);
+    }
+
+    /** Counts of a sweep, updated by the worker threads. */
+    private static class SweepCounters {
+        private final AtomicInteger resourcesRead = new AtomicInteger();
+        private final AtomicInteger tagListsRead = new AtomicInteger();
+        private final AtomicInteger associationListsRead = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+    }
+
+    /** Last-applied and live state of a policy or resource set. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private String type;
+        private String id;
+        private String name;
+        private String appliedHash;
+        private String liveHash;
+        private String updateToken;
+
+        /** Digest of the resources associated with a resource set, null for a policy. */
+        private String associationDigest;
+
+        /** Last update time in milliseconds of a resource set when its digest was last taken, null for a policy. */
+        private Long lastUpdateTime;
+
+        /** Time in milliseconds the live hash was last computed. */
+        private long verifiedAt;
+    }
+
+    /** Resource whose live state differs from its last-applied state. */
+    @Value
+    public static class Drift {
+        String type;
+        String id;
+        String name;
+        String appliedHash;
+
+        /** Hash of the live state, null if the resource was deleted. */
+        String liveHash;
+    }
+
+    /** Outcome of a sweep. */
+    @Value
+    public static class ScanResult {
+        List<Drift> drifted;
+        int listed;
+        int skipped;
+        int resourcesRead;
+        int tagListsRead;
+        int associationListsRead;
+        int failed;
+        int throttled;
+        int concurrencyLimit;
+    }
+}
@@ -0,0 +1,156 @@
+package software.amazon.fms.policy;
+
+import software.amazon.awssdk.services.fms.model.FmsResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Progress and results of handler requests, kept on a warm handler instance and keyed by client request token.
+ *
+ * CloudFormation re-invokes a handler with the same client request token when an invocation times out or its response
+ * is lost. A re-invocation landing on the same instance returns the recorded result of a completed request, or resumes
+ * an incomplete request from its recorded steps instead of repeating them.
+ */
+class IdempotencyStore {
+
+    /** Time in milliseconds a request is remembered after its last recorded step. */
+    static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** Maximum number of requests remembered, the least recently used request is forgotten first. */
+    static final int MAX_ENTRIES = 256;
+
+    /** Separator used when building keys, never part of a handler name. */
+    private static final String KEY_SEPARATOR = "|";
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Create a store that uses the system clock.
+     * @param ttlMillis Time in milliseconds a request is remembered after its last recorded step.
+     * @param maxEntries Maximum number of requests remembered.
+     */
+    IdempotencyStore(final long ttlMillis, final int maxEntries) {
+
+        this(ttlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a store with a custom clock, for use in tests.
+     * @param ttlMillis Time in milliseconds a request is remembered after its last recorded step.
+     * @param maxEntries Maximum number of requests remembered.
+     * @param clock Clock returning the current time in milliseconds.
+     */
+    IdempotencyStore(final long ttlMillis, final int maxEntries, final LongSupplier clock) {
+
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Build a key scoping a client request token to the handler serving it.
+     * @param handlerName Name of the handler, requests of different actions never share a key.
+     * @param clientRequestToken Token of the CloudFormation request.
+     * @return Key, or null if the request has no token.
+     */
+    static String key(final String handlerName, final String clientRequestToken) {
+
+        return clientRequestToken == null ? null : handlerName + KEY_SEPARATOR + clientRequestToken;
+    }
+
+    /**
+     * Retrieve the progress of a request.
+     * @param key Key built with {@link #key(String, String)}.
+     * @return Copy of the recorded progress, or null if the request is not remembered.
+     */
+    synchronized CallbackContext progress(final String key) {
+
+        final Entry entry = live(key);
+        return entry == null ? null : entry.progress.copy();
+    }
+
+    /**
+     * Retrieve the result of a completed request.
+     * @param key Key built with {@link #key(String, String)}.
+     * @return The recorded response, or null if the request has not completed.
+     */
+    synchronized FmsResponse response(final String key) {
+
+        final Entry entry = live(key);
+        return entry == null ? null : entry.response;
+    }
+
+    /**
+     * Record the progress of an incomplete request.
+     * @param key Key built with {@link #key(String, String)}.
+     * @param progress Progress of the request.
+     */
+    synchronized void recordProgress(final String key, final CallbackContext progress) {
+
+        put(key, new Entry(progress.copy(), null, clock.getAsLong()));
+    }
+
+    /**
+     * Record the result of a completed request.
+     * @param key Key built with {@link #key(String, String)}.
+     * @param progress Progress of the request.
+     * @param response Response the request completed with.
+     */
+    synchronized void recordResponse(final String key, final CallbackContext progress, final FmsResponse response) {
+
+        put(key, new Entry(progress.copy(), response, clock.getAsLong()));
+    }
+
+    /**
+     * Number of requests currently remembered, including expired requests not yet evicted.
+     * @return Number of remembered requests.
+     */
+    synchronized int size() {
+
+        return entries.size();
+    }
+
+    private Entry live(final String key) {
+
+        final Entry entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.recordedAt > ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(final String key, final Entry entry) {
+
+        entries.put(key, entry);
+
+        // forget the least recently used requests once the store is over capacity
+        final Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() > maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final CallbackContext progress;
+        private final FmsResponse response;
+        private final long recordedAt;
+
+        private Entry(final CallbackContext progress, final FmsResponse response, final long recordedAt) {
+
+            this.progress = progress;
+            this.response = response;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
@@ -1,42 +1,177 @@
 package software.amazon.fms.policy;
 
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsResponse;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
 import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
+import software.amazon.fms.policy.helpers.ListPageCache;
+import software.amazon.fms.policy.helpers.ParallelHelper;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class ListHandler extends PolicyHandler<ListPoliciesResponse> {
 
     public static final int MAX_RESULTS = 50;
 
-    ListHandler() { super(); }
+    /** Largest page size accepted by ListPolicies, used once a listing is known to span several pages. */
+    static final int MAX_PAGE_SIZE = 100;
+
+    /** Maximum number of pages fetched ahead of the page being returned. */
+    static final int PREFETCH_PAGES = 4;
+
+    /** Longest time in milliseconds an invocation spends fetching pages ahead, within its execution budget. */
+    static final long PREFETCH_BUDGET_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /** Pages fetched ahead for the current paging session, keyed by the FMS token handed back to CloudFormation. */
+    static final ListPageCache<ListPoliciesResponse> PAGE_CACHE =
+            new ListPageCache<>(TimeUnit.SECONDS.toMillis(30), 256);
+
+    /** Environment variable that opts the handler into returning full policy models. */
+    static final String ENRICHED_ENVIRONMENT_VARIABLE = "FMS_POLICY_LIST_ENRICHED";
+
+    /** Maximum number of GetPolicy and ListTagsForResource requests in flight while enriching a page. */
+    static final int ENRICH_PARALLELISM = 8;
+
+    /** Should each listed policy be read in full, instead of being returned as a summary. */
+    private final boolean enriched;
+
+    ListHandler() {
+        super();
+        enriched = Boolean.parseBoolean(System.getenv(ENRICHED_ENVIRONMENT_VARIABLE));
+    }
 
     ListHandler(final FmsClient client) {
+        this(client, false);
+    }
+
+    ListHandler(final FmsClient client, final boolean enriched) {
         super(client);
+        this.enriched = enriched;
+    }
+
+    @Override
+    protected ListPoliciesResponse makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final Logger logger) {
+
+        return makeRequest(proxy, request, CallbackContext.builder().build(), ExecutionBudget.unlimited(), logger);
     }
 
     @Override
     protected ListPoliciesResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
             final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger) {
+
+        // a continuation is served from the pages its own session fetched ahead, a new listing drops them so it
+        // never sees pages listed before a change
+        if (request.getNextToken() != null) {
+            final ListPoliciesResponse cachedResponse = PAGE_CACHE.take(ListPageCache.key(
+                    request.getAwsAccountId(),
+                    request.getRegion(),
+                    request.getNextToken()));
+            if (cachedResponse != null) {
+                logger.log("Serving policy list page from cache");
+                return cachedResponse;
+            }
+        } else {
+            PAGE_CACHE.invalidate(request.getAwsAccountId(), request.getRegion());
+        }
+
+        // make the list request, continuation pages use the largest page size
+        final int pageSize = request.getNextToken() == null ? MAX_RESULTS : MAX_PAGE_SIZE;
+        final ListPoliciesResponse listPoliciesResponse = listPolicies(
+                proxy,
+                request.getNextToken(),
+                pageSize,
+                logger);
+
+        prefetchPages(proxy, request, listPoliciesResponse, pageSize, budget.deadlineMillis(), logger);
+
+        return listPoliciesResponse;
+    }
+
+    /**
+     * Fetch the pages following a full page and cache them for the follow-up invocations.
+     * @param proxy AWS proxy to make requests.
+     * @param request CloudFormation's handler request.
+     * @param firstPage Page being returned to CloudFormation.
+     * @param firstPageSize Page size the first page was requested with.
+     * @param deadlineMillis Time at which the invocation has to stop making FMS calls.
+     * @param logger CloudWatch logger.
+     */
+    private void prefetchPages(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ListPoliciesResponse firstPage,
+            final int firstPageSize,
+            final long deadlineMillis,
+            final Logger logger) {
+
+        final long deadline = Math.min(System.currentTimeMillis() + PREFETCH_BUDGET_MILLIS, deadlineMillis);
+        ListPoliciesResponse page = firstPage;
+        int pageSize = firstPageSize;
+        int prefetched = 0;
+        try {
+            // only a full page hints at a long listing, grow the page size while pages keep coming back full
+            while (prefetched < PREFETCH_PAGES
+                    && page.nextToken() != null
+                    && page.policyList().size() >= pageSize
+                    && System.currentTimeMillis() < deadline) {
+                final String nextToken = page.nextToken();
+                pageSize = Math.min(pageSize * 2, MAX_PAGE_SIZE);
+                page = listPolicies(proxy, nextToken, pageSize, logger);
+                PAGE_CACHE.put(ListPageCache.key(request.getAwsAccountId(), request.getRegion(), nextToken), page);
+                prefetched++;
+            }
+        } catch (SdkException e) {
+            // the requested page is already available, a failed prefetch only costs a later remote call
+            logger.log(String.format("Stopped fetching policy list pages ahead: %s", e));
+        }
+        if (prefetched > 0) {
+            logger.log(String.format("Fetched %d policy list page/s ahead", prefetched));
+        }
+    }
+
+    /**
+     * Make a single ListPolicies request.
+     * @param proxy AWS proxy to make requests.
+     * @param nextToken Token of the page to list, null for the first page.
+     * @param pageSize Maximum number of policies to return.
+     * @param logger CloudWatch logger.
+     * @return Response from the FMS API.
+     */
+    private ListPoliciesResponse listPolicies(
+            final AmazonWebServicesClientProxy proxy,
+            final String nextToken,
+            final int pageSize,
             final Logger logger) {
 
-        // Make the list request
         final ListPoliciesRequest listPoliciesRequest = ListPoliciesRequest.builder()
-                .nextToken(request.getNextToken())
-                .maxResults(MAX_RESULTS)
+                .nextToken(nextToken)
+                .maxResults(pageSize)
                 .build();
 
-        ListPoliciesResponse listPoliciesResponse = proxy.injectCredentialsAndInvokeV2(
+        final ListPoliciesResponse listPoliciesResponse = proxy.injectCredentialsAndInvokeV2(
                 listPoliciesRequest,
                 client::listPolicies);
         logRequest(listPoliciesResponse, logger);
@@ -49,16 +184,24 @@ public class ListHandler extends PolicyHandler<ListPoliciesResponse> {
             final ListPoliciesResponse response,
             final ResourceHandlerRequest<ResourceModel> request,
             final AmazonWebServicesClientProxy proxy) {
+
+        return constructProgressEvent(response, request, null, ExecutionBudget.unlimited(), proxy);
+    }
+
+    @Override
+    ProgressEvent<ResourceModel, CallbackContext> constructProgressEvent(
+            final ListPoliciesResponse response,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final AmazonWebServicesClientProxy proxy) {
         List<ResourceModel> resourceModels = new ArrayList<>();
 
         if (response.hasPolicyList()) {
-            // convert the list request response to a resource model
-            resourceModels.addAll(
-                    response.policyList().stream()
-                    .map(p -> CfnHelper.convertFMSPolicySummaryToCFNResourceModel(p, p.policyArn()))
-                    .collect(Collectors.toList())
-            );
-
+            // convert the list request response to resource models, enriching them in the time the listing left
+            resourceModels.addAll(enriched
+                    ? constructEnrichedResourceModels(response.policyList(), budget.deadlineMillis(), proxy)
+                    : constructSummaryResourceModels(response.policyList()));
         }
 
         return ProgressEvent.<ResourceModel, CallbackContext>builder()
@@ -67,4 +210,65 @@ public class ListHandler extends PolicyHandler<ListPoliciesResponse> {
                 .status(OperationStatus.SUCCESS)
                 .build();
     }
+
+    private List<ResourceModel> constructSummaryResourceModels(final List<PolicySummary> policySummaries) {
+
+        final List<ResourceModel> resourceModels = new ArrayList<>(policySummaries.size());
+        policySummaries.forEach(p -> resourceModels.add(
+                CfnHelper.convertFMSPolicySummaryToCFNResourceModel(p, p.policyArn())));
+        return resourceModels;
+    }
+
+    /**
+     * Read every listed policy and its tags concurrently and convert them to full resource models. Policies that
+     * could not be read before the invocation deadline are returned as summaries.
+     * @param policySummaries Policy summaries from the list request.
+     * @param deadlineMillis Time at which the invocation has to stop making FMS calls.
+     * @param proxy AWS proxy to make requests.
+     * @return Resource models in list order.
+     */
+    private List<ResourceModel> constructEnrichedResourceModels(
+            final List<PolicySummary> policySummaries,
+            final long deadlineMillis,
+            final AmazonWebServicesClientProxy proxy) {
+
+        // the listing and prefetch may have spent the whole budget
+        if (deadlineMillis <= System.currentTimeMillis()) {
+            return constructSummaryResourceModels(policySummaries);
+        }
+
+        // the summary carries the policy ARN, so the policy and tag reads are independent of each other
+        final List<Supplier<FmsResponse>> tasks = new ArrayList<>(policySummaries.size() * 2);
+        for (final PolicySummary policySummary : policySummaries) {
+            final GetPolicyRequest getPolicyRequest = GetPolicyRequest.builder()
+                    .policyId(policySummary.policyId())
+                    .build();
+            final ListTagsForResourceRequest listTagsForResourceRequest = ListTagsForResourceRequest.builder()
+                    .resourceArn(policySummary.policyArn())
+                    .build();
+            tasks.add(() -> proxy.injectCredentialsAndInvokeV2(getPolicyRequest, client::getPolicy));
+            tasks.add(() -> proxy.injectCredentialsAndInvokeV2(listTagsForResourceRequest, client::listTagsForResource));
+        }
+        final List<FmsResponse> responses = ParallelHelper.runConcurrently(tasks, ENRICH_PARALLELISM, deadlineMillis);
+
+        // fall back to the summary for each policy missing either read
+        final List<ResourceModel> resourceModels = new ArrayList<>(policySummaries.size());
+        for (int i = 0; i < policySummaries.size(); i++) {
+            final GetPolicyResponse getPolicyResponse = (GetPolicyResponse) responses.get(2 * i);
+            final ListTagsForResourceResponse listTagsForResourceResponse =
+                    (ListTagsForResourceResponse) responses.get(2 * i + 1);
+            if (getPolicyResponse == null || listTagsForResourceResponse == null) {
+                final PolicySummary policySummary = policySummaries.get(i);
+                resourceModels.add(CfnHelper.convertFMSPolicySummaryToCFNResourceModel(
+                        policySummary,
+                        policySummary.policyArn()));
+            } else {
+                resourceModels.add(CfnHelper.convertFMSPolicyToCFNResourceModel(
+                        getPolicyResponse.policy(),
+                        getPolicyResponse.policyArn(),
+                        listTagsForResourceResponse.tagList()));
+            }
+        }
+        return resourceModels;
+    }
 }
@@ -0,0 +1,380 @@
+package software.amazon.fms.policy;
+
+import lombok.Value;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.InvalidInputException;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PutPolicyRequest;
+import software.amazon.awssdk.services.fms.model.PutPolicyResponse;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.awssdk.services.fms.model.TagResourceRequest;
+import software.amazon.awssdk.services.fms.model.UntagResourceRequest;
+import software.amazon.fms.policy.helpers.FmsHelper;
+import software.amazon.fms.policy.helpers.ParallelHelper;
+import software.amazon.fms.policy.helpers.Retrier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Deploys the same policy to many regions at once.
+ *
+ * FMS policies are regional, so each region gets its own policy, created there or updated in place. The resource model
+ * is validated and converted to an FMS policy once, and every region then makes its PutPolicy and tag calls on its own
+ * worker, so a slow or failing region does not hold up the others. Each region has its own client and its own
+ * {@link Retrier}, so throttling in one region only slows the calls to that region.
+ *
+ * Regions report their outcome separately: a region that fails, or has not finished by the deadline, is reported as
+ * failed while the others still succeed. A failed create may still have created its policy, so a region without a
+ * policy ID looks up a policy with the same name before creating one, and deploying again after a failure updates
+ * that policy instead of adding a duplicate. Resource set IDs are regional as well, so a model that references
+ * resource sets can only be deployed to the region they belong to.
+ */
+public class MultiRegionDeployer implements AutoCloseable {
+
+    /** Time in milliseconds a deployment waits for every region. */
+    static final long DEPLOY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /** Error code reported for a region that has not finished by the deadline. */
+    static final String TIMED_OUT_ERROR_CODE = "TimedOut";
+
+    /** Page size used for ListPolicies. */
+    static final int MAX_RESULTS = 100;
+
+    private final Map<String, FmsClient> clients;
+    private final Map<String, Retrier> retriers;
+
+    /**
+     * Create a deployer with a client for every region, using the default retry policy.
+     *
+     * @param regions Regions to deploy to.
+     * @return The deployer, which owns and closes the clients.
+     */
+    public static MultiRegionDeployer create(final Collection<String> regions) {
+
+        final Map<String, FmsClient> clients = new LinkedHashMap<>();
+        regions.forEach(region -> clients.put(region, FmsClient.builder().region(Region.of(region)).build()));
+        return new MultiRegionDeployer(
+                clients,
+                Retrier.DEFAULT_MAX_ATTEMPTS,
+                Retrier.DEFAULT_BASE_DELAY_MILLIS,
+                Retrier.DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Create a deployer with the given clients, for use in tests.
+     *
+     * @param clients The FmsClient of every region, keyed by region name.
+     * @param maxAttempts Number of attempts of a call, including the first one.
+     * @param baseDelayMillis Delay in milliseconds after the first throttled attempt.
+     * @param maxDelayMillis Longest delay in milliseconds between two attempts.
+     */
+    MultiRegionDeployer(
+            final Map<String, FmsClient> clients,
+            final int maxAttempts,
+            final long baseDelayMillis,
+            final long maxDelayMillis) {
+
+        this.clients = new LinkedHashMap<>(clients);
+        this.retriers = new LinkedHashMap<>();
+        // every call runs on the worker of its region, the retriers keep each region's throttling state
+        clients.keySet().forEach(region -> retriers.put(
+                region, new Retrier(maxAttempts, baseDelayMillis, maxDelayMillis)));
+    }
+
+    /**
+     * Get the regions the deployer has a client for.
+     *
+     * @return Region names, in the order the clients were given.
+     */
+    public List<String> getRegions() {
+
+        return new ArrayList<>(clients.keySet());
+    }
+
+    /**
+     * Deploy a policy to every region.
+     *
+     * @param model Desired resource model, its policy ID is ignored.
+     * @param tags Tags every regional policy should have, null for none.
+     * @param policyIds ID of the existing policy to update in each region, regions without one update the policy with
+     *                  the same name or get a new policy; null to do so in every region.
+     * @return Outcome of every region, in region order.
+     * @throws InvalidInputException If FMS would reject the policy in every region.
+     */
+    public DeploymentResult deploy(
+            final ResourceModel model,
+            final Map<String, String> tags,
+            final Map<String, String> policyIds) {
+
+        final List<String> problems = PolicyHandler.POLICY_VALIDATOR.validate(model);
+        if (!problems.isEmpty()) {
+            throw InvalidInputException.builder()
+                    .message(String.format("Invalid policy: %s", String.join("; ", problems)))
+                    .build();
+        }
+
+        // convert once, the SDK policy is immutable so every region shares it
+        final Policy policy = FmsHelper.convertCFNResourceModelToFMSPolicy(model).toBuilder()
+                .policyId(null)
+                .build();
+
+        final ExecutorService workers = ParallelHelper.newWorkerPool(clients.size());
+        final Map<String, Future<RegionResult>> futures = new LinkedHashMap<>();
+        try {
+            clients.keySet().forEach(region -> futures.put(region, workers.submit(
+                    () -> deployRegion(region, policy, tags, policyIds == null ? null : policyIds.get(region)))));
+
+            // collect every region as it finishes, a region that is still running at the deadline is abandoned
+            final long deadlineMillis = System.currentTimeMillis() + DEPLOY_TIMEOUT_MILLIS;
+            final Map<String, RegionResult> results = new LinkedHashMap<>();
+            for (final Map.Entry<String, Future<RegionResult>> future : futures.entrySet()) {
+                results.put(future.getKey(), awaitRegion(future.getKey(), future.getValue(), deadlineMillis));
+            }
+            return new DeploymentResult(results);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Close the client of every region.
+     */
+    @Override
+    public void close() {
+
+        clients.values().forEach(FmsClient::close);
+    }
+
+    private RegionResult deployRegion(
+            final String region,
+            final Policy policy,
+            final Map<String, String> tags,
+            final String policyId) {
+
+        final FmsClient client = clients.get(region);
+        final Retrier retrier = retriers.get(region);
+        final long startedAt = System.nanoTime();
+        String existingPolicyId = policyId;
+        try {
+            if (existingPolicyId == null) {
+                existingPolicyId = findPolicyId(client, retrier, policy.policyName());
+            }
+            final String updatedPolicyId = existingPolicyId;
+            final PutPolicyResponse response;
+            if (updatedPolicyId == null) {
+                // a new policy is tagged by its create request
+                final List<Tag> tagList = FmsHelper.convertCFNTagMapToFMSTagSet(tags);
+                final PutPolicyRequest.Builder putPolicyRequest = PutPolicyRequest.builder().policy(policy);
+                if (!tagList.isEmpty()) {
+                    putPolicyRequest.tagList(tagList);
+                }
+                response = retrier.call(() -> client.putPolicy(putPolicyRequest.build()));
+            } else {
+                // an existing policy needs its update token, and its tags are brought to the desired ones
+                final GetPolicyResponse getPolicyResponse = retrier.call(() -> client.getPolicy(
+                        GetPolicyRequest.builder().policyId(updatedPolicyId).build()));
+                response = retrier.call(() -> client.putPolicy(PutPolicyRequest.builder()
+                        .policy(policy.toBuilder()
+                                .policyId(updatedPolicyId)
+                                .policyUpdateToken(getPolicyResponse.policy().policyUpdateToken())
+                                .build())
+                        .build()));
+                updateTags(client, retrier, getPolicyResponse.policyArn(), tags);
+            }
+            return new RegionResult(
+                    region,
+                    true,
+                    response.policy().policyId(),
+                    response.policyArn(),
+                    null,
+                    null,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+                    retrier.getThrottleCount());
+        } catch (SdkException e) {
+            return new RegionResult(
+                    region,
+                    false,
+                    existingPolicyId,
+                    null,
+                    errorCode(e),
+                    e.getMessage(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+                    retrier.getThrottleCount());
+        }
+    }
+
+    /**
+     * Find the policy of a region with the given name, left by an earlier deployment whose outcome was not known.
+     *
+     * @param client The FmsClient of the region.
+     * @param retrier Retries the throttled calls of the region.
+     * @param policyName Name of the policy.
+     * @return ID of the policy, or null if the region has none with that name.
+     * @throws InvalidInputException If several policies of the region have the name.
+     */
+    private static String findPolicyId(
+            final FmsClient client,
+            final Retrier retrier,
+            final String policyName) {
+
+        final List<String> policyIds = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final String pageToken = nextToken;
+            final ListPoliciesResponse listPoliciesResponse = retrier.call(() -> client.listPolicies(
+                    ListPoliciesRequest.builder()
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            listPoliciesResponse.policyList().stream()
+                    .filter(summary -> policyName.equals(summary.policyName()))
+                    .forEach(summary -> policyIds.add(summary.policyId()));
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        if (policyIds.size() > 1) {
+            throw InvalidInputException.builder()
+                    .message(String.format("Several policies are named %s: %s",
+                            policyName, String.join(", ", policyIds)))
+                    .build();
+        }
+        return policyIds.isEmpty() ? null : policyIds.get(0);
+    }
+
+    private static void updateTags(
+            final FmsClient client,
+            final Retrier retrier,
+            final String policyArn,
+            final Map<String, String> tags) {
+
+        final List<Tag> currentTags = retrier.call(() -> client.listTagsForResource(
+                ListTagsForResourceRequest.builder().resourceArn(policyArn).build())).tagList();
+
+        // remove before adding, since a changed tag value is removed and then added again
+        final List<String> removeTags = FmsHelper.tagsToRemove(currentTags, tags);
+        if (!removeTags.isEmpty()) {
+            retrier.call(() -> client.untagResource(UntagResourceRequest.builder()
+                    .resourceArn(policyArn)
+                    .tagKeys(removeTags)
+                    .build()));
+        }
+        final List<Tag> addTags = FmsHelper.tagsToAdd(currentTags, tags);
+        if (!addTags.isEmpty()) {
+            retrier.call(() -> client.tagResource(TagResourceRequest.builder()
+                    .resourceArn(policyArn)
+                    .tagList(addTags)
+                    .build()));
+        }
+    }
+
+    private RegionResult awaitRegion(
+            final String region,
+            final Future<RegionResult> future,
+            final long deadlineMillis) {
+
+        try {
+            return future.get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return failedRegion(region, TIMED_OUT_ERROR_CODE, "Region did not finish in time");
+        } catch (ExecutionException e) {
+            return failedRegion(region, null, String.valueOf(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return failedRegion(region, null, "Interrupted");
+        }
+    }
+
+    private RegionResult failedRegion(final String region, final String errorCode, final String message) {
+
+        return new RegionResult(region, false, null, null, errorCode, message, 0,
+                retriers.get(region).getThrottleCount());
+    }
+
+    private static String errorCode(final SdkException e) {
+
+        return e instanceof AwsServiceException && ((AwsServiceException) e).awsErrorDetails() != null
+                ? ((AwsServiceException) e).awsErrorDetails().errorCode()
+                : e.getClass().getSimpleName();
+    }
+
+    /** Outcome of a deployment in one region. */
+    @Value
+    public static class RegionResult {
+        String region;
+        boolean succeeded;
+        String policyId;
+        String policyArn;
+        String errorCode;
+        String message;
+        long elapsedMillis;
+
+        /** Throttled calls retried in the region since the deployer was created. */
+        long throttled;
+    }
+
+    /** Outcome of a deployment in every region. */
+    @Value
+    public static class DeploymentResult {
+        Map<String, RegionResult> regions;
+
+        /**
+         * Get the regions the policy was deployed to.
+         *
+         * @return Region names, in region order.
+         */
+        public List<String> getSucceeded() {
+
+            return regions.values().stream()
+                    .filter(RegionResult::isSucceeded)
+                    .map(RegionResult::getRegion)
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Get the regions the policy could not be deployed to.
+         *
+         * @return Region names, in region order.
+         */
+        public List<String> getFailed() {
+
+            return regions.values().stream()
+                    .filter(result -> !result.isSucceeded())
+                    .map(RegionResult::getRegion)
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Get the policy ID of every region the policy was deployed to, to update the same policies next time.
+         *
+         * @return Policy IDs keyed by region name.
+         */
+        public Map<String, String> getPolicyIds() {
+
+            final Map<String, String> policyIds = new LinkedHashMap<>();
+            regions.values().stream()
+                    .filter(RegionResult::isSucceeded)
+                    .forEach(result -> policyIds.put(result.getRegion(), result.getPolicyId()));
+            return Collections.unmodifiableMap(policyIds);
+        }
+    }
+}
@@ -11,14 +11,50 @@ import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.policy.helpers.BudgetExhaustedException;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
+import software.amazon.fms.policy.helpers.NetworkAclAnalyzer;
+import software.amazon.fms.policy.helpers.NetworkAclOptimizer;
+import software.amazon.fms.policy.helpers.OperationCostModel;
+import software.amazon.fms.policy.helpers.PolicyValidator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 abstract class PolicyHandler<ResponseT extends FmsResponse> extends BaseHandler<CallbackContext> {
 
+    /** Progress and results of requests served by this warm instance, shared by every handler. */
+    static final IdempotencyStore IDEMPOTENCY_STORE =
+            new IdempotencyStore(IdempotencyStore.TTL_MILLIS, IdempotencyStore.MAX_ENTRIES);
+
+    /** Expected duration of each FMS operation, learned from the requests served by this warm instance. */
+    static final OperationCostModel COST_MODEL = new OperationCostModel();
+
+    /** Checks desired policies before any FMS call, built once for every request served by this warm instance. */
+    static final PolicyValidator POLICY_VALIDATOR = new PolicyValidator();
+
+    /** Environment variable set to true to aggregate the network ACL entries of policies before they are sent. */
+    static final String AGGREGATE_NETWORK_ACL_ENTRIES_ENVIRONMENT_VARIABLE = "FMS_POLICY_AGGREGATE_NETWORK_ACL_ENTRIES";
+
     /** FMS client instance to make requests on behalf of CloudFormation. */
     protected final FmsClient client;
 
+    /** Creates the execution budget of each invocation. */
+    private Supplier<ExecutionBudget> budgets = () -> ExecutionBudget.fromEnvironment(COST_MODEL);
+
+    /** Aggregates the network ACL entries of policies, when enabled. */
+    private NetworkAclOptimizer networkAclOptimizer =
+            NetworkAclOptimizer.fromEnvironment(AGGREGATE_NETWORK_ACL_ENTRIES_ENVIRONMENT_VARIABLE);
+
+    /** Index of policy scopes the handler keeps current, null when no index is kept. */
+    private PolicyScopeIndex scopeIndex;
+
     /** Constructor for use by CloudFormation, uses default FMS client. */
     PolicyHandler() {
 
@@ -46,6 +82,151 @@ abstract class PolicyHandler<ResponseT extends FmsResponse> extends BaseHandler<
             final ResourceHandlerRequest<ResourceModel> request,
             final Logger logger);
 
+    /**
+     * Hook called by handleRequest to make the primary action request, for handlers that resume re-invocations.
+     * Handlers with several steps override this hook, skip the steps the progress shows completed and record each
+     * step they complete with markCompleted. Handlers making several FMS calls check the budget between them.
+     * @param proxy AWS proxy to make requests.
+     * @param request CloudFormation's handler request.
+     * @param progress Progress of earlier invocations with the same client request token.
+     * @param budget Time left in the invocation.
+     * @param logger CloudWatch logger.
+     * @return Response from the FMS API.
+     * @throws BudgetExhaustedException If the invocation has no time left for the next FMS call.
+     */
+    protected ResponseT makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger) {
+
+        return makeRequest(proxy, request, logger);
+    }
+
+    /**
+     * Hook called by handleRequest before anything else, for handlers that send a desired policy to FMS.
+     * @param request CloudFormation's handler request.
+     * @return Problems FMS would reject the request for, empty if none are found or the handler sends no policy.
+     */
+    protected List<String> validateRequest(final ResourceHandlerRequest<ResourceModel> request) {
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Replace how the execution budget of each invocation is created, for use in tests.
+     * @param budgets Creates the execution budget of an invocation.
+     */
+    void setBudgets(final Supplier<ExecutionBudget> budgets) {
+
+        this.budgets = budgets;
+    }
+
+    /**
+     * Replace the network ACL entry optimizer, for use in tests.
+     * @param networkAclOptimizer Aggregates the network ACL entries of policies.
+     */
+    void setNetworkAclOptimizer(final NetworkAclOptimizer networkAclOptimizer) {
+
+        this.networkAclOptimizer = networkAclOptimizer;
+    }
+
+    /**
+     * Keep a policy scope index current with the policies this handler creates, updates or deletes. Handlers built by
+     * CloudFormation keep none, as a warm instance only sees the policies it served, across accounts and regions.
+     * @param scopeIndex Index to update after each successful request, null to keep none.
+     */
+    void setScopeIndex(final PolicyScopeIndex scopeIndex) {
+
+        this.scopeIndex = scopeIndex;
+    }
+
+    /**
+     * Hook called by handleRequest after a successful request, for handlers that change the scope of a policy.
+     * @param scopeIndex Index to update.
+     * @param request CloudFormation's handler request.
+     * @param progressEvent Success event with the post-action resource state.
+     */
+    void updateScopeIndex(
+            final PolicyScopeIndex scopeIndex,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ProgressEvent<ResourceModel, CallbackContext> progressEvent) {
+
+    }
+
+    /**
+     * Hook telling handleRequest whether the handler changes FMS, only those handlers record and replay their results
+     * by client request token. A read or list depends on more than the token and must reflect the current state.
+     * @return True if a re-invocation with the same client request token returns the recorded result.
+     */
+    boolean recordsResults() {
+
+        return false;
+    }
+
+    /**
+     * Build the key the progress and result of a request are recorded under.
+     * @param clientRequestToken Token of the CloudFormation request.
+     * @return Key, or null if the request has no token or the handler does not record results.
+     */
+    private String idempotencyKey(final String clientRequestToken) {
+
+        return recordsResults() ? IdempotencyStore.key(getClass().getSimpleName(), clientRequestToken) : null;
+    }
+
+    /**
+     * Record a completed step, so a re-invocation with the same client request token does not repeat it.
+     * @param progress Progress of the request.
+     * @param step Step name.
+     */
+    void markCompleted(final CallbackContext progress, final String step) {
+
+        progress.markCompleted(step);
+        final String key = idempotencyKey(progress.getClientRequestToken());
+        if (key != null) {
+            IDEMPOTENCY_STORE.recordProgress(key, progress);
+        }
+    }
+
+    /**
+     * Reject a policy with network ACL entries that can never take effect, before it is sent to FMS.
+     * @param model Desired resource state.
+     * @param logger CloudWatch logger.
+     * @throws InvalidInputException If an entry is shadowed by or redundant with an earlier entry.
+     */
+    static void validateNetworkAclEntries(final ResourceModel model, final Logger logger) {
+
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(model);
+        findings.stream()
+                .filter(finding -> !finding.getKind().isError())
+                .forEach(finding -> logger.log(String.format("Warning: %s", finding)));
+        final String errors = findings.stream()
+                .filter(finding -> finding.getKind().isError())
+                .map(NetworkAclAnalyzer.Finding::toString)
+                .collect(Collectors.joining("; "));
+        if (!errors.isEmpty()) {
+            throw InvalidInputException.builder()
+                    .message(String.format("Network ACL entries never take effect: %s", errors))
+                    .build();
+        }
+    }
+
+    /**
+     * Aggregate the network ACL entries of a policy when the optimizer is enabled, for FmsHelper to convert.
+     * @param entrySet Entry set of the desired resource state.
+     * @param logger CloudWatch logger.
+     * @return The aggregated entry set, or the same entry set if nothing was saved.
+     */
+    NetworkAclEntrySet aggregateNetworkAclEntries(final NetworkAclEntrySet entrySet, final Logger logger) {
+
+        final NetworkAclOptimizer.Result result = networkAclOptimizer.optimize(entrySet);
+        if (result.getSavedEntries() > 0) {
+            logger.log(String.format("Aggregated network ACL entries, saved %d entries", result.getSavedEntries()));
+        }
+        return result.getEntrySet();
+    }
+
     /**
      * Hook called by handleRequest to build the ProgressEvent after a successful makeRequest call.
      * @param response Generic type request response from makeRequest call.
@@ -58,6 +239,26 @@ abstract class PolicyHandler<ResponseT extends FmsResponse> extends BaseHandler<
             final ResourceHandlerRequest<ResourceModel> request,
             final AmazonWebServicesClientProxy proxy);
 
+    /**
+     * Hook called by handleRequest to build the ProgressEvent after a successful makeRequest call, for handlers whose
+     * progress decides whether the request has completed or needs another invocation.
+     * @param response Generic type request response from makeRequest call.
+     * @param request CloudFormation's handler request.
+     * @param progress Progress of the request, including the step makeRequest completed.
+     * @param budget Time left in the invocation, for handlers making FMS calls to build the event.
+     * @param proxy AWS proxy to make requests.
+     * @return ProgressEvent with Post-action resource state, or an in progress event carrying the progress.
+     */
+    ProgressEvent<ResourceModel, CallbackContext> constructProgressEvent(
+            final ResponseT response,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final AmazonWebServicesClientProxy proxy) {
+
+        return constructSuccessProgressEvent(response, request, proxy);
+    }
+
     /**
      * Logs the requestId of an FmsResponse.
      * @param response FmsResponse to get the requestId from.
@@ -89,27 +290,146 @@ abstract class PolicyHandler<ResponseT extends FmsResponse> extends BaseHandler<
             final CallbackContext callbackContext,
             final Logger logger) {
 
+        // reject an invalid policy before spending any FMS call on it
+        final List<String> problems = validateRequest(request);
+        if (!problems.isEmpty()) {
+            final InvalidInputException e = InvalidInputException.builder()
+                    .message(String.format("Invalid policy: %s", String.join("; ", problems)))
+                    .build();
+            logger.log(e.toString());
+            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.InvalidRequest);
+        }
+
+        // a re-invocation with the same client request token returns the recorded result
+        final String idempotencyKey = idempotencyKey(request.getClientRequestToken());
+        final ResponseT recordedResponse = recordedResponse(idempotencyKey);
+        if (recordedResponse != null) {
+            logger.log(String.format("Returning the recorded result of request %s", request.getClientRequestToken()));
+            return constructSuccessProgressEvent(recordedResponse, request, proxy);
+        }
+        final CallbackContext progress = resumeProgress(idempotencyKey, request, callbackContext, logger);
+        final ExecutionBudget budget = budgets.get();
+
         final ResponseT response;
         try {
             // make the primary handler request
-            response = makeRequest(proxy, request, logger);
+            response = makeRequest(proxy, request, progress, budget, logger);
+        } catch(BudgetExhaustedException e) {
+            // hand the progress back to CloudFormation, which invokes the handler again right away
+            logger.log(e.getMessage());
+            logger.log(String.format("Operation cost estimates: %s", COST_MODEL.snapshot()));
+            return checkpoint(idempotencyKey, request, progress);
         } catch(ResourceNotFoundException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.NotFound);
+            return failure(e, HandlerErrorCode.NotFound, progress);
         } catch(InvalidOperationException | InvalidInputException | InvalidTypeException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.InvalidRequest);
+            return failure(e, HandlerErrorCode.InvalidRequest, progress);
         } catch(LimitExceededException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.ServiceLimitExceeded);
+            return failure(e, HandlerErrorCode.ServiceLimitExceeded, progress);
         } catch(InternalErrorException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.ServiceInternalError);
+            return failure(e, HandlerErrorCode.ServiceInternalError, progress);
         }
 
-        // let each handler construct its own success progress event with resource model(s)
-        return constructSuccessProgressEvent(response, request, proxy);
+        // let each handler construct its own progress event with resource model(s), only a completed result is replayed
+        final ProgressEvent<ResourceModel, CallbackContext> progressEvent =
+                constructProgressEvent(response, request, progress, budget, proxy);
+        if (idempotencyKey != null && progressEvent.getStatus() == OperationStatus.SUCCESS) {
+            IDEMPOTENCY_STORE.recordResponse(idempotencyKey, progress, response);
+        }
+        if (recordsResults() && progressEvent.getStatus() == OperationStatus.SUCCESS) {
+            // pages fetched ahead before the change no longer match the policies
+            ListHandler.PAGE_CACHE.invalidate(request.getAwsAccountId(), request.getRegion());
+        }
+        if (scopeIndex != null && progressEvent.getStatus() == OperationStatus.SUCCESS) {
+            updateScopeIndex(scopeIndex, request, progressEvent);
+        }
+        return progressEvent;
 
 //        return ProgressEvent.defaultSuccessHandler(constructSuccessResourceModel(response, request, proxy));
     }
+
+    /**
+     * Retrieve the recorded result of a completed request.
+     * @param idempotencyKey Key of the request, null if the request has no client request token.
+     * @return The recorded response, or null if the request has not completed on this instance.
+     */
+    @SuppressWarnings("unchecked")
+    private ResponseT recordedResponse(final String idempotencyKey) {
+
+        // keys are scoped to the handler, so a recorded response always has this handler's response type
+        return idempotencyKey == null ? null : (ResponseT) IDEMPOTENCY_STORE.response(idempotencyKey);
+    }
+
+    /**
+     * Find the progress earlier invocations of the same request made.
+     * @param idempotencyKey Key of the request, null if the request has no client request token.
+     * @param request CloudFormation's handler request.
+     * @param callbackContext Context CloudFormation passed to the invocation.
+     * @param logger CloudWatch logger.
+     * @return Progress of the request, empty for a new request.
+     */
+    private CallbackContext resumeProgress(
+            final String idempotencyKey,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext callbackContext,
+            final Logger logger) {
+
+        // the context CloudFormation passes back is the most recent progress, the store covers lost responses
+        CallbackContext progress = null;
+        if (callbackContext != null
+                && Objects.equals(request.getClientRequestToken(), callbackContext.getClientRequestToken())) {
+            progress = callbackContext.copy();
+        } else if (idempotencyKey != null) {
+            progress = IDEMPOTENCY_STORE.progress(idempotencyKey);
+        }
+        if (progress == null) {
+            return CallbackContext.builder().clientRequestToken(request.getClientRequestToken()).build();
+        }
+        logger.log(String.format("Resuming request %s after steps %s",
+                request.getClientRequestToken(), progress.getCompletedSteps()));
+        return progress;
+    }
+
+    /**
+     * Build an in progress event for a request stopped by its execution budget, recording the progress so both the
+     * callback and a re-invocation after a lost response continue from it.
+     * @param idempotencyKey Key of the request, null if the request has no client request token.
+     * @param request CloudFormation's handler request.
+     * @param progress Progress of the request.
+     * @return In progress event asking for an immediate callback.
+     */
+    private static ProgressEvent<ResourceModel, CallbackContext> checkpoint(
+            final String idempotencyKey,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress) {
+
+        progress.setCheckpointCount(progress.getCheckpointCount() + 1);
+        if (idempotencyKey != null) {
+            IDEMPOTENCY_STORE.recordProgress(idempotencyKey, progress);
+        }
+        return ProgressEvent.defaultInProgressHandler(progress, 0, request.getDesiredResourceState());
+    }
+
+    /**
+     * Build a failure event, carrying the progress if any step completed so a re-invocation can resume it.
+     * @param e Exception the request failed with.
+     * @param errorCode Handler error code of the exception.
+     * @param progress Progress of the request.
+     * @return Failure event.
+     */
+    private static ProgressEvent<ResourceModel, CallbackContext> failure(
+            final Exception e,
+            final HandlerErrorCode errorCode,
+            final CallbackContext progress) {
+
+        final ProgressEvent<ResourceModel, CallbackContext> progressEvent =
+                ProgressEvent.defaultFailureHandler(e, errorCode);
+        if (progress.getCompletedSteps() != null && !progress.getCompletedSteps().isEmpty()) {
+            progressEvent.setCallbackContext(progress);
+        }
+        return progressEvent;
+    }
 }
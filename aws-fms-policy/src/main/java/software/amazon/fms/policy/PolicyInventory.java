@@ -0,0 +1,286 @@
+package software.amazon.fms.policy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.HashHelper;
+import software.amazon.fms.policy.helpers.ParallelHelper;
+import software.amazon.fms.policy.helpers.ThrottleAwareExecutor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Persistent local snapshot of every FMS policy in an account and region, refreshed incrementally.
+ *
+ * Every refresh makes one GetPolicy call per listed policy, so its cost grows with the number of policies rather than
+ * with the number of changes: GetPolicy is the only source of the update token, and a summary misses most content and
+ * scope changes. What a refresh saves is the tag listing and the model conversion: a policy whose update token is
+ * unchanged keeps its converted model, so its tags are not listed again until its entry is older than the verification
+ * age; tag changes do not change the update token, so a tag-only change is picked up by that verification.
+ *
+ * Every FMS call of a refresh goes through a {@link ThrottleAwareExecutor}, so throttled reads are retried after its
+ * shared backoff instead of failing the policy for this refresh.
+ */
+public class PolicyInventory {
+
+    /** Default number of policy reads in flight during a refresh. */
+    static final int DEFAULT_PARALLELISM = 8;
+
+    /** Page size used for ListPolicies. */
+    static final int MAX_RESULTS = 100;
+
+    /** Time in milliseconds a refresh waits for each wave of concurrent reads. */
+    static final long READ_WAVE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, Entry> entries;
+    private final int parallelism;
+    private final long verificationAgeMillis;
+
+    /**
+     * Create an empty inventory.
+     *
+     * @param parallelism           Maximum number of FMS reads in flight during a refresh.
+     * @param verificationAgeMillis Age in milliseconds after which the tags of an unchanged policy are listed again.
+     */
+    public PolicyInventory(final int parallelism, final long verificationAgeMillis) {
+
+        this(new TreeMap<>(), parallelism, verificationAgeMillis);
+    }
+
+    private PolicyInventory(final Map<String, Entry> entries, final int parallelism, final long verificationAgeMillis) {
+
+        this.entries = entries;
+        this.parallelism = parallelism;
+        this.verificationAgeMillis = verificationAgeMillis;
+    }
+
+    /**
+     * Load an inventory snapshot, or create an empty inventory if the snapshot file does not exist.
+     *
+     * @param path                  Snapshot file.
+     * @param parallelism           Maximum number of FMS reads in flight during a refresh.
+     * @param verificationAgeMillis Age in milliseconds after which the tags of an unchanged policy are listed again.
+     * @return The inventory.
+     * @throws IOException If the snapshot file cannot be read.
+     */
+    public static PolicyInventory load(
+            final Path path,
+            final int parallelism,
+            final long verificationAgeMillis) throws IOException {
+
+        if (!Files.exists(path)) {
+            return new PolicyInventory(parallelism, verificationAgeMillis);
+        }
+        final Map<String, Entry> entries = OBJECT_MAPPER.readValue(
+                path.toFile(),
+                new TypeReference<TreeMap<String, Entry>>() { });
+        return new PolicyInventory(entries, parallelism, verificationAgeMillis);
+    }
+
+    /**
+     * Save the inventory snapshot, replacing the snapshot file atomically.
+     *
+     * @param path Snapshot file.
+     * @throws IOException If the snapshot file cannot be written.
+     */
+    public synchronized void save(final Path path) throws IOException {
+
+        final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        OBJECT_MAPPER.writeValue(temporaryPath.toFile(), entries);
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the snapshot entries.
+     *
+     * @return Unmodifiable view of the entries, keyed by policy ID.
+     */
+    public synchronized Map<String, Entry> getEntries() {
+
+        return Collections.unmodifiableMap(new TreeMap<>(entries));
+    }
+
+    /**
+     * Bring the snapshot up to date with the live policies.
+     *
+     * @param client The FmsClient to use.
+     * @return Counts of the changes found and of the reads made.
+     */
+    public synchronized RefreshResult refresh(final FmsClient client) {
+
+        try (ThrottleAwareExecutor executor = new ThrottleAwareExecutor(parallelism)) {
+            return refresh(client, executor);
+        }
+    }
+
+    private RefreshResult refresh(final FmsClient client, final ThrottleAwareExecutor executor) {
+
+        final long now = System.currentTimeMillis();
+
+        // sweep the policy summaries to find added and removed policies
+        final Map<String, PolicySummary> summaries = listPolicySummaries(client, executor);
+        final List<String> removed = new ArrayList<>();
+        entries.keySet().stream().filter(id -> !summaries.containsKey(id)).forEach(removed::add);
+        removed.forEach(entries::remove);
+
+        // read every listed policy, a summary carries no update token and misses most content and scope changes
+        final List<PolicySummary> candidates = new ArrayList<>(summaries.values());
+        final List<Optional<GetPolicyResponse>> getPolicyResponses = readConcurrently(candidates, executor,
+                summary -> () -> {
+                    try {
+                        return Optional.of(client.getPolicy(
+                                GetPolicyRequest.builder().policyId(summary.policyId()).build()));
+                    } catch (ResourceNotFoundException e) {
+                        return Optional.<GetPolicyResponse>empty();
+                    }
+                });
+
+        // only policies with a new update token, or due for a tag verification, need their tags listed and their
+        // model rebuilt, since tag changes do not change the update token
+        final List<GetPolicyResponse> changedPolicies = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            final PolicySummary summary = candidates.get(i);
+            final Optional<GetPolicyResponse> getPolicyResponse = getPolicyResponses.get(i);
+            final Entry entry = entries.get(summary.policyId());
+            if (getPolicyResponse == null) {
+                failed++;
+            } else if (!getPolicyResponse.isPresent()) {
+                // deleted between the sweep and the read
+                if (entries.remove(summary.policyId()) != null) {
+                    removed.add(summary.policyId());
+                }
+            } else if (entry == null
+                    || !entry.getPolicyUpdateToken().equals(getPolicyResponse.get().policy().policyUpdateToken())
+                    || now - entry.getRefreshedAt() >= verificationAgeMillis) {
+                changedPolicies.add(getPolicyResponse.get());
+            }
+        }
+        final List<ListTagsForResourceResponse> listTagsResponses = readConcurrently(changedPolicies, executor,
+                getPolicyResponse -> () -> client.listTagsForResource(ListTagsForResourceRequest.builder()
+                        .resourceArn(getPolicyResponse.policyArn())
+                        .build()));
+
+        int added = 0;
+        int updated = 0;
+        for (int i = 0; i < changedPolicies.size(); i++) {
+            final GetPolicyResponse getPolicyResponse = changedPolicies.get(i);
+            final ListTagsForResourceResponse listTagsResponse = listTagsResponses.get(i);
+            if (listTagsResponse == null) {
+                failed++;
+                continue;
+            }
+            final ResourceModel model = CfnHelper.convertFMSPolicyToCFNResourceModel(
+                    getPolicyResponse.policy(),
+                    getPolicyResponse.policyArn(),
+                    listTagsResponse.tagList());
+            final String contentHash = HashHelper.contentHash(model);
+            final Entry previous = entries.put(getPolicyResponse.policy().policyId(), new Entry(
+                    model,
+                    getPolicyResponse.policy().policyUpdateToken(),
+                    contentHash,
+                    now));
+            if (previous == null) {
+                added++;
+            } else if (!previous.getContentHash().equals(contentHash)) {
+                updated++;
+            }
+        }
+
+        return new RefreshResult(
+                added,
+                updated,
+                removed.size(),
+                failed,
+                candidates.size(),
+                changedPolicies.size(),
+                executor.getThrottleCount());
+    }
+
+    private Map<String, PolicySummary> listPolicySummaries(
+            final FmsClient client,
+            final ThrottleAwareExecutor executor) {
+
+        final Map<String, PolicySummary> summaries = new LinkedHashMap<>();
+        String nextToken = null;
+        do {
+            final String pageToken = nextToken;
+            final ListPoliciesResponse listPoliciesResponse = executor.call(() -> client.listPolicies(
+                    ListPoliciesRequest.builder()
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            listPoliciesResponse.policyList().forEach(summary -> summaries.put(summary.policyId(), summary));
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        return summaries;
+    }
+
+    private <T, R> List<R> readConcurrently(
+            final List<T> inputs,
+            final ThrottleAwareExecutor executor,
+            final Function<T, Supplier<R>> read) {
+
+        final List<Supplier<R>> tasks = new ArrayList<>(inputs.size());
+        inputs.forEach(input -> tasks.add(read.apply(input)));
+        return ParallelHelper.runConcurrently(
+                tasks,
+                executor,
+                System.currentTimeMillis() + READ_WAVE_TIMEOUT_MILLIS);
+    }
+
+    /** Snapshot of a single policy. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private ResourceModel model;
+        private String policyUpdateToken;
+        private String contentHash;
+
+        /** Time the tags were last listed and the model rebuilt. */
+        private long refreshedAt;
+    }
+
+    /** Outcome of a refresh. */
+    @Value
+    public static class RefreshResult {
+        int added;
+        int updated;
+        int removed;
+        int failed;
+        int policiesRead;
+        int tagListsRead;
+
+        /** Number of throttled FMS calls that were retried. */
+        long throttled;
+    }
+}
@@ -0,0 +1,560 @@
+package software.amazon.fms.policy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsResponse;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
+import software.amazon.fms.policy.helpers.ParallelHelper;
+import software.amazon.fms.policy.helpers.PolicyComparator;
+import software.amazon.fms.policy.helpers.RateLimiter;
+import software.amazon.fms.policy.helpers.Retrier;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles the FMS policies of an account and region with a directory of desired resource models.
+ *
+ * Each JSON file of the directory holds one desired model, either bare or wrapped in a handler request as in the
+ * sam-tests, and desired models are matched with live policies by policy name. Planning reads the live policies the
+ * directory names and compares them with {@link PolicyComparator}, so only policies that actually differ are updated.
+ * Live policies the directory does not name are deleted only when the reconciler is asked to.
+ *
+ * Applying a plan runs the creates, updates and deletes concurrently through the resource handlers, so they are
+ * validated and sent exactly as CloudFormation would send them. Every FMS call, from planning or from a handler, goes
+ * through the shared rate limiter and is retried while FMS throttles it, and the calls are counted by operation.
+ */
+public class PolicyReconciler {
+
+    /** Default number of policies read or applied at the same time. */
+    static final int DEFAULT_PARALLELISM = 4;
+
+    /** Default number of FMS calls per second, shared by every worker. */
+    static final double DEFAULT_CALLS_PER_SECOND = 5;
+
+    /** Page size used for ListPolicies. */
+    static final int MAX_RESULTS = 100;
+
+    /** Time in milliseconds planning waits for the live policies to be read. */
+    static final long READ_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /** Time in milliseconds applying a plan waits for its actions to complete. */
+    static final long APPLY_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(3);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Configuration CONFIGURATION = new Configuration();
+
+    private final FmsClient client;
+    private final Retrier retries;
+    private final RateLimiter rateLimiter;
+    private final int parallelism;
+    private final boolean deleteUnmanaged;
+    private final Logger logger;
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param client The FmsClient to use.
+     * @param retries Retries FMS calls while they are throttled.
+     * @param rateLimiter Spaces the FMS calls of every worker.
+     * @param parallelism Number of policies read or applied at the same time.
+     * @param deleteUnmanaged Whether live policies without a desired model are deleted.
+     * @param logger Logger for the handlers' messages, prefixed with the action they belong to.
+     */
+    public PolicyReconciler(
+            final FmsClient client,
+            final Retrier retries,
+            final RateLimiter rateLimiter,
+            final int parallelism,
+            final boolean deleteUnmanaged,
+            final Logger logger) {
+
+        this.client = client;
+        this.retries = retries;
+        this.rateLimiter = rateLimiter;
+        this.parallelism = parallelism;
+        this.deleteUnmanaged = deleteUnmanaged;
+        this.logger = logger;
+    }
+
+    /**
+     * Plan the reconciliation of a directory, and apply the plan unless it is a dry run.
+     *
+     * @param args Directory of desired models, then the optional flags "--apply" to apply the plan and
+     *             "--delete-unmanaged" to delete the live policies the directory does not name.
+     * @throws IOException If the directory cannot be read.
+     */
+    public static void main(final String[] args) throws IOException {
+
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: PolicyReconciler <directory> [--apply] [--delete-unmanaged]");
+        }
+        final List<String> flags = Arrays.asList(args).subList(1, args.length);
+        final List<DesiredPolicy> desiredPolicies = load(Paths.get(args[0]));
+
+        final Retrier retries = new Retrier();
+        try (FmsClient client = FmsClient.create()) {
+            final PolicyReconciler reconciler = new PolicyReconciler(
+                    client,
+                    retries,
+                    new RateLimiter(DEFAULT_CALLS_PER_SECOND, DEFAULT_PARALLELISM),
+                    DEFAULT_PARALLELISM,
+                    flags.contains("--delete-unmanaged"),
+                    System.out::println);
+            final Plan plan = reconciler.plan(desiredPolicies);
+            plan.getActions().forEach(action -> System.out.println(action.describe()));
+            System.out.printf("Plan: %d to create, %d to update, %d to delete, %d unchanged%n",
+                    plan.count(ActionType.CREATE),
+                    plan.count(ActionType.UPDATE),
+                    plan.count(ActionType.DELETE),
+                    plan.getUnchanged().size());
+
+            if (flags.contains("--apply")) {
+                final Result result = reconciler.apply(plan);
+                result.getFailures().forEach(outcome -> System.out.printf("Failed to %s: %s %s%n",
+                        outcome.getAction().describe(), outcome.getErrorCode(), outcome.getMessage()));
+                System.out.printf("Applied %d action/s, %d failed%n",
+                        result.getOutcomes().size() - result.getFailures().size(), result.getFailures().size());
+            }
+            System.out.printf("FMS calls: %s, %d throttled%n", reconciler.getCalls(), retries.getThrottleCount());
+        }
+    }
+
+    /**
+     * Load the desired models of a directory, one per JSON file.
+     *
+     * @param directory Directory of desired models.
+     * @return Desired models, in file name order.
+     * @throws IOException If a file cannot be read or parsed.
+     * @throws IllegalArgumentException If a model has no policy name or two models have the same one.
+     */
+    public static List<DesiredPolicy> load(final Path directory) throws IOException {
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+
+        final List<DesiredPolicy> desiredPolicies = new ArrayList<>(files.size());
+        final Map<String, String> sources = new TreeMap<>();
+        for (final Path file : files) {
+            // handler requests carry the model as their desired resource state
+            final JsonNode document = OBJECT_MAPPER.readTree(file.toFile());
+            final JsonNode model = document.has("request")
+                    ? document.at("/request/desiredResourceState")
+                    : document;
+            final DesiredPolicy desiredPolicy = new DesiredPolicy(
+                    file.getFileName().toString(),
+                    OBJECT_MAPPER.treeToValue(model, ResourceModel.class));
+
+            final String policyName = desiredPolicy.getModel().getPolicyName();
+            if (policyName == null || policyName.isEmpty()) {
+                throw new IllegalArgumentException(String.format("%s has no PolicyName", desiredPolicy.getSource()));
+            }
+            final String previousSource = sources.put(policyName, desiredPolicy.getSource());
+            if (previousSource != null) {
+                throw new IllegalArgumentException(String.format("%s and %s both define policy %s",
+                        previousSource, desiredPolicy.getSource(), policyName));
+            }
+            desiredPolicies.add(desiredPolicy);
+        }
+        return desiredPolicies;
+    }
+
+    /**
+     * Compare the desired models with the live policies.
+     *
+     * @param desiredPolicies Desired models, with distinct policy names.
+     * @return The plan.
+     * @throws IllegalStateException If a desired policy name is used by several live policies, or a live policy
+     *                               cannot be read.
+     */
+    public Plan plan(final List<DesiredPolicy> desiredPolicies) {
+
+        // match the desired models with the live policies by name
+        final Map<String, List<PolicySummary>> liveByName = listPolicySummaries().stream()
+                .collect(Collectors.groupingBy(PolicySummary::policyName, TreeMap::new, Collectors.toList()));
+        final List<DesiredPolicy> unmatched = new ArrayList<>();
+        final List<DesiredPolicy> matched = new ArrayList<>();
+        final List<PolicySummary> matchedSummaries = new ArrayList<>();
+        for (final DesiredPolicy desiredPolicy : desiredPolicies) {
+            final List<PolicySummary> summaries = liveByName.remove(desiredPolicy.getModel().getPolicyName());
+            if (summaries == null) {
+                unmatched.add(desiredPolicy);
+            } else if (summaries.size() > 1) {
+                throw new IllegalStateException(String.format("Policy name %s is used by policies %s",
+                        desiredPolicy.getModel().getPolicyName(),
+                        summaries.stream().map(PolicySummary::policyId).collect(Collectors.toList())));
+            } else {
+                matched.add(desiredPolicy);
+                matchedSummaries.add(summaries.get(0));
+            }
+        }
+
+        // read the matched policies, the comparison needs their full model and tags
+        final List<Supplier<ResourceModel>> reads = new ArrayList<>(matchedSummaries.size());
+        matchedSummaries.forEach(summary -> reads.add(() -> readLiveModel(summary.policyId())));
+        final List<ResourceModel> liveModels = ParallelHelper.runConcurrently(
+                reads,
+                parallelism,
+                System.currentTimeMillis() + READ_TIMEOUT_MILLIS);
+        final List<String> unread = new ArrayList<>();
+        for (int i = 0; i < liveModels.size(); i++) {
+            if (liveModels.get(i) == null) {
+                unread.add(matchedSummaries.get(i).policyId());
+            }
+        }
+        if (!unread.isEmpty()) {
+            throw new IllegalStateException(String.format("Could not read live policies %s", unread));
+        }
+
+        final List<Action> actions = new ArrayList<>();
+        final List<String> unchanged = new ArrayList<>();
+        unmatched.forEach(desiredPolicy -> actions.add(new Action(
+                ActionType.CREATE,
+                desiredPolicy.getModel().getPolicyName(),
+                null,
+                desiredPolicy.getSource(),
+                Collections.emptyList(),
+                desiredPolicy.getModel(),
+                null)));
+        for (int i = 0; i < matched.size(); i++) {
+            final DesiredPolicy desiredPolicy = matched.get(i);
+            final ResourceModel liveModel = liveModels.get(i);
+            final List<String> differences = PolicyComparator.differences(desiredPolicy.getModel(), liveModel);
+            if (differences.isEmpty()) {
+                unchanged.add(desiredPolicy.getModel().getPolicyName());
+            } else {
+                actions.add(new Action(
+                        ActionType.UPDATE,
+                        desiredPolicy.getModel().getPolicyName(),
+                        liveModel.getId(),
+                        desiredPolicy.getSource(),
+                        differences,
+                        desiredPolicy.getModel(),
+                        liveModel));
+            }
+        }
+        if (deleteUnmanaged) {
+            liveByName.values().stream().flatMap(List::stream).forEach(summary -> actions.add(new Action(
+                    ActionType.DELETE,
+                    summary.policyName(),
+                    summary.policyId(),
+                    null,
+                    Collections.emptyList(),
+                    null,
+                    CfnHelper.convertFMSPolicySummaryToCFNResourceModel(summary, summary.policyArn()))));
+        }
+        return new Plan(actions, unchanged);
+    }
+
+    /**
+     * Apply a plan, running its actions concurrently through the resource handlers.
+     *
+     * @param plan Plan to apply.
+     * @return Outcome of every action, in plan order.
+     */
+    public Result apply(final Plan plan) {
+
+        final ReconcilerProxy proxy = new ReconcilerProxy();
+        final List<Supplier<Outcome>> tasks = new ArrayList<>(plan.getActions().size());
+        plan.getActions().forEach(action -> tasks.add(() -> applyAction(proxy, action)));
+        final List<Outcome> outcomes = ParallelHelper.runConcurrently(
+                tasks,
+                parallelism,
+                System.currentTimeMillis() + APPLY_TIMEOUT_MILLIS);
+
+        // actions still running at the deadline are cancelled and reported as failed
+        final List<Outcome> results = new ArrayList<>(outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            results.add(outcomes.get(i) != null ? outcomes.get(i) : new Outcome(
+                    plan.getActions().get(i),
+                    OperationStatus.FAILED,
+                    HandlerErrorCode.NotStabilized.name(),
+                    "Action did not complete in time"));
+        }
+        return new Result(results);
+    }
+
+    /**
+     * Get the number of FMS calls made so far, including retries of throttled calls.
+     *
+     * @return Number of calls by operation name, in name order.
+     */
+    public Map<String, Long> getCalls() {
+
+        final Map<String, Long> snapshot = new TreeMap<>();
+        calls.forEach((operation, count) -> snapshot.put(operation, count.get()));
+        return snapshot;
+    }
+
+    private Outcome applyAction(final AmazonWebServicesClientProxy proxy, final Action action) {
+
+        final Logger actionLogger = message -> logger.log(String.format("[%s] %s", action.describe(), message));
+        final PolicyHandler<?> handler;
+        final ResourceHandlerRequest.ResourceHandlerRequestBuilder<ResourceModel> request =
+                ResourceHandlerRequest.<ResourceModel>builder().clientRequestToken(UUID.randomUUID().toString());
+        switch (action.getType()) {
+            case CREATE:
+                handler = new CreateHandler(client);
+                request.desiredResourceState(copy(action.getDesired()))
+                        .desiredResourceTags(CONFIGURATION.resourceDefinedTags(action.getDesired()));
+                break;
+            case UPDATE:
+                // the update handler finds the policy by ID and takes its current tags from the previous state
+                final ResourceModel desired = copy(action.getDesired());
+                desired.setId(action.getPolicyId());
+                handler = new UpdateHandler(client);
+                request.desiredResourceState(desired)
+                        .desiredResourceTags(CONFIGURATION.resourceDefinedTags(desired))
+                        .previousResourceState(action.getLive())
+                        .previousResourceTags(CONFIGURATION.resourceDefinedTags(action.getLive()));
+                break;
+            case DELETE:
+                handler = new DeleteHandler(client);
+                request.desiredResourceState(ResourceModel.builder().id(action.getPolicyId()).build());
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unknown action type %s", action.getType()));
+        }
+        handler.setBudgets(ExecutionBudget::unlimited);
+
+        try {
+            // run the handler until it completes, as CloudFormation would invoke it again after each callback delay
+            final ResourceHandlerRequest<ResourceModel> handlerRequest = request.build();
+            ProgressEvent<ResourceModel, CallbackContext> progressEvent =
+                    handler.handleRequest(proxy, handlerRequest, null, actionLogger);
+            while (progressEvent.getStatus() == OperationStatus.IN_PROGRESS) {
+                TimeUnit.SECONDS.sleep(progressEvent.getCallbackDelaySeconds());
+                progressEvent = handler.handleRequest(
+                        proxy, handlerRequest, progressEvent.getCallbackContext(), actionLogger);
+            }
+            return new Outcome(
+                    action,
+                    progressEvent.getStatus(),
+                    progressEvent.getErrorCode() == null ? null : progressEvent.getErrorCode().name(),
+                    progressEvent.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome(action, OperationStatus.FAILED, HandlerErrorCode.InternalFailure.name(),
+                    "Interrupted");
+        } catch (RuntimeException e) {
+            actionLogger.log(e.toString());
+            return new Outcome(action, OperationStatus.FAILED, HandlerErrorCode.InternalFailure.name(),
+                    e.getMessage());
+        }
+    }
+
+    private List<PolicySummary> listPolicySummaries() {
+
+        final List<PolicySummary> summaries = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final ListPoliciesResponse listPoliciesResponse = invoke(ListPoliciesRequest.builder()
+                    .nextToken(nextToken)
+                    .maxResults(MAX_RESULTS)
+                    .build(), client::listPolicies);
+            summaries.addAll(listPoliciesResponse.policyList());
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        return summaries;
+    }
+
+    private ResourceModel readLiveModel(final String policyId) {
+
+        final GetPolicyResponse getPolicyResponse = invoke(
+                GetPolicyRequest.builder().policyId(policyId).build(),
+                client::getPolicy);
+        final ListTagsForResourceResponse listTagsResponse = invoke(
+                ListTagsForResourceRequest.builder().resourceArn(getPolicyResponse.policyArn()).build(),
+                client::listTagsForResource);
+        return CfnHelper.convertFMSPolicyToCFNResourceModel(
+                getPolicyResponse.policy(),
+                getPolicyResponse.policyArn(),
+                listTagsResponse.tagList());
+    }
+
+    /**
+     * Make an FMS call within the rate limit, retrying it while it is throttled.
+     *
+     * @param request FMS request.
+     * @param requestFunction Client method making the call.
+     * @param <RequestT> Type of the request.
+     * @param <ResultT> Type of the response.
+     * @return The response.
+     */
+    private <RequestT extends AwsRequest, ResultT extends AwsResponse> ResultT invoke(
+            final RequestT request,
+            final Function<RequestT, ResultT> requestFunction) {
+
+        final String operation = request.getClass().getSimpleName().replaceFirst("Request$", "");
+        return retries.call(() -> {
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the rate limiter", e);
+            }
+            calls.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+            return requestFunction.apply(request);
+        });
+    }
+
+    private static ResourceModel copy(final ResourceModel model) {
+
+        return OBJECT_MAPPER.convertValue(model, ResourceModel.class);
+    }
+
+    /**
+     * Proxy handing the handlers' FMS calls to the reconciler, which makes them with the client's own credentials.
+     *
+     * The handlers of this package reach FMS only through injectCredentialsAndInvokeV2, which this proxy overrides, so
+     * the superclass is only built to satisfy the handler signature: its placeholder credentials are never injected
+     * and its remaining time is never read, the reconciler giving every handler an unlimited budget instead. A handler
+     * calling any other proxy method would bypass the rate limit and retries, so PolicyReconcilerTest checks that
+     * every call the client receives while a plan is applied was made through this proxy.
+     */
+    private class ReconcilerProxy extends AmazonWebServicesClientProxy {
+
+        ReconcilerProxy() {
+
+            super(new LoggerProxy(), new Credentials("unused", "unused", "unused"), () -> Long.MAX_VALUE);
+        }
+
+        @Override
+        public <RequestT extends AwsRequest, ResultT extends AwsResponse> ResultT injectCredentialsAndInvokeV2(
+                final RequestT request,
+                final Function<RequestT, ResultT> requestFunction) {
+
+            return invoke(request, requestFunction);
+        }
+    }
+
+    /** Kind of change an action makes. */
+    public enum ActionType {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    /** Desired model loaded from a file. */
+    @Value
+    public static class DesiredPolicy {
+        String source;
+        ResourceModel model;
+    }
+
+    /** Change to bring a live policy to its desired state. */
+    @Value
+    public static class Action {
+        ActionType type;
+        String policyName;
+        String policyId;
+        String source;
+        List<String> differences;
+        ResourceModel desired;
+        ResourceModel live;
+
+        /**
+         * Describe the action on one line.
+         *
+         * @return Description naming the policy and, for an update, the differing properties.
+         */
+        public String describe() {
+
+            final StringBuilder description = new StringBuilder(type.name().toLowerCase())
+                    .append(' ')
+                    .append(policyName);
+            if (policyId != null) {
+                description.append(" (").append(policyId).append(')');
+            }
+            if (!differences.isEmpty()) {
+                description.append(' ').append(differences);
+            }
+            return description.toString();
+        }
+    }
+
+    /** Actions bringing the live policies to their desired state. */
+    @Value
+    public static class Plan {
+        List<Action> actions;
+        List<String> unchanged;
+
+        /**
+         * Count the actions of a type.
+         *
+         * @param type Action type.
+         * @return Number of actions of the type.
+         */
+        public int count(final ActionType type) {
+
+            return (int) actions.stream().filter(action -> action.getType() == type).count();
+        }
+    }
+
+    /** Outcome of an action. */
+    @Value
+    public static class Outcome {
+        Action action;
+        OperationStatus status;
+        String errorCode;
+        String message;
+    }
+
+    /** Outcomes of a plan. */
+    @Value
+    public static class Result {
+        List<Outcome> outcomes;
+
+        /**
+         * Get the outcomes of the actions that failed.
+         *
+         * @return Failed outcomes, in plan order.
+         */
+        public List<Outcome> getFailures() {
+
+            return outcomes.stream()
+                    .filter(outcome -> outcome.getStatus() != OperationStatus.SUCCESS)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package software.amazon.fms.policy;
+
+import lombok.Value;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.CustomerPolicyScopeIdType;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.fms.policy.helpers.AccountIdSet;
+import software.amazon.fms.policy.helpers.ParallelHelper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Index of the accounts and organizational units each FMS policy applies to, answering which policies apply to an
+ * account without reading every policy.
+ *
+ * A policy with an include map applies only to the accounts and organizational units it lists, a policy without one
+ * applies to every account except those its exclude map lists. Each policy gets an ordinal, and every account and
+ * organizational unit named by a map gets a sorted array of the ordinals naming it, kept separately for include and
+ * exclude maps. Policies without an include map are also kept in a bit set, so a query combines a few postings with
+ * that set instead of visiting every policy.
+ *
+ * Accounts are not resolved to their organizational units here, a query passes the organizational units the account
+ * belongs to, from its parent up to the root, when they are known.
+ */
+public class PolicyScopeIndex {
+
+    /** Default number of policy reads in flight during a load. */
+    static final int DEFAULT_PARALLELISM = 8;
+
+    /** Page size used for ListPolicies. */
+    static final int MAX_RESULTS = 100;
+
+    /** Time in milliseconds a load waits for the policy reads. */
+    static final long READ_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int[] NO_ORDINALS = new int[0];
+
+    private final int parallelism;
+
+    /** Policy ID of each ordinal, null for an ordinal freed by a removed policy. */
+    private final List<String> policyIds = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    /** Scope of each ordinal, used to remove the postings of a policy when it changes. */
+    private final List<Scope> scopes = new ArrayList<>();
+
+    /** Ordinals of the policies without an include map, which apply to every account they do not exclude. */
+    private final BitSet organizationWide = new BitSet();
+
+    private final Map<Long, int[]> includedAccounts = new HashMap<>();
+    private final Map<Long, int[]> excludedAccounts = new HashMap<>();
+    private final Map<String, int[]> includedOrganizationalUnits = new HashMap<>();
+    private final Map<String, int[]> excludedOrganizationalUnits = new HashMap<>();
+
+    /**
+     * Create an empty index.
+     *
+     * @param parallelism Maximum number of FMS reads in flight during a load.
+     */
+    public PolicyScopeIndex(final int parallelism) {
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Replace the contents of the index with every live policy.
+     *
+     * @param client The FmsClient to use.
+     * @return Counts of the policies indexed and of the reads that failed.
+     */
+    public LoadResult load(final FmsClient client) {
+
+        final List<PolicySummary> summaries = listPolicySummaries(client);
+        final List<Supplier<GetPolicyResponse>> reads = new ArrayList<>(summaries.size());
+        for (final PolicySummary summary : summaries) {
+            reads.add(() -> client.getPolicy(GetPolicyRequest.builder().policyId(summary.policyId()).build()));
+        }
+        final List<GetPolicyResponse> getPolicyResponses = ParallelHelper.runConcurrently(
+                reads,
+                parallelism,
+                System.currentTimeMillis() + READ_TIMEOUT_MILLIS);
+
+        // deleted policies and failed reads are left out, so the index never holds a policy it did not read
+        final Map<String, Scope> loaded = new LinkedHashMap<>();
+        for (final GetPolicyResponse getPolicyResponse : getPolicyResponses) {
+            if (getPolicyResponse != null) {
+                final Policy policy = getPolicyResponse.policy();
+                loaded.put(policy.policyId(), Scope.of(policy.includeMap(), policy.excludeMap()));
+            }
+        }
+        synchronized (this) {
+            clear();
+            loaded.forEach(this::put);
+        }
+        return new LoadResult(loaded.size(), summaries.size() - loaded.size());
+    }
+
+    /**
+     * Add a policy, or replace the scope of a policy already in the index.
+     *
+     * @param policy FMS policy with its ID.
+     */
+    public void put(final Policy policy) {
+
+        put(policy.policyId(), Scope.of(policy.includeMap(), policy.excludeMap()));
+    }
+
+    /**
+     * Add a policy, or replace the scope of a policy already in the index.
+     *
+     * @param model Resource model of the policy, with its ID.
+     */
+    public void put(final ResourceModel model) {
+
+        put(model.getId(), Scope.of(model.getIncludeMap(), model.getExcludeMap()));
+    }
+
+    /**
+     * Remove a policy.
+     *
+     * @param policyId ID of the policy.
+     */
+    public synchronized void remove(final String policyId) {
+
+        final Integer ordinal = ordinals.remove(policyId);
+        if (ordinal == null) {
+            return;
+        }
+        removePostings(ordinal, scopes.get(ordinal));
+        policyIds.set(ordinal, null);
+        scopes.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+    }
+
+    /**
+     * Get the number of policies in the index.
+     *
+     * @return Number of policies.
+     */
+    public synchronized int size() {
+
+        return ordinals.size();
+    }
+
+    /**
+     * Find the policies that apply to an account.
+     *
+     * @param accountId Account ID.
+     * @param organizationalUnitIds Organizational units the account belongs to, from its parent up to the root.
+     * @return IDs of the policies applying to the account, sorted.
+     */
+    public synchronized List<String> applicablePolicies(
+            final String accountId,
+            final Collection<String> organizationalUnitIds) {
+
+        return policyIdsOf(applicableOrdinals(AccountIdSet.parseAccountId(accountId), organizationalUnitIds));
+    }
+
+    /**
+     * Find the policies that apply to an organizational unit, by their organizational units alone. A policy that
+     * includes or excludes single accounts of the organizational unit is reported as its include map or the rest of
+     * the organization decides.
+     *
+     * @param organizationalUnitIds The organizational unit, followed by its parents up to the root.
+     * @return IDs of the policies applying to the organizational unit, sorted.
+     */
+    public synchronized List<String> applicablePolicies(final Collection<String> organizationalUnitIds) {
+
+        return policyIdsOf(applicableOrdinals(-1, organizationalUnitIds));
+    }
+
+    /**
+     * Find the policies that apply to each of many accounts.
+     *
+     * @param accountIds Account IDs.
+     * @param organizationalUnitsOf Organizational units each account belongs to, from its parent up to the root.
+     * @return IDs of the policies applying to each account, sorted, in the order of the accounts.
+     */
+    public synchronized Map<String, List<String>> applicablePolicies(
+            final Collection<String> accountIds,
+            final Function<String, ? extends Collection<String>> organizationalUnitsOf) {
+
+        final Map<String, List<String>> policies = new LinkedHashMap<>(accountIds.size() * 4 / 3 + 1);
+        for (final String accountId : accountIds) {
+            policies.put(accountId, policyIdsOf(applicableOrdinals(
+                    AccountIdSet.parseAccountId(accountId),
+                    organizationalUnitsOf.apply(accountId))));
+        }
+        return policies;
+    }
+
+    private BitSet applicableOrdinals(final long accountId, final Collection<String> organizationalUnitIds) {
+
+        final BitSet applicable = (BitSet) organizationWide.clone();
+        final BitSet included = new BitSet();
+        if (accountId >= 0) {
+            andNotAll(applicable, excludedAccounts.get(accountId));
+            orAll(included, includedAccounts.get(accountId));
+        }
+        if (organizationalUnitIds != null) {
+            for (final String organizationalUnitId : organizationalUnitIds) {
+                andNotAll(applicable, excludedOrganizationalUnits.get(organizationalUnitId));
+                orAll(included, includedOrganizationalUnits.get(organizationalUnitId));
+            }
+        }
+        applicable.or(included);
+        return applicable;
+    }
+
+    private List<String> policyIdsOf(final BitSet policyOrdinals) {
+
+        final List<String> ids = new ArrayList<>(policyOrdinals.cardinality());
+        for (int ordinal = policyOrdinals.nextSetBit(0); ordinal >= 0;
+                ordinal = policyOrdinals.nextSetBit(ordinal + 1)) {
+            ids.add(policyIds.get(ordinal));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private synchronized void put(final String policyId, final Scope scope) {
+
+        final Integer existing = ordinals.get(policyId);
+        final int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            removePostings(ordinal, scopes.get(ordinal));
+            scopes.set(ordinal, scope);
+        } else if (!freeOrdinals.isEmpty()) {
+            ordinal = freeOrdinals.pop();
+            policyIds.set(ordinal, policyId);
+            scopes.set(ordinal, scope);
+        } else {
+            ordinal = policyIds.size();
+            policyIds.add(policyId);
+            scopes.add(scope);
+        }
+        ordinals.put(policyId, ordinal);
+        addPostings(ordinal, scope);
+    }
+
+    private void clear() {
+
+        policyIds.clear();
+        ordinals.clear();
+        freeOrdinals.clear();
+        scopes.clear();
+        organizationWide.clear();
+        includedAccounts.clear();
+        excludedAccounts.clear();
+        includedOrganizationalUnits.clear();
+        excludedOrganizationalUnits.clear();
+    }
+
+    private void addPostings(final int ordinal, final Scope scope) {
+
+        final Map<Long, int[]> accounts = scope.include ? includedAccounts : excludedAccounts;
+        final Map<String, int[]> organizationalUnits =
+                scope.include ? includedOrganizationalUnits : excludedOrganizationalUnits;
+        if (!scope.include) {
+            organizationWide.set(ordinal);
+        }
+        for (int i = 0; i < scope.accounts.size(); i++) {
+            accounts.merge(scope.accounts.get(i), new int[] {ordinal}, PolicyScopeIndex::addOrdinal);
+        }
+        for (final String organizationalUnitId : scope.organizationalUnits) {
+            organizationalUnits.merge(organizationalUnitId, new int[] {ordinal}, PolicyScopeIndex::addOrdinal);
+        }
+    }
+
+    private void removePostings(final int ordinal, final Scope scope) {
+
+        final Map<Long, int[]> accounts = scope.include ? includedAccounts : excludedAccounts;
+        final Map<String, int[]> organizationalUnits =
+                scope.include ? includedOrganizationalUnits : excludedOrganizationalUnits;
+        organizationWide.clear(ordinal);
+        for (int i = 0; i < scope.accounts.size(); i++) {
+            accounts.computeIfPresent(scope.accounts.get(i), (account, postings) -> removeOrdinal(postings, ordinal));
+        }
+        for (final String organizationalUnitId : scope.organizationalUnits) {
+            organizationalUnits.computeIfPresent(organizationalUnitId,
+                    (organizationalUnit, postings) -> removeOrdinal(postings, ordinal));
+        }
+    }
+
+    /**
+     * Add an ordinal to a posting.
+     *
+     * @param postings Sorted ordinals.
+     * @param added Array holding the single ordinal to add.
+     * @return New sorted ordinals.
+     */
+    private static int[] addOrdinal(final int[] postings, final int[] added) {
+
+        final int index = Arrays.binarySearch(postings, added[0]);
+        if (index >= 0) {
+            return postings;
+        }
+        final int insertion = -index - 1;
+        final int[] merged = new int[postings.length + 1];
+        System.arraycopy(postings, 0, merged, 0, insertion);
+        merged[insertion] = added[0];
+        System.arraycopy(postings, insertion, merged, insertion + 1, postings.length - insertion);
+        return merged;
+    }
+
+    /**
+     * Remove an ordinal from a posting.
+     *
+     * @param postings Sorted ordinals.
+     * @param ordinal Ordinal to remove.
+     * @return New sorted ordinals, or null to drop a posting left empty.
+     */
+    private static int[] removeOrdinal(final int[] postings, final int ordinal) {
+
+        final int index = Arrays.binarySearch(postings, ordinal);
+        if (index < 0) {
+            return postings;
+        }
+        if (postings.length == 1) {
+            return null;
+        }
+        final int[] remaining = new int[postings.length - 1];
+        System.arraycopy(postings, 0, remaining, 0, index);
+        System.arraycopy(postings, index + 1, remaining, index, remaining.length - index);
+        return remaining;
+    }
+
+    private static void orAll(final BitSet bits, final int[] postings) {
+
+        for (final int ordinal : postings == null ? NO_ORDINALS : postings) {
+            bits.set(ordinal);
+        }
+    }
+
+    private static void andNotAll(final BitSet bits, final int[] postings) {
+
+        for (final int ordinal : postings == null ? NO_ORDINALS : postings) {
+            bits.clear(ordinal);
+        }
+    }
+
+    private static List<PolicySummary> listPolicySummaries(final FmsClient client) {
+
+        final List<PolicySummary> summaries = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final ListPoliciesResponse listPoliciesResponse = client.listPolicies(ListPoliciesRequest.builder()
+                    .nextToken(nextToken)
+                    .maxResults(MAX_RESULTS)
+                    .build());
+            summaries.addAll(listPoliciesResponse.policyList());
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        return summaries;
+    }
+
+    /** Accounts and organizational units a policy includes, or excludes from the whole organization. */
+    private static final class Scope {
+
+        private final boolean include;
+        private final AccountIdSet accounts;
+        private final Set<String> organizationalUnits;
+
+        private Scope(final boolean include, final AccountIdSet accounts, final Set<String> organizationalUnits) {
+
+            this.include = include;
+            this.accounts = accounts;
+            this.organizationalUnits = organizationalUnits;
+        }
+
+        /**
+         * Build the scope of an FMS policy, where a non-empty include map takes precedence over the exclude map.
+         *
+         * @param includeMap FMS include map, may be null.
+         * @param excludeMap FMS exclude map, may be null.
+         * @return The scope.
+         */
+        private static Scope of(
+                final Map<CustomerPolicyScopeIdType, ? extends List<String>> includeMap,
+                final Map<CustomerPolicyScopeIdType, ? extends List<String>> excludeMap) {
+
+            final Map<CustomerPolicyScopeIdType, ? extends List<String>> map =
+                    isEmpty(includeMap) ? excludeMap : includeMap;
+            return map == null
+                    ? new Scope(false, AccountIdSet.EMPTY, Collections.emptySet())
+                    : of(!isEmpty(includeMap),
+                            map.get(CustomerPolicyScopeIdType.ACCOUNT),
+                            map.get(CustomerPolicyScopeIdType.ORG_UNIT));
+        }
+
+        /**
+         * Build the scope of a policy resource model, where a non-empty include map takes precedence over the
+         * exclude map.
+         *
+         * @param includeMap CFN include map, may be null.
+         * @param excludeMap CFN exclude map, may be null.
+         * @return The scope.
+         */
+        private static Scope of(final IEMap includeMap, final IEMap excludeMap) {
+
+            final IEMap map = isEmpty(includeMap) ? excludeMap : includeMap;
+            return map == null
+                    ? new Scope(false, AccountIdSet.EMPTY, Collections.emptySet())
+                    : of(!isEmpty(includeMap), map.getACCOUNT(), map.getORGUNIT());
+        }
+
+        private static Scope of(
+                final boolean include,
+                final List<String> accounts,
+                final List<String> organizationalUnits) {
+
+            // values that are not account IDs can never match a query, so they are left out
+            final long[] accountIds = new long[accounts == null ? 0 : accounts.size()];
+            int size = 0;
+            for (final String account : accounts == null ? Collections.<String>emptyList() : accounts) {
+                final long accountId = AccountIdSet.parseAccountId(account);
+                if (accountId >= 0) {
+                    accountIds[size++] = accountId;
+                }
+            }
+            return new Scope(
+                    include,
+                    AccountIdSet.of(Arrays.copyOf(accountIds, size)),
+                    organizationalUnits == null
+                            ? Collections.emptySet()
+                            : new LinkedHashSet<>(organizationalUnits));
+        }
+
+        private static boolean isEmpty(final Map<CustomerPolicyScopeIdType, ? extends List<String>> map) {
+
+            return map == null || map.values().stream().allMatch(values -> values == null || values.isEmpty());
+        }
+
+        private static boolean isEmpty(final IEMap map) {
+
+            return map == null
+                    || (map.getACCOUNT() == null || map.getACCOUNT().isEmpty())
+                    && (map.getORGUNIT() == null || map.getORGUNIT().isEmpty());
+        }
+    }
+
+    /** Outcome of a load. */
+    @Value
+    public static class LoadResult {
+        int indexed;
+        int failed;
+    }
+}
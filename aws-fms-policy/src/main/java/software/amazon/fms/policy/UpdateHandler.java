@@ -2,6 +2,7 @@ package software.amazon.fms.policy;
 
 import org.apache.commons.lang3.StringUtils;
 import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsException;
 import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
 import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
@@ -18,19 +19,68 @@ import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.policy.helpers.ArnHelper;
+import software.amazon.fms.policy.helpers.BudgetExhaustedException;
 import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
 import software.amazon.fms.policy.helpers.FmsHelper;
+import software.amazon.fms.policy.helpers.OperationGraph;
+import software.amazon.fms.policy.helpers.VerificationSampler;
 
 import java.util.List;
 
 public class UpdateHandler extends PolicyHandler<PutPolicyResponse> {
 
+    /** Maximum number of FMS operations running at the same time during an update. */
+    static final int OPERATION_PARALLELISM = 4;
+
+    /** Environment variable holding every how many updates trusting the previous state list the tags in full. */
+    static final String VERIFY_INTERVAL_ENVIRONMENT_VARIABLE = "FMS_POLICY_UPDATE_VERIFY_INTERVAL";
+
+    /** Shared by every update handled by this instance, so the sampling spans updates. */
+    private static final VerificationSampler VERIFICATION_SAMPLER =
+            VerificationSampler.fromEnvironment(VERIFY_INTERVAL_ENVIRONMENT_VARIABLE);
+
+    /** Maximum number of FMS operations running at the same time, one runs them in declaration order. */
+    private final int operationParallelism;
+
+    /** Decides which updates take the current tags from the previous resource state. */
+    private final VerificationSampler verificationSampler;
+
     UpdateHandler() {
         super();
+        operationParallelism = OPERATION_PARALLELISM;
+        verificationSampler = VERIFICATION_SAMPLER;
     }
 
     UpdateHandler(final FmsClient client) {
+        this(client, OPERATION_PARALLELISM);
+    }
+
+    UpdateHandler(final FmsClient client, final int operationParallelism) {
+        this(client, operationParallelism, VERIFICATION_SAMPLER);
+    }
+
+    UpdateHandler(
+            final FmsClient client,
+            final int operationParallelism,
+            final VerificationSampler verificationSampler) {
+
         super(client);
+        this.operationParallelism = operationParallelism;
+        this.verificationSampler = verificationSampler;
+    }
+
+    @Override
+    boolean recordsResults() {
+
+        return true;
+    }
+
+    @Override
+    protected List<String> validateRequest(final ResourceHandlerRequest<ResourceModel> request) {
+
+        return POLICY_VALIDATOR.validate(request.getDesiredResourceState());
     }
 
     @Override
@@ -39,58 +89,79 @@ public class UpdateHandler extends PolicyHandler<PutPolicyResponse> {
             final ResourceHandlerRequest<ResourceModel> request,
             final Logger logger) {
 
-        // make a read request to retrieve an up-to-date PolicyUpdateToken
-        logger.log("Retrieving existing policy");
+        return makeRequest(proxy, request, CallbackContext.builder().build(), ExecutionBudget.unlimited(), logger);
+    }
+
+    @Override
+    protected PutPolicyResponse makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger) {
+
         if (StringUtils.isBlank(request.getDesiredResourceState().getId())) {
             throw ResourceNotFoundException.builder()
                     .message("Firewall manager policy with the provided reference ID does not exist").build();
         }
-        final GetPolicyRequest getPolicyRequest = GetPolicyRequest.builder()
-                .policyId(request.getDesiredResourceState().getId())
-                .build();
-        final GetPolicyResponse getPolicyResponse = proxy.injectCredentialsAndInvokeV2(
-                getPolicyRequest,
-                client::getPolicy);
-        logger.log("Policy retrieved successfully");
-        logRequest(getPolicyResponse, logger);
+        validateNetworkAclEntries(request.getDesiredResourceState(), logger);
+        final OperationGraph graph = new OperationGraph(operationParallelism, budget, logger);
 
-        // make the update request
-        logger.log("Updating existing policy");
-        final PutPolicyRequest putPolicyRequest = PutPolicyRequest.builder()
-                .policy(FmsHelper.convertCFNResourceModelToFMSPolicy(
-                        request.getDesiredResourceState(),
-                        getPolicyResponse.policy().policyUpdateToken()))
-                .build();
-        final PutPolicyResponse putPolicyResponse = proxy.injectCredentialsAndInvokeV2(
-                putPolicyRequest,
-                client::putPolicy);
-        logger.log("Policy updated successfully");
-        logRequest(putPolicyResponse, logger);
+        // make a read request to retrieve an up-to-date PolicyUpdateToken
+        final OperationGraph.Node<GetPolicyResponse> getPolicy = graph.add("GetPolicy", () -> {
+            logger.log("Retrieving existing policy");
+            final GetPolicyRequest getPolicyRequest = GetPolicyRequest.builder()
+                    .policyId(request.getDesiredResourceState().getId())
+                    .build();
+            final GetPolicyResponse getPolicyResponse = proxy.injectCredentialsAndInvokeV2(
+                    getPolicyRequest,
+                    client::getPolicy);
+            logger.log("Policy retrieved successfully");
+            logRequest(getPolicyResponse, logger);
+            return getPolicyResponse;
+        });
 
-        // make a list request to get the current tags on the policy
-        logger.log("Retrieving policy tags");
-        final ListTagsForResourceRequest listTagsForResourceRequest = ListTagsForResourceRequest.builder()
-                .resourceArn(getPolicyResponse.policyArn())
-                .build();
-        final ListTagsForResourceResponse listTagsForResourceResponse = proxy.injectCredentialsAndInvokeV2(
-                listTagsForResourceRequest,
-                client::listTagsForResource);
-        logger.log("Policy tags retrieved successfully");
-        logRequest(listTagsForResourceResponse, logger);
+        // make the update request
+        final OperationGraph.Node<PutPolicyResponse> putPolicy = graph.add("PutPolicy", () -> {
+            logger.log("Updating existing policy");
+            final PutPolicyRequest putPolicyRequest = PutPolicyRequest.builder()
+                    .policy(FmsHelper.convertCFNResourceModelToFMSPolicy(
+                            request.getDesiredResourceState(),
+                            getPolicy.get().policy().policyUpdateToken(),
+                            entrySet -> aggregateNetworkAclEntries(entrySet, logger)))
+                    .build();
+            final PutPolicyResponse putPolicyResponse = proxy.injectCredentialsAndInvokeV2(
+                    putPolicyRequest,
+                    client::putPolicy);
+            logger.log("Policy updated successfully");
+            logRequest(putPolicyResponse, logger);
+            return putPolicyResponse;
+        }, getPolicy);
 
-        // determine tags to remove and add
-        final List<String> removeTags = FmsHelper.tagsToRemove(
-                listTagsForResourceResponse.tagList(),
-                request.getDesiredResourceTags());
-        final List<Tag> addTags = FmsHelper.tagsToAdd(
-                listTagsForResourceResponse.tagList(),
-                request.getDesiredResourceTags());
+        // take the current tags from the previous resource state when it is trusted, otherwise list them; a callback
+        // after a checkpoint always lists them, since the stopped invocation may have changed some already
+        final boolean trustPreviousState = request.getPreviousResourceState() != null
+                && progress.getCheckpointCount() == 0
+                && verificationSampler.trustPreviousState();
+        final OperationGraph.Node<List<Tag>> currentTags = trustPreviousState
+                ? graph.add("PreviousTags", () -> {
+                    logger.log("Using the previous policy tags");
+                    return FmsHelper.convertCFNTagMapToFMSTagSet(request.getPreviousResourceTags());
+                })
+                : addTagReads(graph, getPolicy, proxy, request, logger);
 
-        // make an untag request
-        if (!removeTags.isEmpty()) {
+        // make an untag request, which depends on the policy ARN and tags but not on the policy update
+        final OperationGraph.Node<UntagResourceResponse> untagResource = graph.add("UntagResource", () -> {
+            final List<String> removeTags = FmsHelper.tagsToRemove(
+                    currentTags.get(),
+                    request.getDesiredResourceTags());
+            if (removeTags.isEmpty()) {
+                logger.log("No tags to remove");
+                return null;
+            }
             logger.log(String.format("Removing %d tag/s", removeTags.size()));
             final UntagResourceRequest untagResourceRequest = UntagResourceRequest.builder()
-                    .resourceArn(getPolicyResponse.policyArn())
+                    .resourceArn(getPolicy.get().policyArn())
                     .tagKeys(removeTags)
                     .build();
             final UntagResourceResponse untagResourceResponse = proxy.injectCredentialsAndInvokeV2(
@@ -98,15 +169,21 @@ public class UpdateHandler extends PolicyHandler<PutPolicyResponse> {
                     client::untagResource);
             logger.log("Tags removed successfully");
             logRequest(untagResourceResponse, logger);
-        } else {
-            logger.log("No tags to remove");
-        }
+            return untagResourceResponse;
+        }, getPolicy, currentTags);
 
-        // make a tag request
-        if (!addTags.isEmpty()) {
+        // make a tag request after the untag request, since a changed tag value is removed and then added again
+        graph.add("TagResource", () -> {
+            final List<Tag> addTags = FmsHelper.tagsToAdd(
+                    currentTags.get(),
+                    request.getDesiredResourceTags());
+            if (addTags.isEmpty()) {
+                logger.log("No tags to add");
+                return null;
+            }
             logger.log(String.format("Adding %d tag/s", addTags.size()));
             final TagResourceRequest tagResourceRequest = TagResourceRequest.builder()
-                    .resourceArn(getPolicyResponse.policyArn())
+                    .resourceArn(getPolicy.get().policyArn())
                     .tagList(addTags)
                     .build();
             final TagResourceResponse tagResourceResponse = proxy.injectCredentialsAndInvokeV2(
@@ -114,12 +191,87 @@ public class UpdateHandler extends PolicyHandler<PutPolicyResponse> {
                     client::tagResource);
             logger.log("Tags added successfully");
             logRequest(tagResourceResponse, logger);
-        } else {
-            logger.log("No tags to add");
+            return tagResourceResponse;
+        }, getPolicy, currentTags, untagResource);
+
+        // run the operations, listing the tags on the next update if the previous state could not be trusted; an
+        // update stopped by the budget is run again in full by the next invocation, every operation being idempotent
+        try {
+            graph.run();
+        } catch (BudgetExhaustedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (trustPreviousState) {
+                verificationSampler.recordFailure();
+            }
+            throw e;
         }
+        return putPolicy.get();
+    }
+
+    private OperationGraph.Node<List<Tag>> addTagReads(
+            final OperationGraph graph,
+            final OperationGraph.Node<GetPolicyResponse> getPolicy,
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final Logger logger) {
+
+        // make a list request to get the current tags on the policy, alongside the policy read if the ARN is known
+        final String synthesizedPolicyArn = ArnHelper.synthesizePolicyArn(
+                request,
+                request.getDesiredResourceState().getId());
+        final OperationGraph.Node<ListTagsForResourceResponse> listTags = synthesizedPolicyArn == null
+                ? graph.add("ListTagsForResource",
+                        () -> retrieveTags(proxy, getPolicy.get().policyArn(), logger),
+                        getPolicy)
+                : graph.add("ListTagsForResource", () -> {
+                    try {
+                        return retrieveTags(proxy, synthesizedPolicyArn, logger);
+                    } catch (FmsException e) {
+                        // errors are only surfaced by the read using the policy ARN
+                        logger.log(String.format("Concurrent tag read failed: %s", e));
+                        return null;
+                    }
+                });
+
+        // the synthesized ARN must match the policy ARN, otherwise the tags are read again
+        return graph.add("VerifyTags", () -> {
+            if (synthesizedPolicyArn == null) {
+                return listTags.get().tagList();
+            }
+            if (synthesizedPolicyArn.equals(getPolicy.get().policyArn()) && listTags.get() != null) {
+                return listTags.get().tagList();
+            }
+            logger.log(String.format("Synthesized policy ARN %s could not be used for %s",
+                    synthesizedPolicyArn, getPolicy.get().policyArn()));
+            return retrieveTags(proxy, getPolicy.get().policyArn(), logger).tagList();
+        }, getPolicy, listTags);
+    }
+
+    private ListTagsForResourceResponse retrieveTags(
+            final AmazonWebServicesClientProxy proxy,
+            final String policyArn,
+            final Logger logger) {
+
+        logger.log("Retrieving policy tags");
+        final ListTagsForResourceRequest listTagsForResourceRequest = ListTagsForResourceRequest.builder()
+                .resourceArn(policyArn)
+                .build();
+        final ListTagsForResourceResponse listTagsForResourceResponse = proxy.injectCredentialsAndInvokeV2(
+                listTagsForResourceRequest,
+                client::listTagsForResource);
+        logger.log("Policy tags retrieved successfully");
+        logRequest(listTagsForResourceResponse, logger);
+        return listTagsForResourceResponse;
+    }
+
+    @Override
+    void updateScopeIndex(
+            final PolicyScopeIndex scopeIndex,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ProgressEvent<ResourceModel, CallbackContext> progressEvent) {
 
-        // return the status of the policy update
-        return putPolicyResponse;
+        scopeIndex.put(progressEvent.getResourceModel());
     }
 
     @Override
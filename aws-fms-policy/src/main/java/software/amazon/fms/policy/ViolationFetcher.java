@@ -0,0 +1,411 @@
+package software.amazon.fms.policy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.SdkField;
+import software.amazon.awssdk.core.SdkPojo;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.util.SdkAutoConstructList;
+import software.amazon.awssdk.core.util.SdkAutoConstructMap;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetViolationDetailsRequest;
+import software.amazon.awssdk.services.fms.model.GetViolationDetailsResponse;
+import software.amazon.fms.policy.helpers.AdaptiveConcurrencyLimiter;
+import software.amazon.fms.policy.helpers.ParallelHelper;
+import software.amazon.fms.policy.helpers.Retrier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fetches the violation details of many resources and streams them to an NDJSON file.
+ *
+ * Identical lookups are made once. Lookups run on up to the maximum concurrency worker threads, but an AIMD limiter
+ * decides how many calls are in flight: it grows while FMS answers and halves when FMS throttles, so the fetcher
+ * settles just under the rate FMS allows instead of retrying throttled calls at a fixed concurrency. Throttled lookups
+ * are retried by a {@link Retrier} on their own worker, after its shared jittered delay. Each lookup is written as
+ * soon as it completes, as a "violation" record or, when it fails, a "failure" record, so records are not in input
+ * order and violation details are never held in memory beyond their own lookup.
+ */
+public class ViolationFetcher {
+
+    /** Default highest number of lookups in flight. */
+    static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+    /** Default number of lookups in flight before the first one completes. */
+    static final int DEFAULT_INITIAL_CONCURRENCY = 4;
+
+    /** Number of attempts of a lookup FMS keeps throttling. */
+    static final int MAX_ATTEMPTS = 8;
+
+    /** Delay in milliseconds after the first throttled attempt of a lookup, doubled after each further one. */
+    static final long BASE_RETRY_DELAY_MILLIS = 100;
+
+    /** Longest delay in milliseconds between two attempts of a lookup. */
+    static final long MAX_RETRY_DELAY_MILLIS = 10_000;
+
+    /** Default time in milliseconds between two progress reports. */
+    static final long DEFAULT_REPORT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final String GZIP_EXTENSION = ".gz";
+
+    private static final String VIOLATION_TYPE = "violation";
+    private static final String FAILURE_TYPE = "failure";
+
+    private final FmsClient client;
+    private final int maxConcurrency;
+    private final int initialConcurrency;
+    private final long reportIntervalMillis;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Constructor.
+     *
+     * @param client The FmsClient to use.
+     * @param initialConcurrency Number of lookups in flight before the first one completes.
+     * @param maxConcurrency Highest number of lookups in flight.
+     * @param reportIntervalMillis Time in milliseconds between two progress reports.
+     */
+    public ViolationFetcher(
+            final FmsClient client,
+            final int initialConcurrency,
+            final int maxConcurrency,
+            final long reportIntervalMillis) {
+
+        this.client = client;
+        this.initialConcurrency = initialConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    /**
+     * Fetch the violations listed in a file, one "policyId,memberAccount,resourceId,resourceType" line each.
+     *
+     * @param args Input file path, output file path, gzip compressed when it ends with ".gz", and an optional
+     *             maximum concurrency.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+
+        if (args.length < 2) {
+            throw new IllegalArgumentException(
+                    "Usage: ViolationFetcher <violations.csv> <output.ndjson[.gz]> [maxConcurrency]");
+        }
+        final int maxConcurrency = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_CONCURRENCY;
+        final List<ViolationKey> keys = new ArrayList<>();
+        for (final String line : Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                keys.add(ViolationKey.parse(line));
+            }
+        }
+
+        try (FmsClient client = FmsClient.create()) {
+            final ViolationFetcher fetcher = new ViolationFetcher(
+                    client,
+                    Math.min(DEFAULT_INITIAL_CONCURRENCY, maxConcurrency),
+                    maxConcurrency,
+                    DEFAULT_REPORT_INTERVAL_MILLIS);
+            final Progress progress = fetcher.fetch(keys, Paths.get(args[1]), ViolationFetcher::print);
+            System.out.printf("Fetched %d violation/s to %s, %d lookup/s failed%n",
+                    progress.getFetched(), args[1], progress.getFailed());
+        }
+    }
+
+    /**
+     * Fetch violations to a file, gzip compressed when the file name ends with ".gz".
+     *
+     * @param keys Violations to look up, duplicates are looked up once.
+     * @param path Output file path.
+     * @param progressListener Receives a progress report at every report interval and once at the end.
+     * @return Final progress.
+     * @throws IOException If the output file cannot be written.
+     */
+    public Progress fetch(
+            final Collection<ViolationKey> keys,
+            final Path path,
+            final Consumer<Progress> progressListener) throws IOException {
+
+        try (OutputStream outputStream = path.toString().endsWith(GZIP_EXTENSION)
+                ? new GZIPOutputStream(Files.newOutputStream(path))
+                : Files.newOutputStream(path)) {
+            return fetch(keys, outputStream, progressListener);
+        }
+    }
+
+    /**
+     * Fetch violations to a stream. The stream is flushed but not closed.
+     *
+     * @param keys Violations to look up, duplicates are looked up once.
+     * @param outputStream Stream the NDJSON records are written to.
+     * @param progressListener Receives a progress report at every report interval and once at the end.
+     * @return Final progress.
+     * @throws IOException If the stream cannot be written.
+     */
+    public Progress fetch(
+            final Collection<ViolationKey> keys,
+            final OutputStream outputStream,
+            final Consumer<Progress> progressListener) throws IOException {
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        final List<ViolationKey> lookups = new ArrayList<>(new LinkedHashSet<>(keys));
+        final AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(initialConcurrency, 1, maxConcurrency);
+        final AtomicLong fetched = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final Retrier retries = new Retrier(MAX_ATTEMPTS, BASE_RETRY_DELAY_MILLIS, MAX_RETRY_DELAY_MILLIS);
+        final long startedAt = System.nanoTime();
+
+        // the pool can hold the highest limit, the limiter decides how many of its workers make calls
+        final ExecutorService executor = ParallelHelper.newWorkerPool(Math.min(maxConcurrency, lookups.size()));
+        final CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        final List<Future<Void>> futures = new ArrayList<>(lookups.size());
+        try {
+            for (final ViolationKey key : lookups) {
+                futures.add(completionService.submit(() -> {
+                    final Map<String, Object> record = lookUp(key, limiter, retries);
+                    writeRecord(writer, record);
+                    (FAILURE_TYPE.equals(record.get("type")) ? failed : fetched).incrementAndGet();
+                    return null;
+                }));
+            }
+
+            // report progress while the lookups complete, surfacing the first write failure
+            long nextReportAt = System.currentTimeMillis() + reportIntervalMillis;
+            for (int completed = 0; completed < lookups.size(); ) {
+                final Future<Void> future = completionService.poll(
+                        Math.max(0, nextReportAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    future.get();
+                    completed++;
+                }
+                if (System.currentTimeMillis() >= nextReportAt) {
+                    progressListener.accept(progress(lookups.size(), fetched, failed, retries, limiter, startedAt));
+                    nextReportAt += reportIntervalMillis;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Violation fetch interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+
+        writer.flush();
+        final Progress progress = progress(lookups.size(), fetched, failed, retries, limiter, startedAt);
+        progressListener.accept(progress);
+        return progress;
+    }
+
+    /**
+     * Look up a violation, retrying while FMS throttles it.
+     *
+     * @param key Violation to look up.
+     * @param limiter Limiter of the calls in flight.
+     * @param retries Retries the throttled calls on the calling thread.
+     * @return The violation record, or a failure record if the lookup failed.
+     */
+    private Map<String, Object> lookUp(
+            final ViolationKey key,
+            final AdaptiveConcurrencyLimiter limiter,
+            final Retrier retries) {
+
+        final GetViolationDetailsRequest request = GetViolationDetailsRequest.builder()
+                .policyId(key.getPolicyId())
+                .memberAccount(key.getMemberAccount())
+                .resourceId(key.getResourceId())
+                .resourceType(key.getResourceType())
+                .build();
+        final GetViolationDetailsResponse response;
+        try {
+            response = retries.call(() -> limiter.call(() -> client.getViolationDetails(request)));
+        } catch (SdkException e) {
+            return failureRecord(key, e);
+        }
+        final Map<String, Object> record = keyRecord(VIOLATION_TYPE, key);
+        record.put("violationDetail", toJsonValue(response.violationDetail()));
+        return record;
+    }
+
+    private static Map<String, Object> keyRecord(final String type, final ViolationKey key) {
+
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", type);
+        record.put("policyId", key.getPolicyId());
+        record.put("memberAccount", key.getMemberAccount());
+        record.put("resourceId", key.getResourceId());
+        record.put("resourceType", key.getResourceType());
+        return record;
+    }
+
+    private static Map<String, Object> failureRecord(final ViolationKey key, final SdkException e) {
+
+        final Map<String, Object> record = keyRecord(FAILURE_TYPE, key);
+        record.put("errorCode", e instanceof AwsServiceException && ((AwsServiceException) e).awsErrorDetails() != null
+                ? ((AwsServiceException) e).awsErrorDetails().errorCode()
+                : null);
+        record.put("message", e.getMessage());
+        return record;
+    }
+
+    /**
+     * Convert an FMS model value to the values Jackson writes, naming the fields of model objects as FMS does and
+     * leaving out unset fields.
+     *
+     * @param value FMS model object, list, map or scalar.
+     * @return Maps, lists and scalars.
+     */
+    static Object toJsonValue(final Object value) {
+
+        if (value instanceof SdkPojo) {
+            final Map<String, Object> fields = new LinkedHashMap<>();
+            for (final SdkField<?> field : ((SdkPojo) value).sdkFields()) {
+                final Object fieldValue = field.getValueOrDefault(value);
+                if (fieldValue != null
+                        && !(fieldValue instanceof SdkAutoConstructList)
+                        && !(fieldValue instanceof SdkAutoConstructMap)) {
+                    fields.put(field.memberName(), toJsonValue(fieldValue));
+                }
+            }
+            return fields;
+        }
+        if (value instanceof List) {
+            final List<Object> elements = new ArrayList<>();
+            ((List<?>) value).forEach(element -> elements.add(toJsonValue(element)));
+            return elements;
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> entries = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((entryKey, entryValue) -> entries.put(entryKey, toJsonValue(entryValue)));
+            return entries;
+        }
+        if (value instanceof Instant) {
+            return value.toString();
+        }
+        if (value instanceof SdkBytes) {
+            return ((SdkBytes) value).asByteArray();
+        }
+        return value;
+    }
+
+    private void writeRecord(final Writer writer, final Map<String, Object> record) {
+
+        final String line;
+        try {
+            line = objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        // whole lines are written under the writer lock, so records never interleave mid-line
+        synchronized (writer) {
+            try {
+                writer.append(line).append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static Progress progress(
+            final int total,
+            final AtomicLong fetched,
+            final AtomicLong failed,
+            final Retrier retries,
+            final AdaptiveConcurrencyLimiter limiter,
+            final long startedAt) {
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        final long completed = fetched.get() + failed.get();
+        return new Progress(
+                total,
+                fetched.get(),
+                failed.get(),
+                retries.getThrottleCount(),
+                limiter.getLimit(),
+                elapsedMillis,
+                elapsedMillis == 0 ? 0 : completed * 1000.0 / elapsedMillis);
+    }
+
+    private static void print(final Progress progress) {
+
+        System.out.printf("%d/%d lookup/s done (%d failed), %.1f/s, %d throttled, concurrency %d%n",
+                progress.getFetched() + progress.getFailed(),
+                progress.getTotal(),
+                progress.getFailed(),
+                progress.getLookupsPerSecond(),
+                progress.getThrottled(),
+                progress.getConcurrencyLimit());
+    }
+
+    /** A violation to look up, identifying the resource and the policy it violates. */
+    @Value
+    public static class ViolationKey {
+        String policyId;
+        String memberAccount;
+        String resourceId;
+        String resourceType;
+
+        /**
+         * Parse a "policyId,memberAccount,resourceId,resourceType" line.
+         *
+         * @param line Line to parse.
+         * @return The key.
+         * @throws IllegalArgumentException If the line does not have four fields.
+         */
+        public static ViolationKey parse(final String line) {
+
+            final String[] fields = line.trim().split(",", -1);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException(String.format("Not a violation: %s", line));
+            }
+            return new ViolationKey(fields[0].trim(), fields[1].trim(), fields[2].trim(), fields[3].trim());
+        }
+    }
+
+    /** Progress of a fetch. */
+    @Value
+    public static class Progress {
+        int total;
+        long fetched;
+        long failed;
+        long throttled;
+        int concurrencyLimit;
+        long elapsedMillis;
+        double lookupsPerSecond;
+    }
+}
@@ -0,0 +1,352 @@
+package software.amazon.fms.policy.helpers;
+
+import software.amazon.awssdk.services.fms.model.CustomerPolicyScopeIdType;
+import software.amazon.fms.policy.IEMap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of account IDs, held as a sorted array of longs instead of strings.
+ *
+ * Twelve digit account IDs fit in a long, so a set of ten thousand accounts takes 80 KB instead of the ten thousand
+ * strings of a list, and union, intersection and difference are linear merges of two sorted arrays. Sets are
+ * deduplicated and in ascending order, so equal sets compare equal whatever the order of the lists they came from.
+ * Account lists are converted at the edges only: from an IEMap or an FMS include/exclude map, and back to a list of
+ * account ID strings.
+ */
+public final class AccountIdSet {
+
+    /** The empty set. */
+    public static final AccountIdSet EMPTY = new AccountIdSet(new long[0]);
+
+    private static final int ACCOUNT_ID_LENGTH = 12;
+
+    /** Sorted, without duplicates. */
+    private final long[] accountIds;
+
+    private AccountIdSet(final long[] accountIds) {
+
+        this.accountIds = accountIds;
+    }
+
+    /**
+     * Create a set from account ID strings.
+     *
+     * @param accountIds Account IDs in any order, may contain duplicates, null for the empty set.
+     * @return The set.
+     * @throws IllegalArgumentException If a value is not a twelve digit account ID.
+     */
+    public static AccountIdSet of(final Collection<String> accountIds) {
+
+        if (accountIds == null || accountIds.isEmpty()) {
+            return EMPTY;
+        }
+        final long[] values = new long[accountIds.size()];
+        int size = 0;
+        for (final String accountId : accountIds) {
+            final long value = parseAccountId(accountId);
+            if (value < 0) {
+                throw new IllegalArgumentException(String.format("Not an account ID: %s", accountId));
+            }
+            values[size++] = value;
+        }
+        return sortedDistinct(values);
+    }
+
+    /**
+     * Create a set from account IDs.
+     *
+     * @param accountIds Account IDs in any order, may contain duplicates.
+     * @return The set.
+     * @throws IllegalArgumentException If a value is negative or longer than twelve digits.
+     */
+    public static AccountIdSet of(final long... accountIds) {
+
+        for (final long accountId : accountIds) {
+            if (accountId < 0 || accountId > 999_999_999_999L) {
+                throw new IllegalArgumentException(String.format("Not an account ID: %d", accountId));
+            }
+        }
+        return accountIds.length == 0 ? EMPTY : sortedDistinct(accountIds.clone());
+    }
+
+    /**
+     * Create a set from the accounts of a CFN include/exclude map.
+     *
+     * @param ieMap CFN IEMap, may be null.
+     * @return The set, empty without accounts.
+     * @throws IllegalArgumentException If a value is not a twelve digit account ID.
+     */
+    public static AccountIdSet fromIEMap(final IEMap ieMap) {
+
+        return ieMap == null ? EMPTY : of(ieMap.getACCOUNT());
+    }
+
+    /**
+     * Create a set from the accounts of an FMS include/exclude map.
+     *
+     * @param fmsIEMap FMS include/exclude map, may be null.
+     * @return The set, empty without accounts.
+     * @throws IllegalArgumentException If a value is not a twelve digit account ID.
+     */
+    public static AccountIdSet fromFmsIEMap(final Map<CustomerPolicyScopeIdType, ? extends List<String>> fmsIEMap) {
+
+        return fmsIEMap == null ? EMPTY : of(fmsIEMap.get(CustomerPolicyScopeIdType.ACCOUNT));
+    }
+
+    /**
+     * Parse an account ID.
+     *
+     * @param value Value to parse.
+     * @return The account ID, or -1 if the value is not exactly twelve decimal digits.
+     */
+    public static long parseAccountId(final String value) {
+
+        if (value == null || value.length() != ACCOUNT_ID_LENGTH) {
+            return -1;
+        }
+        long accountId = 0;
+        for (int i = 0; i < ACCOUNT_ID_LENGTH; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            accountId = accountId * 10 + (c - '0');
+        }
+        return accountId;
+    }
+
+    /**
+     * Format an account ID as its twelve digit string.
+     *
+     * @param accountId Account ID.
+     * @return The account ID, with leading zeros.
+     */
+    public static String formatAccountId(final long accountId) {
+
+        final char[] digits = new char[ACCOUNT_ID_LENGTH];
+        long remaining = accountId;
+        for (int i = ACCOUNT_ID_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Get the number of accounts.
+     *
+     * @return Number of distinct accounts in the set.
+     */
+    public int size() {
+
+        return accountIds.length;
+    }
+
+    /**
+     * Determine whether the set is empty.
+     *
+     * @return True if the set has no accounts.
+     */
+    public boolean isEmpty() {
+
+        return accountIds.length == 0;
+    }
+
+    /**
+     * Determine whether the set holds an account.
+     *
+     * @param accountId Account ID.
+     * @return True if the account is in the set.
+     */
+    public boolean contains(final long accountId) {
+
+        return Arrays.binarySearch(accountIds, accountId) >= 0;
+    }
+
+    /**
+     * Determine whether the set holds an account.
+     *
+     * @param accountId Account ID string.
+     * @return True if the account is in the set, false if it is not or the value is not an account ID.
+     */
+    public boolean contains(final String accountId) {
+
+        final long value = parseAccountId(accountId);
+        return value >= 0 && contains(value);
+    }
+
+    /**
+     * Get an account of the set.
+     *
+     * @param index Index in ascending order.
+     * @return The account ID.
+     */
+    public long get(final int index) {
+
+        return accountIds[index];
+    }
+
+    /**
+     * Get the accounts in either set.
+     *
+     * @param other Other set.
+     * @return The union of both sets.
+     */
+    public AccountIdSet union(final AccountIdSet other) {
+
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        final long[] merged = new long[accountIds.length + other.accountIds.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < accountIds.length && j < other.accountIds.length) {
+            final long a = accountIds[i];
+            final long b = other.accountIds[j];
+            merged[size++] = Math.min(a, b);
+            if (a <= b) {
+                i++;
+            }
+            if (b <= a) {
+                j++;
+            }
+        }
+        while (i < accountIds.length) {
+            merged[size++] = accountIds[i++];
+        }
+        while (j < other.accountIds.length) {
+            merged[size++] = other.accountIds[j++];
+        }
+        return size == accountIds.length ? this : new AccountIdSet(trim(merged, size));
+    }
+
+    /**
+     * Get the accounts in both sets.
+     *
+     * @param other Other set.
+     * @return The intersection of both sets.
+     */
+    public AccountIdSet intersection(final AccountIdSet other) {
+
+        final long[] common = new long[Math.min(accountIds.length, other.accountIds.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < accountIds.length && j < other.accountIds.length) {
+            final long a = accountIds[i];
+            final long b = other.accountIds[j];
+            if (a == b) {
+                common[size++] = a;
+            }
+            if (a <= b) {
+                i++;
+            }
+            if (b <= a) {
+                j++;
+            }
+        }
+        return size == accountIds.length ? this : size == 0 ? EMPTY : new AccountIdSet(trim(common, size));
+    }
+
+    /**
+     * Get the accounts of this set that are not in another set.
+     *
+     * @param other Set of accounts to remove.
+     * @return This set without the accounts of the other set.
+     */
+    public AccountIdSet difference(final AccountIdSet other) {
+
+        if (isEmpty() || other.isEmpty()) {
+            return this;
+        }
+        final long[] remaining = new long[accountIds.length];
+        int j = 0;
+        int size = 0;
+        for (final long a : accountIds) {
+            while (j < other.accountIds.length && other.accountIds[j] < a) {
+                j++;
+            }
+            if (j == other.accountIds.length || other.accountIds[j] != a) {
+                remaining[size++] = a;
+            }
+        }
+        return size == accountIds.length ? this : size == 0 ? EMPTY : new AccountIdSet(trim(remaining, size));
+    }
+
+    /**
+     * Get the accounts as account ID strings, formatted when read rather than all at once.
+     *
+     * @return Unmodifiable list of the account IDs in ascending order.
+     */
+    public List<String> toAccountIds() {
+
+        return new AbstractList<String>() {
+
+            @Override
+            public String get(final int index) {
+
+                return formatAccountId(accountIds[index]);
+            }
+
+            @Override
+            public int size() {
+
+                return accountIds.length;
+            }
+        };
+    }
+
+    /**
+     * Get the accounts as an array.
+     *
+     * @return Copy of the account IDs in ascending order.
+     */
+    public long[] toArray() {
+
+        return accountIds.clone();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+
+        return other instanceof AccountIdSet && Arrays.equals(accountIds, ((AccountIdSet) other).accountIds);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Arrays.hashCode(accountIds);
+    }
+
+    @Override
+    public String toString() {
+
+        return toAccountIds().toString();
+    }
+
+    private static AccountIdSet sortedDistinct(final long[] values) {
+
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[size - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return new AccountIdSet(trim(values, size));
+    }
+
+    private static long[] trim(final long[] values, final int size) {
+
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,139 @@
+package software.amazon.fms.policy.helpers;
+
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of FMS calls in flight, adapting the limit to throttling: additive increase, multiplicative
+ * decrease.
+ *
+ * Each successful call raises the limit by one over the current limit, so the limit grows by one for every limit's
+ * worth of successes. A throttled call cuts the limit by the decrease factor, once per burst: calls that were already
+ * in flight when the limit was cut do not cut it again, since they were sent at the old rate. The limit stays between
+ * the minimum and maximum it was created with.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** Default fraction of the limit kept after a throttled call. */
+    public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double decreaseFactor;
+
+    private double limit;
+    private int inFlight;
+
+    /** Number of decreases so far, calls acquired before the latest one cannot decrease the limit again. */
+    private long epoch;
+
+    /**
+     * Create a limiter with the default decrease factor.
+     *
+     * @param initialLimit Limit before any call completes.
+     * @param minLimit Lowest limit, at least one.
+     * @param maxLimit Highest limit.
+     */
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+
+        this(initialLimit, minLimit, maxLimit, DEFAULT_DECREASE_FACTOR);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param initialLimit Limit before any call completes.
+     * @param minLimit Lowest limit, at least one.
+     * @param maxLimit Highest limit.
+     * @param decreaseFactor Fraction of the limit kept after a throttled call.
+     */
+    public AdaptiveConcurrencyLimiter(
+            final int initialLimit,
+            final int minLimit,
+            final int maxLimit,
+            final double decreaseFactor) {
+
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.decreaseFactor = decreaseFactor;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * Wait until a call can be made within the limit.
+     *
+     * @return Permit to pass to {@link #release(long, boolean)} once the call completes.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized long acquire() throws InterruptedException {
+
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+        return epoch;
+    }
+
+    /**
+     * Record the outcome of a call and let a waiting call proceed.
+     *
+     * @param permit Permit returned by {@link #acquire()} for the call.
+     * @param throttled Whether FMS throttled the call.
+     */
+    public synchronized void release(final long permit, final boolean throttled) {
+
+        inFlight--;
+        if (!throttled) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        } else if (permit == epoch) {
+            limit = Math.max(minLimit, limit * decreaseFactor);
+            epoch++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Make a call within the limit, recording whether FMS throttled it.
+     *
+     * @param call FMS call.
+     * @param <T> Type of the call result.
+     * @return The call result.
+     */
+    public <T> T call(final Supplier<T> call) {
+
+        final long permit;
+        try {
+            permit = acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to make an FMS call", e);
+        }
+        try {
+            final T result = call.get();
+            release(permit, false);
+            return result;
+        } catch (RuntimeException e) {
+            release(permit, Retrier.isThrottle(e));
+            throw e;
+        }
+    }
+
+    /**
+     * Get the current limit.
+     *
+     * @return Number of calls allowed in flight.
+     */
+    public synchronized int getLimit() {
+
+        return (int) limit;
+    }
+
+    /**
+     * Get the number of calls in flight.
+     *
+     * @return Number of acquired permits not yet released.
+     */
+    public synchronized int getInFlight() {
+
+        return inFlight;
+    }
+}
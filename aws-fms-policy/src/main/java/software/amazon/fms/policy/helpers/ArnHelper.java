@@ -0,0 +1,49 @@
+package software.amazon.fms.policy.helpers;
+
+import org.apache.commons.lang3.StringUtils;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+public class ArnHelper {
+
+    private static final String POLICY_ARN_FORMAT = "arn:%s:fms:%s:%s:policy/%s";
+
+    /**
+     * Synthesize the ARN of a policy from its ID and the partition, region and account of a handler request.
+     *
+     * The synthesized ARN lets reads that need the ARN start before the policy itself has been read. It must be
+     * checked against the ARN FMS returns before any write relies on it.
+     *
+     * @param request  The handler request, supplying the partition, region and account.
+     * @param policyId The policy ID.
+     * @return The policy ARN, or null if the request does not carry all the parts needed.
+     */
+    public static String synthesizePolicyArn(final ResourceHandlerRequest<?> request, final String policyId) {
+
+        return synthesizePolicyArn(
+                request.getAwsPartition(),
+                request.getRegion(),
+                request.getAwsAccountId(),
+                policyId);
+    }
+
+    /**
+     * Synthesize the ARN of a policy from its parts.
+     *
+     * @param partition The AWS partition, such as "aws".
+     * @param region    The region the policy is in.
+     * @param accountId The account the policy belongs to.
+     * @param policyId  The policy ID.
+     * @return The policy ARN, or null if any part is blank.
+     */
+    public static String synthesizePolicyArn(
+            final String partition,
+            final String region,
+            final String accountId,
+            final String policyId) {
+
+        if (StringUtils.isAnyBlank(partition, region, accountId, policyId)) {
+            return null;
+        }
+        return String.format(POLICY_ARN_FORMAT, partition, region, accountId, policyId);
+    }
+}
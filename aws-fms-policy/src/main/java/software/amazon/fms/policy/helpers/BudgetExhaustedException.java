@@ -0,0 +1,23 @@
+package software.amazon.fms.policy.helpers;
+
+/**
+ * Thrown between FMS operations when the invocation has too little time left to run the next one. Handlers catch it,
+ * keep the progress made so far and ask CloudFormation to invoke them again.
+ */
+public class BudgetExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create the exception.
+     *
+     * @param operation       Operation that was not started.
+     * @param remainingMillis Milliseconds left in the invocation.
+     * @param estimateMillis  Milliseconds the operation is expected to take.
+     */
+    public BudgetExhaustedException(final String operation, final long remainingMillis, final long estimateMillis) {
+
+        super(String.format("Checkpointing before %s, %dms left in the invocation and the operation takes about %dms",
+                operation, remainingMillis, estimateMillis));
+    }
+}
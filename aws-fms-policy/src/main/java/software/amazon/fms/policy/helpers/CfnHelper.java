@@ -16,9 +16,8 @@ import software.amazon.fms.policy.ResourceTag;
 import software.amazon.fms.policy.SecurityServicePolicyData;
 import software.amazon.fms.policy.ThirdPartyFirewallPolicy;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class CfnHelper {
 
@@ -58,40 +57,19 @@ public class CfnHelper {
                 .id(policy.policyId())
                 .arn(policyArn);
 
-        // check each optional parameter and add it if it exists
-        final IEMap cfnExcludeMap = new IEMap();
-        if (policy.excludeMap() != null) {
-            if (policy.excludeMap().containsKey(CustomerPolicyScopeIdType.ACCOUNT)) {
-                cfnExcludeMap.setACCOUNT(policy.excludeMap().get(CustomerPolicyScopeIdType.ACCOUNT));
-            }
-            if (policy.excludeMap().containsKey(CustomerPolicyScopeIdType.ORG_UNIT)) {
-                cfnExcludeMap.setORGUNIT(policy.excludeMap().get(CustomerPolicyScopeIdType.ORG_UNIT));
-            }
-        }
-        resourceModelBuilder.excludeMap(cfnExcludeMap);
-
-        final IEMap cfnIncludeMap = new IEMap();
-        if (policy.includeMap() != null) {
-            if (policy.includeMap().containsKey(CustomerPolicyScopeIdType.ACCOUNT)) {
-                cfnIncludeMap.setACCOUNT(policy.includeMap().get(CustomerPolicyScopeIdType.ACCOUNT));
-            }
-            if (policy.includeMap().containsKey(CustomerPolicyScopeIdType.ORG_UNIT)) {
-                cfnIncludeMap.setORGUNIT(policy.includeMap().get(CustomerPolicyScopeIdType.ORG_UNIT));
-            }
-        }
-        resourceModelBuilder.includeMap(cfnIncludeMap);
+        // check each optional parameter and add it if it exists, the SDK lists are immutable so they are not copied
+        resourceModelBuilder.excludeMap(convertFMSIEMapToCFNIEMap(policy.excludeMap()));
+        resourceModelBuilder.includeMap(convertFMSIEMapToCFNIEMap(policy.includeMap()));
 
         if (!policy.resourceTags().isEmpty()) {
-            final List<ResourceTag> resourceTags = new ArrayList<>();
-            policy.resourceTags().forEach(rt -> resourceTags.add(new ResourceTag(rt.key(), rt.value())));
-            resourceModelBuilder.resourceTags(resourceTags);
+            resourceModelBuilder.resourceTags(FmsHelper.mapList(
+                    policy.resourceTags(),
+                    rt -> new ResourceTag(rt.key(), rt.value())));
         }
         resourceModelBuilder.resourceTypeList(policy.resourceTypeList());
         resourceModelBuilder.resourceSetIds(policy.resourceSetIds());
         if (!tags.isEmpty()) {
-            final List<PolicyTag> policyTags = new ArrayList<>();
-            tags.forEach(tag -> policyTags.add(new PolicyTag(tag.key(), tag.value())));
-            resourceModelBuilder.tags(policyTags);
+            resourceModelBuilder.tags(FmsHelper.mapList(tags, tag -> new PolicyTag(tag.key(), tag.value())));
         }
 
         if (policy.deleteUnusedFMManagedResources() != null) {
@@ -102,6 +80,29 @@ public class CfnHelper {
         return resourceModelBuilder.build();
     }
 
+    /**
+     * Convert an FMS include/exclude map to a CFN IEMap. The SDK converts the map keys on every call of the map
+     * getter, so callers pass the map in once.
+     *
+     * @param fmsIEMap FMS include/exclude map, may be null.
+     * @return The converted IEMap, empty if the map is null.
+     */
+    static IEMap convertFMSIEMapToCFNIEMap(final Map<CustomerPolicyScopeIdType, List<String>> fmsIEMap) {
+
+        final IEMap cfnIEMap = new IEMap();
+        if (fmsIEMap != null) {
+            final List<String> accounts = fmsIEMap.get(CustomerPolicyScopeIdType.ACCOUNT);
+            if (accounts != null) {
+                cfnIEMap.setACCOUNT(accounts);
+            }
+            final List<String> orgUnits = fmsIEMap.get(CustomerPolicyScopeIdType.ORG_UNIT);
+            if (orgUnits != null) {
+                cfnIEMap.setORGUNIT(orgUnits);
+            }
+        }
+        return cfnIEMap;
+    }
+
     /**
      * Convert a list of FMS policies (from the FMS SDK) to a list of CFN resource models (from the resource provider).
      *
@@ -161,14 +162,12 @@ public class CfnHelper {
 
             builder.networkAclCommonPolicy(NetworkAclCommonPolicy.builder()
                     .networkAclEntrySet(NetworkAclEntrySet.builder()
-                            .firstEntries(
-                                    entrySet.firstEntries().stream()
-                                            .map(CfnHelper::convertFmsNetworkAclEntryToCFNNetworkAclEntry)
-                                            .collect(Collectors.toList())
-                            ).lastEntries(
-                                    entrySet.lastEntries().stream()
-                                            .map(CfnHelper::convertFmsNetworkAclEntryToCFNNetworkAclEntry)
-                                            .collect(Collectors.toList())
+                            .firstEntries(FmsHelper.mapList(
+                                    entrySet.firstEntries(),
+                                    CfnHelper::convertFmsNetworkAclEntryToCFNNetworkAclEntry)
+                            ).lastEntries(FmsHelper.mapList(
+                                    entrySet.lastEntries(),
+                                    CfnHelper::convertFmsNetworkAclEntryToCFNNetworkAclEntry)
                             ).forceRemediateForFirstEntries(
                                     entrySet.forceRemediateForFirstEntries()
                             ).forceRemediateForLastEntries(
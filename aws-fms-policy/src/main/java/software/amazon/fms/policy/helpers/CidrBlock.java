@@ -0,0 +1,321 @@
+package software.amazon.fms.policy.helpers;
+
+import java.math.BigInteger;
+
+/**
+ * An IPv4 or IPv6 CIDR block, parsed by hand instead of with the schema's regular expressions or InetAddress.
+ *
+ * IPv4 blocks follow the schema: four decimal octets without leading zeros and a prefix length of at most 32. IPv6
+ * blocks are up to eight groups of one to four hex digits, with at most one :: and optionally an IPv4 address as the
+ * last 32 bits, and a prefix length of at most 128. Host bits set in the address are cleared.
+ */
+public final class CidrBlock {
+
+    private final int bits;
+    private final BigInteger network;
+    private final int prefixLength;
+
+    /**
+     * Create a block.
+     *
+     * @param bits Number of bits of the address, 32 for IPv4 and 128 for IPv6.
+     * @param address Any address in the block.
+     * @param prefixLength Prefix length.
+     */
+    CidrBlock(final int bits, final BigInteger address, final int prefixLength) {
+
+        this.bits = bits;
+        this.network = address.andNot(hostMask(bits, prefixLength));
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * Parse a block of either address family.
+     *
+     * @param text Block such as 10.0.0.0/16 or 2001:db8::/32.
+     * @return The block.
+     * @throws IllegalArgumentException If the text is not a CIDR block.
+     */
+    public static CidrBlock parse(final String text) {
+
+        return text.indexOf(':') >= 0 ? parseIpv6(text) : parseIpv4(text);
+    }
+
+    /**
+     * Parse an IPv4 block.
+     *
+     * @param text Block such as 10.0.0.0/16.
+     * @return The block.
+     * @throws IllegalArgumentException If the text is not an IPv4 CIDR block.
+     */
+    public static CidrBlock parseIpv4(final String text) {
+
+        final int slash = slash(text);
+        final long address = parseIpv4Address(text, 0, slash);
+        return new CidrBlock(32, BigInteger.valueOf(address), parsePrefixLength(text, slash, 32));
+    }
+
+    /**
+     * Parse an IPv6 block.
+     *
+     * @param text Block such as 2001:db8::/32.
+     * @return The block.
+     * @throws IllegalArgumentException If the text is not an IPv6 CIDR block.
+     */
+    public static CidrBlock parseIpv6(final String text) {
+
+        final int slash = slash(text);
+        final int[] groups = new int[8];
+        int count = 0;
+        int gap = -1;
+        int i = 0;
+        if (slash >= 2 && text.charAt(0) == ':' && text.charAt(1) == ':') {
+            gap = 0;
+            i = 2;
+        }
+        while (i < slash) {
+            if (count == 8) {
+                throw invalid(text);
+            }
+            final int start = i;
+            int value = 0;
+            while (i < slash && i - start <= 4 && hexDigit(text.charAt(i)) >= 0) {
+                value = value * 16 + hexDigit(text.charAt(i));
+                i++;
+            }
+            if (i < slash && text.charAt(i) == '.') {
+                // an IPv4 address fills the last two groups
+                if (count > 6) {
+                    throw invalid(text);
+                }
+                final long address = parseIpv4Address(text, start, slash);
+                groups[count++] = (int) (address >>> 16);
+                groups[count++] = (int) (address & 0xFFFF);
+                break;
+            }
+            if (i == start || i - start > 4) {
+                throw invalid(text);
+            }
+            groups[count++] = value;
+            if (i == slash) {
+                break;
+            }
+            // a single colon separates groups, a double one stands for the zero groups in between
+            if (text.charAt(i) != ':' || i + 1 == slash) {
+                throw invalid(text);
+            }
+            i++;
+            if (text.charAt(i) == ':') {
+                if (gap >= 0) {
+                    throw invalid(text);
+                }
+                gap = count;
+                i++;
+            }
+        }
+        if (gap < 0 ? count != 8 : count > 7) {
+            throw invalid(text);
+        }
+
+        // the groups after :: belong at the end of the address
+        final byte[] address = new byte[16];
+        final int tail = gap < 0 ? 0 : count - gap;
+        for (int group = 0; group < count; group++) {
+            final int position = gap >= 0 && group >= gap ? 8 - tail + group - gap : group;
+            address[position * 2] = (byte) (groups[group] >>> 8);
+            address[position * 2 + 1] = (byte) groups[group];
+        }
+        return new CidrBlock(128, new BigInteger(1, address), parsePrefixLength(text, slash, 128));
+    }
+
+    /**
+     * Get the number of bits of the address.
+     *
+     * @return 32 for IPv4 and 128 for IPv6.
+     */
+    public int getBits() {
+
+        return bits;
+    }
+
+    /**
+     * Get the first address of the block.
+     *
+     * @return The network address.
+     */
+    public BigInteger getNetwork() {
+
+        return network;
+    }
+
+    /**
+     * Get the last address of the block.
+     *
+     * @return The broadcast address for IPv4, the highest address for IPv6.
+     */
+    public BigInteger getLastAddress() {
+
+        return network.or(hostMask(bits, prefixLength));
+    }
+
+    /**
+     * Get the prefix length of the block.
+     *
+     * @return Number of leading bits shared by every address of the block.
+     */
+    public int getPrefixLength() {
+
+        return prefixLength;
+    }
+
+    /**
+     * Format the block in its canonical text form, with the longest run of zero IPv6 groups written as ::.
+     *
+     * @return The block, such as 10.0.0.0/16 or 2001:db8::/32.
+     */
+    @Override
+    public String toString() {
+
+        final StringBuilder block = new StringBuilder();
+        if (bits == 32) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                block.append(network.shiftRight(shift).intValue() & 0xFF);
+                if (shift > 0) {
+                    block.append('.');
+                }
+            }
+        } else {
+            final int[] groups = new int[8];
+            for (int i = 0; i < 8; i++) {
+                groups[i] = network.shiftRight(112 - i * 16).intValue() & 0xFFFF;
+            }
+            // only a run of at least two zero groups is shortened
+            int runStart = -1;
+            int runLength = 1;
+            for (int i = 0; i < 8; i++) {
+                int j = i;
+                while (j < 8 && groups[j] == 0) {
+                    j++;
+                }
+                if (j - i > runLength) {
+                    runStart = i;
+                    runLength = j - i;
+                }
+                i = Math.max(i, j);
+            }
+            for (int i = 0; i < 8; i++) {
+                if (i == runStart) {
+                    block.append("::");
+                    i += runLength - 1;
+                    continue;
+                }
+                if (block.length() > 0 && block.charAt(block.length() - 1) != ':') {
+                    block.append(':');
+                }
+                block.append(Integer.toHexString(groups[i]));
+            }
+        }
+        return block.append('/').append(prefixLength).toString();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+
+        if (!(other instanceof CidrBlock)) {
+            return false;
+        }
+        final CidrBlock block = (CidrBlock) other;
+        return bits == block.bits && prefixLength == block.prefixLength && network.equals(block.network);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return (network.hashCode() * 31 + prefixLength) * 31 + bits;
+    }
+
+    private static BigInteger hostMask(final int bits, final int prefixLength) {
+
+        return BigInteger.ONE.shiftLeft(bits - prefixLength).subtract(BigInteger.ONE);
+    }
+
+    private static int slash(final String text) {
+
+        final int slash = text.indexOf('/');
+        if (slash < 0) {
+            throw invalid(text);
+        }
+        return slash;
+    }
+
+    private static long parseIpv4Address(final String text, final int start, final int end) {
+
+        long address = 0;
+        int octetStart = start;
+        for (int octet = 0; octet < 4; octet++) {
+            int octetEnd = octetStart;
+            while (octetEnd < end && text.charAt(octetEnd) != '.') {
+                octetEnd++;
+            }
+            // the first three octets end at a dot, the last one at the end
+            if (octet < 3 ? octetEnd == end : octetEnd != end) {
+                throw invalid(text);
+            }
+            address = address << 8 | parseDecimal(text, octetStart, octetEnd, 255);
+            octetStart = octetEnd + 1;
+        }
+        return address;
+    }
+
+    private static int parsePrefixLength(final String text, final int slash, final int bits) {
+
+        return parseDecimal(text, slash + 1, text.length(), bits);
+    }
+
+    /**
+     * Parse a decimal number without leading zeros.
+     *
+     * @param text Text holding the number.
+     * @param start Index of the first digit.
+     * @param end Index past the last digit.
+     * @param max Largest allowed value.
+     * @return The number.
+     */
+    private static int parseDecimal(final String text, final int start, final int end, final int max) {
+
+        if (end == start || end - start > 3 || (text.charAt(start) == '0' && end - start > 1)) {
+            throw invalid(text);
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalid(text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value > max) {
+            throw invalid(text);
+        }
+        return value;
+    }
+
+    private static int hexDigit(final char c) {
+
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static IllegalArgumentException invalid(final String text) {
+
+        return new IllegalArgumentException(String.format("Not a CIDR block: %s", text));
+    }
+}
@@ -0,0 +1,169 @@
+package software.amazon.fms.policy.helpers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Time an invocation has left to make FMS calls.
+ *
+ * Handlers check the budget between FMS operations. When the time left, less a reserve for building the response,
+ * does not cover the expected duration of the next operation, the handler stops and returns its progress so
+ * CloudFormation invokes it again, instead of being cut off by the Lambda timeout halfway through a call. Durations of
+ * the operations run under the budget feed the cost model the expectations come from.
+ */
+public class ExecutionBudget {
+
+    /** Environment variable holding the number of seconds an invocation may spend. */
+    public static final String ENVIRONMENT_VARIABLE = "FMS_HANDLER_TIME_BUDGET_SECONDS";
+
+    /** Milliseconds an invocation may spend when the environment does not say otherwise. */
+    static final long DEFAULT_BUDGET_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    /** Milliseconds kept back to build and return the response. */
+    static final long RESERVE_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final long budgetMillis;
+    private final long reserveMillis;
+    private final OperationCostModel costModel;
+    private final LongSupplier clock;
+    private final long startMillis;
+
+    /**
+     * Create a budget starting now.
+     *
+     * @param budgetMillis  Milliseconds the invocation may spend.
+     * @param reserveMillis Milliseconds kept back to build and return the response.
+     * @param costModel     Expected duration of each operation, updated with the operations run under the budget.
+     * @param clock         Clock returning the current time in milliseconds.
+     */
+    public ExecutionBudget(
+            final long budgetMillis,
+            final long reserveMillis,
+            final OperationCostModel costModel,
+            final LongSupplier clock) {
+
+        this.budgetMillis = budgetMillis;
+        this.reserveMillis = reserveMillis;
+        this.costModel = costModel;
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+    }
+
+    /**
+     * Create a budget starting now, sized by the environment.
+     *
+     * @param costModel Expected duration of each operation, shared by the invocations of the handler instance.
+     * @return The budget, of the default size if the variable is unset or not a number.
+     */
+    public static ExecutionBudget fromEnvironment(final OperationCostModel costModel) {
+
+        long budgetMillis = DEFAULT_BUDGET_MILLIS;
+        final String value = System.getenv(ENVIRONMENT_VARIABLE);
+        if (value != null) {
+            try {
+                budgetMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                budgetMillis = DEFAULT_BUDGET_MILLIS;
+            }
+        }
+        return new ExecutionBudget(budgetMillis, RESERVE_MILLIS, costModel, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a budget that never runs out, for callers outside of a handler invocation.
+     *
+     * @return The budget.
+     */
+    public static ExecutionBudget unlimited() {
+
+        return new ExecutionBudget(Long.MAX_VALUE, 0, new OperationCostModel(), System::currentTimeMillis);
+    }
+
+    /**
+     * Get the time the invocation has left.
+     *
+     * @return Milliseconds left, negative once the budget is overspent.
+     */
+    public long remainingMillis() {
+
+        return budgetMillis - (clock.getAsLong() - startMillis);
+    }
+
+    /**
+     * Get the time at which the invocation has to stop making FMS calls, so work bounded by a deadline rather than
+     * split into operations can share the budget.
+     *
+     * @return Time in milliseconds on the system clock at which only the reserve is left.
+     */
+    public long deadlineMillis() {
+
+        final long now = System.currentTimeMillis();
+        final long availableMillis = remainingMillis() - reserveMillis;
+        return availableMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + availableMillis;
+    }
+
+    /**
+     * Determine whether the invocation has time to run an operation.
+     *
+     * @param operation Operation name.
+     * @return True if the time left, less the reserve, covers the expected duration of the operation.
+     */
+    public boolean canAfford(final String operation) {
+
+        return remainingMillis() - reserveMillis >= costModel.estimateMillis(operation);
+    }
+
+    /**
+     * Stop the handler before an operation the invocation has no time for.
+     *
+     * @param operation Operation name.
+     * @throws BudgetExhaustedException If the invocation has no time for the operation.
+     */
+    public void checkpoint(final String operation) {
+
+        if (!canAfford(operation)) {
+            throw exhausted(operation);
+        }
+    }
+
+    /**
+     * Build the exception stopping the handler before an operation.
+     *
+     * @param operation Operation name.
+     * @return The exception.
+     */
+    public BudgetExhaustedException exhausted(final String operation) {
+
+        return new BudgetExhaustedException(operation, remainingMillis(), costModel.estimateMillis(operation));
+    }
+
+    /**
+     * Run an operation, recording its duration in the cost model.
+     *
+     * @param operation Operation name.
+     * @param call      The operation.
+     * @param <T>       Type of the operation result.
+     * @return The operation result.
+     */
+    public <T> T track(final String operation, final Supplier<T> call) {
+
+        final long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            record(operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Record the duration of an operation run under the budget.
+     *
+     * @param operation Operation name.
+     * @param millis    Milliseconds the operation took.
+     */
+    public void record(final String operation, final long millis) {
+
+        costModel.record(operation, millis);
+    }
+}
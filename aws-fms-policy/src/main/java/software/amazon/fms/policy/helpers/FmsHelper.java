@@ -17,28 +17,51 @@ import software.amazon.fms.policy.IEMap;
 import software.amazon.fms.policy.ResourceModel;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 
 public class FmsHelper {
 
     /**
-     * Helper method to assign values in an include/exclude map.
+     * Map each element of a list into a list of exactly the right size.
+     *
+     * @param source List to map, may be null.
+     * @param mapper Conversion of each element.
+     * @param <S>    Type of the source elements.
+     * @param <T>    Type of the mapped elements.
+     * @return The mapped list, or null if the source list is null.
+     */
+    static <S, T> List<T> mapList(final List<S> source, final Function<? super S, ? extends T> mapper) {
+
+        if (source == null) {
+            return null;
+        }
+        final List<T> mapped = new ArrayList<>(source.size());
+        for (final S element : source) {
+            mapped.add(mapper.apply(element));
+        }
+        return mapped;
+    }
+
+    /**
+     * Helper method to assign values in an include/exclude map. The SDK builder copies the lists, so they are passed
+     * as they are rather than copied here first.
      *
      * @param cfnIEMap CFN IEMap to covert,
      * @return The converted include/exclude map.
      */
     static Map<CustomerPolicyScopeIdType, ? extends List<String>> convertCFNIEMapToFMSIEMap(final IEMap cfnIEMap) {
-        final HashMap<CustomerPolicyScopeIdType, List<String>> fmsIEMap = new HashMap<>();
+        final Map<CustomerPolicyScopeIdType, List<String>> fmsIEMap = new EnumMap<>(CustomerPolicyScopeIdType.class);
         if (cfnIEMap.getACCOUNT() != null) {
-            fmsIEMap.put(CustomerPolicyScopeIdType.ACCOUNT, new ArrayList<>(cfnIEMap.getACCOUNT()));
+            fmsIEMap.put(CustomerPolicyScopeIdType.ACCOUNT, cfnIEMap.getACCOUNT());
         }
         if (cfnIEMap.getORGUNIT() != null) {
-            fmsIEMap.put(CustomerPolicyScopeIdType.ORG_UNIT, new ArrayList<>(cfnIEMap.getORGUNIT()));
+            fmsIEMap.put(CustomerPolicyScopeIdType.ORG_UNIT, cfnIEMap.getORGUNIT());
         }
         return fmsIEMap;
     }
@@ -51,6 +74,20 @@ public class FmsHelper {
      */
     static PolicyOption convertCFNPolicyOptionToFMSPolicyOption(software.amazon.fms.policy.PolicyOption policyOption) {
 
+        return convertCFNPolicyOptionToFMSPolicyOption(policyOption, UnaryOperator.identity());
+    }
+
+    /**
+     * Helper method to convert the cfn input PolicyOption to FMS PolicyOption, rewriting the network ACL entries.
+     *
+     * @param policyOption CFN input PolicyOption,
+     * @param networkAclEntries Rewrites the network ACL entry set before it is converted.
+     * @return The converted PolicyOption.
+     */
+    static PolicyOption convertCFNPolicyOptionToFMSPolicyOption(
+            software.amazon.fms.policy.PolicyOption policyOption,
+            UnaryOperator<software.amazon.fms.policy.NetworkAclEntrySet> networkAclEntries) {
+
         final PolicyOption.Builder builder = PolicyOption.builder();
 
         if (policyOption.getNetworkFirewallPolicy() != null) {
@@ -67,20 +104,16 @@ public class FmsHelper {
         }
         if (policyOption.getNetworkAclCommonPolicy() != null) {
             final software.amazon.fms.policy.NetworkAclEntrySet entrySet =
-                    policyOption.getNetworkAclCommonPolicy().getNetworkAclEntrySet();
+                    networkAclEntries.apply(policyOption.getNetworkAclCommonPolicy().getNetworkAclEntrySet());
 
             builder.networkAclCommonPolicy(NetworkAclCommonPolicy.builder()
                     .networkAclEntrySet(NetworkAclEntrySet.builder()
-                            .firstEntries(
-                                    entrySet.getFirstEntries().stream()
-                                            .map(FmsHelper::convertCFNNetworkAclEntryToFMSNetworkAclEntry)
-                                            .collect(Collectors.toList())
-                            )
-                            .lastEntries(
-                                    entrySet.getLastEntries().stream()
-                                            .map(FmsHelper::convertCFNNetworkAclEntryToFMSNetworkAclEntry)
-                                            .collect(Collectors.toList())
-                            )
+                            .firstEntries(mapList(
+                                    entrySet.getFirstEntries(),
+                                    FmsHelper::convertCFNNetworkAclEntryToFMSNetworkAclEntry))
+                            .lastEntries(mapList(
+                                    entrySet.getLastEntries(),
+                                    FmsHelper::convertCFNNetworkAclEntryToFMSNetworkAclEntry))
                             .forceRemediateForFirstEntries(
                                     entrySet.getForceRemediateForFirstEntries()
                             )
@@ -122,9 +155,12 @@ public class FmsHelper {
      * Logic for converting a CFN resource model (from the resource provider) to an FMS policy (from the FMS SDK).
      *
      * @param resourceModel CFN resource model that was converted from.
+     * @param networkAclEntries Rewrites the network ACL entry set before it is converted.
      * @return FMS policy builder that was converted to.
      */
-    private static Policy.Builder convertCFNResourceModelToBuilder(ResourceModel resourceModel) {
+    private static Policy.Builder convertCFNResourceModelToBuilder(
+            ResourceModel resourceModel,
+            UnaryOperator<software.amazon.fms.policy.NetworkAclEntrySet> networkAclEntries) {
 
         // assemble the security service policy data
         final SecurityServicePolicyData.Builder securityServicePolicyData = SecurityServicePolicyData.builder()
@@ -137,7 +173,8 @@ public class FmsHelper {
 
         if (resourceModel.getSecurityServicePolicyData().getPolicyOption() != null) {
             securityServicePolicyData.policyOption(convertCFNPolicyOptionToFMSPolicyOption(
-                    resourceModel.getSecurityServicePolicyData().getPolicyOption()));
+                    resourceModel.getSecurityServicePolicyData().getPolicyOption(),
+                    networkAclEntries));
         }
 
         // assemble the policy with the required parameters
@@ -170,26 +207,20 @@ public class FmsHelper {
 
         // add resource tags if present
         if (resourceModel.getResourceTags() != null) {
-            final Collection<ResourceTag> resourceTags = new ArrayList<>();
-            resourceModel.getResourceTags().forEach(rt -> resourceTags.add(
-                    software.amazon.awssdk.services.fms.model.ResourceTag.builder()
-                            .key(rt.getKey())
-                            .value(rt.getValue())
-                            .build()
-            ));
-            policyBuilder.resourceTags(resourceTags);
+            policyBuilder.resourceTags(mapList(resourceModel.getResourceTags(), rt -> ResourceTag.builder()
+                    .key(rt.getKey())
+                    .value(rt.getValue())
+                    .build()));
         }
 
-        // add resource type list if present
+        // add resource type list if present, the builder keeps its own copy
         if (resourceModel.getResourceTypeList() != null) {
-            final Collection<String> resourceTypeList = new ArrayList<>(resourceModel.getResourceTypeList());
-            policyBuilder.resourceTypeList(resourceTypeList);
+            policyBuilder.resourceTypeList(resourceModel.getResourceTypeList());
         }
 
-        // add resource set list if present
+        // add resource set list if present, the builder keeps its own copy
         if (resourceModel.getResourceSetIds() != null) {
-            final Collection<String> resourceSetList = new ArrayList<>(resourceModel.getResourceSetIds());
-            policyBuilder.resourceSetIds(resourceSetList);
+            policyBuilder.resourceSetIds(resourceModel.getResourceSetIds());
         }
 
         if (resourceModel.getResourcesCleanUp() != null) {
@@ -208,7 +239,7 @@ public class FmsHelper {
      */
     public static Policy convertCFNResourceModelToFMSPolicy(ResourceModel resourceModel) {
 
-        return convertCFNResourceModelToBuilder(resourceModel).build();
+        return convertCFNResourceModelToBuilder(resourceModel, UnaryOperator.identity()).build();
     }
 
     /**
@@ -223,7 +254,28 @@ public class FmsHelper {
             ResourceModel resourceModel,
             String policyUpdateToken) {
 
-        return convertCFNResourceModelToBuilder(resourceModel).policyUpdateToken(policyUpdateToken).build();
+        return convertCFNResourceModelToBuilder(resourceModel, UnaryOperator.identity())
+                .policyUpdateToken(policyUpdateToken)
+                .build();
+    }
+
+    /**
+     * Convert a CFN resource model (from the resource provider) to an FMS policy (from the FMS SDK), inject a
+     * policyUpdateToken and rewrite the network ACL entries, such as to aggregate them.
+     *
+     * @param resourceModel     CFN resource model that was converted from.
+     * @param policyUpdateToken The Policy update token to inject into the FMS policy, null for a new policy.
+     * @param networkAclEntries Rewrites the network ACL entry set before it is converted.
+     * @return FMS policy that was converted to with the policyUpdateToken.
+     */
+    public static Policy convertCFNResourceModelToFMSPolicy(
+            ResourceModel resourceModel,
+            String policyUpdateToken,
+            UnaryOperator<software.amazon.fms.policy.NetworkAclEntrySet> networkAclEntries) {
+
+        return convertCFNResourceModelToBuilder(resourceModel, networkAclEntries)
+                .policyUpdateToken(policyUpdateToken)
+                .build();
     }
 
     /**
@@ -235,10 +287,11 @@ public class FmsHelper {
     public static List<Tag> convertCFNTagMapToFMSTagSet(Map<String, String> cfnTags) {
 
         // construct a new list of FMS tags
-        final List<Tag> tags = new ArrayList<>();
-        if (cfnTags != null) {
-            cfnTags.forEach((k, v) -> tags.add(Tag.builder().key(k).value(v).build()));
+        if (cfnTags == null) {
+            return new ArrayList<>();
         }
+        final List<Tag> tags = new ArrayList<>(cfnTags.size());
+        cfnTags.forEach((k, v) -> tags.add(Tag.builder().key(k).value(v).build()));
         return tags;
     }
 
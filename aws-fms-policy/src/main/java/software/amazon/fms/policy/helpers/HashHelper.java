@@ -0,0 +1,73 @@
+package software.amazon.fms.policy.helpers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashHelper {
+
+    /** Mapper producing the same JSON for equal objects, regardless of property and map entry order. */
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Serialize an object to canonical JSON, with properties and map entries sorted by name.
+     *
+     * @param value Object to serialize, such as a resource model.
+     * @return Canonical JSON document.
+     */
+    public static String canonicalJson(final Object value) {
+
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compute the SHA-256 hash of an object's canonical JSON.
+     *
+     * @param value Object to hash, such as a resource model.
+     * @return Lowercase hex encoded hash.
+     */
+    public static String contentHash(final Object value) {
+
+        return sha256(canonicalJson(value));
+    }
+
+    /**
+     * Compute the SHA-256 hash of a string.
+     *
+     * @param value String to hash.
+     * @return Lowercase hex encoded hash.
+     */
+    public static String sha256(final String value) {
+
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,451 @@
+package software.amazon.fms.policy.helpers;
+
+import software.amazon.fms.policy.IcmpTypeCode;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.PortRange;
+import software.amazon.fms.policy.ResourceModel;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds network ACL entries of a policy that can never take effect, before the policy is sent to FMS.
+ *
+ * FMS evaluates the first entries in order, then the entries of each VPC, then the last entries in order, and the
+ * first entry of a direction matching a packet decides it. An entry is shadowed when a single earlier entry matches
+ * every packet it matches with the opposite action, and redundant when that earlier entry has the same action. An
+ * entry partly matched by an earlier entry with the opposite action is reported as a conflict. That is often intended,
+ * such as a deny carved out of a broader allow, so conflicts are warnings.
+ *
+ * CIDR blocks are either nested or disjoint. The entries of each direction and address family are sorted by block
+ * start, widest block first, and swept with a stack of the blocks still open. When an entry is reached, the stack holds
+ * exactly the entries whose blocks contain it, so every overlapping pair is compared once. The stack holds at most one
+ * block per prefix length plus entries repeating a block, which keeps the analysis at O(n log n) for the sort.
+ * Coverage by the union of several earlier entries is not detected.
+ */
+public final class NetworkAclAnalyzer {
+
+    static final int ALL = -1;
+    static final int ICMP = 1;
+    static final int TCP = 6;
+    static final int UDP = 17;
+    static final int ICMPV6 = 58;
+    private static final int MAX_PORT = 65535;
+
+    /** Entries sorted by block start, widest block first, then in evaluation order. */
+    private static final Comparator<Rule> SWEEP_ORDER = Comparator
+            .comparing((Rule rule) -> rule.low)
+            .thenComparing(rule -> rule.high, Comparator.reverseOrder())
+            .thenComparingInt(rule -> rule.order);
+
+    private NetworkAclAnalyzer() {
+    }
+
+    /**
+     * Kind of problem found with an entry.
+     */
+    public enum Kind {
+
+        /** An earlier entry matches every packet the entry matches with the opposite action. */
+        SHADOWED(true),
+
+        /** An earlier entry matches every packet the entry matches with the same action. */
+        REDUNDANT(true),
+
+        /** An earlier entry matches some packets the entry matches with the opposite action. */
+        CONFLICT(false);
+
+        private final boolean error;
+
+        Kind(final boolean error) {
+
+            this.error = error;
+        }
+
+        /**
+         * Determine whether the policy should be rejected for this kind of problem.
+         *
+         * @return True for entries that can never take effect.
+         */
+        public boolean isError() {
+
+            return error;
+        }
+    }
+
+    /**
+     * A problem found with an entry, pointing at the earlier entry that causes it.
+     */
+    public static final class Finding {
+
+        private final Kind kind;
+        private final Rule entry;
+        private final Rule earlierEntry;
+
+        Finding(final Kind kind, final Rule entry, final Rule earlierEntry) {
+
+            this.kind = kind;
+            this.entry = entry;
+            this.earlierEntry = earlierEntry;
+        }
+
+        public Kind getKind() {
+
+            return kind;
+        }
+
+        /**
+         * Get the location of the entry in the entry set.
+         *
+         * @return The location, such as LastEntries[2].
+         */
+        public String getEntry() {
+
+            return entry.location;
+        }
+
+        /**
+         * Get the location of the earlier entry causing the problem.
+         *
+         * @return The location, such as FirstEntries[0].
+         */
+        public String getEarlierEntry() {
+
+            return earlierEntry.location;
+        }
+
+        @Override
+        public String toString() {
+
+            final String problem;
+            switch (kind) {
+                case SHADOWED:
+                    problem = "is shadowed by";
+                    break;
+                case REDUNDANT:
+                    problem = "is redundant with";
+                    break;
+                default:
+                    problem = "conflicts with";
+                    break;
+            }
+            return String.format("%s %s %s %s", entry, problem, earlierEntry, kind.isError()
+                    ? "and never takes effect"
+                    : "for part of its traffic");
+        }
+    }
+
+    /**
+     * Analyze the network ACL entries of a policy.
+     *
+     * @param resourceModel Resource model of the policy.
+     * @return The problems found, in the evaluation order of the entries, empty without network ACL entries.
+     */
+    public static List<Finding> analyze(final ResourceModel resourceModel) {
+
+        if (resourceModel.getSecurityServicePolicyData() == null
+                || resourceModel.getSecurityServicePolicyData().getPolicyOption() == null
+                || resourceModel.getSecurityServicePolicyData().getPolicyOption().getNetworkAclCommonPolicy() == null) {
+            return Collections.emptyList();
+        }
+        return analyze(resourceModel.getSecurityServicePolicyData().getPolicyOption().getNetworkAclCommonPolicy()
+                .getNetworkAclEntrySet());
+    }
+
+    /**
+     * Analyze a network ACL entry set.
+     *
+     * @param entrySet Entry set to analyze.
+     * @return The problems found, in the evaluation order of the entries.
+     */
+    public static List<Finding> analyze(final NetworkAclEntrySet entrySet) {
+
+        if (entrySet == null) {
+            return Collections.emptyList();
+        }
+        final List<Rule> rules = new ArrayList<>();
+        addRules(rules, "FirstEntries", entrySet.getFirstEntries());
+        addRules(rules, "LastEntries", entrySet.getLastEntries());
+        return analyzeRules(rules);
+    }
+
+    private static void addRules(final List<Rule> rules, final String listName, final List<NetworkAclEntry> entries) {
+
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            final Rule rule = Rule.of(String.format("%s[%d]", listName, i), rules.size(), entries.get(i));
+            // entries the analyzer cannot parse are left for FMS to validate
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+    }
+
+    /**
+     * Analyze parsed entries.
+     *
+     * @param rules Entries in evaluation order.
+     * @return The problems found, in the evaluation order of the entries.
+     */
+    static List<Finding> analyzeRules(final List<Rule> rules) {
+
+        // entries of different directions or address families never match the same packet
+        final Map<String, List<Rule>> groups = new HashMap<>();
+        for (final Rule rule : rules) {
+            groups.computeIfAbsent((rule.egress ? "egress/" : "ingress/") + rule.family, key -> new ArrayList<>())
+                    .add(rule);
+        }
+
+        final Finding[] findings = new Finding[rules.size()];
+        for (final List<Rule> group : groups.values()) {
+            group.sort(SWEEP_ORDER);
+            final Deque<Rule> open = new ArrayDeque<>();
+            for (final Rule rule : group) {
+                while (!open.isEmpty() && open.peek().high.compareTo(rule.low) < 0) {
+                    open.pop();
+                }
+                for (final Rule outer : open) {
+                    compare(outer, rule, findings);
+                }
+                open.push(rule);
+            }
+        }
+
+        final List<Finding> result = new ArrayList<>();
+        for (final Finding finding : findings) {
+            if (finding != null) {
+                result.add(finding);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare two entries whose blocks overlap, recording the problem of the later one.
+     *
+     * @param outer Entry whose block contains the block of the other.
+     * @param inner Entry whose block is contained.
+     * @param findings Problem of each entry by evaluation order, keeping the one caused by the earliest entry.
+     */
+    private static void compare(final Rule outer, final Rule inner, final Finding[] findings) {
+
+        final Rule earlier = outer.order < inner.order ? outer : inner;
+        final Rule later = earlier == outer ? inner : outer;
+        final boolean covered = earlier.low.compareTo(later.low) <= 0
+                && earlier.high.compareTo(later.high) >= 0
+                && earlier.matchesAllOf(later);
+
+        final Kind kind;
+        if (covered) {
+            kind = earlier.allow == later.allow ? Kind.REDUNDANT : Kind.SHADOWED;
+        } else if (earlier.allow != later.allow && earlier.matchesSomeOf(later)) {
+            kind = Kind.CONFLICT;
+        } else {
+            return;
+        }
+
+        // an entry that never takes effect outranks a conflict, then the earliest cause wins
+        final Finding current = findings[later.order];
+        if (current == null
+                || (kind.isError() && !current.kind.isError())
+                || (kind.isError() == current.kind.isError() && earlier.order < current.earlierEntry.order)) {
+            findings[later.order] = new Finding(kind, later, earlier);
+        }
+    }
+
+    /**
+     * A network ACL entry reduced to the packets it matches.
+     */
+    static final class Rule {
+
+        final String location;
+        final int order;
+        final boolean egress;
+        final boolean allow;
+        final int family;
+        final String cidrBlock;
+        final BigInteger low;
+        final BigInteger high;
+        final int protocol;
+        final int fromPort;
+        final int toPort;
+        final int icmpType;
+        final int icmpCode;
+
+        Rule(
+                final String location,
+                final int order,
+                final boolean egress,
+                final boolean allow,
+                final String cidrBlock,
+                final int protocol,
+                final int fromPort,
+                final int toPort,
+                final int icmpType,
+                final int icmpCode) {
+
+            final CidrBlock block = CidrBlock.parse(cidrBlock);
+
+            this.location = location;
+            this.order = order;
+            this.egress = egress;
+            this.allow = allow;
+            this.family = block.getBits() == 32 ? 4 : 6;
+            this.cidrBlock = cidrBlock;
+            this.low = block.getNetwork();
+            this.high = block.getLastAddress();
+            this.protocol = protocol;
+            this.fromPort = fromPort;
+            this.toPort = toPort;
+            this.icmpType = icmpType;
+            this.icmpCode = icmpCode;
+        }
+
+        /**
+         * Reduce an entry of the resource model.
+         *
+         * @param location Location of the entry in the entry set.
+         * @param order Position of the entry in evaluation order.
+         * @param entry Entry to reduce.
+         * @return The reduced entry, null if it is malformed.
+         */
+        static Rule of(final String location, final int order, final NetworkAclEntry entry) {
+
+            final String cidrBlock = entry.getCidrBlock() != null ? entry.getCidrBlock() : entry.getIpv6CidrBlock();
+            final Integer protocol = entry.getProtocol() == null ? null : parseProtocol(entry.getProtocol());
+            if (cidrBlock == null || protocol == null || entry.getRuleAction() == null) {
+                return null;
+            }
+            final PortRange portRange = entry.getPortRange();
+            final IcmpTypeCode icmpTypeCode = entry.getIcmpTypeCode();
+            try {
+                return new Rule(
+                        location,
+                        order,
+                        Boolean.TRUE.equals(entry.getEgress()),
+                        "allow".equalsIgnoreCase(entry.getRuleAction()),
+                        cidrBlock,
+                        protocol,
+                        portRange == null || portRange.getFrom() == null ? 0 : portRange.getFrom(),
+                        portRange == null || portRange.getTo() == null ? MAX_PORT : portRange.getTo(),
+                        icmpTypeCode == null || icmpTypeCode.getType() == null ? ALL : icmpTypeCode.getType(),
+                        icmpTypeCode == null || icmpTypeCode.getCode() == null ? ALL : icmpTypeCode.getCode());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Determine whether this entry matches every packet of the other entry's protocol, ports and ICMP type.
+         *
+         * @param other Entry to compare with.
+         * @return True if this entry's match covers the other's.
+         */
+        boolean matchesAllOf(final Rule other) {
+
+            if (protocol == ALL) {
+                return true;
+            }
+            if (protocol != other.protocol) {
+                return false;
+            }
+            if (hasPorts()) {
+                return fromPort <= other.fromPort && other.toPort <= toPort;
+            }
+            if (hasIcmpTypeCode()) {
+                return icmpType < 0
+                        || icmpType == other.icmpType && (icmpCode < 0 || icmpCode == other.icmpCode);
+            }
+            return true;
+        }
+
+        /**
+         * Determine whether this entry matches some packets of the other entry's protocol, ports and ICMP type.
+         *
+         * @param other Entry to compare with.
+         * @return True if the matches intersect.
+         */
+        boolean matchesSomeOf(final Rule other) {
+
+            if (protocol == ALL || other.protocol == ALL) {
+                return true;
+            }
+            if (protocol != other.protocol) {
+                return false;
+            }
+            if (hasPorts()) {
+                return fromPort <= other.toPort && other.fromPort <= toPort;
+            }
+            if (hasIcmpTypeCode()) {
+                return icmpType < 0 || other.icmpType < 0 || icmpType == other.icmpType
+                        && (icmpCode < 0 || other.icmpCode < 0 || icmpCode == other.icmpCode);
+            }
+            return true;
+        }
+
+        private boolean hasPorts() {
+
+            return protocol == TCP || protocol == UDP;
+        }
+
+        private boolean hasIcmpTypeCode() {
+
+            return protocol == ICMP || protocol == ICMPV6;
+        }
+
+        @Override
+        public String toString() {
+
+            final StringBuilder description = new StringBuilder(location)
+                    .append(" (")
+                    .append(egress ? "egress " : "ingress ")
+                    .append(allow ? "allow " : "deny ")
+                    .append(cidrBlock)
+                    .append(" protocol ")
+                    .append(protocol);
+            if (hasPorts()) {
+                description.append(" ports ").append(fromPort).append('-').append(toPort);
+            } else if (hasIcmpTypeCode() && icmpType >= 0) {
+                description.append(" type ").append(icmpType);
+                if (icmpCode >= 0) {
+                    description.append(" code ").append(icmpCode);
+                }
+            }
+            return description.append(')').toString();
+        }
+
+        private static Integer parseProtocol(final String protocol) {
+
+            switch (protocol.trim().toLowerCase(Locale.ROOT)) {
+                case "all":
+                    return ALL;
+                case "icmp":
+                    return ICMP;
+                case "tcp":
+                    return TCP;
+                case "udp":
+                    return UDP;
+                case "icmpv6":
+                    return ICMPV6;
+                default:
+                    try {
+                        final int number = Integer.parseInt(protocol.trim());
+                        return number == ALL || number >= 0 && number <= 255 ? number : null;
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+            }
+        }
+    }
+}
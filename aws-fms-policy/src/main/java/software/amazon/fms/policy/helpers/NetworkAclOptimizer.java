@@ -0,0 +1,335 @@
+package software.amazon.fms.policy.helpers;
+
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregates the network ACL entries of a policy into fewer entries matching exactly the same packets.
+ *
+ * Entries with the same direction, action, protocol, port range and ICMP type whose CIDR blocks are adjacent or
+ * overlapping are merged into the minimal set of prefixes covering their union. A later entry only moves up to the
+ * entry it merges with if no entry in between matches some of its packets with the opposite action, so the first
+ * matching entry of every packet keeps its action. First and last entries are aggregated separately, since the entries
+ * of each VPC are evaluated between them. Entries that cannot be parsed are kept as they are and never moved across.
+ *
+ * Aggregation is opt-in, since FMS then holds entries that differ from the template.
+ */
+public class NetworkAclOptimizer {
+
+    private final boolean enabled;
+
+    /**
+     * Create an optimizer.
+     *
+     * @param enabled Whether entries are aggregated, a disabled optimizer returns every entry set unchanged.
+     */
+    public NetworkAclOptimizer(final boolean enabled) {
+
+        this.enabled = enabled;
+    }
+
+    /**
+     * Create an optimizer enabled by an environment variable.
+     *
+     * @param environmentVariable Name of the environment variable.
+     * @return The optimizer, which is enabled only if the variable is true.
+     */
+    public static NetworkAclOptimizer fromEnvironment(final String environmentVariable) {
+
+        final String value = System.getenv(environmentVariable);
+        return new NetworkAclOptimizer(value != null && Boolean.parseBoolean(value.trim()));
+    }
+
+    /**
+     * Determine whether entries are aggregated.
+     *
+     * @return True if the optimizer is enabled.
+     */
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Aggregate an entry set.
+     *
+     * @param entrySet Entry set to aggregate.
+     * @return The aggregated entry set and the number of entries saved.
+     */
+    public Result optimize(final NetworkAclEntrySet entrySet) {
+
+        if (!enabled || entrySet == null) {
+            return new Result(entrySet, 0);
+        }
+        final List<NetworkAclEntry> firstEntries = aggregate(entrySet.getFirstEntries());
+        final List<NetworkAclEntry> lastEntries = aggregate(entrySet.getLastEntries());
+        final int savedEntries = size(entrySet.getFirstEntries()) - size(firstEntries)
+                + size(entrySet.getLastEntries()) - size(lastEntries);
+        if (savedEntries == 0) {
+            return new Result(entrySet, 0);
+        }
+        return new Result(NetworkAclEntrySet.builder()
+                .firstEntries(firstEntries)
+                .lastEntries(lastEntries)
+                .forceRemediateForFirstEntries(entrySet.getForceRemediateForFirstEntries())
+                .forceRemediateForLastEntries(entrySet.getForceRemediateForLastEntries())
+                .build(), savedEntries);
+    }
+
+    /**
+     * Aggregate a list of entries evaluated in order.
+     *
+     * @param entries Entries to aggregate.
+     * @return The aggregated entries, in evaluation order.
+     */
+    static List<NetworkAclEntry> aggregate(final List<NetworkAclEntry> entries) {
+
+        if (entries == null || entries.size() < 2) {
+            return entries;
+        }
+        final List<Group> groups = new ArrayList<>(entries.size());
+        for (final NetworkAclEntry entry : entries) {
+            final NetworkAclAnalyzer.Rule rule = NetworkAclAnalyzer.Rule.of("", 0, entry);
+            if (rule == null || !merge(groups, rule)) {
+                groups.add(new Group(rule, entry));
+            }
+        }
+        if (groups.size() == entries.size()) {
+            return entries;
+        }
+        final List<NetworkAclEntry> aggregated = new ArrayList<>();
+        for (final Group group : groups) {
+            group.addEntries(aggregated);
+        }
+        return aggregated;
+    }
+
+    /**
+     * Merge an entry into the nearest earlier group it can move up to, if that saves an entry.
+     *
+     * @param groups Groups of the entries before it, in evaluation order.
+     * @param rule The entry reduced to the packets it matches.
+     * @return True if the entry was merged.
+     */
+    private static boolean merge(final List<Group> groups, final NetworkAclAnalyzer.Rule rule) {
+
+        for (int i = groups.size() - 1; i >= 0; i--) {
+            final Group group = groups.get(i);
+            if (group.rule == null) {
+                // an entry that cannot be parsed might match any packet
+                return false;
+            }
+            if (sameMatch(group.rule, rule)) {
+                final List<BigInteger[]> ranges = union(group.ranges, rule.low, rule.high);
+                final int prefixes = prefixCount(ranges, bits(rule));
+                if (prefixes < group.prefixCount + 1) {
+                    group.add(ranges, prefixes);
+                    return true;
+                }
+            } else if (group.rule.allow != rule.allow && group.overlaps(rule)) {
+                // moving the entry above this group would change the action of the packets both match
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether two entries can share their CIDR blocks.
+     *
+     * @param a An entry.
+     * @param b Another entry.
+     * @return True if both match the same packets apart from their addresses and have the same action.
+     */
+    private static boolean sameMatch(final NetworkAclAnalyzer.Rule a, final NetworkAclAnalyzer.Rule b) {
+
+        return a.egress == b.egress
+                && a.allow == b.allow
+                && a.family == b.family
+                && a.matchesAllOf(b)
+                && b.matchesAllOf(a);
+    }
+
+    private static int bits(final NetworkAclAnalyzer.Rule rule) {
+
+        return rule.family == 4 ? 32 : 128;
+    }
+
+    private static int size(final List<NetworkAclEntry> entries) {
+
+        return entries == null ? 0 : entries.size();
+    }
+
+    /**
+     * Add an address range to a sorted list of disjoint, non-adjacent ranges.
+     *
+     * @param ranges Sorted ranges, each a low and high address.
+     * @param low Low address of the range to add.
+     * @param high High address of the range to add.
+     * @return New sorted list of ranges, with the range merged into those it overlaps or touches.
+     */
+    private static List<BigInteger[]> union(
+            final List<BigInteger[]> ranges,
+            final BigInteger low,
+            final BigInteger high) {
+
+        final List<BigInteger[]> merged = new ArrayList<>(ranges.size() + 1);
+        BigInteger mergedLow = low;
+        BigInteger mergedHigh = high;
+        boolean added = false;
+        for (final BigInteger[] range : ranges) {
+            if (range[1].add(BigInteger.ONE).compareTo(mergedLow) < 0) {
+                merged.add(range);
+            } else if (mergedHigh.add(BigInteger.ONE).compareTo(range[0]) < 0) {
+                if (!added) {
+                    merged.add(new BigInteger[] {mergedLow, mergedHigh});
+                    added = true;
+                }
+                merged.add(range);
+            } else {
+                mergedLow = mergedLow.min(range[0]);
+                mergedHigh = mergedHigh.max(range[1]);
+            }
+        }
+        if (!added) {
+            merged.add(new BigInteger[] {mergedLow, mergedHigh});
+        }
+        return merged;
+    }
+
+    /**
+     * Split address ranges into the fewest CIDR blocks covering exactly the same addresses.
+     *
+     * @param ranges Sorted ranges, each a low and high address.
+     * @param bits Number of bits of the addresses.
+     * @return The blocks in address order.
+     */
+    private static List<CidrBlock> prefixes(final List<BigInteger[]> ranges, final int bits) {
+
+        final List<CidrBlock> prefixes = new ArrayList<>();
+        for (final BigInteger[] range : ranges) {
+            BigInteger low = range[0];
+            while (low.compareTo(range[1]) <= 0) {
+                // the largest block starting at low is limited by its alignment and by the end of the range
+                int hostBits = low.signum() == 0 ? bits : low.getLowestSetBit();
+                final BigInteger remaining = range[1].subtract(low).add(BigInteger.ONE);
+                while (BigInteger.ONE.shiftLeft(hostBits).compareTo(remaining) > 0) {
+                    hostBits--;
+                }
+                prefixes.add(new CidrBlock(bits, low, bits - hostBits));
+                low = low.add(BigInteger.ONE.shiftLeft(hostBits));
+            }
+        }
+        return prefixes;
+    }
+
+    private static int prefixCount(final List<BigInteger[]> ranges, final int bits) {
+
+        return prefixes(ranges, bits).size();
+    }
+
+    /**
+     * Entries merged into one position of the aggregated list.
+     */
+    private static final class Group {
+
+        /** The first entry reduced to the packets it matches, null if it cannot be parsed. */
+        private final NetworkAclAnalyzer.Rule rule;
+        private final NetworkAclEntry first;
+        private List<BigInteger[]> ranges;
+        private int prefixCount;
+        private int members;
+
+        private Group(final NetworkAclAnalyzer.Rule rule, final NetworkAclEntry first) {
+
+            this.rule = rule;
+            this.first = first;
+            this.ranges = rule == null
+                    ? Collections.emptyList()
+                    : Collections.singletonList(new BigInteger[] {rule.low, rule.high});
+            this.prefixCount = 1;
+            this.members = 1;
+        }
+
+        private void add(final List<BigInteger[]> ranges, final int prefixCount) {
+
+            this.ranges = ranges;
+            this.prefixCount = prefixCount;
+            members++;
+        }
+
+        private boolean overlaps(final NetworkAclAnalyzer.Rule other) {
+
+            if (rule.egress != other.egress || rule.family != other.family || !rule.matchesSomeOf(other)) {
+                return false;
+            }
+            for (final BigInteger[] range : ranges) {
+                if (range[0].compareTo(other.high) <= 0 && other.low.compareTo(range[1]) <= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addEntries(final List<NetworkAclEntry> entries) {
+
+            if (members == 1) {
+                // an entry that was not merged is kept exactly as written
+                entries.add(first);
+                return;
+            }
+            for (final CidrBlock prefix : prefixes(ranges, bits(rule))) {
+                final String cidrBlock = prefix.toString();
+                entries.add(NetworkAclEntry.builder()
+                        .protocol(first.getProtocol())
+                        .ruleAction(first.getRuleAction())
+                        .egress(first.getEgress())
+                        .portRange(first.getPortRange())
+                        .icmpTypeCode(first.getIcmpTypeCode())
+                        .cidrBlock(rule.family == 4 ? cidrBlock : null)
+                        .ipv6CidrBlock(rule.family == 4 ? null : cidrBlock)
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * An aggregated entry set.
+     */
+    public static final class Result {
+
+        private final NetworkAclEntrySet entrySet;
+        private final int savedEntries;
+
+        Result(final NetworkAclEntrySet entrySet, final int savedEntries) {
+
+            this.entrySet = entrySet;
+            this.savedEntries = savedEntries;
+        }
+
+        /**
+         * Get the aggregated entry set.
+         *
+         * @return The entry set, the same object as the input if no entry was saved.
+         */
+        public NetworkAclEntrySet getEntrySet() {
+
+            return entrySet;
+        }
+
+        /**
+         * Get the number of entries the aggregation saved.
+         *
+         * @return Entries in the input minus entries in the aggregated set.
+         */
+        public int getSavedEntries() {
+
+            return savedEntries;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package software.amazon.fms.policy.helpers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import software.amazon.fms.policy.ResourceModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares resource models by what FMS would do with them rather than by how they are written.
+ *
+ * Both models are normalized before they are compared:
+ * - read-only and write-only properties are dropped, since a desired model does not set the former and FMS does not
+ *   return the latter,
+ * - null properties, empty lists and empty maps are dropped, as are properties set to the value FMS assumes when they
+ *   are left out,
+ * - lists FMS treats as sets are sorted, tags by key,
+ * - the managed service data is parsed, so key order and whitespace in the JSON string do not matter.
+ *
+ * The comparison plans reconciliations and hashes policies for drift detection. The update handler does not use it:
+ * CloudFormation only invokes an update for a changed model, and the handler always sends the desired policy.
+ */
+public class PolicyComparator {
+
+    /** Properties the comparison ignores: the read-only Id and Arn, and the write-only DeleteAllPolicyResources. */
+    static final Set<String> IGNORED_PROPERTIES =
+            Collections.unmodifiableSet(new TreeSet<>(Arrays.asList("Arn", "DeleteAllPolicyResources", "Id")));
+
+    /** Paths of the lists FMS treats as sets. */
+    static final Set<String> SET_PATHS = Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(
+            "/ExcludeMap/ACCOUNT",
+            "/ExcludeMap/ORGUNIT",
+            "/IncludeMap/ACCOUNT",
+            "/IncludeMap/ORGUNIT",
+            "/ResourceSetIds",
+            "/ResourceTags",
+            "/ResourceTypeList",
+            "/Tags")));
+
+    private static final String MANAGED_SERVICE_DATA_PATH = "/SecurityServicePolicyData/ManagedServiceData";
+
+    private static final String RESOURCES_CLEAN_UP = "ResourcesCleanUp";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Find where two resource models differ.
+     *
+     * @param desired Desired resource model.
+     * @param live Resource model of the live policy.
+     * @return JSON pointers of the differing properties in path order, empty if the models are equivalent.
+     */
+    public static List<String> differences(final ResourceModel desired, final ResourceModel live) {
+
+        final List<String> differences = new ArrayList<>();
+        compare("", normalize(desired), normalize(live), differences);
+        return differences;
+    }
+
+    /**
+     * Determine whether two resource models are equivalent.
+     *
+     * @param desired Desired resource model.
+     * @param live Resource model of the live policy.
+     * @return True if FMS would make no change to the live policy to apply the desired one.
+     */
+    public static boolean equivalent(final ResourceModel desired, final ResourceModel live) {
+
+        return normalize(desired).equals(normalize(live));
+    }
+
+    /**
+     * Compute a hash that is equal for equivalent resource models, to compare a model with one that is not kept.
+     *
+     * @param model Resource model.
+     * @return Lowercase hex encoded SHA-256 hash of the normalized model.
+     */
+    public static String contentHash(final ResourceModel model) {
+
+        // plain maps are sorted by the canonical mapper, JSON objects keep their field order
+        return HashHelper.contentHash(OBJECT_MAPPER.convertValue(normalize(model), Object.class));
+    }
+
+    /**
+     * Normalize a resource model for comparison.
+     *
+     * @param model Resource model.
+     * @return Normalized JSON form of the model.
+     */
+    static ObjectNode normalize(final ResourceModel model) {
+
+        final ObjectNode node = OBJECT_MAPPER.valueToTree(model);
+        node.remove(IGNORED_PROPERTIES);
+        if (!node.path(RESOURCES_CLEAN_UP).asBoolean(false)) {
+            node.remove(RESOURCES_CLEAN_UP);
+        }
+        final JsonNode managedServiceData = node.at(MANAGED_SERVICE_DATA_PATH);
+        if (managedServiceData.isTextual()) {
+            ((ObjectNode) node.get("SecurityServicePolicyData")).set("ManagedServiceData",
+                    parseManagedServiceData(managedServiceData.asText()));
+        }
+        normalize("", node);
+        return node;
+    }
+
+    /**
+     * Drop the empty values under a node and sort its set-like lists, in place.
+     *
+     * @param path JSON pointer of the node.
+     * @param node Node to normalize.
+     * @return True if the node is empty after normalization.
+     */
+    private static boolean normalize(final String path, final JsonNode node) {
+
+        if (node.isObject()) {
+            final Iterator<String> fieldNames = node.fieldNames();
+            final List<String> emptyFields = new ArrayList<>();
+            while (fieldNames.hasNext()) {
+                final String fieldName = fieldNames.next();
+                if (normalize(path + "/" + fieldName, node.get(fieldName))) {
+                    emptyFields.add(fieldName);
+                }
+            }
+            ((ObjectNode) node).remove(emptyFields);
+            return node.size() == 0;
+        }
+        if (node.isArray()) {
+            final ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                normalize(path + "/" + i, array.get(i));
+            }
+            if (SET_PATHS.contains(path)) {
+                final List<JsonNode> elements = new ArrayList<>();
+                array.elements().forEachRemaining(elements::add);
+                elements.sort(Comparator.comparing(PolicyComparator::sortKey));
+                array.removeAll();
+                array.addAll(elements);
+            }
+            return array.size() == 0;
+        }
+        return node.isNull();
+    }
+
+    /**
+     * Sort key of a set element, tags are sorted by key and then value.
+     *
+     * @param element List element.
+     * @return Sort key.
+     */
+    private static String sortKey(final JsonNode element) {
+
+        return element.has("Key")
+                ? element.path("Key").asText() + "\n" + element.path("Value").asText()
+                : element.toString();
+    }
+
+    /**
+     * Parse the managed service data, keeping unparseable data as a string so it is still compared.
+     *
+     * @param managedServiceData Managed service data JSON string.
+     * @return Parsed managed service data.
+     */
+    private static JsonNode parseManagedServiceData(final String managedServiceData) {
+
+        try {
+            return OBJECT_MAPPER.readTree(managedServiceData);
+        } catch (IOException e) {
+            return OBJECT_MAPPER.getNodeFactory().textNode(managedServiceData);
+        }
+    }
+
+    private static void compare(
+            final String path,
+            final JsonNode desired,
+            final JsonNode live,
+            final List<String> differences) {
+
+        if (desired.isObject() && live.isObject()) {
+            final Set<String> fieldNames = new TreeSet<>();
+            desired.fieldNames().forEachRemaining(fieldNames::add);
+            live.fieldNames().forEachRemaining(fieldNames::add);
+            for (final String fieldName : fieldNames) {
+                compare(path + "/" + fieldName, desired.path(fieldName), live.path(fieldName), differences);
+            }
+        } else if (!desired.equals(live)) {
+            differences.add(path);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package software.amazon.fms.policy.helpers;
+
+import software.amazon.awssdk.services.fms.model.SecurityServiceType;
+import software.amazon.fms.policy.IEMap;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.PolicyOption;
+import software.amazon.fms.policy.ResourceModel;
+import software.amazon.fms.policy.SecurityServicePolicyData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks a policy model for inputs FMS rejects, so a handler can fail before making any FMS call.
+ *
+ * Account IDs, organizational unit IDs and CIDR blocks are checked by hand-written parsers rather than the schema's
+ * regular expressions, which is much cheaper for policies scoped to many accounts or carrying many network ACL
+ * entries. The validator also checks what the schema cannot express: which policy option and managed service data
+ * each policy type needs, that port ranges are not reversed, and the number of accounts and organizational units in
+ * each scope. Everything it needs is built once, so a single instance can serve every request of the JVM.
+ */
+public class PolicyValidator {
+
+    /** Default maximum number of accounts in the include or exclude map of a policy. */
+    public static final int MAX_SCOPE_ACCOUNTS = 2500;
+
+    /** Default maximum number of organizational units in the include or exclude map of a policy. */
+    public static final int MAX_SCOPE_ORGANIZATIONAL_UNITS = 2500;
+
+    private static final String ORGANIZATIONAL_UNIT_PREFIX = "ou-";
+
+    /** Policy types defined by their managed service data, the others also accept a policy without it. */
+    private static final Set<SecurityServiceType> MANAGED_SERVICE_DATA_TYPES = Collections.unmodifiableSet(EnumSet.of(
+            SecurityServiceType.WAF,
+            SecurityServiceType.WAFV2,
+            SecurityServiceType.SECURITY_GROUPS_COMMON,
+            SecurityServiceType.SECURITY_GROUPS_CONTENT_AUDIT,
+            SecurityServiceType.SECURITY_GROUPS_USAGE_AUDIT,
+            SecurityServiceType.NETWORK_FIREWALL,
+            SecurityServiceType.THIRD_PARTY_FIREWALL,
+            SecurityServiceType.DNS_FIREWALL,
+            SecurityServiceType.IMPORT_NETWORK_FIREWALL));
+
+    /** Policy types that accept a network firewall policy option. */
+    private static final Set<SecurityServiceType> NETWORK_FIREWALL_TYPES = Collections.unmodifiableSet(EnumSet.of(
+            SecurityServiceType.NETWORK_FIREWALL,
+            SecurityServiceType.IMPORT_NETWORK_FIREWALL));
+
+    private final int maxScopeAccounts;
+    private final int maxScopeOrganizationalUnits;
+
+    /**
+     * Create a validator with the default scope limits.
+     */
+    public PolicyValidator() {
+
+        this(MAX_SCOPE_ACCOUNTS, MAX_SCOPE_ORGANIZATIONAL_UNITS);
+    }
+
+    /**
+     * Create a validator.
+     *
+     * @param maxScopeAccounts Maximum number of accounts in the include or exclude map.
+     * @param maxScopeOrganizationalUnits Maximum number of organizational units in the include or exclude map.
+     */
+    public PolicyValidator(final int maxScopeAccounts, final int maxScopeOrganizationalUnits) {
+
+        this.maxScopeAccounts = maxScopeAccounts;
+        this.maxScopeOrganizationalUnits = maxScopeOrganizationalUnits;
+    }
+
+    /**
+     * Validate a policy model.
+     *
+     * @param model Desired resource state of the policy.
+     * @return Every problem found, empty if the model is valid.
+     */
+    public List<String> validate(final ResourceModel model) {
+
+        final List<String> problems = new ArrayList<>();
+        if (model == null) {
+            problems.add("The policy is missing");
+            return problems;
+        }
+        validateSecurityServicePolicyData(model.getSecurityServicePolicyData(), problems);
+        validateScope("IncludeMap", model.getIncludeMap(), problems);
+        validateScope("ExcludeMap", model.getExcludeMap(), problems);
+        return problems;
+    }
+
+    private void validateSecurityServicePolicyData(
+            final SecurityServicePolicyData data,
+            final List<String> problems) {
+
+        if (data == null || data.getType() == null) {
+            problems.add("SecurityServicePolicyData.Type is missing");
+            return;
+        }
+        final SecurityServiceType type = SecurityServiceType.fromValue(data.getType());
+        if (type == null || type == SecurityServiceType.UNKNOWN_TO_SDK_VERSION) {
+            problems.add(String.format("SecurityServicePolicyData.Type %s is not a policy type", data.getType()));
+            return;
+        }
+        if (MANAGED_SERVICE_DATA_TYPES.contains(type) && isEmpty(data.getManagedServiceData())) {
+            problems.add(String.format("SecurityServicePolicyData.ManagedServiceData is required for %s policies",
+                    type));
+        }
+
+        final PolicyOption option = data.getPolicyOption();
+        if (type == SecurityServiceType.NETWORK_ACL_COMMON
+                && (option == null || option.getNetworkAclCommonPolicy() == null)) {
+            problems.add("SecurityServicePolicyData.PolicyOption.NetworkAclCommonPolicy is required for "
+                    + "NETWORK_ACL_COMMON policies");
+        }
+        if (option == null) {
+            return;
+        }
+        final int options = (option.getNetworkFirewallPolicy() == null ? 0 : 1)
+                + (option.getThirdPartyFirewallPolicy() == null ? 0 : 1)
+                + (option.getNetworkAclCommonPolicy() == null ? 0 : 1);
+        if (options != 1) {
+            problems.add("SecurityServicePolicyData.PolicyOption must set exactly one policy option");
+        }
+        if (option.getNetworkFirewallPolicy() != null && !NETWORK_FIREWALL_TYPES.contains(type)) {
+            problems.add(String.format("SecurityServicePolicyData.PolicyOption.NetworkFirewallPolicy is not "
+                    + "supported by %s policies", type));
+        }
+        if (option.getThirdPartyFirewallPolicy() != null && type != SecurityServiceType.THIRD_PARTY_FIREWALL) {
+            problems.add(String.format("SecurityServicePolicyData.PolicyOption.ThirdPartyFirewallPolicy is not "
+                    + "supported by %s policies", type));
+        }
+        if (option.getNetworkAclCommonPolicy() != null) {
+            if (type != SecurityServiceType.NETWORK_ACL_COMMON) {
+                problems.add(String.format("SecurityServicePolicyData.PolicyOption.NetworkAclCommonPolicy is not "
+                        + "supported by %s policies", type));
+            }
+            validateNetworkAclEntrySet(option.getNetworkAclCommonPolicy().getNetworkAclEntrySet(), problems);
+        }
+    }
+
+    private static void validateNetworkAclEntrySet(final NetworkAclEntrySet entrySet, final List<String> problems) {
+
+        if (entrySet == null) {
+            problems.add("NetworkAclCommonPolicy.NetworkAclEntrySet is missing");
+            return;
+        }
+        validateNetworkAclEntries("NetworkAclEntrySet.FirstEntries", entrySet.getFirstEntries(), problems);
+        validateNetworkAclEntries("NetworkAclEntrySet.LastEntries", entrySet.getLastEntries(), problems);
+    }
+
+    private static void validateNetworkAclEntries(
+            final String path,
+            final List<NetworkAclEntry> entries,
+            final List<String> problems) {
+
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            final NetworkAclEntry entry = entries.get(i);
+            final String entryPath = String.format("%s[%d]", path, i);
+            if (entry.getCidrBlock() == null && entry.getIpv6CidrBlock() == null) {
+                problems.add(String.format("%s must set CidrBlock or Ipv6CidrBlock", entryPath));
+            }
+            if (entry.getCidrBlock() != null) {
+                validateCidrBlock(entryPath + ".CidrBlock", entry.getCidrBlock(), false, problems);
+            }
+            if (entry.getIpv6CidrBlock() != null) {
+                validateCidrBlock(entryPath + ".Ipv6CidrBlock", entry.getIpv6CidrBlock(), true, problems);
+            }
+            if (entry.getPortRange() != null
+                    && entry.getPortRange().getFrom() != null
+                    && entry.getPortRange().getTo() != null
+                    && entry.getPortRange().getFrom() > entry.getPortRange().getTo()) {
+                problems.add(String.format("%s.PortRange.From %d is greater than To %d",
+                        entryPath, entry.getPortRange().getFrom(), entry.getPortRange().getTo()));
+            }
+        }
+    }
+
+    private static void validateCidrBlock(
+            final String path,
+            final String cidrBlock,
+            final boolean ipv6,
+            final List<String> problems) {
+
+        try {
+            if (ipv6) {
+                CidrBlock.parseIpv6(cidrBlock);
+            } else {
+                CidrBlock.parseIpv4(cidrBlock);
+            }
+        } catch (IllegalArgumentException e) {
+            problems.add(String.format("%s %s is not an %s CIDR block", path, cidrBlock, ipv6 ? "IPv6" : "IPv4"));
+        }
+    }
+
+    private void validateScope(final String path, final IEMap scope, final List<String> problems) {
+
+        if (scope == null) {
+            return;
+        }
+        final List<String> accounts = scope.getACCOUNT();
+        if (accounts != null) {
+            if (accounts.size() > maxScopeAccounts) {
+                problems.add(String.format("%s.ACCOUNT has %d accounts, more than the limit of %d",
+                        path, accounts.size(), maxScopeAccounts));
+            }
+            for (int i = 0; i < accounts.size(); i++) {
+                if (!isAccountId(accounts.get(i))) {
+                    problems.add(String.format("%s.ACCOUNT[%d] %s is not an account ID", path, i, accounts.get(i)));
+                }
+            }
+        }
+        final List<String> organizationalUnits = scope.getORGUNIT();
+        if (organizationalUnits != null) {
+            if (organizationalUnits.size() > maxScopeOrganizationalUnits) {
+                problems.add(String.format("%s.ORGUNIT has %d organizational units, more than the limit of %d",
+                        path, organizationalUnits.size(), maxScopeOrganizationalUnits));
+            }
+            for (int i = 0; i < organizationalUnits.size(); i++) {
+                if (!isOrganizationalUnitId(organizationalUnits.get(i))) {
+                    problems.add(String.format("%s.ORGUNIT[%d] %s is not an organizational unit ID",
+                            path, i, organizationalUnits.get(i)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Determine whether a value is an account ID, twelve decimal digits.
+     *
+     * @param value Value to check.
+     * @return True if the value is an account ID.
+     */
+    static boolean isAccountId(final String value) {
+
+        return AccountIdSet.parseAccountId(value) >= 0;
+    }
+
+    /**
+     * Determine whether a value is an organizational unit ID, ou- followed by 4 to 32 and then 8 to 32 lowercase
+     * letters or digits separated by a dash.
+     *
+     * @param value Value to check.
+     * @return True if the value is an organizational unit ID.
+     */
+    static boolean isOrganizationalUnitId(final String value) {
+
+        if (value == null || !value.startsWith(ORGANIZATIONAL_UNIT_PREFIX)) {
+            return false;
+        }
+        final int dash = value.indexOf('-', ORGANIZATIONAL_UNIT_PREFIX.length());
+        final int rootLength = dash - ORGANIZATIONAL_UNIT_PREFIX.length();
+        final int unitLength = value.length() - dash - 1;
+        return dash >= 0
+                && rootLength >= 4 && rootLength <= 32
+                && unitLength >= 8 && unitLength <= 32
+                && isLowercaseAlphanumeric(value, ORGANIZATIONAL_UNIT_PREFIX.length(), dash)
+                && isLowercaseAlphanumeric(value, dash + 1, value.length());
+    }
+
+    private static boolean isLowercaseAlphanumeric(final String value, final int start, final int end) {
+
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(final String value) {
+
+        return value == null || value.isEmpty();
+    }
+}
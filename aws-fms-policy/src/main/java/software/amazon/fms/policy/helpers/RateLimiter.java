@@ -0,0 +1,78 @@
+package software.amazon.fms.policy.helpers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket spacing FMS calls made by many threads to a steady rate.
+ *
+ * The bucket holds up to the burst size of permits and refills at the rate. A call takes a permit, waiting for the
+ * refill when the bucket is empty. Waiting calls reserve their permit before they sleep, so they are served in the
+ * order they asked and the rate holds however many threads share the limiter.
+ */
+public class RateLimiter {
+
+    private final double nanosPerPermit;
+    private final double burst;
+    private final LongSupplier nanoClock;
+
+    /** Permits available at the last refill, negative when waiting calls have reserved permits ahead. */
+    private double permits;
+    private long refilledAt;
+
+    /**
+     * Create a limiter that uses the system clock.
+     *
+     * @param permitsPerSecond Calls allowed per second.
+     * @param burst Calls allowed at once after the limiter has been idle, at least one.
+     */
+    public RateLimiter(final double permitsPerSecond, final int burst) {
+
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param permitsPerSecond Calls allowed per second.
+     * @param burst Calls allowed at once after the limiter has been idle, at least one.
+     * @param nanoClock Current time in nanoseconds.
+     */
+    RateLimiter(final double permitsPerSecond, final int burst, final LongSupplier nanoClock) {
+
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.nanoClock = nanoClock;
+        this.permits = this.burst;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Take a permit, waiting until one is available.
+     *
+     * @return Time in nanoseconds the call waited.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public long acquire() throws InterruptedException {
+
+        final long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Take a permit, possibly ahead of its refill.
+     *
+     * @return Time in nanoseconds until the permit is refilled, zero if it is available now.
+     */
+    synchronized long reserve() {
+
+        final long now = nanoClock.getAsLong();
+        permits = Math.min(burst, permits + (now - refilledAt) / nanosPerPermit);
+        refilledAt = now;
+        permits--;
+        return permits >= 0 ? 0 : (long) Math.ceil(-permits * nanosPerPermit);
+    }
+}
@@ -0,0 +1,110 @@
+package software.amazon.fms.policy.helpers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs FMS calls on a bounded pool of worker threads, retrying the calls FMS throttles.
+ *
+ * Every call, on a worker or on the calling thread, goes through the same {@link Retrier}, so a throttled account is
+ * not hit by the other workers while one of them backs off. Callers that make their calls on their own threads use a
+ * {@link Retrier} instead, which holds no threads.
+ */
+public class ThrottleAwareExecutor implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Retrier retrier;
+
+    /**
+     * Create an executor with the default retry policy.
+     *
+     * @param parallelism Maximum number of calls running at the same time.
+     */
+    public ThrottleAwareExecutor(final int parallelism) {
+
+        this(parallelism, new Retrier());
+    }
+
+    /**
+     * Create an executor.
+     *
+     * @param parallelism Maximum number of calls running at the same time.
+     * @param maxAttempts Number of attempts of a call, including the first one.
+     * @param baseDelayMillis Delay in milliseconds after the first throttled attempt.
+     * @param maxDelayMillis Longest delay in milliseconds between two attempts.
+     */
+    public ThrottleAwareExecutor(
+            final int parallelism,
+            final int maxAttempts,
+            final long baseDelayMillis,
+            final long maxDelayMillis) {
+
+        this(parallelism, new Retrier(maxAttempts, baseDelayMillis, maxDelayMillis));
+    }
+
+    /**
+     * Create an executor sharing a retrier, and so its backoff, with other callers.
+     *
+     * @param parallelism Maximum number of calls running at the same time.
+     * @param retrier Retries the throttled calls.
+     */
+    public ThrottleAwareExecutor(final int parallelism, final Retrier retrier) {
+
+        this.executor = ParallelHelper.newWorkerPool(parallelism);
+        this.retrier = retrier;
+    }
+
+    /**
+     * Run a call on a worker thread.
+     *
+     * @param call FMS call.
+     * @param <T> Type of the call result.
+     * @return Future of the call result.
+     */
+    public <T> Future<T> submit(final Supplier<T> call) {
+
+        return executor.submit(() -> retrier.call(call));
+    }
+
+    /**
+     * Run a call on the calling thread, retrying it while it is throttled.
+     *
+     * @param call FMS call.
+     * @param <T> Type of the call result.
+     * @return The call result.
+     */
+    public <T> T call(final Supplier<T> call) {
+
+        return retrier.call(call);
+    }
+
+    /**
+     * Get the number of call attempts made.
+     *
+     * @return Number of attempts, including retries.
+     */
+    public long getAttemptCount() {
+
+        return retrier.getAttemptCount();
+    }
+
+    /**
+     * Get the number of throttled attempts that were retried.
+     *
+     * @return Number of throttled attempts.
+     */
+    public long getThrottleCount() {
+
+        return retrier.getThrottleCount();
+    }
+
+    /**
+     * Stop the worker threads, interrupting the calls still running.
+     */
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,273 @@
+package software.amazon.fms.policy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.fms.model.ComplianceViolator;
+import software.amazon.awssdk.services.fms.model.EvaluationResult;
+import software.amazon.awssdk.services.fms.model.FmsException;
+import software.amazon.awssdk.services.fms.model.GetComplianceDetailRequest;
+import software.amazon.awssdk.services.fms.model.GetComplianceDetailResponse;
+import software.amazon.awssdk.services.fms.model.ListComplianceStatusRequest;
+import software.amazon.awssdk.services.fms.model.ListComplianceStatusResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.PolicyComplianceDetail;
+import software.amazon.awssdk.services.fms.model.PolicyComplianceStatus;
+import software.amazon.awssdk.services.fms.model.PolicyComplianceStatusType;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.fms.policy.helpers.AccountIdSet;
+import software.amazon.fms.policy.helpers.FakeFmsClient;
+import software.amazon.fms.policy.helpers.ThrottleAwareExecutor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ComplianceAggregatorTest {
+
+    private static final int PARALLELISM = 3;
+
+    private final FakeComplianceClient client = new FakeComplianceClient();
+    private final ThrottleAwareExecutor executor = new ThrottleAwareExecutor(PARALLELISM, 4, 1, 5);
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ComplianceAggregator aggregator = new ComplianceAggregator(client, executor, 1_000, now::get);
+
+    @AfterEach
+    void tearDown() {
+
+        executor.close();
+    }
+
+    @Test
+    void aggregateSummarizesEveryPolicyAndAccount() {
+
+        // five accounts over three status pages, two of them non-compliant
+        client.addPolicy("policy-1",
+                compliant("111111111111"),
+                nonCompliant("222222222222", 3),
+                compliant("333333333333"),
+                nonCompliant("444444444444", 1),
+                compliant("555555555555"));
+        client.addPolicy("policy-2", nonCompliant("111111111111", 2));
+
+        final ComplianceSummary summary = aggregator.aggregate();
+
+        assertThat(summary.size()).isEqualTo(6);
+        assertThat(summary.getFailedCount()).isZero();
+        assertThat(summary.getPolicyIds()).containsExactlyInAnyOrder("policy-1", "policy-2");
+        assertThat(summary.nonCompliantCount()).isEqualTo(3);
+        assertThat(summary.nonCompliantAccounts("policy-1")).isEqualTo(AccountIdSet.of(222222222222L, 444444444444L));
+        assertThat(summary.nonCompliantAccounts("policy-2")).isEqualTo(AccountIdSet.of(111111111111L));
+        assertThat(summary.nonCompliantAccounts("policy-3")).isEqualTo(AccountIdSet.EMPTY);
+        assertThat(summary.violatorCountsByPolicy())
+                .hasSize(2)
+                .containsEntry("policy-1", 4L)
+                .containsEntry("policy-2", 2L);
+        for (int row = 0; row < summary.size(); row++) {
+            assertThat(summary.isCompliant(row)).isEqualTo(summary.getViolatorCount(row) == 0);
+        }
+
+        // only non-compliant accounts need a detail read, and no more reads than workers were in flight
+        assertThat(client.getCallCount("GetComplianceDetail")).isEqualTo(3);
+        assertThat(client.getMaxInFlight()).isLessThanOrEqualTo(PARALLELISM);
+    }
+
+    @Test
+    void throttledReadsAreRetried() {
+
+        client.addPolicy("policy-1", nonCompliant("111111111111", 1), nonCompliant("222222222222", 2));
+        client.throttle(3);
+
+        final ComplianceSummary summary = aggregator.aggregate(Collections.singletonList("policy-1"));
+
+        assertThat(summary.getFailedCount()).isZero();
+        assertThat(summary.violatorCountsByPolicy()).containsEntry("policy-1", 3L);
+        assertThat(executor.getThrottleCount()).isEqualTo(3);
+    }
+
+    @Test
+    void failedReadsAreCounted() {
+
+        client.addPolicy("policy-1", compliant("111111111111"));
+
+        final ComplianceSummary summary = aggregator.aggregate(Arrays.asList("policy-1", "deleted-policy"));
+
+        assertThat(summary.size()).isEqualTo(1);
+        assertThat(summary.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedStatusPageLeavesNoRowsOfItsPolicy() {
+
+        // the second status page of policy-1 fails after the first page queued a detail read
+        client.addPolicy("policy-1",
+                nonCompliant("111111111111", 1),
+                compliant("222222222222"),
+                compliant("333333333333"));
+        client.addPolicy("policy-2", compliant("111111111111"));
+        client.failedPages.put("policy-1", "2");
+
+        final ComplianceSummary summary = aggregator.aggregate();
+
+        assertThat(summary.getFailedCount()).isEqualTo(1);
+        assertThat(summary.getPolicyIds()).containsExactly("policy-2");
+        assertThat(summary.size()).isEqualTo(1);
+    }
+
+    @Test
+    void truncatedDetailsDoNotLowerViolatorCounts() {
+
+        // FMS lists a single violator of the five it counted for the first account
+        client.addPolicy("policy-1", nonCompliant("111111111111", 5), nonCompliant("222222222222", 2));
+        client.truncatedDetails.put("policy-1" + "111111111111", 1);
+
+        final ComplianceSummary summary = aggregator.aggregate(Collections.singletonList("policy-1"));
+
+        assertThat(summary.violatorCountsByPolicy()).containsEntry("policy-1", 7L);
+        assertThat(summary.truncatedCount()).isEqualTo(1);
+        for (int row = 0; row < summary.size(); row++) {
+            assertThat(summary.isTruncated(row)).isEqualTo(summary.getMemberAccount(row).equals("111111111111"));
+        }
+    }
+
+    @Test
+    void detailsAreCachedUntilExpiredOrUpdated() {
+
+        client.addPolicy("policy-1", nonCompliant("111111111111", 1), nonCompliant("222222222222", 1));
+        aggregator.aggregate(Collections.singletonList("policy-1"));
+        assertThat(client.getCallCount("GetComplianceDetail")).isEqualTo(2);
+        assertThat(aggregator.cachedDetailCount()).isEqualTo(2);
+
+        // unchanged statuses reuse the cached details
+        aggregator.aggregate(Collections.singletonList("policy-1"));
+        assertThat(client.getCallCount("GetComplianceDetail")).isEqualTo(2);
+
+        // a status updated after its detail was read is read again
+        now.addAndGet(10);
+        client.addPolicy("policy-1",
+                nonCompliant("111111111111", 1),
+                nonCompliant("222222222222", 5).toBuilder().lastUpdated(Instant.ofEpochMilli(now.get())).build());
+        final ComplianceSummary updated = aggregator.aggregate(Collections.singletonList("policy-1"));
+        assertThat(client.getCallCount("GetComplianceDetail")).isEqualTo(3);
+        assertThat(updated.violatorCountsByPolicy()).containsEntry("policy-1", 6L);
+
+        // expired details are read again
+        now.addAndGet(1_001);
+        aggregator.aggregate(Collections.singletonList("policy-1"));
+        assertThat(client.getCallCount("GetComplianceDetail")).isEqualTo(5);
+    }
+
+    private static PolicyComplianceStatus compliant(final String memberAccount) {
+
+        return status(memberAccount, PolicyComplianceStatusType.COMPLIANT, 0);
+    }
+
+    private static PolicyComplianceStatus nonCompliant(final String memberAccount, final int violatorCount) {
+
+        return status(memberAccount, PolicyComplianceStatusType.NON_COMPLIANT, violatorCount);
+    }
+
+    private static PolicyComplianceStatus status(
+            final String memberAccount,
+            final PolicyComplianceStatusType complianceStatus,
+            final int violatorCount) {
+
+        return PolicyComplianceStatus.builder()
+                .memberAccount(memberAccount)
+                .evaluationResults(EvaluationResult.builder()
+                        .complianceStatus(complianceStatus)
+                        .violatorCount((long) violatorCount)
+                        .build())
+                .build();
+    }
+
+    /**
+     * FMS client serving compliance data from memory, two statuses per page, failing a page or truncating a detail if
+     * asked.
+     */
+    private static class FakeComplianceClient extends FakeFmsClient {
+
+        private final Map<String, List<PolicyComplianceStatus>> statuses = new LinkedHashMap<>();
+        private final Map<String, Integer> violatorCounts = new ConcurrentHashMap<>();
+        private final Map<String, String> failedPages = new ConcurrentHashMap<>();
+        private final Map<String, Integer> truncatedDetails = new ConcurrentHashMap<>();
+
+        FakeComplianceClient() {
+
+            super(2, 2);
+        }
+
+        void addPolicy(final String policyId, final PolicyComplianceStatus... policyStatuses) {
+
+            statuses.put(policyId, Arrays.asList(policyStatuses));
+            for (final PolicyComplianceStatus status : policyStatuses) {
+                violatorCounts.put(policyId + status.memberAccount(),
+                        status.evaluationResults().get(0).violatorCount().intValue());
+            }
+        }
+
+        @Override
+        public ListPoliciesResponse listPolicies(final ListPoliciesRequest request) {
+
+            return call(request, () -> {
+                final List<PolicySummary> summaries = new ArrayList<>();
+                statuses.keySet().forEach(policyId -> summaries.add(
+                        PolicySummary.builder().policyId(policyId).build()));
+                final Page<PolicySummary> page = page(summaries, request.nextToken());
+                return ListPoliciesResponse.builder()
+                        .policyList(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public ListComplianceStatusResponse listComplianceStatus(final ListComplianceStatusRequest request) {
+
+            return call(request, () -> {
+                final List<PolicyComplianceStatus> policyStatuses = statuses.get(request.policyId());
+                if (policyStatuses == null) {
+                    throw ResourceNotFoundException.builder().build();
+                }
+                if (request.nextToken() != null && request.nextToken().equals(failedPages.get(request.policyId()))) {
+                    throw FmsException.builder().statusCode(500).message("Internal error").build();
+                }
+                final Page<PolicyComplianceStatus> page = page(policyStatuses, request.nextToken());
+                return ListComplianceStatusResponse.builder()
+                        .policyComplianceStatusList(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public GetComplianceDetailResponse getComplianceDetail(final GetComplianceDetailRequest request) {
+
+            return call(request, () -> {
+                final String key = request.policyId() + request.memberAccount();
+                final int violatorCount = truncatedDetails.getOrDefault(key, violatorCounts.get(key));
+                final List<ComplianceViolator> violators = new ArrayList<>();
+                for (int i = 0; i < violatorCount; i++) {
+                    violators.add(ComplianceViolator.builder().resourceId("resource-" + i).build());
+                }
+                return GetComplianceDetailResponse.builder()
+                        .policyComplianceDetail(PolicyComplianceDetail.builder()
+                                .policyId(request.policyId())
+                                .memberAccount(request.memberAccount())
+                                .violators(violators)
+                                .evaluationLimitExceeded(truncatedDetails.containsKey(key))
+                                .build())
+                        .build();
+            });
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package software.amazon.fms.policy;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.cloudformation.resource.Serializer;
+import software.amazon.cloudformation.resource.Validator;
+import software.amazon.fms.policy.helpers.CfnSampleHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time taken to parse the resource schema on a cold start, and to validate a model scoped to many accounts against
+ * the schema on every invocation of a warm instance.
+ * Run with: mvn test -Dtest=ConfigurationBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConfigurationBenchmarkTest {
+
+    private static final int ROUNDS = 200;
+    private static final int WARMUP_ROUNDS = 50;
+
+    @Test
+    void benchmark() throws Exception {
+
+        // the first parse includes class loading, as on a cold start
+        final long coldStart = System.nanoTime();
+        final JSONObject schema = new Configuration().resourceSchemaJSONObject();
+        final long coldNanos = System.nanoTime() - coldStart;
+
+        final List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            accounts.add(String.format("%012d", i));
+        }
+        final ResourceModel model = CfnSampleHelper.sampleAllParametersResourceModel(false, true, true);
+        model.setResourceSetIds(null);
+        model.setIncludeMap(IEMap.builder().aCCOUNT(accounts).build());
+        final JSONObject modelObject = new JSONObject(new Serializer().serialize(model));
+        final Validator validator = new Validator();
+
+        // warm up the JIT before measuring
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            Configuration.loadResourceSchema();
+            validator.validateObject(modelObject, new Configuration().resourceSchemaJSONObject());
+        }
+
+        final long parseStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            Configuration.loadResourceSchema();
+        }
+        final long parseNanos = (System.nanoTime() - parseStart) / ROUNDS;
+
+        final long validateStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            validator.validateObject(modelObject, new Configuration().resourceSchemaJSONObject());
+        }
+        final long validateNanos = (System.nanoTime() - validateStart) / ROUNDS;
+
+        System.out.printf("cold schema parse %d us, warm schema parse %d us saved per invocation, "
+                        + "validation of %d accounts %d us%n",
+                coldNanos / 1_000, parseNanos / 1_000, accounts.size(), validateNanos / 1_000);
+        assertThat(new Configuration().resourceSchemaJSONObject()).isSameAs(schema);
+    }
+}
@@ -0,0 +1,30 @@
+package software.amazon.fms.policy;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.fms.policy.helpers.CfnSampleHelper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConfigurationTest {
+
+    @Test
+    void resourceSchemaIsParsedOnce() {
+
+        final Configuration configuration = new Configuration();
+
+        assertThat(configuration.resourceSchemaJSONObject()).isSameAs(new Configuration().resourceSchemaJSONObject());
+        assertThat(configuration.resourceSchemaJSONObject().getString("typeName")).isEqualTo("AWS::FMS::Policy");
+        assertThat(configuration.resourceSchemaJSONObject().similar(Configuration.loadResourceSchema())).isTrue();
+    }
+
+    @Test
+    void resourceDefinedTags() {
+
+        final Configuration configuration = new Configuration();
+
+        assertThat(configuration.resourceDefinedTags(CfnSampleHelper.sampleRequiredParametersResourceModel(
+                false, false, false))).isNull();
+        assertThat(configuration.resourceDefinedTags(CfnSampleHelper.sampleRequiredParametersResourceModel(
+                false, true, true))).hasSize(2);
+    }
+}
@@ -9,6 +9,8 @@ import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeletePolicyRequest;
 import software.amazon.awssdk.services.fms.model.DeletePolicyResponse;
 import software.amazon.awssdk.services.fms.model.FmsRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.InternalErrorException;
 import software.amazon.awssdk.services.fms.model.InvalidInputException;
 import software.amazon.awssdk.services.fms.model.InvalidOperationException;
@@ -32,11 +34,15 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.policy.helpers.FmsSampleHelper;
 import software.amazon.fms.policy.helpers.CfnSampleHelper;
+import software.amazon.fms.policy.helpers.NetworkAclOptimizer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
@@ -368,6 +374,89 @@ class CreateHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestRepeatedClientRequestToken() {
+
+        // stub the response for the create request
+        final PutPolicyResponse describeResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doReturn(describeResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state
+        final ResourceModel requestModel = CfnSampleHelper.sampleRequiredParametersResourceModel(false, false, false);
+
+        // send the same create request twice, as CloudFormation does when a response is lost
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .clientRequestToken(UUID.randomUUID().toString())
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> firstResponse =
+                handler.handleRequest(proxy, request, null, logger);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the policy is only created once
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getValue()).isEqualTo(
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(false, false, false)
+        );
+
+        // assertions
+        assertThat(firstResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModel()).isEqualTo(firstResponse.getResourceModel());
+    }
+
+    @Test
+    void handleRequestResumeAfterPolicyCreated() {
+
+        // stub the response for the read request
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state and the progress of the earlier invocation
+        final ResourceModel requestModel = CfnSampleHelper.sampleRequiredParametersResourceModel(false, false, false);
+        final String clientRequestToken = UUID.randomUUID().toString();
+        final CallbackContext callbackContext = CallbackContext.builder()
+                .clientRequestToken(clientRequestToken)
+                .resourceId(FmsSampleHelper.samplePolicyId)
+                .completedSteps(new HashSet<>(Collections.singletonList(CreateHandler.PUT_POLICY_STEP)))
+                .build();
+
+        // re-invoke the create request with the recorded progress
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .clientRequestToken(clientRequestToken)
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, callbackContext, logger);
+
+        // verify stub calls, the policy is read instead of created again
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getValue()).isEqualTo(FmsSampleHelper.sampleGetPolicyRequest());
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModel().getId()).isEqualTo(FmsSampleHelper.samplePolicyId);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
     @Test
     void handleRequestResourceNotFoundException() {
 
@@ -662,4 +751,154 @@ class CreateHandlerTest {
             ));
         });
     }
+
+    @Test
+    void handleRequestShadowedNetworkAclEntry() {
+
+        // model a resource state whose last entry is shadowed by the first entry
+        final ResourceModel requestModel = CfnSampleHelper.sampleRequiredParametersResourceModelForNetworkAcl(false, false, false);
+        final NetworkAclEntrySet entrySet = requestModel.getSecurityServicePolicyData().getPolicyOption()
+                .getNetworkAclCommonPolicy().getNetworkAclEntrySet();
+        entrySet.setFirstEntries(Collections.singletonList(NetworkAclEntry.builder()
+                .cidrBlock("10.0.0.0/16")
+                .protocol("-1")
+                .ruleAction("deny")
+                .egress(false)
+                .build()));
+        entrySet.setLastEntries(Collections.singletonList(NetworkAclEntry.builder()
+                .cidrBlock("10.0.1.0/24")
+                .protocol("6")
+                .portRange(PortRange.builder().from(443).to(443).build())
+                .ruleAction("allow")
+                .egress(false)
+                .build()));
+
+        // create the create request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // verify the policy was never sent to FMS
+        verify(proxy, times(0)).injectCredentialsAndInvokeV2(
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any()
+        );
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.InvalidRequest);
+        assertThat(response.getMessage()).contains("LastEntries[0]").contains("is shadowed by FirstEntries[0]");
+    }
+
+    @Test
+    void handleRequestUpdatesScopeIndex() {
+
+        // stub the response for the create request
+        doReturn(FmsSampleHelper.samplePutPolicyRequiredParametersResponse())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // create the create request and send it to a handler keeping a scope index
+        final PolicyScopeIndex scopeIndex = new PolicyScopeIndex(1);
+        handler.setScopeIndex(scopeIndex);
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleRequiredParametersResourceModel(false, false, false))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // assertions, a policy without include or exclude map applies to every account
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(scopeIndex.applicablePolicies("123456789012", Collections.emptyList()))
+                .containsExactly(response.getResourceModel().getId());
+    }
+
+    @Test
+    void handleRequestInvalidPolicy() {
+
+        // model a resource state with a malformed account and a reversed port range
+        final ResourceModel requestModel = CfnSampleHelper.sampleRequiredParametersResourceModelForNetworkAcl(false, false, false);
+        requestModel.setIncludeMap(IEMap.builder().aCCOUNT(Collections.singletonList("00000000000a")).build());
+        requestModel.getSecurityServicePolicyData().getPolicyOption().getNetworkAclCommonPolicy().getNetworkAclEntrySet()
+                .setFirstEntries(Collections.singletonList(NetworkAclEntry.builder()
+                        .cidrBlock("10.0.0.0/16")
+                        .protocol("6")
+                        .portRange(PortRange.builder().from(443).to(80).build())
+                        .ruleAction("allow")
+                        .egress(false)
+                        .build()));
+
+        // create the create request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // verify the policy was never sent to FMS
+        verify(proxy, times(0)).injectCredentialsAndInvokeV2(
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any()
+        );
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.InvalidRequest);
+        assertThat(response.getMessage())
+                .contains("IncludeMap.ACCOUNT[0] 00000000000a is not an account ID")
+                .contains("NetworkAclEntrySet.FirstEntries[0].PortRange.From 443 is greater than To 80");
+    }
+
+    @Test
+    void handleRequestAggregatesNetworkAclEntries() {
+
+        // stub the response for the create request
+        final PutPolicyResponse describeResponse = FmsSampleHelper.samplePutPolicyRequiredParametersForNetworkAclResponse();
+        doReturn(describeResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model a resource state with two adjacent blocks that aggregate into one
+        final ResourceModel requestModel = CfnSampleHelper.sampleRequiredParametersResourceModelForNetworkAcl(false, false, false);
+        final NetworkAclEntrySet entrySet = requestModel.getSecurityServicePolicyData().getPolicyOption()
+                .getNetworkAclCommonPolicy().getNetworkAclEntrySet();
+        entrySet.setFirstEntries(Arrays.asList(
+                NetworkAclEntry.builder().cidrBlock("10.0.0.0/24").protocol("-1").ruleAction("deny").egress(false).build(),
+                NetworkAclEntry.builder().cidrBlock("10.0.1.0/24").protocol("-1").ruleAction("deny").egress(false).build()));
+        handler.setNetworkAclOptimizer(new NetworkAclOptimizer(true));
+
+        // create the create request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // verify the aggregated entry was sent and the desired resource state was left as it was
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        final PutPolicyRequest putPolicyRequest = (PutPolicyRequest) captor.getValue();
+        assertThat(putPolicyRequest.policy().securityServicePolicyData().policyOption().networkAclCommonPolicy()
+                .networkAclEntrySet().firstEntries())
+                .extracting(software.amazon.awssdk.services.fms.model.NetworkAclEntry::cidrBlock)
+                .containsExactly("10.0.0.0/23");
+        assertThat(entrySet.getFirstEntries()).hasSize(2);
+        verify(logger).log("Aggregated network ACL entries, saved 1 entries");
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    }
 }
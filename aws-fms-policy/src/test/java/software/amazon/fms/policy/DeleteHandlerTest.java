@@ -7,6 +7,8 @@ import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeletePolicyRequest;
 import software.amazon.awssdk.services.fms.model.DeletePolicyResponse;
 import software.amazon.awssdk.services.fms.model.FmsRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.InternalErrorException;
 import software.amazon.awssdk.services.fms.model.InvalidOperationException;
 import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
@@ -24,6 +26,9 @@ import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.policy.helpers.CfnSampleHelper;
 import software.amazon.fms.policy.helpers.FmsSampleHelper;
 
+import java.util.Collections;
+import java.util.HashSet;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -141,7 +146,7 @@ class DeleteHandlerTest {
     }
 
     @Test
-    void handleRequestDeleteAllPolicyResourcesTrueSuccess() {
+    void handleRequestDeleteAllPolicyResourcesTrueInProgress() {
 
         // stub the response for the delete request
         final DeletePolicyResponse describeResponse = FmsSampleHelper.sampleDeletePolicyResponse();
@@ -152,9 +157,16 @@ class DeleteHandlerTest {
                         ArgumentMatchers.any()
                 );
 
-        // model the pre-request and post-request resource state
+        // mock a ResourceNotFoundException from the FMS API once the policy is gone
+        doThrow(ResourceNotFoundException.builder().build())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state
         final ResourceModel requestModel = CfnSampleHelper.sampleBareResourceModel(true, true);
-        final ResourceModel expectedModel = CfnSampleHelper.sampleBareResourceModel(false);
 
         // create the delete request and send it
         final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
@@ -163,25 +175,143 @@ class DeleteHandlerTest {
         final ProgressEvent<ResourceModel, CallbackContext> response =
                 handler.handleRequest(proxy, request, null, logger);
 
-        // verify stub calls
+        // assertions, the handler waits for the policy resources to be cleaned up
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().hasCompleted(DeleteHandler.DELETE_POLICY_STEP)).isTrue();
+        assertThat(response.getCallbackContext().getPollCount()).isEqualTo(0);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(DeleteHandler.INITIAL_POLL_DELAY_SECONDS);
+        assertThat(response.getResourceModel()).isEqualTo(requestModel);
+        assertThat(response.getResourceModels()).isNull();
+        assertThat(response.getErrorCode()).isNull();
+
+        // CloudFormation sends the returned model and context back as the callback request
+        final ResourceHandlerRequest<ResourceModel> callbackRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(response.getResourceModel())
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> callbackResponse =
+                handler.handleRequest(proxy, callbackRequest, response.getCallbackContext(), logger);
+
+        // verify stub calls, the policy is deleted once and then polled
+        verify(proxy, times(2)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).containsExactly(
+                FmsSampleHelper.sampleDeletePolicyRequest(true),
+                FmsSampleHelper.sampleGetPolicyRequest()
+        );
+
+        // assertions
+        assertThat(callbackResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(callbackResponse.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestStabilizationPolicyStillExists() {
+
+        // stub the response for the read request, the policy resources are still being cleaned up
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state and the progress of the earlier invocations
+        final ResourceModel requestModel = CfnSampleHelper.sampleBareResourceModel(true, true);
+        final CallbackContext callbackContext = deletedPolicyCallbackContext(1);
+
+        // create the delete callback request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, callbackContext, logger);
+
+        // verify stub calls, the policy is polled instead of deleted again
         verify(proxy, times(1)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
-        assertThat(captor.getValue()).isEqualTo(
-                FmsSampleHelper.sampleDeletePolicyRequest(true)
+        assertThat(captor.getValue()).isEqualTo(FmsSampleHelper.sampleGetPolicyRequest());
+
+        // assertions, the delay grows with every poll
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(response.getCallbackContext().getPollCount()).isEqualTo(2);
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(DeleteHandler.INITIAL_POLL_DELAY_SECONDS * 4);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestStabilizationPolicyDeleted() {
+
+        // mock a ResourceNotFoundException from the FMS API once the policy is gone
+        doThrow(ResourceNotFoundException.builder().build())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state and the progress of the earlier invocations
+        final ResourceModel requestModel = CfnSampleHelper.sampleBareResourceModel(true, true);
+        final CallbackContext callbackContext = deletedPolicyCallbackContext(3);
+
+        // create the delete callback request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, callbackContext, logger);
+
+        // verify stub calls
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
         );
+        assertThat(captor.getValue()).isEqualTo(FmsSampleHelper.sampleGetPolicyRequest());
 
         // assertions
         assertThat(response).isNotNull();
         assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
         assertThat(response.getCallbackContext()).isNull();
         assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
-        assertThat(response.getResourceModel()).isEqualTo(null);
-        assertThat(response.getResourceModels()).isNull();
+        assertThat(response.getResourceModel()).isNull();
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestStabilizationNotStabilized() {
+
+        // stub the response for the read request, the policy resources are still being cleaned up
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state and the progress of the earlier invocations
+        final ResourceModel requestModel = CfnSampleHelper.sampleBareResourceModel(true, true);
+        final CallbackContext callbackContext = deletedPolicyCallbackContext(DeleteHandler.MAX_POLLS - 1);
+
+        // create the delete callback request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, callbackContext, logger);
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.NotStabilized);
+    }
+
     @Test
     void handleRequestResourceNotFoundException() {
 
@@ -301,4 +431,12 @@ class DeleteHandlerTest {
         assertThat(response.getResourceModels()).isNull();
         assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
     }
+
+    private static CallbackContext deletedPolicyCallbackContext(final int pollCount) {
+
+        return CallbackContext.builder()
+                .completedSteps(new HashSet<>(Collections.singletonList(DeleteHandler.DELETE_POLICY_STEP)))
+                .pollCount(pollCount)
+                .build();
+    }
 }
@@ -0,0 +1,384 @@
+package software.amazon.fms.policy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesResponse;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.Resource;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.fms.model.ResourceSet;
+import software.amazon.awssdk.services.fms.model.ResourceSetSummary;
+import software.amazon.awssdk.services.fms.model.SecurityServicePolicyData;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.FakeFmsClient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DriftScannerTest {
+
+    private static final long VERIFICATION_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final FakeDriftClient client = new FakeDriftClient();
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(1));
+    private final DriftScanner scanner = new DriftScanner(new TreeMap<>(), 4, VERIFICATION_AGE_MILLIS, now::get);
+
+    @Test
+    void unchangedResourcesAreSkippedWithoutTagReads() {
+
+        client.putPolicy("policy-1", "first", false);
+        client.putPolicy("policy-2", "second", false);
+        client.putResourceSet("set-1", "servers");
+
+        // the first sweep adopts every resource
+        final DriftScanner.ScanResult first = scanner.scan(client);
+        assertThat(first.getDrifted()).isEmpty();
+        assertThat(first.getResourcesRead()).isEqualTo(3);
+        assertThat(first.getTagListsRead()).isEqualTo(3);
+        assertThat(first.getAssociationListsRead()).isEqualTo(1);
+
+        // the second sweep reads the update tokens, but neither the tags nor the associations
+        final DriftScanner.ScanResult second = scanner.scan(client);
+        assertThat(second.getDrifted()).isEmpty();
+        assertThat(second.getListed()).isEqualTo(3);
+        assertThat(second.getSkipped()).isEqualTo(3);
+        assertThat(second.getResourcesRead()).isEqualTo(3);
+        assertThat(second.getTagListsRead()).isZero();
+        assertThat(second.getAssociationListsRead()).isZero();
+    }
+
+    @Test
+    void outOfBandChangesAreReportedUntilAccepted() {
+
+        client.putPolicy("policy-1", "first", false);
+        client.putPolicy("policy-2", "second", false);
+        client.putResourceSet("set-1", "servers");
+        scanner.scan(client);
+
+        // change a policy and a resource set outside of CloudFormation
+        client.putPolicy("policy-1", "first", true);
+        client.putResourceSet("set-1", "renamed");
+        final DriftScanner.ScanResult changed = scanner.scan(client);
+        assertThat(changed.getDrifted()).extracting(DriftScanner.Drift::getId)
+                .containsExactlyInAnyOrder("policy-1", "set-1");
+        assertThat(changed.getSkipped()).isEqualTo(1);
+
+        // the drift is reported again without listing the tags again
+        final DriftScanner.ScanResult repeated = scanner.scan(client);
+        assertThat(repeated.getDrifted()).hasSize(2);
+        assertThat(repeated.getTagListsRead()).isZero();
+
+        scanner.acceptLive(DriftScanner.resourceKey(DriftScanner.POLICY_TYPE, "policy-1"));
+        scanner.acceptLive(DriftScanner.resourceKey(DriftScanner.RESOURCE_SET_TYPE, "set-1"));
+        assertThat(scanner.scan(client).getDrifted()).isEmpty();
+    }
+
+    @Test
+    void policyChangesMissingFromTheListingAreFound() {
+
+        client.putPolicy("policy-1", "first", false);
+        scanner.scan(client);
+
+        // excluded tags are not part of the policy summary, only of the policy and its update token
+        final Policy policy = client.policies.get("policy-1");
+        client.policies.put("policy-1", policy.toBuilder()
+                .excludeResourceTags(true)
+                .policyUpdateToken(String.valueOf(client.updates.incrementAndGet()))
+                .build());
+
+        assertThat(scanner.scan(client).getDrifted()).extracting(DriftScanner.Drift::getId)
+                .containsExactly("policy-1");
+    }
+
+    @Test
+    void associationChangesAreFound() {
+
+        client.putResourceSet("set-1", "servers");
+        client.resources.put("set-1", Collections.singletonList("arn:aws:ec2:us-east-1:123456789012:instance/i-1"));
+        scanner.scan(client);
+
+        // associating a resource moves the last update time of the resource set, but not its update token
+        client.associate("set-1",
+                "arn:aws:ec2:us-east-1:123456789012:instance/i-1",
+                "arn:aws:ec2:us-east-1:123456789012:instance/i-2");
+        final DriftScanner.ScanResult changed = scanner.scan(client);
+        assertThat(changed.getDrifted()).extracting(DriftScanner.Drift::getId).containsExactly("set-1");
+        assertThat(changed.getAssociationListsRead()).isEqualTo(1);
+        assertThat(changed.getTagListsRead()).isEqualTo(1);
+
+        // the order resources are listed in does not matter
+        scanner.acceptLive(DriftScanner.resourceKey(DriftScanner.RESOURCE_SET_TYPE, "set-1"));
+        client.associate("set-1",
+                "arn:aws:ec2:us-east-1:123456789012:instance/i-2",
+                "arn:aws:ec2:us-east-1:123456789012:instance/i-1");
+        assertThat(scanner.scan(client).getDrifted()).isEmpty();
+    }
+
+    @Test
+    void associationChangesTheListingDoesNotShowAreFoundOnVerification() {
+
+        client.putResourceSet("set-1", "servers");
+        scanner.scan(client);
+
+        // resources associated without moving the last update time are not listed until the entry is verified
+        client.resources.put("set-1", Collections.singletonList("arn:aws:ec2:us-east-1:123456789012:instance/i-1"));
+        final DriftScanner.ScanResult unverified = scanner.scan(client);
+        assertThat(unverified.getDrifted()).isEmpty();
+        assertThat(unverified.getAssociationListsRead()).isZero();
+
+        now.addAndGet(VERIFICATION_AGE_MILLIS);
+        final DriftScanner.ScanResult verified = scanner.scan(client);
+        assertThat(verified.getDrifted()).extracting(DriftScanner.Drift::getId).containsExactly("set-1");
+        assertThat(verified.getAssociationListsRead()).isEqualTo(1);
+    }
+
+    @Test
+    void recordedModelsAreComparedWithTheLiveState() {
+
+        client.putPolicy("policy-1", "first", false);
+        final GetPolicyResponse live = client.getPolicy(GetPolicyRequest.builder().policyId("policy-1").build());
+        final ResourceModel applied = CfnHelper.convertFMSPolicyToCFNResourceModel(
+                live.policy(), live.policyArn(), Collections.emptyList());
+
+        // an equivalent model does not drift, a model the policy no longer matches does
+        scanner.recordApplied(applied);
+        assertThat(scanner.scan(client).getDrifted()).isEmpty();
+        applied.setRemediationEnabled(true);
+        scanner.recordApplied(applied);
+        assertThat(scanner.scan(client).getDrifted()).extracting(DriftScanner.Drift::getId)
+                .containsExactly("policy-1");
+    }
+
+    @Test
+    void tagChangesAreFoundOnceEntriesAreDueForVerification() {
+
+        client.putPolicy("policy-1", "first", false);
+        scanner.scan(client);
+
+        // tags do not change the policy update token
+        client.tags.put(client.arn("policy-1"), Collections.singletonList(
+                Tag.builder().key("team").value("network").build()));
+        assertThat(scanner.scan(client).getDrifted()).isEmpty();
+
+        now.addAndGet(VERIFICATION_AGE_MILLIS);
+        final DriftScanner.ScanResult verified = scanner.scan(client);
+        assertThat(verified.getDrifted()).extracting(DriftScanner.Drift::getId).containsExactly("policy-1");
+        assertThat(verified.getTagListsRead()).isEqualTo(1);
+    }
+
+    @Test
+    void deletedResourcesAreReportedOnce() {
+
+        client.putPolicy("policy-1", "first", false);
+        scanner.scan(client);
+
+        client.policies.remove("policy-1");
+        final List<DriftScanner.Drift> drifted = scanner.scan(client).getDrifted();
+        assertThat(drifted).hasSize(1);
+        assertThat(drifted.get(0).getLiveHash()).isNull();
+        assertThat(scanner.scan(client).getDrifted()).isEmpty();
+        assertThat(scanner.getEntries()).isEmpty();
+    }
+
+    @Test
+    void throttledReadsAreRetried() {
+
+        for (int i = 0; i < 6; i++) {
+            client.putPolicy("policy-" + i, "policy " + i, false);
+        }
+        client.throttle(2, "GetPolicy");
+
+        final DriftScanner.ScanResult result = scanner.scan(client);
+
+        assertThat(result.getFailed()).isZero();
+        assertThat(result.getThrottled()).isEqualTo(2);
+        assertThat(result.getResourcesRead()).isEqualTo(6);
+        assertThat(scanner.getEntries()).hasSize(6);
+    }
+
+    @Test
+    void stateSurvivesSaveAndLoad(@TempDir final Path directory) throws IOException {
+
+        client.putPolicy("policy-1", "first", false);
+        scanner.scan(client);
+        scanner.save(directory.resolve("drift.json"));
+
+        final DriftScanner loaded = DriftScanner.load(directory.resolve("drift.json"), 4, VERIFICATION_AGE_MILLIS);
+
+        assertThat(loaded.getEntries()).isEqualTo(scanner.getEntries());
+    }
+
+    @Test
+    void scheduledSweepsAreSpreadAroundTheInterval() {
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(DriftScanner.jitteredDelayMillis(1000, 0.2)).isBetween(800L, 1200L);
+        }
+        assertThat(DriftScanner.jitteredDelayMillis(1000, 0)).isEqualTo(1000L);
+    }
+
+    /**
+     * FMS client keeping policies, resource sets, their resources and tags in memory. Associating resources moves the
+     * last update time of their resource set, but not its update token.
+     */
+    private static class FakeDriftClient extends FakeFmsClient {
+
+        private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+        private final Map<String, ResourceSet> resourceSets = new ConcurrentHashMap<>();
+        private final Map<String, List<String>> resources = new ConcurrentHashMap<>();
+        private final Map<String, List<Tag>> tags = new ConcurrentHashMap<>();
+        private final AtomicInteger updates = new AtomicInteger();
+
+        void putPolicy(final String policyId, final String policyName, final boolean remediationEnabled) {
+
+            policies.put(policyId, Policy.builder()
+                    .policyId(policyId)
+                    .policyName(policyName)
+                    .policyUpdateToken(String.valueOf(updates.incrementAndGet()))
+                    .excludeResourceTags(false)
+                    .remediationEnabled(remediationEnabled)
+                    .resourceType("AWS::ElasticLoadBalancingV2::LoadBalancer")
+                    .securityServicePolicyData(SecurityServicePolicyData.builder().type("SHIELD_ADVANCED").build())
+                    .build());
+        }
+
+        void putResourceSet(final String id, final String name) {
+
+            resourceSets.put(id, ResourceSet.builder()
+                    .id(id)
+                    .name(name)
+                    .resourceTypeList("AWS::EC2::Instance")
+                    .updateToken(String.valueOf(updates.incrementAndGet()))
+                    .lastUpdateTime(Instant.ofEpochSecond(updates.get()))
+                    .build());
+        }
+
+        void associate(final String id, final String... uris) {
+
+            resources.put(id, Arrays.asList(uris));
+            resourceSets.computeIfPresent(id, (key, resourceSet) -> resourceSet.toBuilder()
+                    .lastUpdateTime(Instant.ofEpochSecond(updates.incrementAndGet()))
+                    .build());
+        }
+
+        String arn(final String id) {
+
+            return "arn:aws:fms:us-east-1:123456789012:" + id;
+        }
+
+        @Override
+        public ListPoliciesResponse listPolicies(final ListPoliciesRequest request) {
+
+            return call(request, () -> {
+                final List<PolicySummary> summaries = new ArrayList<>();
+                policies.values().forEach(policy -> summaries.add(PolicySummary.builder()
+                        .policyId(policy.policyId())
+                        .policyArn(arn(policy.policyId()))
+                        .policyName(policy.policyName())
+                        .resourceType(policy.resourceType())
+                        .remediationEnabled(policy.remediationEnabled())
+                        .build()));
+                final Page<PolicySummary> page = page(summaries, request.nextToken());
+                return ListPoliciesResponse.builder()
+                        .policyList(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public ListResourceSetsResponse listResourceSets(final ListResourceSetsRequest request) {
+
+            return call(request, () -> {
+                final List<ResourceSetSummary> summaries = new ArrayList<>();
+                resourceSets.values().forEach(resourceSet -> summaries.add(ResourceSetSummary.builder()
+                        .id(resourceSet.id())
+                        .name(resourceSet.name())
+                        .lastUpdateTime(resourceSet.lastUpdateTime())
+                        .build()));
+                final Page<ResourceSetSummary> page = page(summaries, request.nextToken());
+                return ListResourceSetsResponse.builder()
+                        .resourceSets(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public GetPolicyResponse getPolicy(final GetPolicyRequest request) {
+
+            return call(request, () -> {
+                final Policy policy = policies.get(request.policyId());
+                if (policy == null) {
+                    throw ResourceNotFoundException.builder().message("No policy").build();
+                }
+                return GetPolicyResponse.builder().policy(policy).policyArn(arn(request.policyId())).build();
+            });
+        }
+
+        @Override
+        public GetResourceSetResponse getResourceSet(final GetResourceSetRequest request) {
+
+            return call(request, () -> {
+                final ResourceSet resourceSet = resourceSets.get(request.identifier());
+                if (resourceSet == null) {
+                    throw ResourceNotFoundException.builder().message("No resource set").build();
+                }
+                return GetResourceSetResponse.builder()
+                        .resourceSet(resourceSet)
+                        .resourceSetArn(arn(request.identifier()))
+                        .build();
+            });
+        }
+
+        @Override
+        public ListResourceSetResourcesResponse listResourceSetResources(
+                final ListResourceSetResourcesRequest request) {
+
+            return call(request, () -> {
+                final List<Resource> items = new ArrayList<>();
+                resources.getOrDefault(request.identifier(), Collections.emptyList()).forEach(uri -> items.add(
+                        Resource.builder().uri(uri).accountId("123456789012").build()));
+                final Page<Resource> page = page(items, request.nextToken());
+                return ListResourceSetResourcesResponse.builder()
+                        .items(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public ListTagsForResourceResponse listTagsForResource(final ListTagsForResourceRequest request) {
+
+            return call(request, () -> ListTagsForResourceResponse.builder()
+                    .tagList(tags.getOrDefault(request.resourceArn(), Collections.emptyList()))
+                    .build());
+        }
+    }
+}
@@ -10,24 +10,36 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.FmsRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.InternalErrorException;
 import software.amazon.awssdk.services.fms.model.InvalidOperationException;
 import software.amazon.awssdk.services.fms.model.InvalidTypeException;
 import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
 import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.policy.helpers.CfnHelper;
 import software.amazon.fms.policy.helpers.CfnSampleHelper;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
 import software.amazon.fms.policy.helpers.FmsSampleHelper;
+import software.amazon.fms.policy.helpers.OperationCostModel;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -54,6 +66,7 @@ public class ListHandlerTest {
         logger = mock(Logger.class);
         configuration = new Configuration();
         handler = new ListHandler(client);
+        ListHandler.PAGE_CACHE.clear();
     }
 
     @Test
@@ -152,6 +165,252 @@ public class ListHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestFullPagePrefetchSuccess() {
+
+        // stub a full first page followed by a full and a final page
+        doReturn(
+                FmsSampleHelper.sampleListPolicies(ListHandler.MAX_RESULTS, "page2"),
+                FmsSampleHelper.sampleListPolicies(ListHandler.MAX_PAGE_SIZE, "page3"),
+                FmsSampleHelper.sampleListPolicies(1, null))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListPoliciesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // list the first page
+        final ResourceModel requestModel = CfnSampleHelper.sampleBareResourceModel(true);
+        final ResourceHandlerRequest<ResourceModel> firstRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> firstResponse =
+                handler.handleRequest(proxy, firstRequest, null, logger);
+
+        // list the second and third pages, both were fetched ahead
+        final ResourceHandlerRequest<ResourceModel> secondRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .nextToken(firstResponse.getNextToken())
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> secondResponse =
+                new ListHandler(client).handleRequest(proxy, secondRequest, null, logger);
+        final ResourceHandlerRequest<ResourceModel> thirdRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .nextToken(secondResponse.getNextToken())
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> thirdResponse =
+                new ListHandler(client).handleRequest(proxy, thirdRequest, null, logger);
+
+        // verify stub calls, the page size grows once the listing spans several pages
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues().stream()
+                .map(r -> ((ListPoliciesRequest) r).maxResults())
+                .collect(Collectors.toList()))
+                .isEqualTo(Arrays.asList(ListHandler.MAX_RESULTS, ListHandler.MAX_PAGE_SIZE, ListHandler.MAX_PAGE_SIZE));
+
+        // assertions
+        assertThat(firstResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(firstResponse.getResourceModels().size()).isEqualTo(ListHandler.MAX_RESULTS);
+        assertThat(firstResponse.getNextToken()).isEqualTo("page2");
+        assertThat(secondResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(secondResponse.getResourceModels().size()).isEqualTo(ListHandler.MAX_PAGE_SIZE);
+        assertThat(secondResponse.getNextToken()).isEqualTo("page3");
+        assertThat(thirdResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(thirdResponse.getResourceModels().size()).isEqualTo(1);
+        assertThat(thirdResponse.getNextToken()).isNull();
+    }
+
+    @Test
+    void handleRequestNewListingDropsPagesFetchedAhead() {
+
+        // stub a listing whose second page is fetched ahead, then a new listing after the policies changed
+        doReturn(
+                FmsSampleHelper.sampleListPolicies(ListHandler.MAX_RESULTS, "page2"),
+                FmsSampleHelper.sampleListPolicies(1, null),
+                FmsSampleHelper.sampleListPolicies(1, "page2"),
+                FmsSampleHelper.sampleListPolicies(2, null))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListPoliciesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // list the first page twice, then the second page of the new listing
+        final ResourceHandlerRequest<ResourceModel> firstRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .build();
+        handler.handleRequest(proxy, firstRequest, null, logger);
+        handler.handleRequest(proxy, firstRequest, null, logger);
+        final ResourceHandlerRequest<ResourceModel> secondRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .nextToken("page2")
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, secondRequest, null, logger);
+
+        // verify stub calls, the page fetched ahead by the first listing is not served to the new one
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+
+        // assertions
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModels().size()).isEqualTo(2);
+        assertThat(ListHandler.PAGE_CACHE.size()).isZero();
+    }
+
+    @Test
+    void handleRequestEnrichedSuccess() {
+
+        // stub the responses for the list, read and list tags requests
+        doReturn(FmsSampleHelper.sampleListPolicies(null))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListPoliciesRequest.class),
+                        ArgumentMatchers.any()
+                );
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyAllParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+        final ListTagsForResourceResponse describeListTagsResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(true, false);
+        doReturn(describeListTagsResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the post-request resource state
+        final ResourceModel expectedModel = CfnHelper.convertFMSPolicyToCFNResourceModel(
+                describeGetResponse.policy(),
+                describeGetResponse.policyArn(),
+                describeListTagsResponse.tagList());
+
+        // create the list request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new ListHandler(client, true).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).contains(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest()
+        );
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModels()).isEqualTo(Arrays.asList(expectedModel));
+        assertThat(response.getNextToken()).isNull();
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestEnrichedReadFailureFallsBackToSummary() {
+
+        // stub the list response and fail the read request
+        doReturn(FmsSampleHelper.sampleListPolicies(null))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListPoliciesRequest.class),
+                        ArgumentMatchers.any()
+                );
+        doThrow(ResourceNotFoundException.builder().build())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(false, false))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the post-request resource state
+        final ResourceModel expectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false);
+        expectedModel.setExcludeResourceTags(null);
+        expectedModel.setSecurityServicePolicyData(SecurityServicePolicyData.builder().managedServiceData(null).type(expectedModel.getSecurityServicePolicyData().getType()).build());
+
+        // create the list request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new ListHandler(client, true).handleRequest(proxy, request, null, logger);
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModels()).isEqualTo(Arrays.asList(expectedModel));
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestEnrichedWithoutBudgetReturnsSummaries() {
+
+        // stub the response for the list request
+        final ListPoliciesResponse describeResponse = FmsSampleHelper.sampleListPolicies(null);
+        doReturn(describeResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListPoliciesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the post-request resource state
+        final ResourceModel expectedModel = CfnHelper.convertFMSPolicySummaryToCFNResourceModel(
+                describeResponse.policyList().get(0),
+                describeResponse.policyList().get(0).policyArn());
+
+        // create the list request and send it with an invocation that has no time left after the listing
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ListHandler enrichedHandler = new ListHandler(client, true);
+        enrichedHandler.setBudgets(
+                () -> new ExecutionBudget(0, 0, new OperationCostModel(), System::currentTimeMillis));
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                enrichedHandler.handleRequest(proxy, request, null, logger);
+
+        // only the listing is made
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModels()).isEqualTo(Arrays.asList(expectedModel));
+    }
+
     @Test
     void handleRequestEmptyResponseSuccess() {
 
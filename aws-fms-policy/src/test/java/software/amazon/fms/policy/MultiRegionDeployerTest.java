@@ -0,0 +1,288 @@
+package software.amazon.fms.policy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsException;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.InvalidInputException;
+import software.amazon.awssdk.services.fms.model.LimitExceededException;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.PutPolicyRequest;
+import software.amazon.awssdk.services.fms.model.PutPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.awssdk.services.fms.model.TagResourceRequest;
+import software.amazon.awssdk.services.fms.model.TagResourceResponse;
+import software.amazon.awssdk.services.fms.model.UntagResourceRequest;
+import software.amazon.awssdk.services.fms.model.UntagResourceResponse;
+import software.amazon.fms.policy.helpers.FakeFmsClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MultiRegionDeployerTest {
+
+    private final Map<String, FakeRegionClient> clients = new LinkedHashMap<>();
+    private MultiRegionDeployer deployer;
+
+    @AfterEach
+    void tearDown() {
+
+        deployer.close();
+    }
+
+    @Test
+    void policyIsCreatedInEveryRegion() {
+
+        deployer = deployer("us-east-1", "eu-west-1", "ap-southeast-2");
+
+        final MultiRegionDeployer.DeploymentResult result = deployer.deploy(
+                model(), Collections.singletonMap("team", "network"), null);
+
+        assertThat(result.getSucceeded()).containsExactly("us-east-1", "eu-west-1", "ap-southeast-2");
+        assertThat(result.getFailed()).isEmpty();
+        for (final String region : deployer.getRegions()) {
+            final FakeRegionClient client = clients.get(region);
+            final String policyId = result.getPolicyIds().get(region);
+            assertThat(client.policies.get(policyId).policyName()).isEqualTo("regional");
+            assertThat(client.tags.get(client.arn(policyId))).containsExactly(
+                    Tag.builder().key("team").value("network").build());
+            assertThat(result.getRegions().get(region).getPolicyArn()).isEqualTo(client.arn(policyId));
+        }
+    }
+
+    @Test
+    void existingPoliciesAreUpdatedWithTheirTags() {
+
+        deployer = deployer("us-east-1", "eu-west-1");
+        final Map<String, String> policyIds = deployer.deploy(
+                model(), Collections.singletonMap("team", "network"), null).getPolicyIds();
+
+        // the second deployment changes a tag value in both regions
+        final MultiRegionDeployer.DeploymentResult result = deployer.deploy(
+                model(), Collections.singletonMap("team", "security"), policyIds);
+
+        assertThat(result.getPolicyIds()).isEqualTo(policyIds);
+        for (final String region : deployer.getRegions()) {
+            final FakeRegionClient client = clients.get(region);
+            final String policyId = policyIds.get(region);
+            assertThat(client.policies).hasSize(1);
+            assertThat(client.policies.get(policyId).policyUpdateToken()).isEqualTo("2");
+            assertThat(client.tags.get(client.arn(policyId))).containsExactly(
+                    Tag.builder().key("team").value("security").build());
+        }
+    }
+
+    @Test
+    void throttlingAndFailuresStayInTheirRegion() {
+
+        deployer = deployer("us-east-1", "eu-west-1", "ap-southeast-2");
+        clients.get("us-east-1").throttle(2, "PutPolicy");
+        clients.get("eu-west-1").failPuts = true;
+
+        final MultiRegionDeployer.DeploymentResult result = deployer.deploy(model(), null, null);
+
+        assertThat(result.getSucceeded()).containsExactly("us-east-1", "ap-southeast-2");
+        assertThat(result.getFailed()).containsExactly("eu-west-1");
+        assertThat(result.getRegions().get("us-east-1").getThrottled()).isEqualTo(2);
+        assertThat(result.getRegions().get("ap-southeast-2").getThrottled()).isZero();
+        final MultiRegionDeployer.RegionResult failed = result.getRegions().get("eu-west-1");
+        assertThat(failed.getErrorCode()).isEqualTo("LimitExceededException");
+        assertThat(failed.getMessage()).contains("Policy limit reached");
+        assertThat(failed.getThrottled()).isZero();
+    }
+
+    @Test
+    void policiesCreatedByFailedDeploymentsAreUpdated() {
+
+        deployer = deployer("us-east-1", "eu-west-1");
+        clients.get("eu-west-1").lostPuts.set(1);
+
+        // FMS creates the policy but the response is lost, so the region has no policy ID
+        final MultiRegionDeployer.DeploymentResult failed = deployer.deploy(model(), null, null);
+        assertThat(failed.getFailed()).containsExactly("eu-west-1");
+        assertThat(failed.getPolicyIds()).doesNotContainKey("eu-west-1");
+
+        // the next deployment finds the policy by name instead of creating another one
+        final MultiRegionDeployer.DeploymentResult result = deployer.deploy(model(), null, failed.getPolicyIds());
+        assertThat(result.getSucceeded()).containsExactly("us-east-1", "eu-west-1");
+        assertThat(clients.get("eu-west-1").policies).hasSize(1);
+        assertThat(clients.get("eu-west-1").policies.get(result.getPolicyIds().get("eu-west-1")).policyUpdateToken())
+                .isEqualTo("2");
+    }
+
+    @Test
+    void missingPoliciesFailOnlyTheirRegion() {
+
+        deployer = deployer("us-east-1", "eu-west-1");
+
+        final MultiRegionDeployer.DeploymentResult result = deployer.deploy(
+                model(), null, Collections.singletonMap("eu-west-1", "missing-policy"));
+
+        assertThat(result.getSucceeded()).containsExactly("us-east-1");
+        assertThat(result.getRegions().get("eu-west-1").getPolicyId()).isEqualTo("missing-policy");
+        assertThat(clients.get("eu-west-1").policies).isEmpty();
+    }
+
+    @Test
+    void invalidPoliciesAreRejectedBeforeAnyCall() {
+
+        deployer = deployer("us-east-1");
+        final ResourceModel model = model();
+        model.getSecurityServicePolicyData().setType("NOT_A_TYPE");
+
+        assertThatThrownBy(() -> deployer.deploy(model, null, null)).isInstanceOf(InvalidInputException.class);
+        assertThat(clients.get("us-east-1").getCallCount()).isZero();
+    }
+
+    private MultiRegionDeployer deployer(final String... regions) {
+
+        final Map<String, FmsClient> regionClients = new LinkedHashMap<>();
+        Arrays.stream(regions).forEach(region -> {
+            clients.put(region, new FakeRegionClient(region));
+            regionClients.put(region, clients.get(region));
+        });
+        return new MultiRegionDeployer(regionClients, 3, 1, 5);
+    }
+
+    private static ResourceModel model() {
+
+        return ResourceModel.builder()
+                .policyName("regional")
+                .excludeResourceTags(false)
+                .remediationEnabled(false)
+                .resourceType("AWS::ElasticLoadBalancingV2::LoadBalancer")
+                .securityServicePolicyData(SecurityServicePolicyData.builder().type("SHIELD_ADVANCED").build())
+                .build();
+    }
+
+    /**
+     * FMS client of a single region keeping policies and tags in memory, failing or losing the response of the first
+     * puts if asked.
+     */
+    private static class FakeRegionClient extends FakeFmsClient {
+
+        private final String region;
+        private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+        private final Map<String, List<Tag>> tags = new ConcurrentHashMap<>();
+        private final AtomicInteger lostPuts = new AtomicInteger();
+        private volatile boolean failPuts;
+
+        FakeRegionClient(final String region) {
+
+            this.region = region;
+        }
+
+        String arn(final String policyId) {
+
+            return String.format("arn:aws:fms:%s:123456789012:policy/%s", region, policyId);
+        }
+
+        private Policy policy(final String policyId) {
+
+            final Policy policy = policies.get(policyId);
+            if (policy == null) {
+                throw ResourceNotFoundException.builder().message("No policy " + policyId).build();
+            }
+            return policy;
+        }
+
+        @Override
+        public PutPolicyResponse putPolicy(final PutPolicyRequest request) {
+
+            return call(request, () -> {
+                if (failPuts) {
+                    throw LimitExceededException.builder().message("Policy limit reached").build();
+                }
+                final String policyId;
+                final int updateToken;
+                if (request.policy().policyId() == null) {
+                    policyId = region + "-policy-" + (policies.size() + 1);
+                    updateToken = 1;
+                } else {
+                    policyId = request.policy().policyId();
+                    updateToken = Integer.parseInt(policy(policyId).policyUpdateToken()) + 1;
+                }
+                final Policy stored = request.policy().toBuilder()
+                        .policyId(policyId)
+                        .policyUpdateToken(String.valueOf(updateToken))
+                        .build();
+                policies.put(policyId, stored);
+                tags.computeIfAbsent(arn(policyId), arn -> new ArrayList<>()).addAll(request.tagList());
+                if (lostPuts.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                    throw FmsException.builder().statusCode(500).message("Internal error").build();
+                }
+                return PutPolicyResponse.builder().policy(stored).policyArn(arn(policyId)).build();
+            });
+        }
+
+        @Override
+        public ListPoliciesResponse listPolicies(final ListPoliciesRequest request) {
+
+            return call(request, () -> {
+                final List<PolicySummary> summaries = new ArrayList<>();
+                policies.values().forEach(policy -> summaries.add(PolicySummary.builder()
+                        .policyId(policy.policyId())
+                        .policyName(policy.policyName())
+                        .build()));
+                final Page<PolicySummary> page = page(summaries, request.nextToken());
+                return ListPoliciesResponse.builder()
+                        .policyList(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public GetPolicyResponse getPolicy(final GetPolicyRequest request) {
+
+            return call(request, () -> GetPolicyResponse.builder()
+                    .policy(policy(request.policyId()))
+                    .policyArn(arn(request.policyId()))
+                    .build());
+        }
+
+        @Override
+        public ListTagsForResourceResponse listTagsForResource(final ListTagsForResourceRequest request) {
+
+            return call(request, () -> ListTagsForResourceResponse.builder()
+                    .tagList(tags.getOrDefault(request.resourceArn(), Collections.emptyList()))
+                    .build());
+        }
+
+        @Override
+        public TagResourceResponse tagResource(final TagResourceRequest request) {
+
+            return call(request, () -> {
+                tags.computeIfAbsent(request.resourceArn(), arn -> new ArrayList<>()).addAll(request.tagList());
+                return TagResourceResponse.builder().build();
+            });
+        }
+
+        @Override
+        public UntagResourceResponse untagResource(final UntagResourceRequest request) {
+
+            return call(request, () -> {
+                tags.computeIfAbsent(request.resourceArn(), arn -> new ArrayList<>())
+                        .removeIf(tag -> request.tagKeys().contains(tag.key()));
+                return UntagResourceResponse.builder().build();
+            });
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package software.amazon.fms.policy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsException;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.fms.policy.helpers.CfnHelper;
+import software.amazon.fms.policy.helpers.FmsSampleHelper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class PolicyInventoryTest {
+
+    @Mock
+    private FmsClient client;
+
+    @Test
+    void refreshReadsOnlyNewPolicies(@TempDir final Path directory) throws IOException {
+
+        // stub a single policy
+        doReturn(FmsSampleHelper.sampleListPolicies(null))
+                .when(client)
+                .listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(client)
+                .getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(true, false))
+                .when(client)
+                .listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+
+        // the first refresh reads the new policy
+        final PolicyInventory inventory = new PolicyInventory(2, Long.MAX_VALUE);
+        final PolicyInventory.RefreshResult firstResult = inventory.refresh(client);
+        assertThat(firstResult.getAdded()).isEqualTo(1);
+        assertThat(firstResult.getPoliciesRead()).isEqualTo(1);
+        assertThat(firstResult.getTagListsRead()).isEqualTo(1);
+
+        // a reloaded snapshot reads the policy for its update token, but does not list the tags again
+        final Path snapshot = directory.resolve("policies.json");
+        inventory.save(snapshot);
+        final PolicyInventory reloaded = PolicyInventory.load(snapshot, 2, Long.MAX_VALUE);
+        final PolicyInventory.RefreshResult secondResult = reloaded.refresh(client);
+        assertThat(secondResult.getAdded()).isEqualTo(0);
+        assertThat(secondResult.getPoliciesRead()).isEqualTo(1);
+        assertThat(secondResult.getTagListsRead()).isEqualTo(0);
+
+        // assertions
+        verify(client, times(2)).getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+        verify(client, times(1)).listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+        final PolicyInventory.Entry entry = reloaded.getEntries().get(describeGetResponse.policy().policyId());
+        assertThat(entry.getModel()).isEqualTo(CfnHelper.convertFMSPolicyToCFNResourceModel(
+                describeGetResponse.policy(),
+                describeGetResponse.policyArn(),
+                FmsSampleHelper.sampleListTagsForResourceResponse(true, false).tagList()));
+        assertThat(entry.getPolicyUpdateToken()).isEqualTo(describeGetResponse.policy().policyUpdateToken());
+    }
+
+    @Test
+    void refreshFindsChangesTheSummaryDoesNotShow() {
+
+        // stub a single policy whose scope changes without changing its summary
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        final GetPolicyResponse changedGetResponse = describeGetResponse.toBuilder()
+                .policy(describeGetResponse.policy().toBuilder()
+                        .policyUpdateToken(describeGetResponse.policy().policyUpdateToken() + "-changed")
+                        .excludeResourceTags(!describeGetResponse.policy().excludeResourceTags())
+                        .build())
+                .build();
+        doReturn(FmsSampleHelper.sampleListPolicies(null))
+                .when(client)
+                .listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        doReturn(describeGetResponse, changedGetResponse)
+                .when(client)
+                .getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(false, false))
+                .when(client)
+                .listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+
+        // refresh before and after the change
+        final PolicyInventory inventory = new PolicyInventory(2, Long.MAX_VALUE);
+        inventory.refresh(client);
+        final PolicyInventory.RefreshResult result = inventory.refresh(client);
+
+        // assertions
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getTagListsRead()).isEqualTo(1);
+        assertThat(inventory.getEntries().get(describeGetResponse.policy().policyId()).getPolicyUpdateToken())
+                .isEqualTo(changedGetResponse.policy().policyUpdateToken());
+    }
+
+    @Test
+    void refreshRetriesThrottledReads() {
+
+        // stub a single policy whose first read is throttled
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(FmsSampleHelper.sampleListPolicies(null))
+                .when(client)
+                .listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        doThrow(FmsException.builder().statusCode(429).message("Rate exceeded").build())
+                .doReturn(describeGetResponse)
+                .when(client)
+                .getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(false, false))
+                .when(client)
+                .listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+
+        // refresh
+        final PolicyInventory inventory = new PolicyInventory(2, Long.MAX_VALUE);
+        final PolicyInventory.RefreshResult result = inventory.refresh(client);
+
+        // assertions
+        assertThat(result.getAdded()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(0);
+        assertThat(result.getThrottled()).isEqualTo(1);
+        verify(client, times(2)).getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+        assertThat(inventory.getEntries()).containsKey(describeGetResponse.policy().policyId());
+    }
+
+    @Test
+    void refreshRemovesDeletedPolicies() {
+
+        // stub a single policy that is then deleted
+        doReturn(FmsSampleHelper.sampleListPolicies(null), ListPoliciesResponse.builder().build())
+                .when(client)
+                .listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        doReturn(FmsSampleHelper.sampleGetPolicyRequiredParametersResponse())
+                .when(client)
+                .getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(false, false))
+                .when(client)
+                .listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+
+        // refresh before and after the deletion
+        final PolicyInventory inventory = new PolicyInventory(2, Long.MAX_VALUE);
+        inventory.refresh(client);
+        final PolicyInventory.RefreshResult result = inventory.refresh(client);
+
+        // assertions
+        assertThat(result.getRemoved()).isEqualTo(1);
+        assertThat(inventory.getEntries()).isEmpty();
+    }
+}
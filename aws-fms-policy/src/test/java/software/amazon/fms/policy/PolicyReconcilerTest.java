@@ -0,0 +1,348 @@
+package software.amazon.fms.policy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.fms.model.CustomerPolicyScopeIdType;
+import software.amazon.awssdk.services.fms.model.DeletePolicyRequest;
+import software.amazon.awssdk.services.fms.model.DeletePolicyResponse;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.PutPolicyRequest;
+import software.amazon.awssdk.services.fms.model.PutPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.fms.model.SecurityServicePolicyData;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.awssdk.services.fms.model.TagResourceRequest;
+import software.amazon.awssdk.services.fms.model.TagResourceResponse;
+import software.amazon.awssdk.services.fms.model.UntagResourceRequest;
+import software.amazon.awssdk.services.fms.model.UntagResourceResponse;
+import software.amazon.fms.policy.helpers.FakeFmsClient;
+import software.amazon.fms.policy.helpers.RateLimiter;
+import software.amazon.fms.policy.helpers.Retrier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PolicyReconcilerTest {
+
+    private static final String RESOURCE_TYPE = "AWS::ElasticLoadBalancingV2::LoadBalancer";
+
+    private final FakePolicyClient client = new FakePolicyClient();
+    private final Retrier retries = new Retrier(3, 1, 5);
+
+    @Test
+    void planComparesDesiredAndLivePoliciesSemantically(@TempDir final Path directory) throws IOException {
+
+        // the unchanged policy lists its accounts in another order and spaces its managed service data differently
+        final String unchangedId = client.seed("unchanged", false, Arrays.asList("111111111111", "222222222222"),
+                Collections.singletonList(Tag.builder().key("team").value("network").build()));
+        final String changedId = client.seed("changed", false, Collections.emptyList(), Collections.emptyList());
+        final String unmanagedId = client.seed("unmanaged", false, Collections.emptyList(), Collections.emptyList());
+        write(directory, "unchanged.json", model("unchanged", false,
+                "\"IncludeMap\": {\"ACCOUNT\": [\"222222222222\", \"111111111111\"]},"
+                        + " \"Tags\": [{\"Key\": \"team\", \"Value\": \"network\"}],"));
+        write(directory, "changed.json", model("changed", true, ""));
+        write(directory, "created.json", "{\"request\": {\"desiredResourceState\": " + model("created", false, "")
+                + "}, \"callbackContext\": null}");
+
+        final PolicyReconciler.Plan plan = reconciler(true).plan(PolicyReconciler.load(directory));
+
+        assertThat(plan.getUnchanged()).containsExactly("unchanged");
+        assertThat(plan.getActions()).extracting(PolicyReconciler.Action::describe).containsExactly(
+                "create created",
+                "update changed (" + changedId + ") [/RemediationEnabled]",
+                "delete unmanaged (" + unmanagedId + ")");
+
+        // planning is a dry run, it only reads
+        assertThat(client.writes.get()).isZero();
+        assertThat(client.policies).containsKeys(unchangedId, changedId, unmanagedId);
+    }
+
+    @Test
+    void applyRunsEveryActionThroughTheHandlers(@TempDir final Path directory) throws IOException {
+
+        final String changedId = client.seed("changed", false, Collections.emptyList(), Collections.emptyList());
+        final String unmanagedId = client.seed("unmanaged", false, Collections.emptyList(), Collections.emptyList());
+        write(directory, "changed.json", model("changed", true,
+                "\"Tags\": [{\"Key\": \"team\", \"Value\": \"network\"}],"));
+        write(directory, "created.json", model("created", false, ""));
+
+        final PolicyReconciler reconciler = reconciler(true);
+        final PolicyReconciler.Result result = reconciler.apply(reconciler.plan(PolicyReconciler.load(directory)));
+
+        assertThat(result.getOutcomes()).hasSize(3);
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(client.policies).doesNotContainKey(unmanagedId);
+        assertThat(client.policies.get(changedId).remediationEnabled()).isTrue();
+        assertThat(client.tags.get(client.arn(changedId))).containsExactly(
+                Tag.builder().key("team").value("network").build());
+        assertThat(client.policies.values()).extracting(Policy::policyName)
+                .containsExactlyInAnyOrder("changed", "created");
+
+        // every call of the plan and of the handlers is counted
+        final Map<String, Long> calls = reconciler.getCalls();
+        assertThat(calls.get("ListPolicies")).isEqualTo(1L);
+        assertThat(calls.get("PutPolicy")).isEqualTo(2L);
+        assertThat(calls.get("DeletePolicy")).isEqualTo(1L);
+        assertThat(calls.get("TagResource")).isEqualTo(1L);
+
+        // a second pass finds nothing left to do
+        final PolicyReconciler.Plan secondPlan = reconciler.plan(PolicyReconciler.load(directory));
+        assertThat(secondPlan.getActions()).isEmpty();
+        assertThat(secondPlan.getUnchanged()).containsExactlyInAnyOrder("changed", "created");
+    }
+
+    @Test
+    void handlerCallsGoThroughTheReconciler(@TempDir final Path directory) throws IOException {
+
+        // FMS throttles the first write, which only the reconciler retries
+        client.seed("changed", false, Collections.emptyList(), Collections.emptyList());
+        client.seed("unmanaged", false, Collections.emptyList(), Collections.emptyList());
+        write(directory, "changed.json", model("changed", true,
+                "\"Tags\": [{\"Key\": \"team\", \"Value\": \"network\"}],"));
+        write(directory, "created.json", model("created", false, ""));
+        client.throttle(1, FakePolicyClient.WRITE_OPERATIONS);
+
+        final PolicyReconciler reconciler = reconciler(true);
+        final PolicyReconciler.Result result = reconciler.apply(reconciler.plan(PolicyReconciler.load(directory)));
+
+        // every call the client received, from planning or from a handler, was made through the reconciler proxy
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(retries.getThrottleCount()).isEqualTo(1);
+        assertThat(reconciler.getCalls()).isEqualTo(client.getCallCounts());
+    }
+
+    @Test
+    void unmanagedPoliciesAreKeptUnlessDeletesAreEnabled(@TempDir final Path directory) throws IOException {
+
+        client.seed("unmanaged", false, Collections.emptyList(), Collections.emptyList());
+
+        final PolicyReconciler.Plan plan = reconciler(false).plan(PolicyReconciler.load(directory));
+
+        assertThat(plan.getActions()).isEmpty();
+    }
+
+    @Test
+    void failedActionsAreReported(@TempDir final Path directory) throws IOException {
+
+        // FMS rejects every write, the handler turns the rejection into a failure event
+        client.failWrites = true;
+        write(directory, "created.json", model("created", false, ""));
+
+        final PolicyReconciler reconciler = reconciler(false);
+        final PolicyReconciler.Result result = reconciler.apply(reconciler.plan(PolicyReconciler.load(directory)));
+
+        assertThat(result.getFailures()).hasSize(1);
+        assertThat(result.getFailures().get(0).getErrorCode()).isEqualTo("NotFound");
+    }
+
+    @Test
+    void loadRejectsDuplicatePolicyNames(@TempDir final Path directory) throws IOException {
+
+        write(directory, "first.json", model("duplicate", false, ""));
+        write(directory, "second.json", model("duplicate", true, ""));
+
+        assertThatThrownBy(() -> PolicyReconciler.load(directory))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("first.json and second.json");
+    }
+
+    private PolicyReconciler reconciler(final boolean deleteUnmanaged) {
+
+        return new PolicyReconciler(client, retries, new RateLimiter(1000, 10), 2, deleteUnmanaged, message -> { });
+    }
+
+    private static String model(final String policyName, final boolean remediationEnabled, final String properties) {
+
+        return "{" + properties
+                + " \"PolicyName\": \"" + policyName + "\","
+                + " \"ExcludeResourceTags\": false,"
+                + " \"RemediationEnabled\": " + remediationEnabled + ","
+                + " \"ResourceType\": \"" + RESOURCE_TYPE + "\","
+                + " \"SecurityServicePolicyData\": {"
+                + "\"Type\": \"SHIELD_ADVANCED\", \"ManagedServiceData\": \"{\\\"type\\\": \\\"SHIELD_ADVANCED\\\"}\"}}";
+    }
+
+    private static void write(final Path directory, final String fileName, final String content) throws IOException {
+
+        Files.write(directory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * FMS client keeping policies and tags in memory.
+     */
+    private static class FakePolicyClient extends FakeFmsClient {
+
+        /** Operations that change policies or tags. */
+        private static final String[] WRITE_OPERATIONS = {"PutPolicy", "DeletePolicy", "TagResource", "UntagResource"};
+
+        private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+        private final Map<String, List<Tag>> tags = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        private final AtomicInteger writes = new AtomicInteger();
+        private volatile boolean failWrites;
+
+        String seed(
+                final String policyName,
+                final boolean remediationEnabled,
+                final List<String> accounts,
+                final List<Tag> policyTags) {
+
+            final Policy.Builder policy = Policy.builder()
+                    .policyName(policyName)
+                    .excludeResourceTags(false)
+                    .remediationEnabled(remediationEnabled)
+                    .resourceType(RESOURCE_TYPE)
+                    .securityServicePolicyData(SecurityServicePolicyData.builder()
+                            .type("SHIELD_ADVANCED")
+                            .managedServiceData("{\"type\":\"SHIELD_ADVANCED\"}")
+                            .build());
+            if (!accounts.isEmpty()) {
+                policy.includeMap(Collections.singletonMap(CustomerPolicyScopeIdType.ACCOUNT, accounts));
+            }
+            final String policyId = store(policy.build());
+            tags.put(arn(policyId), new ArrayList<>(policyTags));
+            return policyId;
+        }
+
+        String arn(final String policyId) {
+
+            return "arn:aws:fms:us-east-1:123456789012:policy/" + policyId;
+        }
+
+        private String store(final Policy policy) {
+
+            final String policyId = policy.policyId() != null
+                    ? policy.policyId()
+                    : "policy-" + nextId.incrementAndGet();
+            final Policy previous = policies.get(policyId);
+            final int updateToken = previous == null ? 1 : Integer.parseInt(previous.policyUpdateToken()) + 1;
+            policies.put(policyId, policy.toBuilder()
+                    .policyId(policyId)
+                    .policyUpdateToken(String.valueOf(updateToken))
+                    .build());
+            return policyId;
+        }
+
+        private Policy policy(final String policyId) {
+
+            final Policy policy = policies.get(policyId);
+            if (policy == null) {
+                throw ResourceNotFoundException.builder().message("No policy " + policyId).build();
+            }
+            return policy;
+        }
+
+        private void write() {
+
+            writes.incrementAndGet();
+            if (failWrites) {
+                throw ResourceNotFoundException.builder().message("Writes are rejected").build();
+            }
+        }
+
+        @Override
+        public ListPoliciesResponse listPolicies(final ListPoliciesRequest request) {
+
+            return call(request, () -> {
+                final List<PolicySummary> summaries = new ArrayList<>();
+                new TreeMap<>(policies).forEach((policyId, policy) -> summaries.add(PolicySummary.builder()
+                        .policyId(policyId)
+                        .policyArn(arn(policyId))
+                        .policyName(policy.policyName())
+                        .resourceType(policy.resourceType())
+                        .securityServiceType(policy.securityServicePolicyData().type())
+                        .remediationEnabled(policy.remediationEnabled())
+                        .build()));
+                final Page<PolicySummary> page = page(summaries, request.nextToken());
+                return ListPoliciesResponse.builder()
+                        .policyList(page.getItems())
+                        .nextToken(page.getNextToken())
+                        .build();
+            });
+        }
+
+        @Override
+        public GetPolicyResponse getPolicy(final GetPolicyRequest request) {
+
+            return call(request, () -> GetPolicyResponse.builder()
+                    .policy(policy(request.policyId()))
+                    .policyArn(arn(request.policyId()))
+                    .build());
+        }
+
+        @Override
+        public ListTagsForResourceResponse listTagsForResource(final ListTagsForResourceRequest request) {
+
+            return call(request, () -> ListTagsForResourceResponse.builder()
+                    .tagList(tags.getOrDefault(request.resourceArn(), Collections.emptyList()))
+                    .build());
+        }
+
+        @Override
+        public PutPolicyResponse putPolicy(final PutPolicyRequest request) {
+
+            return call(request, () -> {
+                write();
+                if (request.policy().policyId() != null) {
+                    policy(request.policy().policyId());
+                }
+                final String policyId = store(request.policy());
+                tags.computeIfAbsent(arn(policyId), arn -> new ArrayList<>()).addAll(request.tagList());
+                return PutPolicyResponse.builder().policy(policies.get(policyId)).policyArn(arn(policyId)).build();
+            });
+        }
+
+        @Override
+        public DeletePolicyResponse deletePolicy(final DeletePolicyRequest request) {
+
+            return call(request, () -> {
+                write();
+                policy(request.policyId());
+                policies.remove(request.policyId());
+                tags.remove(arn(request.policyId()));
+                return DeletePolicyResponse.builder().build();
+            });
+        }
+
+        @Override
+        public TagResourceResponse tagResource(final TagResourceRequest request) {
+
+            return call(request, () -> {
+                write();
+                tags.computeIfAbsent(request.resourceArn(), arn -> new ArrayList<>()).addAll(request.tagList());
+                return TagResourceResponse.builder().build();
+            });
+        }
+
+        @Override
+        public UntagResourceResponse untagResource(final UntagResourceRequest request) {
+
+            return call(request, () -> {
+                write();
+                tags.computeIfAbsent(request.resourceArn(), arn -> new ArrayList<>())
+                        .removeIf(tag -> request.tagKeys().contains(tag.key()));
+                return UntagResourceResponse.builder().build();
+            });
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package software.amazon.fms.policy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.CustomerPolicyScopeIdType;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+public class PolicyScopeIndexTest {
+
+    private static final String ACCOUNT = "111111111111";
+    private static final String OTHER_ACCOUNT = "222222222222";
+    private static final String OU = "ou-abcd-11111111";
+    private static final String ROOT_OU = "ou-abcd-00000000";
+
+    @Mock
+    private FmsClient client;
+
+    @Test
+    void includeExcludeAndOrganizationWidePolicies() {
+
+        final PolicyScopeIndex index = new PolicyScopeIndex(2);
+        index.put(policy("everywhere", null, null));
+        index.put(policy("include-account", scope(ACCOUNT), null));
+        index.put(policy("include-ou", scope(null, ROOT_OU), null));
+        index.put(policy("exclude-account", null, scope(ACCOUNT)));
+        index.put(policy("exclude-ou", null, scope(null, OU)));
+
+        // an include map takes precedence over the exclude map
+        index.put(policy("include-other", scope(OTHER_ACCOUNT), scope(ACCOUNT)));
+
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.applicablePolicies(ACCOUNT, ImmutableList.of(OU, ROOT_OU)))
+                .containsExactly("everywhere", "include-account", "include-ou");
+        assertThat(index.applicablePolicies(ACCOUNT, Collections.emptyList()))
+                .containsExactly("everywhere", "exclude-ou", "include-account");
+        assertThat(index.applicablePolicies(OTHER_ACCOUNT, null))
+                .containsExactly("everywhere", "exclude-account", "exclude-ou", "include-other");
+        assertThat(index.applicablePolicies(ImmutableList.of(OU, ROOT_OU)))
+                .containsExactly("everywhere", "exclude-account", "include-ou");
+
+        final Map<String, List<String>> batch = index.applicablePolicies(
+                ImmutableList.of(OTHER_ACCOUNT, ACCOUNT),
+                account -> ImmutableList.of(OU, ROOT_OU));
+        assertThat(batch.keySet()).containsExactly(OTHER_ACCOUNT, ACCOUNT);
+        assertThat(batch.get(OTHER_ACCOUNT))
+                .containsExactly("everywhere", "exclude-account", "include-other", "include-ou");
+    }
+
+    @Test
+    void incrementalUpdates() {
+
+        final PolicyScopeIndex index = new PolicyScopeIndex(2);
+        index.put(policy("a", scope(ACCOUNT), null));
+        index.put(policy("b", scope(ACCOUNT), null));
+
+        // a changed scope replaces the old postings
+        index.put(policy("a", scope(OTHER_ACCOUNT), null));
+        assertThat(index.applicablePolicies(ACCOUNT, null)).containsExactly("b");
+        assertThat(index.applicablePolicies(OTHER_ACCOUNT, null)).containsExactly("a");
+
+        // a removed policy frees its ordinal for the next one
+        index.remove("a");
+        index.remove("missing");
+        index.put(ResourceModel.builder()
+                .id("c")
+                .excludeMap(IEMap.builder().aCCOUNT(ImmutableList.of(ACCOUNT)).build())
+                .build());
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.applicablePolicies(ACCOUNT, null)).containsExactly("b");
+        assertThat(index.applicablePolicies(OTHER_ACCOUNT, null)).containsExactly("c");
+    }
+
+    @Test
+    void loadReadsEveryPolicy() {
+
+        doReturn(ListPoliciesResponse.builder()
+                .policyList(summary("a"), summary("b"), summary("deleted"))
+                .build())
+                .when(client)
+                .listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        doAnswer(invocation -> {
+            final String policyId = invocation.<GetPolicyRequest>getArgument(0).policyId();
+            if (policyId.equals("deleted")) {
+                throw ResourceNotFoundException.builder().build();
+            }
+            return GetPolicyResponse.builder()
+                    .policy(policy(policyId, policyId.equals("a") ? scope(ACCOUNT) : null, null))
+                    .build();
+        }).when(client).getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+
+        final PolicyScopeIndex index = new PolicyScopeIndex(2);
+        index.put(policy("stale", null, null));
+        final PolicyScopeIndex.LoadResult result = index.load(client);
+
+        assertThat(result.getIndexed()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(index.applicablePolicies(ACCOUNT, null)).containsExactly("a", "b");
+        assertThat(index.applicablePolicies(OTHER_ACCOUNT, null)).containsExactly("b");
+    }
+
+    private static Policy policy(
+            final String policyId,
+            final Map<CustomerPolicyScopeIdType, List<String>> includeMap,
+            final Map<CustomerPolicyScopeIdType, List<String>> excludeMap) {
+
+        return Policy.builder()
+                .policyId(policyId)
+                .includeMap(includeMap)
+                .excludeMap(excludeMap)
+                .build();
+    }
+
+    private static Map<CustomerPolicyScopeIdType, List<String>> scope(final String account) {
+
+        return ImmutableMap.of(CustomerPolicyScopeIdType.ACCOUNT, ImmutableList.of(account));
+    }
+
+    private static Map<CustomerPolicyScopeIdType, List<String>> scope(
+            final String account,
+            final String organizationalUnit) {
+
+        return account == null
+                ? ImmutableMap.of(CustomerPolicyScopeIdType.ORG_UNIT, ImmutableList.of(organizationalUnit))
+                : ImmutableMap.of(
+                        CustomerPolicyScopeIdType.ACCOUNT, ImmutableList.of(account),
+                        CustomerPolicyScopeIdType.ORG_UNIT, ImmutableList.of(organizationalUnit));
+    }
+
+    private static PolicySummary summary(final String policyId) {
+
+        return PolicySummary.builder().policyId(policyId).build();
+    }
+}
@@ -34,13 +34,19 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.policy.helpers.FmsSampleHelper;
 import software.amazon.fms.policy.helpers.CfnSampleHelper;
+import software.amazon.fms.policy.helpers.ExecutionBudget;
+import software.amazon.fms.policy.helpers.OperationCostModel;
+import software.amazon.fms.policy.helpers.VerificationSampler;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -72,7 +78,7 @@ class UpdateHandlerTest {
         proxy = mock(AmazonWebServicesClientProxy.class);
         logger = mock(Logger.class);
         configuration = new Configuration();
-        handler = new UpdateHandler(client);
+        handler = new UpdateHandler(client, 1);
     }
 
     @Test
@@ -499,6 +505,442 @@ class UpdateHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handlerRequestConcurrentAddDeletePolicyTags() {
+
+        // stub the response for the read request
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the update request
+        final PutPolicyResponse describePutResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(true, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the untag resource request
+        final UntagResourceResponse describeUntagResponse = FmsSampleHelper.sampleUntagResourceResponse();
+        doReturn(describeUntagResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(UntagResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the tag resource request
+        final TagResourceResponse describeTagResponse = FmsSampleHelper.sampleTagResourceResponse();
+        doReturn(describeTagResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(TagResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, true);
+
+        // create sample tags how cfn interprets them from the resource model
+        final Map<String, String> tags = configuration.resourceDefinedTags(requestExpectedModel);
+
+        // create the update request and send it to a handler running independent operations concurrently
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .desiredResourceTags(tags)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(client).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls
+        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        final List<FmsRequest> requests = captor.getAllValues();
+        assertThat(requests).containsExactlyInAnyOrder(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleUntagResourceRequest(true, false),
+                FmsSampleHelper.sampleTagResourceRequest(false, true)
+        );
+
+        // the tag operations only wait for the policy read, and a tag is only added once removed tags are gone
+        assertThat(requests.get(0)).isEqualTo(FmsSampleHelper.sampleGetPolicyRequest());
+        assertThat(requests.indexOf(FmsSampleHelper.sampleListTagsForResourceRequest()))
+                .isLessThan(requests.indexOf(FmsSampleHelper.sampleUntagResourceRequest(true, false)));
+        assertThat(requests.indexOf(FmsSampleHelper.sampleUntagResourceRequest(true, false)))
+                .isLessThan(requests.indexOf(FmsSampleHelper.sampleTagResourceRequest(false, true)));
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getCallbackContext()).isNull();
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
+//        assertThat(response.getResourceModel()).isEqualTo(requestExpectedModel);
+        assertThat(response.getResourceModels()).isNull();
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestConcurrentTagReadSuccess() {
+
+        // stub the response for the read request
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the update request
+        final PutPolicyResponse describePutResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false);
+
+        // create the update request with enough context to synthesize the policy ARN and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .awsPartition("aws")
+                .region("us-east-1")
+                .awsAccountId(FmsSampleHelper.sampleAccountId)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(client).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the tag read runs alongside the policy read so its position is not fixed
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).containsExactlyInAnyOrder(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleListTagsForResourceRequest()
+        );
+        final List<FmsRequest> writes = new ArrayList<>(captor.getAllValues());
+        writes.removeIf(fmsRequest -> fmsRequest instanceof ListTagsForResourceRequest);
+        assertThat(writes).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false)
+        ));
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestSynthesizedArnMismatch() {
+
+        // stub the response for the read request
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the update request
+        final PutPolicyResponse describePutResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false);
+
+        // create the update request with a region that does not match the policy ARN and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .awsPartition("aws")
+                .region("us-west-2")
+                .awsAccountId(FmsSampleHelper.sampleAccountId)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(client).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the tags are read again using the returned policy ARN
+        verify(proxy, atLeast(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        final List<FmsRequest> requests = captor.getAllValues();
+        assertThat(requests).contains(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleListTagsForResourceRequest()
+        );
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handlerRequestTrustPreviousStatePolicyTags() {
+
+        // stub the response for the read request
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the update request
+        final PutPolicyResponse describePutResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the untag resource request
+        final UntagResourceResponse describeUntagResponse = FmsSampleHelper.sampleUntagResourceResponse();
+        doReturn(describeUntagResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(UntagResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the tag resource request
+        final TagResourceResponse describeTagResponse = FmsSampleHelper.sampleTagResourceResponse();
+        doReturn(describeTagResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(TagResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel previousModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, true, false);
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, true);
+
+        // create the update request carrying the previous state and send it to a handler trusting it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .desiredResourceTags(configuration.resourceDefinedTags(requestExpectedModel))
+                .previousResourceState(previousModel)
+                .previousResourceTags(configuration.resourceDefinedTags(previousModel))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(client, 1, new VerificationSampler(100)).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the tags are not listed
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleUntagResourceRequest(true, false),
+                FmsSampleHelper.sampleTagResourceRequest(false, true)
+        ));
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handlerRequestTrustPreviousStateVerifiesAfterFailure() {
+
+        // stub the response for the read request
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // mock an InternalErrorException from the first update request only
+        final PutPolicyResponse describePutResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doThrow(InternalErrorException.builder().build())
+                .doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false);
+
+        // send the same update twice to a handler trusting the previous state
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .previousResourceState(requestExpectedModel)
+                .build();
+        final UpdateHandler trustingHandler = new UpdateHandler(client, 1, new VerificationSampler(100));
+        final ProgressEvent<ResourceModel, CallbackContext> failedResponse =
+                trustingHandler.handleRequest(proxy, request, null, logger);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                trustingHandler.handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the update after the failure lists the tags
+        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleListTagsForResourceRequest()
+        ));
+
+        // assertions
+        assertThat(failedResponse.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(failedResponse.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestBudgetExhaustedResumes() {
+
+        // stub the response for the read request, which uses up most of the execution budget
+        final AtomicLong clock = new AtomicLong();
+        final GetPolicyResponse describeGetResponse = FmsSampleHelper.sampleGetPolicyRequiredParametersResponse();
+        doAnswer(invocation -> {
+            clock.set(1000);
+            return describeGetResponse;
+        })
+                .doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the update request
+        final PutPolicyResponse describePutResponse = FmsSampleHelper.samplePutPolicyRequiredParametersResponse();
+        doReturn(describePutResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false);
+
+        // send the update with too little budget to put the policy after reading it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .clientRequestToken("budget-token")
+                .build();
+        handler.setBudgets(() -> new ExecutionBudget(
+                OperationCostModel.DEFAULT_ESTIMATE_MILLIS + 500, 0, new OperationCostModel(), clock::get));
+        final ProgressEvent<ResourceModel, CallbackContext> checkpointResponse =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // send the callback with a fresh budget
+        handler.setBudgets(ExecutionBudget::unlimited);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, checkpointResponse.getCallbackContext(), logger);
+
+        // verify stub calls, the callback runs the whole update again
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.sampleGetPolicyRequest(),
+                FmsSampleHelper.samplePutPolicyRequiredParametersRequest(true, false, false),
+                FmsSampleHelper.sampleListTagsForResourceRequest()
+        ));
+
+        // assertions
+        assertThat(checkpointResponse.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(checkpointResponse.getCallbackDelaySeconds()).isEqualTo(0);
+        assertThat(checkpointResponse.getCallbackContext().getClientRequestToken()).isEqualTo("budget-token");
+        assertThat(checkpointResponse.getCallbackContext().getCheckpointCount()).isEqualTo(1);
+        assertThat(checkpointResponse.getErrorCode()).isNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
     @Test
     void handleRequestResourceNotFoundException() {
 
@@ -0,0 +1,136 @@
+package software.amazon.fms.policy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.fms.model.AwsVPCSecurityGroupViolation;
+import software.amazon.awssdk.services.fms.model.GetViolationDetailsRequest;
+import software.amazon.awssdk.services.fms.model.GetViolationDetailsResponse;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.fms.model.ResourceTag;
+import software.amazon.awssdk.services.fms.model.ResourceViolation;
+import software.amazon.awssdk.services.fms.model.ViolationDetail;
+import software.amazon.fms.policy.helpers.FakeFmsClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ViolationFetcherTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final FakeViolationClient client = new FakeViolationClient();
+
+    @Test
+    void fetchStreamsEveryDistinctViolation(@TempDir final Path directory) throws IOException {
+
+        final ViolationFetcher.ViolationKey first = key("sg-1");
+        final ViolationFetcher.ViolationKey second = key("sg-2");
+        final ViolationFetcher.ViolationKey missing = key("sg-missing");
+        final List<ViolationFetcher.Progress> reports = new ArrayList<>();
+        final Path output = directory.resolve("violations.ndjson.gz");
+
+        final ViolationFetcher.Progress progress = new ViolationFetcher(client, 2, 4, 60_000)
+                .fetch(Arrays.asList(first, second, first, missing), output, reports::add);
+
+        // the duplicate is looked up once, the missing resource is written as a failure
+        assertThat(client.getCallCount()).isEqualTo(3);
+        assertThat(progress.getTotal()).isEqualTo(3);
+        assertThat(progress.getFetched()).isEqualTo(2);
+        assertThat(progress.getFailed()).isEqualTo(1);
+        assertThat(reports).containsExactly(progress);
+
+        final Map<String, JsonNode> records = readRecords(output);
+        assertThat(records).hasSize(3);
+        assertThat(records.get("sg-1").get("type").asText()).isEqualTo("violation");
+        assertThat(records.get("sg-1").at("/violationDetail/ResourceViolations/0/AwsVPCSecurityGroupViolation"
+                + "/ViolationTarget").asText()).isEqualTo("sg-1");
+        assertThat(records.get("sg-1").at("/violationDetail/ResourceTags/0/Key").asText()).isEqualTo("team");
+        assertThat(records.get("sg-missing").get("type").asText()).isEqualTo("failure");
+    }
+
+    @Test
+    void throttledLookupsAreRetriedAtLowerConcurrency(@TempDir final Path directory) throws IOException {
+
+        client.throttle(2);
+        final List<ViolationFetcher.ViolationKey> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            keys.add(key("sg-" + i));
+        }
+
+        final ViolationFetcher.Progress progress = new ViolationFetcher(client, 8, 8, 60_000)
+                .fetch(keys, directory.resolve("violations.ndjson"), report -> { });
+
+        assertThat(progress.getFetched()).isEqualTo(20);
+        assertThat(progress.getFailed()).isZero();
+        assertThat(progress.getThrottled()).isEqualTo(2);
+        assertThat(progress.getConcurrencyLimit()).isLessThan(8);
+        assertThat(client.getMaxInFlight()).isLessThanOrEqualTo(8);
+        assertThat(readRecords(directory.resolve("violations.ndjson"))).hasSize(20);
+    }
+
+    private static ViolationFetcher.ViolationKey key(final String resourceId) {
+
+        return new ViolationFetcher.ViolationKey("policy-1", "111111111111", resourceId, "AWS::EC2::SecurityGroup");
+    }
+
+    private static Map<String, JsonNode> readRecords(final Path path) throws IOException {
+
+        final Map<String, JsonNode> records = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                path.toString().endsWith(".gz")
+                        ? new GZIPInputStream(Files.newInputStream(path))
+                        : Files.newInputStream(path),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final JsonNode record = OBJECT_MAPPER.readTree(line);
+                records.put(record.get("resourceId").asText(), record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * FMS client answering violation lookups from memory.
+     */
+    private static class FakeViolationClient extends FakeFmsClient {
+
+        @Override
+        public GetViolationDetailsResponse getViolationDetails(final GetViolationDetailsRequest request) {
+
+            return call(request, () -> {
+                if (request.resourceId().equals("sg-missing")) {
+                    throw ResourceNotFoundException.builder().message("No violation").build();
+                }
+                return GetViolationDetailsResponse.builder()
+                        .violationDetail(ViolationDetail.builder()
+                                .policyId(request.policyId())
+                                .memberAccount(request.memberAccount())
+                                .resourceId(request.resourceId())
+                                .resourceType(request.resourceType())
+                                .resourceViolations(ResourceViolation.builder()
+                                        .awsVPCSecurityGroupViolation(AwsVPCSecurityGroupViolation.builder()
+                                                .violationTarget(request.resourceId())
+                                                .build())
+                                        .build())
+                                .resourceTags(ResourceTag.builder().key("team").value("network").build())
+                                .build())
+                        .build();
+            });
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.awssdk.services.fms.model.CustomerPolicyScopeIdType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time taken to convert and combine the account lists of include/exclude maps with 10,000 accounts, as account ID
+ * sets and as sets of strings.
+ * Run with: mvn test -Dtest=AccountIdSetBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AccountIdSetBenchmarkTest {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int ROUNDS = 500;
+    private static final int WARMUP_ROUNDS = 200;
+
+    @Test
+    void benchmark() {
+
+        // two maps in random order sharing half their accounts
+        final Random random = new Random(42);
+        final List<String> includeAccounts = new ArrayList<>(ACCOUNTS);
+        final List<String> excludeAccounts = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            includeAccounts.add(AccountIdSet.formatAccountId(i * 2L));
+            excludeAccounts.add(AccountIdSet.formatAccountId(i * 2L + ACCOUNTS + (i % 2)));
+        }
+        Collections.shuffle(includeAccounts, random);
+        Collections.shuffle(excludeAccounts, random);
+        final Map<CustomerPolicyScopeIdType, List<String>> includeMap = new EnumMap<>(CustomerPolicyScopeIdType.class);
+        includeMap.put(CustomerPolicyScopeIdType.ACCOUNT, includeAccounts);
+        final Map<CustomerPolicyScopeIdType, List<String>> excludeMap = new EnumMap<>(CustomerPolicyScopeIdType.class);
+        excludeMap.put(CustomerPolicyScopeIdType.ACCOUNT, excludeAccounts);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            accountIdSets(includeMap, excludeMap);
+            stringSets(includeMap, excludeMap);
+        }
+
+        final long accountIdSetStart = System.nanoTime();
+        int accountIdSetSize = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            accountIdSetSize = accountIdSets(includeMap, excludeMap);
+        }
+        final long accountIdSetNanos = (System.nanoTime() - accountIdSetStart) / ROUNDS;
+
+        final long stringSetStart = System.nanoTime();
+        int stringSetSize = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            stringSetSize = stringSets(includeMap, excludeMap);
+        }
+        final long stringSetNanos = (System.nanoTime() - stringSetStart) / ROUNDS;
+
+        System.out.printf("%d accounts: account ID sets %d us, string sets %d us%n",
+                ACCOUNTS, accountIdSetNanos / 1_000, stringSetNanos / 1_000);
+        assertThat(accountIdSetSize).isEqualTo(stringSetSize);
+    }
+
+    private static int accountIdSets(
+            final Map<CustomerPolicyScopeIdType, List<String>> includeMap,
+            final Map<CustomerPolicyScopeIdType, List<String>> excludeMap) {
+
+        final AccountIdSet include = AccountIdSet.fromFmsIEMap(includeMap);
+        final AccountIdSet exclude = AccountIdSet.fromFmsIEMap(excludeMap);
+        return include.union(exclude).size() + include.intersection(exclude).size()
+                + include.difference(exclude).toAccountIds().size();
+    }
+
+    private static int stringSets(
+            final Map<CustomerPolicyScopeIdType, List<String>> includeMap,
+            final Map<CustomerPolicyScopeIdType, List<String>> excludeMap) {
+
+        final Set<String> include = new HashSet<>(includeMap.get(CustomerPolicyScopeIdType.ACCOUNT));
+        final Set<String> exclude = new HashSet<>(excludeMap.get(CustomerPolicyScopeIdType.ACCOUNT));
+        final Set<String> union = new HashSet<>(include);
+        union.addAll(exclude);
+        final Set<String> intersection = new HashSet<>(include);
+        intersection.retainAll(exclude);
+        final Set<String> difference = new HashSet<>(include);
+        difference.removeAll(exclude);
+        return union.size() + intersection.size() + new ArrayList<>(difference).size();
+    }
+}
@@ -0,0 +1,80 @@
+package software.amazon.fms.policy.helpers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.fms.model.CustomerPolicyScopeIdType;
+import software.amazon.fms.policy.IEMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountIdSetTest {
+
+    @Test
+    void canonicalOrderWithoutDuplicates() {
+
+        final AccountIdSet accounts = AccountIdSet.of(
+                ImmutableList.of("999999999999", "000000000042", "123456789012", "000000000042"));
+
+        assertThat(accounts.size()).isEqualTo(3);
+        assertThat(accounts.toArray()).containsExactly(42L, 123456789012L, 999999999999L);
+        assertThat(accounts.toAccountIds()).containsExactly("000000000042", "123456789012", "999999999999");
+        assertThat(accounts).isEqualTo(AccountIdSet.of(999999999999L, 123456789012L, 42L));
+        assertThat(accounts.hashCode()).isEqualTo(AccountIdSet.of(42L, 999999999999L, 123456789012L).hashCode());
+        assertThat(accounts.contains("000000000042")).isTrue();
+        assertThat(accounts.contains("42")).isFalse();
+        assertThat(accounts.contains(43L)).isFalse();
+        assertThat(AccountIdSet.of((ImmutableList<String>) null)).isSameAs(AccountIdSet.EMPTY);
+    }
+
+    @Test
+    void setOperations() {
+
+        final AccountIdSet a = AccountIdSet.of(1L, 3L, 5L, 7L);
+        final AccountIdSet b = AccountIdSet.of(2L, 3L, 7L, 8L);
+
+        assertThat(a.union(b).toArray()).containsExactly(1L, 2L, 3L, 5L, 7L, 8L);
+        assertThat(a.intersection(b).toArray()).containsExactly(3L, 7L);
+        assertThat(a.difference(b).toArray()).containsExactly(1L, 5L);
+        assertThat(b.difference(a).toArray()).containsExactly(2L, 8L);
+
+        // operations that change nothing return the set itself
+        assertThat(a.union(AccountIdSet.of(1L, 5L))).isSameAs(a);
+        assertThat(a.intersection(a.union(b))).isSameAs(a);
+        assertThat(a.difference(AccountIdSet.of(2L, 4L))).isSameAs(a);
+        assertThat(a.difference(a)).isSameAs(AccountIdSet.EMPTY);
+        assertThat(AccountIdSet.EMPTY.union(b)).isSameAs(b);
+    }
+
+    @Test
+    void includeExcludeMaps() {
+
+        final IEMap ieMap = IEMap.builder()
+                .aCCOUNT(ImmutableList.of("000000000002", "000000000001"))
+                .oRGUNIT(ImmutableList.of("ou-0000-00000000"))
+                .build();
+
+        assertThat(AccountIdSet.fromIEMap(ieMap).toArray()).containsExactly(1L, 2L);
+        assertThat(AccountIdSet.fromIEMap(null)).isSameAs(AccountIdSet.EMPTY);
+        assertThat(AccountIdSet.fromFmsIEMap(ImmutableMap.of(
+                CustomerPolicyScopeIdType.ACCOUNT, ieMap.getACCOUNT(),
+                CustomerPolicyScopeIdType.ORG_UNIT, ieMap.getORGUNIT()))).isEqualTo(AccountIdSet.fromIEMap(ieMap));
+        assertThat(AccountIdSet.fromFmsIEMap(ImmutableMap.of(
+                CustomerPolicyScopeIdType.ORG_UNIT, ieMap.getORGUNIT()))).isSameAs(AccountIdSet.EMPTY);
+    }
+
+    @Test
+    void invalidAccountIds() {
+
+        assertThat(AccountIdSet.parseAccountId("000000000000")).isZero();
+        assertThat(AccountIdSet.parseAccountId("12345678901")).isEqualTo(-1);
+        assertThat(AccountIdSet.parseAccountId("1234567890123")).isEqualTo(-1);
+        assertThat(AccountIdSet.parseAccountId("12345678901a")).isEqualTo(-1);
+        assertThat(AccountIdSet.formatAccountId(7L)).isEqualTo("000000000007");
+        assertThatThrownBy(() -> AccountIdSet.of(ImmutableList.of("000000000001", "1")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not an account ID: 1");
+        assertThatThrownBy(() -> AccountIdSet.of(1_000_000_000_000L)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,83 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void successesRaiseTheLimitByOnePerLimitOfCalls() throws InterruptedException {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 6);
+
+        // about a limit's worth of successes raise the limit by one
+        for (int i = 0; i < 5; i++) {
+            limiter.release(limiter.acquire(), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        for (int i = 0; i < 5; i++) {
+            limiter.release(limiter.acquire(), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(6);
+
+        // the limit never passes the maximum
+        for (int i = 0; i < 100; i++) {
+            limiter.release(limiter.acquire(), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(6);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void throttlesHalveTheLimitOncePerBurst() throws InterruptedException {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 8);
+
+        // three calls sent at the same limit are throttled together, which counts as one burst
+        final long first = limiter.acquire();
+        final long second = limiter.acquire();
+        final long third = limiter.acquire();
+        limiter.release(first, true);
+        limiter.release(second, true);
+        limiter.release(third, true);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        // a call sent after the decrease can decrease it again, down to the minimum
+        limiter.release(limiter.acquire(), true);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        limiter.release(limiter.acquire(), true);
+        limiter.release(limiter.acquire(), true);
+        assertThat(limiter.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void acquireWaitsForTheLimit() throws InterruptedException {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        final long permit = limiter.acquire();
+
+        final AtomicBoolean acquired = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        waiter.start();
+        assertThat(done.await(50, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(acquired).isFalse();
+
+        limiter.release(permit, false);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(acquired).isTrue();
+    }
+}
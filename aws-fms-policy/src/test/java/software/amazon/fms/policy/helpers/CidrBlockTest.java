@@ -0,0 +1,54 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CidrBlockTest {
+
+    @Test
+    void parseIpv4() {
+
+        final CidrBlock block = CidrBlock.parseIpv4("10.0.1.7/24");
+
+        assertThat(block.getBits()).isEqualTo(32);
+        assertThat(block.getPrefixLength()).isEqualTo(24);
+        assertThat(block.getNetwork()).isEqualTo(BigInteger.valueOf(0x0A000100L));
+        assertThat(block.getLastAddress()).isEqualTo(BigInteger.valueOf(0x0A0001FFL));
+        assertThat(block).hasToString("10.0.1.0/24");
+        assertThat(CidrBlock.parse("0.0.0.0/0")).hasToString("0.0.0.0/0");
+        assertThat(CidrBlock.parse("255.255.255.255/32")).hasToString("255.255.255.255/32");
+    }
+
+    @Test
+    void parseIpv6() {
+
+        assertThat(CidrBlock.parseIpv6("::/0")).hasToString("::/0");
+        assertThat(CidrBlock.parseIpv6("2001:DB8::/32")).hasToString("2001:db8::/32");
+        assertThat(CidrBlock.parseIpv6("2001:db8:0:1:0:0:0:0/64")).hasToString("2001:db8:0:1::/64");
+        assertThat(CidrBlock.parseIpv6("::1/128")).hasToString("::1/128");
+        assertThat(CidrBlock.parseIpv6("fe80::/10").getLastAddress())
+                .isEqualTo(new BigInteger("febfffffffffffffffffffffffffffff", 16));
+        assertThat(CidrBlock.parseIpv6("::ffff:10.0.0.1/128")).hasToString("::ffff:a00:1/128");
+        assertThat(CidrBlock.parseIpv6("1:0:0:2:0:0:0:3/128")).hasToString("1:0:0:2::3/128");
+        assertThat(CidrBlock.parse("2001:db8::1/32")).isEqualTo(CidrBlock.parse("2001:db8::/32"));
+    }
+
+    @Test
+    void invalidBlocks() {
+
+        for (final String text : new String[] {
+                "10.0.0.0", "10.0.0.0/", "10.0.0.0/33", "10.0.0.0/08", "10.0.0.256/16", "10.0.00.0/16",
+                "10.0.0/16", "10.0.0.0.0/16", "10.0.0.0/1.6", "10.0.0.a/16", "\u0661\u0660.0.0.0/8"}) {
+            assertThatThrownBy(() -> CidrBlock.parseIpv4(text)).isInstanceOf(IllegalArgumentException.class);
+        }
+        for (final String text : new String[] {
+                "::", ":::/0", "1:/16", ":1/16", "1::2::3/64", "1:2:3:4:5:6:7:8:9/64", "1:2:3:4:5:6:7/64",
+                "12345::/16", "::/129", "g::/16", "1:2:3:4:5:6:7:1.2.3.4/128"}) {
+            assertThatThrownBy(() -> CidrBlock.parseIpv6(text)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
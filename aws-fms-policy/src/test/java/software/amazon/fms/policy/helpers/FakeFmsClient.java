@@ -0,0 +1,199 @@
+package software.amazon.fms.policy.helpers;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * FMS client keeping its data in memory, extended by the tool tests with the operations their tool calls.
+ *
+ * Every operation a test stubs answers through {@link #call(AwsRequest, Supplier)}, which counts the calls of each
+ * operation, tracks how many calls are in flight, throttles the next calls when asked and holds every call for the
+ * configured latency, so calls made concurrently overlap. Listings are split into pages with {@link #page}.
+ */
+public abstract class FakeFmsClient implements FmsClient {
+
+    private final int pageSize;
+    private final long latencyMillis;
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger throttledCalls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile Set<String> throttledOperations = Collections.emptySet();
+
+    /**
+     * Create a client answering every listing in a single page, without latency.
+     */
+    protected FakeFmsClient() {
+
+        this(Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * Create a client.
+     *
+     * @param pageSize Number of items in each page of a listing.
+     * @param latencyMillis Time in milliseconds every call takes.
+     */
+    protected FakeFmsClient(final int pageSize, final long latencyMillis) {
+
+        this.pageSize = pageSize;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Throttle the next calls.
+     *
+     * @param count Number of calls to throttle.
+     * @param operations Operations whose calls are throttled, such as "PutPolicy"; none to throttle any call.
+     */
+    public void throttle(final int count, final String... operations) {
+
+        throttledOperations = new HashSet<>(Arrays.asList(operations));
+        throttledCalls.set(count);
+    }
+
+    /**
+     * Get the number of calls received, including throttled ones.
+     *
+     * @return Number of calls of every operation.
+     */
+    public long getCallCount() {
+
+        return calls.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    /**
+     * Get the number of calls of an operation received, including throttled ones.
+     *
+     * @param operation Operation name, such as "GetPolicy".
+     * @return Number of calls.
+     */
+    public long getCallCount(final String operation) {
+
+        final AtomicLong count = calls.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Get the number of calls received by operation.
+     *
+     * @return Number of calls by operation name, in name order.
+     */
+    public Map<String, Long> getCallCounts() {
+
+        final Map<String, Long> snapshot = new TreeMap<>();
+        calls.forEach((operation, count) -> snapshot.put(operation, count.get()));
+        return snapshot;
+    }
+
+    /**
+     * Get the highest number of calls that were in flight at the same time.
+     *
+     * @return Number of calls.
+     */
+    public int getMaxInFlight() {
+
+        return maxInFlight.get();
+    }
+
+    /**
+     * Answer a call, counting it and throttling it if asked.
+     *
+     * @param request Request of the call, its class names the operation.
+     * @param response Builds the response, or throws the exception of a failed call.
+     * @param <T> Type of the response.
+     * @return The response.
+     */
+    protected <T> T call(final AwsRequest request, final Supplier<T> response) {
+
+        final String operation = request.getClass().getSimpleName().replaceFirst("Request$", "");
+        calls.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            if ((throttledOperations.isEmpty() || throttledOperations.contains(operation))
+                    && throttledCalls.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                throw FmsException.builder().statusCode(429).message("Rate exceeded").build();
+            }
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get a page of a listing, its tokens being the index of its first item.
+     *
+     * @param items Every item of the listing.
+     * @param nextToken Token of the request, null for the first page.
+     * @param <T> Type of the items.
+     * @return The page.
+     */
+    protected <T> Page<T> page(final List<T> items, final String nextToken) {
+
+        final int start = nextToken == null ? 0 : Integer.parseInt(nextToken);
+        final int end = (int) Math.min((long) start + pageSize, items.size());
+        return new Page<>(items.subList(start, end), end < items.size() ? String.valueOf(end) : null);
+    }
+
+    @Override
+    public String serviceName() {
+
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** Items of a page and the token of the next one. */
+    public static class Page<T> {
+
+        private final List<T> items;
+        private final String nextToken;
+
+        Page(final List<T> items, final String nextToken) {
+
+            this.items = items;
+            this.nextToken = nextToken;
+        }
+
+        /**
+         * Get the items of the page.
+         *
+         * @return The items, in listing order.
+         */
+        public List<T> getItems() {
+
+            return items;
+        }
+
+        /**
+         * Get the token of the next page.
+         *
+         * @return The token, null for the last page.
+         */
+        public String getNextToken() {
+
+            return nextToken;
+        }
+    }
+}
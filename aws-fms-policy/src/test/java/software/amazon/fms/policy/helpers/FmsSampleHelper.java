@@ -504,4 +504,18 @@ public class FmsSampleHelper extends BaseSampleHelper {
                 .nextToken(nextToken)
                 .build();
     }
+
+    /**
+     * Assembles a sample ListPolicies response holding a page of identical policy summaries.
+     * @param pageSize Number of policy summaries in the page.
+     * @param nextToken Token of the following page.
+     * @return The assembled response.
+     */
+    public static ListPoliciesResponse sampleListPolicies(final int pageSize, final String nextToken) {
+
+        return ListPoliciesResponse.builder()
+                .policyList(Collections.nCopies(pageSize, sampleRequiredParametersPolicySummary().build()))
+                .nextToken(nextToken)
+                .build();
+    }
 }
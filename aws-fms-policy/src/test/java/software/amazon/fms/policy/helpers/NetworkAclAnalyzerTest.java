@@ -0,0 +1,156 @@
+package software.amazon.fms.policy.helpers;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import software.amazon.fms.policy.IcmpTypeCode;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.PortRange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NetworkAclAnalyzerTest {
+
+    @Test
+    void shadowedAndRedundantEntries() {
+
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(entrySet(
+                ImmutableList.of(
+                        entry("10.0.0.0/16", "-1", "allow", false, null),
+                        entry("10.0.1.0/24", "6", "deny", false, portRange(443, 443))),
+                ImmutableList.of(
+                        entry("10.0.2.0/24", "6", "allow", false, portRange(22, 22)),
+                        entry("10.0.0.0/16", "-1", "deny", false, null))));
+
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getKind).containsExactly(
+                NetworkAclAnalyzer.Kind.SHADOWED,
+                NetworkAclAnalyzer.Kind.REDUNDANT,
+                NetworkAclAnalyzer.Kind.SHADOWED);
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getEntry)
+                .containsExactly("FirstEntries[1]", "LastEntries[0]", "LastEntries[1]");
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getEarlierEntry)
+                .containsExactly("FirstEntries[0]", "FirstEntries[0]", "FirstEntries[0]");
+        assertThat(findings.get(0).toString()).isEqualTo(
+                "FirstEntries[1] (ingress deny 10.0.1.0/24 protocol 6 ports 443-443) is shadowed by "
+                        + "FirstEntries[0] (ingress allow 10.0.0.0/16 protocol -1) and never takes effect");
+    }
+
+    @Test
+    void partialOverlapIsConflict() {
+
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(entrySet(
+                ImmutableList.of(
+                        entry("10.0.1.0/24", "6", "deny", false, portRange(0, 1023)),
+                        entry("10.0.0.0/16", "6", "allow", false, portRange(443, 443)),
+                        entry("10.0.0.0/16", "6", "allow", false, portRange(1000, 2000))),
+                null));
+
+        assertThat(findings).hasSize(2);
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getKind)
+                .containsOnly(NetworkAclAnalyzer.Kind.CONFLICT);
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getEntry)
+                .containsExactly("FirstEntries[1]", "FirstEntries[2]");
+        assertThat(findings.stream().noneMatch(finding -> finding.getKind().isError())).isTrue();
+    }
+
+    @Test
+    void directionsFamiliesAndProtocolsAreSeparate() {
+
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(entrySet(
+                ImmutableList.of(
+                        entry("0.0.0.0/0", "6", "deny", true, null),
+                        entry("2001:db8::/32", "17", "allow", false, portRange(53, 53)),
+                        entry("10.0.0.0/8", "1", "allow", false, null)),
+                ImmutableList.of(
+                        entry("10.0.0.0/8", "6", "allow", false, portRange(80, 80)),
+                        entry("10.0.0.0/8", "17", "allow", true, portRange(53, 53)),
+                        entry("2001:db8:1::/48", "6", "deny", false, portRange(53, 53)),
+                        entry("0.0.0.0/0", "6", "allow", true, portRange(443, 443)))));
+
+        assertThat(findings).hasSize(1);
+        assertThat(findings.get(0).getKind()).isEqualTo(NetworkAclAnalyzer.Kind.SHADOWED);
+        assertThat(findings.get(0).getEntry()).isEqualTo("LastEntries[3]");
+    }
+
+    @Test
+    void icmpTypeCodes() {
+
+        final NetworkAclEntry echoRequest = entry("10.0.0.0/16", "1", "deny", false, null);
+        echoRequest.setIcmpTypeCode(IcmpTypeCode.builder().type(8).code(0).build());
+        final NetworkAclEntry unreachable = entry("10.0.0.0/16", "1", "deny", false, null);
+        unreachable.setIcmpTypeCode(IcmpTypeCode.builder().type(3).code(4).build());
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(entrySet(
+                ImmutableList.of(entry("10.0.0.0/8", "icmp", "allow", false, null), echoRequest),
+                ImmutableList.of(unreachable)));
+
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getKind)
+                .containsExactly(NetworkAclAnalyzer.Kind.SHADOWED, NetworkAclAnalyzer.Kind.SHADOWED);
+    }
+
+    @Test
+    void malformedEntriesAreLeftToFms() {
+
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(entrySet(
+                ImmutableList.of(
+                        entry("10.0.0.0/16", "tcp-ish", "allow", false, null),
+                        entry("10.0.0.256/16", "-1", "allow", false, null),
+                        entry("10.0.0.0/33", "-1", "allow", false, null),
+                        entry("10.0.0.0/16", "-1", "allow", false, null)),
+                ImmutableList.of(entry("10.0.0.0/16", "-1", "deny", false, null))));
+
+        assertThat(findings).hasSize(1);
+        assertThat(findings.get(0).getEntry()).isEqualTo("LastEntries[0]");
+        assertThat(findings.get(0).getEarlierEntry()).isEqualTo("FirstEntries[3]");
+    }
+
+    @Test
+    void earliestCauseIsReported() {
+
+        // a block repeated by many entries is the worst case for the sweep, every pair is compared
+        final List<NetworkAclEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(entry("10.0.0.0/16", "6", i % 2 == 0 ? "allow" : "deny", false, portRange(i, 100)));
+        }
+        final List<NetworkAclAnalyzer.Finding> findings = NetworkAclAnalyzer.analyze(entrySet(entries, null));
+
+        assertThat(findings).hasSize(19);
+        assertThat(findings).extracting(NetworkAclAnalyzer.Finding::getEarlierEntry).containsOnly("FirstEntries[0]");
+    }
+
+    private static NetworkAclEntrySet entrySet(
+            final List<NetworkAclEntry> firstEntries,
+            final List<NetworkAclEntry> lastEntries) {
+
+        return NetworkAclEntrySet.builder()
+                .firstEntries(firstEntries)
+                .lastEntries(lastEntries)
+                .forceRemediateForFirstEntries(false)
+                .forceRemediateForLastEntries(false)
+                .build();
+    }
+
+    private static NetworkAclEntry entry(
+            final String cidrBlock,
+            final String protocol,
+            final String ruleAction,
+            final boolean egress,
+            final PortRange portRange) {
+
+        final NetworkAclEntry.NetworkAclEntryBuilder builder = NetworkAclEntry.builder()
+                .protocol(protocol)
+                .ruleAction(ruleAction)
+                .egress(egress)
+                .portRange(portRange);
+        return cidrBlock.indexOf(':') >= 0
+                ? builder.ipv6CidrBlock(cidrBlock).build()
+                : builder.cidrBlock(cidrBlock).build();
+    }
+
+    private static PortRange portRange(final int from, final int to) {
+
+        return PortRange.builder().from(from).to(to).build();
+    }
+}
@@ -0,0 +1,123 @@
+package software.amazon.fms.policy.helpers;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.PortRange;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NetworkAclOptimizerTest {
+
+    private final NetworkAclOptimizer optimizer = new NetworkAclOptimizer(true);
+
+    @Test
+    void adjacentBlocksAreMerged() {
+
+        final NetworkAclOptimizer.Result result = optimizer.optimize(entrySet(
+                ImmutableList.of(
+                        entry("10.0.0.0/25", "6", "allow", false, portRange(443, 443)),
+                        entry("10.0.0.128/25", "6", "allow", false, portRange(443, 443)),
+                        entry("10.0.1.0/24", "6", "allow", false, portRange(443, 443)),
+                        entry("10.0.2.0/24", "6", "allow", false, portRange(443, 443))),
+                ImmutableList.of(
+                        entry("2001:db8::/33", "-1", "deny", true, null),
+                        entry("2001:db8:8000::/33", "-1", "deny", true, null))));
+
+        assertThat(result.getSavedEntries()).isEqualTo(3);
+        assertThat(result.getEntrySet().getFirstEntries()).containsExactly(
+                entry("10.0.0.0/23", "6", "allow", false, portRange(443, 443)),
+                entry("10.0.2.0/24", "6", "allow", false, portRange(443, 443)));
+        assertThat(result.getEntrySet().getLastEntries()).containsExactly(
+                entry("2001:db8::/32", "-1", "deny", true, null));
+        assertThat(result.getEntrySet().getForceRemediateForFirstEntries()).isTrue();
+        assertThat(result.getEntrySet().getForceRemediateForLastEntries()).isFalse();
+    }
+
+    @Test
+    void entriesOnlyMoveWhenOrderIsPreserved() {
+
+        // the deny in between matches part of the last entry, so moving it up would allow that traffic
+        final List<NetworkAclEntry> blocked = ImmutableList.of(
+                entry("10.0.0.0/24", "6", "allow", false, portRange(443, 443)),
+                entry("10.0.1.0/24", "-1", "deny", false, null),
+                entry("10.0.1.0/24", "6", "allow", false, portRange(443, 443)));
+        assertThat(NetworkAclOptimizer.aggregate(blocked)).isSameAs(blocked);
+
+        // entries in between that do not match the same packets with another action can be moved across
+        final List<NetworkAclEntry> moved = ImmutableList.of(
+                entry("10.0.0.0/24", "6", "allow", false, portRange(443, 443)),
+                entry("10.0.5.0/24", "-1", "deny", false, null),
+                entry("10.0.1.0/24", "-1", "deny", true, null),
+                entry("10.0.1.0/24", "6", "deny", false, portRange(80, 80)),
+                entry("10.0.1.0/24", "6", "allow", false, portRange(443, 443)));
+        assertThat(NetworkAclOptimizer.aggregate(moved)).containsExactly(
+                entry("10.0.0.0/23", "6", "allow", false, portRange(443, 443)),
+                moved.get(1),
+                moved.get(2),
+                moved.get(3));
+    }
+
+    @Test
+    void unmergeableEntriesAreKept() {
+
+        // unaligned blocks need as many prefixes as entries, different ports never merge
+        final List<NetworkAclEntry> entries = ImmutableList.of(
+                entry("10.0.0.1/32", "17", "allow", false, portRange(53, 53)),
+                entry("10.0.0.2/32", "17", "allow", false, portRange(53, 53)),
+                entry("10.0.0.3/32", "17", "allow", false, portRange(54, 54)),
+                entry("10.0.0.0/16", "bogus", "deny", false, null),
+                entry("10.0.0.0/32", "17", "allow", false, portRange(53, 53)));
+        assertThat(NetworkAclOptimizer.aggregate(entries)).isSameAs(entries);
+        assertThat(optimizer.optimize(entrySet(entries, null)).getSavedEntries()).isZero();
+    }
+
+    @Test
+    void disabledOptimizerReturnsEntrySet() {
+
+        final NetworkAclEntrySet entrySet = entrySet(ImmutableList.of(
+                entry("10.0.0.0/25", "-1", "allow", false, null),
+                entry("10.0.0.128/25", "-1", "allow", false, null)), null);
+        final NetworkAclOptimizer.Result result = new NetworkAclOptimizer(false).optimize(entrySet);
+
+        assertThat(result.getEntrySet()).isSameAs(entrySet);
+        assertThat(result.getSavedEntries()).isZero();
+    }
+
+    private static NetworkAclEntrySet entrySet(
+            final List<NetworkAclEntry> firstEntries,
+            final List<NetworkAclEntry> lastEntries) {
+
+        return NetworkAclEntrySet.builder()
+                .firstEntries(firstEntries)
+                .lastEntries(lastEntries)
+                .forceRemediateForFirstEntries(true)
+                .forceRemediateForLastEntries(false)
+                .build();
+    }
+
+    private static NetworkAclEntry entry(
+            final String cidrBlock,
+            final String protocol,
+            final String ruleAction,
+            final boolean egress,
+            final PortRange portRange) {
+
+        final NetworkAclEntry.NetworkAclEntryBuilder builder = NetworkAclEntry.builder()
+                .protocol(protocol)
+                .ruleAction(ruleAction)
+                .egress(egress)
+                .portRange(portRange);
+        return cidrBlock.indexOf(':') >= 0
+                ? builder.ipv6CidrBlock(cidrBlock).build()
+                : builder.cidrBlock(cidrBlock).build();
+    }
+
+    private static PortRange portRange(final int from, final int to) {
+
+        return PortRange.builder().from(from).to(to).build();
+    }
+}
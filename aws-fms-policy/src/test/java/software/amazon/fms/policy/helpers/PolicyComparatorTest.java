@@ -0,0 +1,78 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.fms.policy.IEMap;
+import software.amazon.fms.policy.PolicyTag;
+import software.amazon.fms.policy.ResourceModel;
+import software.amazon.fms.policy.SecurityServicePolicyData;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyComparatorTest {
+
+    @Test
+    void equivalentModelsWrittenDifferentlyHaveNoDifferences() {
+
+        final ResourceModel desired = model("{\"type\": \"WAFV2\", \"defaultAction\": {\"type\": \"ALLOW\"}}");
+        desired.setIncludeMap(scope("222222222222", "111111111111"));
+        desired.setTags(Arrays.asList(new PolicyTag("team", "network"), new PolicyTag("env", "prod")));
+        desired.setDeleteAllPolicyResources(true);
+
+        // the live model has identifiers, empty lists and maps, and FMS ordering and formatting
+        final ResourceModel live = model("{\"defaultAction\":{\"type\":\"ALLOW\"},\"type\":\"WAFV2\"}");
+        live.setId("policy-1");
+        live.setArn("arn:aws:fms:us-east-1:123456789012:policy/policy-1");
+        live.setIncludeMap(scope("111111111111", "222222222222"));
+        live.setExcludeMap(new IEMap());
+        live.setResourceTypeList(Collections.emptyList());
+        live.setResourcesCleanUp(false);
+        live.setTags(Arrays.asList(new PolicyTag("env", "prod"), new PolicyTag("team", "network")));
+
+        assertThat(PolicyComparator.differences(desired, live)).isEmpty();
+        assertThat(PolicyComparator.equivalent(desired, live)).isTrue();
+        assertThat(PolicyComparator.contentHash(desired)).isEqualTo(PolicyComparator.contentHash(live));
+    }
+
+    @Test
+    void differencesAreReportedByPath() {
+
+        final ResourceModel desired = model("{\"type\":\"WAFV2\",\"defaultAction\":{\"type\":\"BLOCK\"}}");
+        desired.setRemediationEnabled(true);
+        desired.setTags(Collections.singletonList(new PolicyTag("team", "network")));
+
+        final ResourceModel live = model("{\"type\":\"WAFV2\",\"defaultAction\":{\"type\":\"ALLOW\"}}");
+        live.setResourcesCleanUp(true);
+
+        assertThat(PolicyComparator.differences(desired, live)).containsExactly(
+                "/RemediationEnabled",
+                "/ResourcesCleanUp",
+                "/SecurityServicePolicyData/ManagedServiceData/defaultAction/type",
+                "/Tags");
+        assertThat(PolicyComparator.equivalent(desired, live)).isFalse();
+        assertThat(PolicyComparator.contentHash(desired)).isNotEqualTo(PolicyComparator.contentHash(live));
+    }
+
+    private static ResourceModel model(final String managedServiceData) {
+
+        return ResourceModel.builder()
+                .policyName("policy")
+                .excludeResourceTags(false)
+                .remediationEnabled(false)
+                .resourceType("AWS::ElasticLoadBalancingV2::LoadBalancer")
+                .securityServicePolicyData(SecurityServicePolicyData.builder()
+                        .type("WAFV2")
+                        .managedServiceData(managedServiceData)
+                        .build())
+                .build();
+    }
+
+    private static IEMap scope(final String... accounts) {
+
+        final IEMap scope = new IEMap();
+        scope.setACCOUNT(Arrays.asList(accounts));
+        return scope;
+    }
+}
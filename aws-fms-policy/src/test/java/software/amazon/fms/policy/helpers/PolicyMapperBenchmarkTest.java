@@ -0,0 +1,74 @@
+package software.amazon.fms.policy.helpers;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.fms.policy.IEMap;
+import software.amazon.fms.policy.ResourceModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time taken by the policy mappers for a policy scoped to many accounts.
+ * Run with: mvn test -Dtest=PolicyMapperBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PolicyMapperBenchmarkTest {
+
+    private static final int ROUNDS = 20_000;
+    private static final int WARMUP_ROUNDS = 5_000;
+
+    @Test
+    void benchmark100Accounts() {
+
+        benchmark(100);
+    }
+
+    @Test
+    void benchmark5000Accounts() {
+
+        benchmark(5_000);
+    }
+
+    private static void benchmark(final int accounts) {
+
+        final List<String> accountIds = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            accountIds.add(String.format("%012d", i));
+        }
+        final ResourceModel model = PolicyMapperTest.sampleFullResourceModel()
+                .includeMap(IEMap.builder().aCCOUNT(accountIds).build())
+                .build();
+        final Policy policy = FmsHelper.convertCFNResourceModelToFMSPolicy(model);
+        final List<Tag> tags = ImmutableList.of(Tag.builder().key("key").value("value").build());
+
+        // warm up the JIT before measuring
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            FmsHelper.convertCFNResourceModelToFMSPolicy(model);
+            CfnHelper.convertFMSPolicyToCFNResourceModel(policy, model.getArn(), tags);
+        }
+
+        final int rounds = Math.max(ROUNDS * 100 / accounts, 100);
+        final long toPolicyStart = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            FmsHelper.convertCFNResourceModelToFMSPolicy(model);
+        }
+        final long toPolicyNanos = (System.nanoTime() - toPolicyStart) / rounds;
+
+        final long toModelStart = System.nanoTime();
+        ResourceModel converted = null;
+        for (int i = 0; i < rounds; i++) {
+            converted = CfnHelper.convertFMSPolicyToCFNResourceModel(policy, model.getArn(), tags);
+        }
+        final long toModelNanos = (System.nanoTime() - toModelStart) / rounds;
+
+        System.out.printf("%d accounts: model to policy %d ns, policy to model %d ns%n",
+                accounts, toPolicyNanos, toModelNanos);
+        assertThat(converted.getIncludeMap().getACCOUNT()).isEqualTo(accountIds);
+    }
+}
@@ -0,0 +1,162 @@
+package software.amazon.fms.policy.helpers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.fms.policy.IEMap;
+import software.amazon.fms.policy.IcmpTypeCode;
+import software.amazon.fms.policy.NetworkAclCommonPolicy;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.NetworkFirewallPolicy;
+import software.amazon.fms.policy.PolicyOption;
+import software.amazon.fms.policy.PolicyTag;
+import software.amazon.fms.policy.PortRange;
+import software.amazon.fms.policy.ResourceModel;
+import software.amazon.fms.policy.ResourceTag;
+import software.amazon.fms.policy.SecurityServicePolicyData;
+import software.amazon.fms.policy.ThirdPartyFirewallPolicy;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyMapperTest extends BaseSampleHelper {
+
+    /** Model fields only sent to FMS on delete, so the policy mappers never carry them. */
+    private static final Set<String> UNMAPPED_MODEL_FIELDS = ImmutableSet.of("deleteAllPolicyResources");
+
+    @Test
+    void modelFieldCoverage() {
+
+        // the sample sets every model field, so a field added to the schema fails here until it is mapped
+        final ResourceModel model = sampleFullResourceModel().deleteAllPolicyResources(true).build();
+        assertThat(unsetFields(model)).isEqualTo(new TreeSet<>(UNMAPPED_MODEL_FIELDS));
+        assertThat(unsetFields(model.getSecurityServicePolicyData())).isEmpty();
+        assertThat(unsetFields(model.getSecurityServicePolicyData().getPolicyOption().getNetworkAclCommonPolicy()
+                .getNetworkAclEntrySet())).isEmpty();
+        assertThat(unsetFields(sampleNetworkAclEntry(true))).isEmpty();
+
+        // every mapped field survives the conversion to an FMS policy and back
+        final Policy policy = FmsHelper.convertCFNResourceModelToFMSPolicy(model);
+        final List<Tag> tags = FmsHelper.mapList(model.getTags(), tag -> Tag.builder()
+                .key(tag.getKey())
+                .value(tag.getValue())
+                .build());
+        final ResourceModel converted = CfnHelper.convertFMSPolicyToCFNResourceModel(policy, model.getArn(), tags);
+        assertThat(converted).isEqualTo(sampleFullResourceModel().build());
+    }
+
+    @Test
+    void policyOptionRoundTrip() {
+
+        final List<PolicyOption> policyOptions = ImmutableList.of(
+                PolicyOption.builder()
+                        .networkFirewallPolicy(NetworkFirewallPolicy.builder()
+                                .firewallDeploymentModel("CENTRALIZED")
+                                .build())
+                        .build(),
+                PolicyOption.builder()
+                        .thirdPartyFirewallPolicy(ThirdPartyFirewallPolicy.builder()
+                                .firewallDeploymentModel("DISTRIBUTED")
+                                .build())
+                        .build(),
+                sampleNetworkAclPolicyOption());
+        for (final PolicyOption policyOption : policyOptions) {
+            assertThat(CfnHelper.convertFmsPolicyOptionToCFNPolicyOption(
+                    FmsHelper.convertCFNPolicyOptionToFMSPolicyOption(policyOption))).isEqualTo(policyOption);
+        }
+    }
+
+    @Test
+    void mapListPreservesNullAndOrder() {
+
+        assertThat(FmsHelper.<String, Integer>mapList(null, String::length)).isNull();
+        assertThat(FmsHelper.mapList(ImmutableList.of("a", "bbb", "cc"), String::length))
+                .containsExactly(1, 3, 2);
+    }
+
+    /**
+     * Assembles a resource model builder with every field the policy mappers carry.
+     * @return The assembled resource model builder.
+     */
+    static ResourceModel.ResourceModelBuilder sampleFullResourceModel() {
+
+        final IEMap ieMap = IEMap.builder()
+                .aCCOUNT(ImmutableList.of(sampleAccountId))
+                .oRGUNIT(ImmutableList.of("ou-0000-00000000"))
+                .build();
+        return ResourceModel.builder()
+                .arn(samplePolicyArn)
+                .id(samplePolicyId)
+                .excludeMap(ieMap)
+                .includeMap(ieMap)
+                .excludeResourceTags(sampleExcludeResourceTags)
+                .policyName(samplePolicyName)
+                .policyDescription(samplePolicyDescription)
+                .remediationEnabled(sampleRemediationEnabled)
+                .resourceTags(ImmutableList.of(new ResourceTag(sampleTagKey, sampleTagValue)))
+                .resourceType(sampleResourceType)
+                .resourceTypeList(ImmutableList.of(sampleResourceTypeListElement))
+                .resourceSetIds(ImmutableList.of(sampleResourceSetIdsElement))
+                .resourcesCleanUp(true)
+                .securityServicePolicyData(SecurityServicePolicyData.builder()
+                        .type("NETWORK_ACL_COMMON")
+                        .managedServiceData("{\"type\":\"NETWORK_ACL_COMMON\"}")
+                        .policyOption(sampleNetworkAclPolicyOption())
+                        .build())
+                .tags(ImmutableList.of(new PolicyTag(sampleTagKey, sampleTagValue)));
+    }
+
+    private static PolicyOption sampleNetworkAclPolicyOption() {
+
+        return PolicyOption.builder()
+                .networkAclCommonPolicy(NetworkAclCommonPolicy.builder()
+                        .networkAclEntrySet(NetworkAclEntrySet.builder()
+                                .firstEntries(ImmutableList.of(sampleNetworkAclEntry(true)))
+                                .lastEntries(ImmutableList.of(sampleNetworkAclEntry(false)))
+                                .forceRemediateForFirstEntries(true)
+                                .forceRemediateForLastEntries(false)
+                                .build())
+                        .build())
+                .build();
+    }
+
+    private static NetworkAclEntry sampleNetworkAclEntry(final boolean egress) {
+
+        return NetworkAclEntry.builder()
+                .protocol("6")
+                .ruleAction("allow")
+                .cidrBlock("10.0.0.0/16")
+                .ipv6CidrBlock("2001:db8::/32")
+                .icmpTypeCode(IcmpTypeCode.builder().type(8).code(0).build())
+                .portRange(PortRange.builder().from(443).to(443).build())
+                .egress(egress)
+                .build();
+    }
+
+    private static Set<String> unsetFields(final Object model) {
+
+        final Set<String> unset = new TreeSet<>();
+        for (final Field field : model.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            field.setAccessible(true);
+            try {
+                if (field.get(model) == null) {
+                    unset.add(field.getName());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return unset;
+    }
+}
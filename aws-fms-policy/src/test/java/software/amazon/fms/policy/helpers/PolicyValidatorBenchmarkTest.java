@@ -0,0 +1,130 @@
+package software.amazon.fms.policy.helpers;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.fms.policy.IEMap;
+import software.amazon.fms.policy.NetworkAclCommonPolicy;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.PolicyOption;
+import software.amazon.fms.policy.ResourceModel;
+import software.amazon.fms.policy.SecurityServicePolicyData;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time taken by the policy validator compared to matching the same values against the schema's patterns.
+ * Run with: mvn test -Dtest=PolicyValidatorBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PolicyValidatorBenchmarkTest {
+
+    private static final int ROUNDS = 2_000;
+    private static final int WARMUP_ROUNDS = 500;
+
+    @Test
+    void benchmark() throws Exception {
+
+        final JSONObject definitions;
+        try (InputStream schema = getClass().getClassLoader().getResourceAsStream("aws-fms-policy.json")) {
+            definitions = new JSONObject(new JSONTokener(schema)).getJSONObject("definitions");
+        }
+        final JSONObject entryProperties = definitions.getJSONObject("NetworkAclEntry").getJSONObject("properties");
+        final Pattern accountId = pattern(definitions.getJSONObject("AccountId"));
+        final Pattern organizationalUnitId = pattern(definitions.getJSONObject("OrganizationalUnitId"));
+        final Pattern cidrBlock = pattern(entryProperties.getJSONObject("CidrBlock"));
+        final Pattern ipv6CidrBlock = pattern(entryProperties.getJSONObject("Ipv6CidrBlock"));
+
+        final List<String> accounts = new ArrayList<>();
+        final List<String> organizationalUnits = new ArrayList<>();
+        for (int i = 0; i < PolicyValidator.MAX_SCOPE_ACCOUNTS; i++) {
+            accounts.add(String.format("%012d", i));
+            organizationalUnits.add(String.format("ou-%04x-%08x", i, i));
+        }
+        final List<NetworkAclEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            entries.add(NetworkAclEntry.builder().protocol("-1").ruleAction("allow").egress(false)
+                    .cidrBlock(String.format("10.%d.0.0/16", i))
+                    .build());
+            entries.add(NetworkAclEntry.builder().protocol("-1").ruleAction("allow").egress(false)
+                    .ipv6CidrBlock(String.format("2001:db8:%x::/48", i))
+                    .build());
+        }
+        final ResourceModel model = PolicyMapperTest.sampleFullResourceModel()
+                .includeMap(IEMap.builder().aCCOUNT(accounts).oRGUNIT(organizationalUnits).build())
+                .securityServicePolicyData(SecurityServicePolicyData.builder()
+                        .type("NETWORK_ACL_COMMON")
+                        .policyOption(PolicyOption.builder()
+                                .networkAclCommonPolicy(NetworkAclCommonPolicy.builder()
+                                        .networkAclEntrySet(NetworkAclEntrySet.builder()
+                                                .firstEntries(entries)
+                                                .forceRemediateForFirstEntries(false)
+                                                .forceRemediateForLastEntries(false)
+                                                .build())
+                                        .build())
+                                .build())
+                        .build())
+                .build();
+        final PolicyValidator validator = new PolicyValidator();
+
+        // warm up the JIT before measuring
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            validator.validate(model);
+            matchAll(model, accountId, organizationalUnitId, cidrBlock, ipv6CidrBlock);
+        }
+
+        final long validatorStart = System.nanoTime();
+        List<String> problems = null;
+        for (int i = 0; i < ROUNDS; i++) {
+            problems = validator.validate(model);
+        }
+        final long validatorNanos = (System.nanoTime() - validatorStart) / ROUNDS;
+
+        final long patternStart = System.nanoTime();
+        int matches = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            matches = matchAll(model, accountId, organizationalUnitId, cidrBlock, ipv6CidrBlock);
+        }
+        final long patternNanos = (System.nanoTime() - patternStart) / ROUNDS;
+
+        System.out.printf("%d accounts, %d organizational units, %d entries: validator %d ns, schema patterns %d ns%n",
+                accounts.size(), organizationalUnits.size(), entries.size(), validatorNanos, patternNanos);
+        assertThat(problems).isEmpty();
+        assertThat(matches).isEqualTo(accounts.size() + organizationalUnits.size() + entries.size());
+    }
+
+    private static Pattern pattern(final JSONObject definition) {
+
+        return Pattern.compile(definition.getString("pattern"));
+    }
+
+    private static int matchAll(
+            final ResourceModel model,
+            final Pattern accountId,
+            final Pattern organizationalUnitId,
+            final Pattern cidrBlock,
+            final Pattern ipv6CidrBlock) {
+
+        int matches = 0;
+        for (final String account : model.getIncludeMap().getACCOUNT()) {
+            matches += accountId.matcher(account).matches() ? 1 : 0;
+        }
+        for (final String organizationalUnit : model.getIncludeMap().getORGUNIT()) {
+            matches += organizationalUnitId.matcher(organizationalUnit).matches() ? 1 : 0;
+        }
+        for (final NetworkAclEntry entry : model.getSecurityServicePolicyData().getPolicyOption()
+                .getNetworkAclCommonPolicy().getNetworkAclEntrySet().getFirstEntries()) {
+            matches += entry.getCidrBlock() != null
+                    ? (cidrBlock.matcher(entry.getCidrBlock()).matches() ? 1 : 0)
+                    : (ipv6CidrBlock.matcher(entry.getIpv6CidrBlock()).matches() ? 1 : 0);
+        }
+        return matches;
+    }
+}
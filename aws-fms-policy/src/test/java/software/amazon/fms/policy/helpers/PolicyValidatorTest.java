@@ -0,0 +1,142 @@
+package software.amazon.fms.policy.helpers;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import software.amazon.fms.policy.IEMap;
+import software.amazon.fms.policy.NetworkAclCommonPolicy;
+import software.amazon.fms.policy.NetworkAclEntry;
+import software.amazon.fms.policy.NetworkAclEntrySet;
+import software.amazon.fms.policy.NetworkFirewallPolicy;
+import software.amazon.fms.policy.PolicyOption;
+import software.amazon.fms.policy.PortRange;
+import software.amazon.fms.policy.ResourceModel;
+import software.amazon.fms.policy.SecurityServicePolicyData;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyValidatorTest {
+
+    private final PolicyValidator validator = new PolicyValidator(3, 2);
+
+    @Test
+    void validPolicy() {
+
+        assertThat(validator.validate(PolicyMapperTest.sampleFullResourceModel().build())).isEmpty();
+    }
+
+    @Test
+    void accountAndOrganizationalUnitIds() {
+
+        assertThat(PolicyValidator.isAccountId("123456789012")).isTrue();
+        assertThat(PolicyValidator.isAccountId("12345678901")).isFalse();
+        assertThat(PolicyValidator.isAccountId("1234567890123")).isFalse();
+        assertThat(PolicyValidator.isAccountId("12345678901a")).isFalse();
+        assertThat(PolicyValidator.isAccountId(null)).isFalse();
+
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-0000-88888888")).isTrue();
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-ab12-cd34ef56gh")).isTrue();
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-000-88888888")).isFalse();
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-0000-8888888")).isFalse();
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-0000-8888888A")).isFalse();
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-0000-8888-8888")).isFalse();
+        assertThat(PolicyValidator.isOrganizationalUnitId("ou-000088888888")).isFalse();
+        assertThat(PolicyValidator.isOrganizationalUnitId("r-0000-88888888")).isFalse();
+    }
+
+    @Test
+    void scopeLimits() {
+
+        final ResourceModel model = PolicyMapperTest.sampleFullResourceModel()
+                .includeMap(IEMap.builder()
+                        .aCCOUNT(ImmutableList.of("000000000001", "000000000002", "000000000003", "00000000004"))
+                        .oRGUNIT(ImmutableList.of("ou-0000-00000001", "ou-0000-00000002", "ou-0000-00000003"))
+                        .build())
+                .build();
+
+        assertThat(validator.validate(model)).containsExactly(
+                "IncludeMap.ACCOUNT has 4 accounts, more than the limit of 3",
+                "IncludeMap.ACCOUNT[3] 00000000004 is not an account ID",
+                "IncludeMap.ORGUNIT has 3 organizational units, more than the limit of 2");
+    }
+
+    @Test
+    void policyOptionsMatchType() {
+
+        assertThat(validator.validate(model("SHIELD_ADVANCED", null, null))).isEmpty();
+        assertThat(validator.validate(model("SHIELD_ADVANCED_PLUS", null, null))).containsExactly(
+                "SecurityServicePolicyData.Type SHIELD_ADVANCED_PLUS is not a policy type");
+        assertThat(validator.validate(model("WAFV2", null, null))).containsExactly(
+                "SecurityServicePolicyData.ManagedServiceData is required for WAFV2 policies");
+        assertThat(validator.validate(model("NETWORK_ACL_COMMON", null, null))).containsExactly(
+                "SecurityServicePolicyData.PolicyOption.NetworkAclCommonPolicy is required for NETWORK_ACL_COMMON "
+                        + "policies");
+
+        final PolicyOption networkFirewall = PolicyOption.builder()
+                .networkFirewallPolicy(NetworkFirewallPolicy.builder().firewallDeploymentModel("CENTRALIZED").build())
+                .build();
+        assertThat(validator.validate(model("NETWORK_FIREWALL", "{}", networkFirewall))).isEmpty();
+        assertThat(validator.validate(model("WAFV2", "{}", networkFirewall))).containsExactly(
+                "SecurityServicePolicyData.PolicyOption.NetworkFirewallPolicy is not supported by WAFV2 policies");
+        assertThat(validator.validate(model("NETWORK_FIREWALL", "{}", PolicyOption.builder().build())))
+                .containsExactly("SecurityServicePolicyData.PolicyOption must set exactly one policy option");
+    }
+
+    @Test
+    void networkAclEntries() {
+
+        final NetworkAclEntry noBlock = NetworkAclEntry.builder().protocol("-1").ruleAction("allow").egress(false)
+                .build();
+        final NetworkAclEntry invalidIpv6 = NetworkAclEntry.builder().protocol("-1").ruleAction("allow").egress(false)
+                .cidrBlock("10.0.0.0/8").ipv6CidrBlock("2001:db8::/129").build();
+        final NetworkAclEntry ipv6InIpv4 = NetworkAclEntry.builder().protocol("-1").ruleAction("allow").egress(false)
+                .cidrBlock("::/0").build();
+        final NetworkAclEntry reversed = NetworkAclEntry.builder().protocol("6").ruleAction("allow").egress(false)
+                .ipv6CidrBlock("2001:db8::/32").portRange(PortRange.builder().from(443).to(80).build()).build();
+        final PolicyOption option = networkAclOption(
+                ImmutableList.of(noBlock, invalidIpv6), ImmutableList.of(ipv6InIpv4, reversed));
+
+        assertThat(validator.validate(model("NETWORK_ACL_COMMON", null, option))).containsExactly(
+                "NetworkAclEntrySet.FirstEntries[0] must set CidrBlock or Ipv6CidrBlock",
+                "NetworkAclEntrySet.FirstEntries[1].Ipv6CidrBlock 2001:db8::/129 is not an IPv6 CIDR block",
+                "NetworkAclEntrySet.LastEntries[0].CidrBlock ::/0 is not an IPv4 CIDR block",
+                "NetworkAclEntrySet.LastEntries[1].PortRange.From 443 is greater than To 80");
+    }
+
+    private static PolicyOption networkAclOption(
+            final List<NetworkAclEntry> firstEntries,
+            final List<NetworkAclEntry> lastEntries) {
+
+        return PolicyOption.builder()
+                .networkAclCommonPolicy(NetworkAclCommonPolicy.builder()
+                        .networkAclEntrySet(NetworkAclEntrySet.builder()
+                                .firstEntries(firstEntries)
+                                .lastEntries(lastEntries)
+                                .forceRemediateForFirstEntries(false)
+                                .forceRemediateForLastEntries(false)
+                                .build())
+                        .build())
+                .build();
+    }
+
+    private static ResourceModel model(
+            final String type,
+            final String managedServiceData,
+            final PolicyOption policyOption) {
+
+        return ResourceModel.builder()
+                .policyName("policy")
+                .resourceType("AWS::EC2::Subnet")
+                .excludeResourceTags(false)
+                .remediationEnabled(false)
+                .includeMap(IEMap.builder().aCCOUNT(Collections.singletonList("000000000000")).build())
+                .securityServicePolicyData(SecurityServicePolicyData.builder()
+                        .type(type)
+                        .managedServiceData(managedServiceData)
+                        .policyOption(policyOption)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void burstIsServedAtOnceAndTheRestAtTheRate() {
+
+        final RateLimiter limiter = new RateLimiter(10, 2, now::get);
+
+        // the full bucket serves the burst, each further call waits a tenth of a second more than the previous one
+        assertThat(limiter.reserve()).isZero();
+        assertThat(limiter.reserve()).isZero();
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void idleTimeRefillsUpToTheBurst() {
+
+        final RateLimiter limiter = new RateLimiter(10, 2, now::get);
+        limiter.reserve();
+        limiter.reserve();
+
+        // a second refills ten permits, of which the bucket keeps two
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(limiter.reserve()).isZero();
+        assertThat(limiter.reserve()).isZero();
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
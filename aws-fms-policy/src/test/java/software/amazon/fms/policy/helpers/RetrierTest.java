@@ -0,0 +1,67 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.fms.model.FmsException;
+import software.amazon.awssdk.services.fms.model.InvalidInputException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetrierTest {
+
+    private final Retrier retrier = new Retrier(3, 1, 5);
+
+    @Test
+    void throttledCallsAreRetried() {
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = retrier.call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw throttle();
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(retrier.getAttemptCount()).isEqualTo(3);
+        assertThat(retrier.getThrottleCount()).isEqualTo(2);
+    }
+
+    @Test
+    void callsStillThrottledAfterTheLastAttemptFail() {
+
+        assertThatThrownBy(() -> retrier.call(() -> {
+            throw throttle();
+        })).isInstanceOf(FmsException.class);
+        assertThat(retrier.getAttemptCount()).isEqualTo(3);
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+
+        assertThatThrownBy(() -> retrier.call(() -> {
+            throw InvalidInputException.builder().message("Invalid").build();
+        })).isInstanceOf(InvalidInputException.class);
+        assertThat(retrier.getAttemptCount()).isEqualTo(1);
+    }
+
+    @Test
+    void throttlesAreRecognized() {
+
+        assertThat(Retrier.isThrottle(throttle())).isTrue();
+        assertThat(Retrier.isThrottle(FmsException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("ThrottlingException").build())
+                .build())).isTrue();
+        assertThat(Retrier.isThrottle(FmsException.builder().statusCode(400).build())).isFalse();
+        assertThat(Retrier.isThrottle(new IllegalStateException())).isFalse();
+    }
+
+    private static FmsException throttle() {
+
+        return FmsException.builder().statusCode(429).message("Rate exceeded").build();
+    }
+}
@@ -0,0 +1,53 @@
+package software.amazon.fms.policy.helpers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.fms.model.FmsException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThrottleAwareExecutorTest {
+
+    private final Retrier retrier = new Retrier(3, 1, 5);
+    private final ThrottleAwareExecutor executor = new ThrottleAwareExecutor(2, retrier);
+
+    @AfterEach
+    void tearDown() {
+
+        executor.close();
+    }
+
+    @Test
+    void throttledCallsAreRetried() throws ExecutionException, InterruptedException {
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = executor.submit(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw throttle();
+            }
+            return "done";
+        }).get();
+
+        assertThat(result).isEqualTo("done");
+        assertThat(executor.getAttemptCount()).isEqualTo(3);
+        assertThat(executor.getThrottleCount()).isEqualTo(2);
+    }
+
+    @Test
+    void workersAndCallingThreadsShareTheRetrier() throws ExecutionException, InterruptedException {
+
+        executor.submit(() -> "worker").get();
+        retrier.call(() -> "caller");
+        executor.call(() -> "executor");
+
+        assertThat(executor.getAttemptCount()).isEqualTo(3);
+    }
+
+    private static FmsException throttle() {
+
+        return FmsException.builder().statusCode(429).message("Rate exceeded").build();
+    }
+}
@@ -1,12 +1,67 @@
 package software.amazon.fms.resourceset;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 @Data
 @NoArgsConstructor
+@AllArgsConstructor
 @Builder
 class CallbackContext {
 
+    /** Token of the CloudFormation request the progress belongs to. */
+    private String clientRequestToken;
+
+    /** ID of the ResourceSet the request created, once it exists. */
+    private String resourceId;
+
+    /** Names of the steps the request has completed. */
+    private Set<String> completedSteps;
+
+    /** Number of times the request stopped to stay within the execution budget of an invocation. */
+    private int checkpointCount;
+
+    /** Association changes left when the request stopped, encoded with StateCodec to keep the context small. */
+    private String pendingAssociations;
+
+    /**
+     * Check whether a step has completed.
+     * @param step Step name.
+     * @return True if the step has completed.
+     */
+    boolean hasCompleted(final String step) {
+
+        return completedSteps != null && completedSteps.contains(step);
+    }
+
+    /**
+     * Mark a step as completed.
+     * @param step Step name.
+     */
+    void markCompleted(final String step) {
+
+        if (completedSteps == null) {
+            completedSteps = new LinkedHashSet<>();
+        }
+        completedSteps.add(step);
+    }
+
+    /**
+     * Copy the progress, so a stored copy is not changed by the invocation that resumes it.
+     * @return Copy of the progress.
+     */
+    CallbackContext copy() {
+
+        return new CallbackContext(
+                clientRequestToken,
+                resourceId,
+                completedSteps == null ? null : new LinkedHashSet<>(completedSteps),
+                checkpointCount,
+                pendingAssociations);
+    }
 }
@@ -2,6 +2,8 @@ package software.amazon.fms.resourceset;
 
 import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetResponse;
 import software.amazon.awssdk.services.fms.model.PutResourceSetRequest;
 import software.amazon.awssdk.services.fms.model.PutResourceSetResponse;
 import software.amazon.awssdk.services.fms.model.Tag;
@@ -11,8 +13,11 @@ import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.resourceset.helpers.AssociationHelper;
+import software.amazon.fms.resourceset.helpers.BudgetExhaustedException;
 import software.amazon.fms.resourceset.helpers.CfnHelper;
+import software.amazon.fms.resourceset.helpers.ExecutionBudget;
 import software.amazon.fms.resourceset.helpers.FmsHelper;
+import software.amazon.fms.resourceset.helpers.PendingAssociations;
 
 import java.util.Collections;
 import java.util.List;
@@ -27,33 +32,95 @@ public class CreateHandler extends ResourceSetHandler<PutResourceSetResponse> {
         super(client);
     }
 
+    @Override
+    boolean recordsResults() {
+
+        return true;
+    }
+
+    /** Step recorded once the ResourceSet has been created. */
+    static final String PUT_RESOURCE_SET_STEP = "PutResourceSet";
+
+    /** Step recorded once the resources have been associated with the ResourceSet. */
+    static final String ASSOCIATE_RESOURCES_STEP = "UpdateResourceAssociations";
+
     @Override
     protected PutResourceSetResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
             final ResourceHandlerRequest<ResourceModel> request,
             final Logger logger
     ) {
+        return makeRequest(proxy, request, CallbackContext.builder().build(), ExecutionBudget.unlimited(), logger);
+    }
 
-        // make the create request
-        final PutResourceSetRequest.Builder putResourceSetRequestBuilder = PutResourceSetRequest.builder()
-                .resourceSet(FmsHelper.convertCFNResourceModelToFMSResourceSet(request.getDesiredResourceState()));
-        final List<Tag> tags = FmsHelper.convertCFNTagMapToFMSTagSet(request.getDesiredResourceTags());
+    @Override
+    protected PutResourceSetResponse makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger
+    ) {
+
+        final PutResourceSetResponse putResourceSetResponse;
+        if (progress.hasCompleted(PUT_RESOURCE_SET_STEP)) {
+            // a re-invocation after the resourceSet was created reads it instead of creating another one
+            logger.log(String.format("ResourceSet %s was already created, retrieving it", progress.getResourceId()));
+            final GetResourceSetResponse getResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
+                    GetResourceSetRequest.builder().identifier(progress.getResourceId()).build(),
+                    client::getResourceSet);
+            logRequest(getResourceSetResponse, logger);
+            putResourceSetResponse = PutResourceSetResponse.builder()
+                    .resourceSet(getResourceSetResponse.resourceSet())
+                    .resourceSetArn(getResourceSetResponse.resourceSetArn())
+                    .build();
+        } else {
+            // make the create request
+            final PutResourceSetRequest.Builder putResourceSetRequestBuilder = PutResourceSetRequest.builder()
+                    .resourceSet(FmsHelper.convertCFNResourceModelToFMSResourceSet(request.getDesiredResourceState()));
+            final List<Tag> tags = FmsHelper.convertCFNTagMapToFMSTagSet(request.getDesiredResourceTags());
+
+            if (!tags.isEmpty()) {
+                putResourceSetRequestBuilder.tagList(tags);
+            }
+            putResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
+                    putResourceSetRequestBuilder.build(),
+                    client::putResourceSet);
+            logRequest(putResourceSetResponse, logger);
+            progress.setResourceId(putResourceSetResponse.resourceSet().id());
+            markCompleted(progress, PUT_RESOURCE_SET_STEP);
+        }
 
-        if (!tags.isEmpty()) {
-            putResourceSetRequestBuilder.tagList(tags);
+        if (!progress.hasCompleted(ASSOCIATE_RESOURCES_STEP)) {
+            // a callback after a checkpoint continues with the changes left instead of listing the resources again
+            final PendingAssociations pending = progress.getPendingAssociations() != null
+                    ? PendingAssociations.decode(progress.getPendingAssociations())
+                    : AssociationHelper.planResourceAssociations(
+                            putResourceSetResponse.resourceSet().id(),
+                            request.getDesiredResourceState().getResources(),
+                            client,
+                            proxy,
+                            budget);
+            try {
+                AssociationHelper.applyPendingAssociations(
+                        putResourceSetResponse.resourceSet().id(),
+                        pending,
+                        client,
+                        proxy,
+                        budget,
+                        logger
+                );
+            } catch (BudgetExhaustedException e) {
+                progress.setPendingAssociations(pending.encode());
+                throw e;
+            } catch (RuntimeException e) {
+                // a failed batch may have partly applied, so a re-invocation lists the resources again
+                progress.setPendingAssociations(null);
+                throw e;
+            }
+            progress.setPendingAssociations(null);
+            markCompleted(progress, ASSOCIATE_RESOURCES_STEP);
         }
-        final PutResourceSetResponse putResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
-                putResourceSetRequestBuilder.build(),
-                client::putResourceSet);
-        logRequest(putResourceSetResponse, logger);
-
-        AssociationHelper.updateResourceAssociations(
-                putResourceSetResponse.resourceSet().id(),
-                request.getDesiredResourceState().getResources(),
-                client,
-                proxy,
-                logger
-        );
 
         return putResourceSetResponse;
     }
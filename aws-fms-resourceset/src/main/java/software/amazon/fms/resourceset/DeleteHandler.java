@@ -3,11 +3,18 @@ package software.amazon.fms.resourceset;
 import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetRequest;
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetResponse;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.InvalidInputException;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class DeleteHandler extends ResourceSetHandler<DeleteResourceSetResponse> {
 
     DeleteHandler() {
@@ -18,6 +25,12 @@ public class DeleteHandler extends ResourceSetHandler<DeleteResourceSetResponse>
         super(client);
     }
 
+    @Override
+    boolean recordsResults() {
+
+        return true;
+    }
+
     @Override
     protected DeleteResourceSetResponse makeRequest(
             final AmazonWebServicesClientProxy proxy,
@@ -25,18 +38,77 @@ public class DeleteHandler extends ResourceSetHandler<DeleteResourceSetResponse>
             final Logger logger
     ) {
 
+        // refuse to delete a ResourceSet that policies still reference, without waiting for FMS to reject it; without a
+        // current index FMS rejects the delete itself
+        final String resourceSetId = request.getDesiredResourceState().getId();
+        final ResourceSetDependencyIndex dependencyIndex = getDependencyIndex(request);
+        final List<String> indexedPolicies = referencingPolicies(request, resourceSetId, logger);
+        if (indexedPolicies != null && !indexedPolicies.isEmpty()) {
+            final List<String> usingPolicies =
+                    confirmReferences(proxy, dependencyIndex, resourceSetId, indexedPolicies, logger);
+            if (!usingPolicies.isEmpty()) {
+                throw InvalidInputException.builder()
+                        .message(String.format("ResourceSet %s is used by policy/s %s",
+                                resourceSetId, String.join(", ", usingPolicies)))
+                        .build();
+            }
+        }
+
         // build the delete request
         final DeleteResourceSetRequest.Builder deletePolicyRequest = DeleteResourceSetRequest.builder()
-                .identifier(request.getDesiredResourceState().getId());
+                .identifier(resourceSetId);
 
         // make the delete request
         final DeleteResourceSetResponse response = proxy.injectCredentialsAndInvokeV2(
                 deletePolicyRequest.build(),
                 client::deleteResourceSet);
         logRequest(response, logger);
+        if (dependencyIndex != null) {
+            dependencyIndex.removeResourceSet(resourceSetId);
+        }
         return response;
     }
 
+    /**
+     * Read each indexed policy to confirm it still references a ResourceSet, correcting the index where it does not.
+     * Policies are deleted and updated through another resource type, so the index may predate the change that
+     * released the ResourceSet, as when a stack deletes a policy before the ResourceSet it uses.
+     * @param proxy AWS proxy to make requests.
+     * @param dependencyIndex Index holding the policies as referencing the ResourceSet.
+     * @param resourceSetId ID of the ResourceSet.
+     * @param indexedPolicies IDs of the policies the index holds as referencing the ResourceSet.
+     * @param logger CloudWatch logger.
+     * @return IDs of the policies FMS still returns with a reference to the ResourceSet.
+     */
+    private List<String> confirmReferences(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceSetDependencyIndex dependencyIndex,
+            final String resourceSetId,
+            final List<String> indexedPolicies,
+            final Logger logger
+    ) {
+
+        final List<String> usingPolicies = new ArrayList<>(indexedPolicies.size());
+        for (final String policyId : indexedPolicies) {
+            final GetPolicyRequest getPolicyRequest = GetPolicyRequest.builder()
+                    .policyId(policyId)
+                    .build();
+            try {
+                final GetPolicyResponse response = proxy.injectCredentialsAndInvokeV2(
+                        getPolicyRequest,
+                        client::getPolicy);
+                logRequest(response, logger);
+                dependencyIndex.put(policyId, response.policy().resourceSetIds());
+                if (response.policy().resourceSetIds().contains(resourceSetId)) {
+                    usingPolicies.add(policyId);
+                }
+            } catch (ResourceNotFoundException e) {
+                dependencyIndex.removePolicy(policyId);
+            }
+        }
+        return usingPolicies;
+    }
+
     @Override
     protected ProgressEvent<ResourceModel, CallbackContext> constructSuccessProgressEvent(
             final DeleteResourceSetResponse response,
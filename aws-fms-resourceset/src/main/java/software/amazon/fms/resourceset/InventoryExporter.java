@@ -0,0 +1,334 @@
+package software.amazon.fms.resourceset;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetResponse;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesResponse;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsResponse;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.fms.model.Resource;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.fms.model.ResourceSet;
+import software.amazon.awssdk.services.fms.model.ResourceSetSummary;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.fms.resourceset.helpers.ParallelHelper;
+import software.amazon.fms.resourceset.helpers.Retrier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every resource set in the account and region, with its tags and associated resources, to an NDJSON file.
+ *
+ * Each resource set is written as one "resourceSet" record followed by one "resource" record per associated
+ * resource. Resource sets are exported concurrently, so records of different resource sets may interleave. Resources
+ * are written one page at a time, so memory use per resource set does not grow with its number of resources.
+ */
+public class InventoryExporter {
+
+    /** Default number of resource sets exported concurrently. */
+    static final int DEFAULT_PARALLELISM = 8;
+
+    /** Page size used for ListResourceSets and ListResourceSetResources. */
+    static final int MAX_RESULTS = 100;
+
+    private static final String GZIP_EXTENSION = ".gz";
+
+    private final FmsClient client;
+    private final int parallelism;
+    private final Retrier retries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Constructor, retrying throttled calls with the default retry policy.
+     * @param client The FmsClient to use.
+     * @param parallelism Maximum number of resource sets exported concurrently.
+     */
+    public InventoryExporter(final FmsClient client, final int parallelism) {
+        this(client, parallelism, new Retrier());
+    }
+
+    /**
+     * Constructor for use in tests, allows for a faster retry policy.
+     * @param client The FmsClient to use.
+     * @param parallelism Maximum number of resource sets exported concurrently.
+     * @param retries Retries throttled calls.
+     */
+    InventoryExporter(final FmsClient client, final int parallelism, final Retrier retries) {
+        this.client = client;
+        this.parallelism = parallelism;
+        this.retries = retries;
+    }
+
+    /**
+     * Export the resource set inventory of the default account and region.
+     * @param args Output file path, gzip compressed when it ends with ".gz", and an optional parallelism.
+     * @throws IOException If the output file cannot be written.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: InventoryExporter <output.ndjson[.gz]> [parallelism]");
+        }
+        final int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PARALLELISM;
+
+        try (FmsClient client = FmsClient.create()) {
+            final ExportSummary summary = new InventoryExporter(client, parallelism).export(Paths.get(args[0]));
+            System.out.printf("Exported %d resource set/s and %d resource/s to %s%n",
+                    summary.getResourceSetCount(), summary.getResourceCount(), args[0]);
+        }
+    }
+
+    /**
+     * Export the inventory to a file, gzip compressed when the file name ends with ".gz".
+     * @param path Output file path.
+     * @return Counts of the exported records.
+     * @throws IOException If the output file cannot be written.
+     */
+    public ExportSummary export(final Path path) throws IOException {
+        try (OutputStream outputStream = path.toString().endsWith(GZIP_EXTENSION)
+                ? new GZIPOutputStream(Files.newOutputStream(path))
+                : Files.newOutputStream(path)) {
+            return export(outputStream);
+        }
+    }
+
+    /**
+     * Export the inventory to a stream. The stream is flushed but not closed.
+     * @param outputStream Stream the NDJSON records are written to.
+     * @return Counts of the exported records.
+     * @throws IOException If the stream cannot be written.
+     */
+    public ExportSummary export(final OutputStream outputStream) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        final AtomicLong resourceSetCount = new AtomicLong();
+        final AtomicLong resourceCount = new AtomicLong();
+
+        // bound the resource sets waiting for a worker, so listing cannot run ahead of the export
+        final Semaphore pending = new Semaphore(parallelism * 2);
+        final ExecutorService executor = ParallelHelper.newWorkerPool(parallelism);
+        final CompletionService<Boolean> completed = new ExecutorCompletionService<>(executor);
+        final List<Future<Boolean>> futures = new ArrayList<>();
+        int unfinished = 0;
+        try {
+            String nextToken = null;
+            do {
+                final String pageToken = nextToken;
+                final ListResourceSetsResponse listResourceSetsResponse = retries.call(() -> client.listResourceSets(
+                        ListResourceSetsRequest.builder()
+                                .nextToken(pageToken)
+                                .maxResults(MAX_RESULTS)
+                                .build()));
+
+                for (final ResourceSetSummary resourceSetSummary : listResourceSetsResponse.resourceSets()) {
+                    pending.acquire();
+
+                    // surface a failed export before listing or submitting any more
+                    unfinished -= awaitFinished(completed, false);
+                    futures.add(completed.submit(() -> {
+                        try {
+                            if (exportResourceSet(resourceSetSummary.id(), writer, resourceCount)) {
+                                resourceSetCount.incrementAndGet();
+                            }
+                            return true;
+                        } finally {
+                            pending.release();
+                        }
+                    }));
+                    unfinished++;
+                }
+                nextToken = listResourceSetsResponse.nextToken();
+            } while (nextToken != null);
+
+            // wait for the remaining exports in completion order, so the first failure surfaces as soon as it happens
+            while (unfinished > 0) {
+                unfinished -= awaitFinished(completed, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Inventory export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            // cancel the remaining exports once one failed
+            futures.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+
+        writer.flush();
+        return new ExportSummary(resourceSetCount.get(), resourceCount.get());
+    }
+
+    /**
+     * Collect the exports that have finished, failing on the first one that failed.
+     * @param completed Completion service the exports were submitted to.
+     * @param block Wait for an export to finish if none has.
+     * @return Number of exports collected.
+     * @throws ExecutionException If a collected export failed.
+     * @throws InterruptedException If the wait is interrupted.
+     */
+    private static int awaitFinished(
+            final CompletionService<Boolean> completed,
+            final boolean block
+    ) throws ExecutionException, InterruptedException {
+        int finished = 0;
+        Future<Boolean> future = block ? completed.take() : completed.poll();
+        while (future != null) {
+            future.get();
+            finished++;
+            future = completed.poll();
+        }
+        return finished;
+    }
+
+    /**
+     * Export a single resource set and its resources.
+     * @param resourceSetId Resource set to export.
+     * @param writer Writer shared by all exports.
+     * @param resourceCount Running count of exported resources.
+     * @return False if the resource set was deleted before it could be read.
+     */
+    private boolean exportResourceSet(
+            final String resourceSetId,
+            final Writer writer,
+            final AtomicLong resourceCount
+    ) {
+        final GetResourceSetResponse getResourceSetResponse;
+        final ListTagsForResourceResponse listTagsForResourceResponse;
+        try {
+            getResourceSetResponse = retries.call(() -> client.getResourceSet(GetResourceSetRequest.builder()
+                    .identifier(resourceSetId)
+                    .build()));
+            listTagsForResourceResponse = retries.call(() -> client.listTagsForResource(
+                    ListTagsForResourceRequest.builder()
+                            .resourceArn(getResourceSetResponse.resourceSetArn())
+                            .build()));
+        } catch (ResourceNotFoundException e) {
+            return false;
+        }
+        writeRecord(writer, resourceSetRecord(
+                getResourceSetResponse.resourceSet(),
+                getResourceSetResponse.resourceSetArn(),
+                listTagsForResourceResponse.tagList()));
+
+        // stream the associated resources one page at a time
+        String nextToken = null;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Inventory export cancelled");
+            }
+            final String pageToken = nextToken;
+            final ListResourceSetResourcesResponse listResourceSetResourcesResponse =
+                    retries.call(() -> client.listResourceSetResources(ListResourceSetResourcesRequest.builder()
+                            .identifier(resourceSetId)
+                            .nextToken(pageToken)
+                            .maxResults(MAX_RESULTS)
+                            .build()));
+            final StringBuilder lines = new StringBuilder();
+            for (final Resource resource : listResourceSetResourcesResponse.items()) {
+                lines.append(toJson(resourceRecord(resourceSetId, resource))).append('\n');
+            }
+            writeLines(writer, lines);
+            resourceCount.addAndGet(listResourceSetResourcesResponse.items().size());
+            nextToken = listResourceSetResourcesResponse.nextToken();
+        } while (nextToken != null);
+
+        return true;
+    }
+
+    private static Map<String, Object> resourceSetRecord(
+            final ResourceSet resourceSet,
+            final String resourceSetArn,
+            final List<Tag> tags
+    ) {
+        final Map<String, String> tagMap = new LinkedHashMap<>();
+        tags.forEach(tag -> tagMap.put(tag.key(), tag.value()));
+
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "resourceSet");
+        record.put("id", resourceSet.id());
+        record.put("arn", resourceSetArn);
+        record.put("name", resourceSet.name());
+        record.put("description", resourceSet.description());
+        record.put("resourceTypeList", resourceSet.resourceTypeList());
+        record.put("lastUpdateTime", resourceSet.lastUpdateTime() == null
+                ? null
+                : resourceSet.lastUpdateTime().toString());
+        record.put("tags", tagMap);
+        return record;
+    }
+
+    private static Map<String, Object> resourceRecord(final String resourceSetId, final Resource resource) {
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "resource");
+        record.put("resourceSetId", resourceSetId);
+        record.put("uri", resource.uri());
+        record.put("accountId", resource.accountId());
+        return record;
+    }
+
+    private void writeRecord(final Writer writer, final Map<String, Object> record) {
+        writeLines(writer, new StringBuilder(toJson(record)).append('\n'));
+    }
+
+    private static void writeLines(final Writer writer, final CharSequence lines) {
+        if (lines.length() == 0) {
+            return;
+        }
+        // whole lines are written under the writer lock, so records never interleave mid-line
+        synchronized (writer) {
+            try {
+                writer.append(lines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private String toJson(final Map<String, Object> record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Counts of the records written by an export. */
+    @Value
+    public static class ExportSummary {
+        long resourceSetCount;
+        long resourceCount;
+    }
+}
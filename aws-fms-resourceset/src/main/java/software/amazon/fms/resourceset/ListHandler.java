@@ -1,5 +1,6 @@
 package software.amazon.fms.resourceset;
 
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.ListResourceSetsRequest;
 import software.amazon.awssdk.services.fms.model.ListResourceSetsResponse;
@@ -10,14 +11,29 @@ import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.resourceset.helpers.CfnHelper;
+import software.amazon.fms.resourceset.helpers.ListPageCache;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class ListHandler extends ResourceSetHandler<ListResourceSetsResponse> {
 
     public static final int MAX_RESULTS = 50;
 
+    /** Largest page size accepted by ListResourceSets, used once a listing is known to span several pages. */
+    static final int MAX_PAGE_SIZE = 100;
+
+    /** Maximum number of pages fetched ahead of the page being returned. */
+    static final int PREFETCH_PAGES = 4;
+
+    /** Time in milliseconds an invocation may spend fetching pages ahead, well below the handler timeout. */
+    static final long PREFETCH_BUDGET_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /** Pages fetched ahead for the current paging session, keyed by the FMS token handed back to CloudFormation. */
+    static final ListPageCache<ListResourceSetsResponse> PAGE_CACHE =
+            new ListPageCache<>(TimeUnit.SECONDS.toMillis(30), 256);
+
     ListHandler() {
         super();
     }
@@ -33,13 +49,97 @@ public class ListHandler extends ResourceSetHandler<ListResourceSetsResponse> {
             final Logger logger
     ) {
 
-        // Make the list request
+        // a continuation is served from the pages its own session fetched ahead, a new listing drops them so it
+        // never sees pages listed before a change
+        if (request.getNextToken() != null) {
+            final ListResourceSetsResponse cachedResponse = PAGE_CACHE.take(ListPageCache.key(
+                    request.getAwsAccountId(),
+                    request.getRegion(),
+                    request.getNextToken()));
+            if (cachedResponse != null) {
+                logger.log("Serving ResourceSet list page from cache");
+                return cachedResponse;
+            }
+        } else {
+            PAGE_CACHE.invalidate(request.getAwsAccountId(), request.getRegion());
+        }
+
+        // make the list request, continuation pages use the largest page size
+        final int pageSize = request.getNextToken() == null ? MAX_RESULTS : MAX_PAGE_SIZE;
+        final ListResourceSetsResponse listResourceSetsResponse = listResourceSets(
+                proxy,
+                request.getNextToken(),
+                pageSize,
+                logger
+        );
+
+        prefetchPages(proxy, request, listResourceSetsResponse, pageSize, logger);
+
+        return listResourceSetsResponse;
+    }
+
+    /**
+     * Fetch the pages following a full page and cache them for the follow-up invocations.
+     * @param proxy AWS proxy to make requests.
+     * @param request CloudFormation's handler request.
+     * @param firstPage Page being returned to CloudFormation.
+     * @param firstPageSize Page size the first page was requested with.
+     * @param logger CloudWatch logger.
+     */
+    private void prefetchPages(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ListResourceSetsResponse firstPage,
+            final int firstPageSize,
+            final Logger logger
+    ) {
+
+        final long deadline = System.currentTimeMillis() + PREFETCH_BUDGET_MILLIS;
+        ListResourceSetsResponse page = firstPage;
+        int pageSize = firstPageSize;
+        int prefetched = 0;
+        try {
+            // only a full page hints at a long listing, grow the page size while pages keep coming back full
+            while (prefetched < PREFETCH_PAGES
+                    && page.nextToken() != null
+                    && page.resourceSets().size() >= pageSize
+                    && System.currentTimeMillis() < deadline) {
+                final String nextToken = page.nextToken();
+                pageSize = Math.min(pageSize * 2, MAX_PAGE_SIZE);
+                page = listResourceSets(proxy, nextToken, pageSize, logger);
+                PAGE_CACHE.put(ListPageCache.key(request.getAwsAccountId(), request.getRegion(), nextToken), page);
+                prefetched++;
+            }
+        } catch (SdkException e) {
+            // the requested page is already available, a failed prefetch only costs a later remote call
+            logger.log(String.format("Stopped fetching ResourceSet list pages ahead: %s", e));
+        }
+        if (prefetched > 0) {
+            logger.log(String.format("Fetched %d ResourceSet list page/s ahead", prefetched));
+        }
+    }
+
+    /**
+     * Make a single ListResourceSets request.
+     * @param proxy AWS proxy to make requests.
+     * @param nextToken Token of the page to list, null for the first page.
+     * @param pageSize Maximum number of resource sets to return.
+     * @param logger CloudWatch logger.
+     * @return Response from the FMS API.
+     */
+    private ListResourceSetsResponse listResourceSets(
+            final AmazonWebServicesClientProxy proxy,
+            final String nextToken,
+            final int pageSize,
+            final Logger logger
+    ) {
+
         final ListResourceSetsRequest listResourceSetsRequest = ListResourceSetsRequest.builder()
-                .nextToken(request.getNextToken())
-                .maxResults(MAX_RESULTS)
+                .nextToken(nextToken)
+                .maxResults(pageSize)
                 .build();
 
-        ListResourceSetsResponse listResourceSetsResponse = proxy.injectCredentialsAndInvokeV2(
+        final ListResourceSetsResponse listResourceSetsResponse = proxy.injectCredentialsAndInvokeV2(
                 listResourceSetsRequest,
                 client::listResourceSets);
         logRequest(listResourceSetsResponse, logger);
@@ -0,0 +1,230 @@
+package software.amazon.fms.resourceset;
+
+import lombok.Value;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.fms.resourceset.helpers.ParallelHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Index of the FMS policies referencing each resource set, so the policies affected by a resource set change are
+ * known without reading every policy.
+ *
+ * The index is loaded with one ListPolicies listing and concurrent GetPolicy reads, and keeps both directions of the
+ * reference: the resource sets of each policy, used to replace them when a policy changes, and the policies of each
+ * resource set. Policies are managed by another resource type, so the index is only trusted for a limited time after
+ * its last load; a stale index answers nothing and the caller falls back on FMS.
+ */
+public class ResourceSetDependencyIndex {
+
+    /** Default number of policy reads in flight during a load. */
+    static final int DEFAULT_PARALLELISM = 8;
+
+    /** Default time in milliseconds a load is trusted. */
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /** Page size used for ListPolicies. */
+    static final int MAX_RESULTS = 100;
+
+    /** Time in milliseconds a load waits for the policy reads. */
+    static final long READ_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final int parallelism;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final Map<String, Set<String>> resourceSetsByPolicy = new HashMap<>();
+    private final Map<String, Set<String>> policiesByResourceSet = new HashMap<>();
+
+    /** Time the index was last loaded, negative until the first load. */
+    private long loadedAt = -1;
+
+    /**
+     * Create an empty index that uses the system clock.
+     * @param parallelism Maximum number of FMS reads in flight during a load.
+     * @param ttlMillis Time in milliseconds a load is trusted.
+     */
+    public ResourceSetDependencyIndex(final int parallelism, final long ttlMillis) {
+
+        this(parallelism, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Create an empty index with a custom clock, for use in tests.
+     * @param parallelism Maximum number of FMS reads in flight during a load.
+     * @param ttlMillis Time in milliseconds a load is trusted.
+     * @param clock Clock returning the current time in milliseconds.
+     */
+    ResourceSetDependencyIndex(final int parallelism, final long ttlMillis, final LongSupplier clock) {
+
+        this.parallelism = parallelism;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Replace the contents of the index with the resource set references of every live policy.
+     * @param client The FmsClient to use.
+     * @return Counts of the policies indexed and of the reads that failed.
+     */
+    public LoadResult load(final FmsClient client) {
+
+        final long startedAt = clock.getAsLong();
+        final List<PolicySummary> summaries = listPolicySummaries(client);
+        final List<Supplier<GetPolicyResponse>> reads = new ArrayList<>(summaries.size());
+        for (final PolicySummary summary : summaries) {
+            reads.add(() -> client.getPolicy(GetPolicyRequest.builder().policyId(summary.policyId()).build()));
+        }
+        final List<GetPolicyResponse> getPolicyResponses = ParallelHelper.runConcurrently(
+                reads,
+                parallelism,
+                System.currentTimeMillis() + READ_TIMEOUT_MILLIS);
+
+        // deleted policies and failed reads are left out, a failed read leaves the index untrusted
+        final Map<String, List<String>> loaded = new LinkedHashMap<>();
+        for (final GetPolicyResponse getPolicyResponse : getPolicyResponses) {
+            if (getPolicyResponse != null) {
+                final Policy policy = getPolicyResponse.policy();
+                loaded.put(policy.policyId(), policy.resourceSetIds());
+            }
+        }
+        final int failed = summaries.size() - loaded.size();
+        synchronized (this) {
+            resourceSetsByPolicy.clear();
+            policiesByResourceSet.clear();
+            loaded.forEach(this::put);
+            loadedAt = failed == 0 ? startedAt : -1;
+        }
+        return new LoadResult(loaded.size(), failed);
+    }
+
+    /**
+     * Determine whether the index can be trusted.
+     * @return True if the last load read every policy and is younger than the time to live.
+     */
+    public synchronized boolean isCurrent() {
+
+        return loadedAt >= 0 && clock.getAsLong() - loadedAt <= ttlMillis;
+    }
+
+    /**
+     * Set the resource sets a policy references, replacing those recorded for it.
+     * @param policyId ID of the policy.
+     * @param resourceSetIds IDs of the resource sets the policy references, null or empty for none.
+     */
+    public synchronized void put(final String policyId, final Collection<String> resourceSetIds) {
+
+        removePolicy(policyId);
+        if (resourceSetIds == null || resourceSetIds.isEmpty()) {
+            return;
+        }
+        final Set<String> resourceSets = new TreeSet<>(resourceSetIds);
+        resourceSetsByPolicy.put(policyId, resourceSets);
+        for (final String resourceSetId : resourceSets) {
+            policiesByResourceSet.computeIfAbsent(resourceSetId, id -> new TreeSet<>()).add(policyId);
+        }
+    }
+
+    /**
+     * Remove a policy and its references.
+     * @param policyId ID of the policy.
+     */
+    public synchronized void removePolicy(final String policyId) {
+
+        final Set<String> resourceSets = resourceSetsByPolicy.remove(policyId);
+        if (resourceSets == null) {
+            return;
+        }
+        for (final String resourceSetId : resourceSets) {
+            final Set<String> policies = policiesByResourceSet.get(resourceSetId);
+            policies.remove(policyId);
+            if (policies.isEmpty()) {
+                policiesByResourceSet.remove(resourceSetId);
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted resource set from the policies referencing it.
+     * @param resourceSetId ID of the resource set.
+     */
+    public synchronized void removeResourceSet(final String resourceSetId) {
+
+        final Set<String> policies = policiesByResourceSet.remove(resourceSetId);
+        if (policies == null) {
+            return;
+        }
+        for (final String policyId : policies) {
+            final Set<String> resourceSets = resourceSetsByPolicy.get(policyId);
+            resourceSets.remove(resourceSetId);
+            if (resourceSets.isEmpty()) {
+                resourceSetsByPolicy.remove(policyId);
+            }
+        }
+    }
+
+    /**
+     * Find the policies referencing a resource set.
+     * @param resourceSetId ID of the resource set.
+     * @return IDs of the referencing policies, sorted, empty if none do.
+     */
+    public synchronized List<String> referencingPolicies(final String resourceSetId) {
+
+        final Set<String> policies = policiesByResourceSet.get(resourceSetId);
+        return policies == null ? Collections.emptyList() : new ArrayList<>(policies);
+    }
+
+    /**
+     * Get the number of policies referencing at least one resource set.
+     * @return Number of policies.
+     */
+    public synchronized int size() {
+
+        return resourceSetsByPolicy.size();
+    }
+
+    private static List<PolicySummary> listPolicySummaries(final FmsClient client) {
+
+        final List<PolicySummary> summaries = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final ListPoliciesResponse listPoliciesResponse = client.listPolicies(ListPoliciesRequest.builder()
+                    .nextToken(nextToken)
+                    .maxResults(MAX_RESULTS)
+                    .build());
+            summaries.addAll(listPoliciesResponse.policyList());
+            nextToken = listPoliciesResponse.nextToken();
+        } while (nextToken != null);
+        return summaries;
+    }
+
+    /**
+     * Counts of a load.
+     */
+    @Value
+    public static class LoadResult {
+
+        /** Number of policies read. */
+        int indexed;
+
+        /** Number of policies whose read failed. */
+        int failed;
+    }
+}
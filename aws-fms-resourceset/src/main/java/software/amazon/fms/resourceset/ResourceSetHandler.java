@@ -13,16 +13,52 @@ import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.resourceset.helpers.BudgetExhaustedException;
+import software.amazon.fms.resourceset.helpers.ExecutionBudget;
+import software.amazon.fms.resourceset.helpers.OperationCostModel;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 abstract class ResourceSetHandler<ResponseT extends FmsResponse> extends BaseHandler<CallbackContext> {
 
+    /** Progress and results of requests served by this warm instance, shared by every handler. */
+    static final IdempotencyStore IDEMPOTENCY_STORE =
+            new IdempotencyStore(IdempotencyStore.TTL_MILLIS, IdempotencyStore.MAX_ENTRIES);
+
+    /** Expected duration of each FMS operation, learned from the requests served by this warm instance. */
+    static final OperationCostModel COST_MODEL = new OperationCostModel();
+
+    /**
+     * Policies referencing each resource set, keyed by account and region and shared by the handlers of this warm
+     * instance. Handlers never load an index: a load lists and reads every policy, which costs more than the delete it
+     * would spare, so until an index is loaded for the account and region FMS decides whether a resource set is in use.
+     */
+    static final Map<String, ResourceSetDependencyIndex> DEPENDENCY_INDEXES = new ConcurrentHashMap<>();
+
+    /** Separator used when building dependency index keys, never part of an account ID or region. */
+    private static final String KEY_SEPARATOR = "|";
+
     /** FMS client instance to make requests on behalf of CloudFormation. */
     protected final FmsClient client;
 
+    /** Creates the execution budget of each invocation. */
+    private Supplier<ExecutionBudget> budgets = () -> ExecutionBudget.fromEnvironment(COST_MODEL);
+
+    /** Policies referencing each resource set, set by tests in place of the shared indexes. */
+    private ResourceSetDependencyIndex dependencyIndex;
+
+    /** Should the handler use the index DEPENDENCY_INDEXES holds for the account and region of its request. */
+    private boolean sharedDependencyIndexes;
+
     /** Constructor for use by CloudFormation, uses default FMS client. */
     ResourceSetHandler() {
 
         client = FmsClient.create();
+        sharedDependencyIndexes = true;
     }
 
     /**
@@ -46,6 +82,132 @@ abstract class ResourceSetHandler<ResponseT extends FmsResponse> extends BaseHan
             final ResourceHandlerRequest<ResourceModel> request,
             final Logger logger);
 
+    /**
+     * Hook called by handleRequest to make the primary action request, for handlers that resume re-invocations.
+     * Handlers with several steps override this hook, skip the steps the progress shows completed and record each
+     * step they complete with markCompleted. Handlers making several FMS calls check the budget between them.
+     * @param proxy AWS proxy to make requests.
+     * @param request CloudFormation's handler request.
+     * @param progress Progress of earlier invocations with the same client request token.
+     * @param budget Time left in the invocation.
+     * @param logger CloudWatch logger.
+     * @return Response from the FMS API.
+     * @throws BudgetExhaustedException If the invocation has no time left for the next FMS call.
+     */
+    protected ResponseT makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger) {
+
+        return makeRequest(proxy, request, logger);
+    }
+
+    /**
+     * Replace how the execution budget of each invocation is created, for use in tests.
+     * @param budgets Creates the execution budget of an invocation.
+     */
+    void setBudgets(final Supplier<ExecutionBudget> budgets) {
+
+        this.budgets = budgets;
+    }
+
+    /**
+     * Track the policies referencing each resource set, to report and guard the changes affecting them. Handlers built
+     * by CloudFormation use the index DEPENDENCY_INDEXES holds for the account and region of each request, tests pass
+     * their own index.
+     * @param dependencyIndex Index to use, null to track none.
+     */
+    void setDependencyIndex(final ResourceSetDependencyIndex dependencyIndex) {
+
+        this.dependencyIndex = dependencyIndex;
+        sharedDependencyIndexes = false;
+    }
+
+    /**
+     * Get the index of the policies referencing each resource set in the account and region of a request.
+     * @param awsAccountId Account of the request.
+     * @param region Region of the request.
+     * @return The shared index, created empty for an account and region without one.
+     */
+    static ResourceSetDependencyIndex dependencyIndex(final String awsAccountId, final String region) {
+
+        return DEPENDENCY_INDEXES.computeIfAbsent(awsAccountId + KEY_SEPARATOR + region,
+                key -> new ResourceSetDependencyIndex(
+                        ResourceSetDependencyIndex.DEFAULT_PARALLELISM,
+                        ResourceSetDependencyIndex.DEFAULT_TTL_MILLIS));
+    }
+
+    /**
+     * Get the dependency index kept current by the handler for the account and region of a request.
+     * @param request CloudFormation's handler request.
+     * @return The index, or null if the handler does not track policy references.
+     */
+    ResourceSetDependencyIndex getDependencyIndex(final ResourceHandlerRequest<ResourceModel> request) {
+
+        return sharedDependencyIndexes
+                ? dependencyIndex(request.getAwsAccountId(), request.getRegion())
+                : dependencyIndex;
+    }
+
+    /**
+     * Find the policies referencing a resource set, when a current dependency index is set.
+     * @param request CloudFormation's handler request.
+     * @param resourceSetId ID of the resource set.
+     * @param logger CloudWatch logger.
+     * @return IDs of the referencing policies, or null if the handler has no current dependency index.
+     */
+    List<String> referencingPolicies(
+            final ResourceHandlerRequest<ResourceModel> request,
+            final String resourceSetId,
+            final Logger logger) {
+
+        final ResourceSetDependencyIndex index = getDependencyIndex(request);
+        if (index == null) {
+            return null;
+        }
+        if (!index.isCurrent()) {
+            logger.log("Policy references to ResourceSets are stale, not using them");
+            return null;
+        }
+        return index.referencingPolicies(resourceSetId);
+    }
+
+    /**
+     * Hook telling handleRequest whether the handler changes FMS, only those handlers record and replay their results
+     * by client request token. A read or list depends on more than the token and must reflect the current state.
+     * @return True if a re-invocation with the same client request token returns the recorded result.
+     */
+    boolean recordsResults() {
+
+        return false;
+    }
+
+    /**
+     * Build the key the progress and result of a request are recorded under.
+     * @param clientRequestToken Token of the CloudFormation request.
+     * @return Key, or null if the request has no token or the handler does not record results.
+     */
+    private String idempotencyKey(final String clientRequestToken) {
+
+        return recordsResults() ? IdempotencyStore.key(getClass().getSimpleName(), clientRequestToken) : null;
+    }
+
+    /**
+     * Record a completed step, so a re-invocation with the same client request token does not repeat it.
+     * @param progress Progress of the request.
+     * @param step Step name.
+     */
+    void markCompleted(final CallbackContext progress, final String step) {
+
+        progress.markCompleted(step);
+        final String key = idempotencyKey(progress.getClientRequestToken());
+        if (key != null) {
+            IDEMPOTENCY_STORE.recordProgress(key, progress);
+        }
+    }
+
     /**
      * Hook called by handleRequest to build the ProgressEvent after a successful makeRequest call.
      * @param response Generic type request response from makeRequest call.
@@ -91,25 +253,131 @@ abstract class ResourceSetHandler<ResponseT extends FmsResponse> extends BaseHan
             final Logger logger
     ) {
 
+        // a re-invocation with the same client request token returns the recorded result
+        final String idempotencyKey = idempotencyKey(request.getClientRequestToken());
+        final ResponseT recordedResponse = recordedResponse(idempotencyKey);
+        if (recordedResponse != null) {
+            logger.log(String.format("Returning the recorded result of request %s", request.getClientRequestToken()));
+            return constructSuccessProgressEvent(recordedResponse, request, proxy);
+        }
+        final CallbackContext progress = resumeProgress(idempotencyKey, request, callbackContext, logger);
+        final ExecutionBudget budget = budgets.get();
+
         final ResponseT response;
         try {
             // make the primary handler request
-            response = makeRequest(proxy, request, logger);
+            response = makeRequest(proxy, request, progress, budget, logger);
+        } catch(BudgetExhaustedException e) {
+            // hand the progress back to CloudFormation, which invokes the handler again right away
+            logger.log(e.getMessage());
+            logger.log(String.format("Operation cost estimates: %s", COST_MODEL.snapshot()));
+            return checkpoint(idempotencyKey, request, progress);
         } catch(ResourceNotFoundException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.NotFound);
+            return failure(e, HandlerErrorCode.NotFound, progress);
         } catch(InvalidOperationException | InvalidInputException | InvalidTypeException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.InvalidRequest);
+            return failure(e, HandlerErrorCode.InvalidRequest, progress);
         } catch(LimitExceededException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.ServiceLimitExceeded);
+            return failure(e, HandlerErrorCode.ServiceLimitExceeded, progress);
         } catch(InternalErrorException e) {
             logger.log(e.toString());
-            return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.ServiceInternalError);
+            return failure(e, HandlerErrorCode.ServiceInternalError, progress);
         }
 
         // let each handler construct its own success progress event with resource model(s)
-        return constructSuccessProgressEvent(response, request, proxy);
+        final ProgressEvent<ResourceModel, CallbackContext> progressEvent =
+                constructSuccessProgressEvent(response, request, proxy);
+        if (idempotencyKey != null) {
+            IDEMPOTENCY_STORE.recordResponse(idempotencyKey, progress, response);
+        }
+        if (recordsResults()) {
+            // pages fetched ahead before the change no longer match the resource sets
+            ListHandler.PAGE_CACHE.invalidate(request.getAwsAccountId(), request.getRegion());
+        }
+        return progressEvent;
+    }
+
+    /**
+     * Retrieve the recorded result of a completed request.
+     * @param idempotencyKey Key of the request, null if the request has no client request token.
+     * @return The recorded response, or null if the request has not completed on this instance.
+     */
+    @SuppressWarnings("unchecked")
+    private ResponseT recordedResponse(final String idempotencyKey) {
+
+        // keys are scoped to the handler, so a recorded response always has this handler's response type
+        return idempotencyKey == null ? null : (ResponseT) IDEMPOTENCY_STORE.response(idempotencyKey);
+    }
+
+    /**
+     * Find the progress earlier invocations with the same client request token made.
+     * @param idempotencyKey Key of the request, null if the request has no client request token.
+     * @param request CloudFormation's handler request.
+     * @param callbackContext Context CloudFormation passed to the invocation.
+     * @param logger CloudWatch logger.
+     * @return Progress of the request, empty for a new request.
+     */
+    private CallbackContext resumeProgress(
+            final String idempotencyKey,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext callbackContext,
+            final Logger logger) {
+
+        // the context CloudFormation passes back is the most recent progress, the store covers lost responses
+        CallbackContext progress = null;
+        if (callbackContext != null
+                && Objects.equals(request.getClientRequestToken(), callbackContext.getClientRequestToken())) {
+            progress = callbackContext.copy();
+        } else if (idempotencyKey != null) {
+            progress = IDEMPOTENCY_STORE.progress(idempotencyKey);
+        }
+        if (progress == null) {
+            return CallbackContext.builder().clientRequestToken(request.getClientRequestToken()).build();
+        }
+        logger.log(String.format("Resuming request %s after steps %s",
+                request.getClientRequestToken(), progress.getCompletedSteps()));
+        return progress;
+    }
+
+    /**
+     * Build an in progress event for a request stopped by its execution budget, recording the progress so both the
+     * callback and a re-invocation after a lost response continue from it.
+     * @param idempotencyKey Key of the request, null if the request has no client request token.
+     * @param request CloudFormation's handler request.
+     * @param progress Progress of the request.
+     * @return In progress event asking for an immediate callback.
+     */
+    private static ProgressEvent<ResourceModel, CallbackContext> checkpoint(
+            final String idempotencyKey,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress) {
+
+        progress.setCheckpointCount(progress.getCheckpointCount() + 1);
+        if (idempotencyKey != null) {
+            IDEMPOTENCY_STORE.recordProgress(idempotencyKey, progress);
+        }
+        return ProgressEvent.defaultInProgressHandler(progress, 0, request.getDesiredResourceState());
+    }
+
+    /**
+     * Build a failure event, carrying the progress if any step completed so a re-invocation can resume it.
+     * @param e Exception the request failed with.
+     * @param errorCode Handler error code of the exception.
+     * @param progress Progress of the request.
+     * @return Failure event.
+     */
+    private static ProgressEvent<ResourceModel, CallbackContext> failure(
+            final Exception e,
+            final HandlerErrorCode errorCode,
+            final CallbackContext progress) {
+
+        final ProgressEvent<ResourceModel, CallbackContext> progressEvent =
+                ProgressEvent.defaultFailureHandler(e, errorCode);
+        if (progress.getCompletedSteps() != null && !progress.getCompletedSteps().isEmpty()) {
+            progressEvent.setCallbackContext(progress);
+        }
+        return progressEvent;
     }
 }
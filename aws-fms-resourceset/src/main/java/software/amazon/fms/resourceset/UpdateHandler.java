@@ -2,6 +2,7 @@ package software.amazon.fms.resourceset;
 
 import org.apache.commons.lang3.StringUtils;
 import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsException;
 import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
 import software.amazon.awssdk.services.fms.model.GetResourceSetResponse;
 import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
@@ -18,20 +19,66 @@ import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.fms.resourceset.helpers.ArnHelper;
 import software.amazon.fms.resourceset.helpers.AssociationHelper;
+import software.amazon.fms.resourceset.helpers.BudgetExhaustedException;
 import software.amazon.fms.resourceset.helpers.CfnHelper;
+import software.amazon.fms.resourceset.helpers.ChangePlan;
+import software.amazon.fms.resourceset.helpers.ExecutionBudget;
 import software.amazon.fms.resourceset.helpers.FmsHelper;
+import software.amazon.fms.resourceset.helpers.OperationGraph;
+import software.amazon.fms.resourceset.helpers.VerificationSampler;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class UpdateHandler extends ResourceSetHandler<PutResourceSetResponse> {
 
+    /** Maximum number of FMS operations running at the same time during an update. */
+    static final int OPERATION_PARALLELISM = 4;
+
+    /** Environment variable holding every how many updates trusting the previous state list tags and resources. */
+    static final String VERIFY_INTERVAL_ENVIRONMENT_VARIABLE = "FMS_RESOURCE_SET_UPDATE_VERIFY_INTERVAL";
+
+    /** Shared by every update handled by this instance, so the sampling spans updates. */
+    private static final VerificationSampler VERIFICATION_SAMPLER =
+            VerificationSampler.fromEnvironment(VERIFY_INTERVAL_ENVIRONMENT_VARIABLE);
+
+    /** Maximum number of FMS operations running at the same time, one runs them in declaration order. */
+    private final int operationParallelism;
+
+    /** Decides which updates take the current tags and resources from the previous resource state. */
+    private final VerificationSampler verificationSampler;
+
     UpdateHandler() {
         super();
+        operationParallelism = OPERATION_PARALLELISM;
+        verificationSampler = VERIFICATION_SAMPLER;
     }
 
     UpdateHandler(final FmsClient client) {
+        this(client, OPERATION_PARALLELISM);
+    }
+
+    UpdateHandler(final FmsClient client, final int operationParallelism) {
+        this(client, operationParallelism, VERIFICATION_SAMPLER);
+    }
+
+    UpdateHandler(
+            final FmsClient client,
+            final int operationParallelism,
+            final VerificationSampler verificationSampler
+    ) {
         super(client);
+        this.operationParallelism = operationParallelism;
+        this.verificationSampler = verificationSampler;
+    }
+
+    @Override
+    boolean recordsResults() {
+
+        return true;
     }
 
     @Override
@@ -40,59 +87,112 @@ public class UpdateHandler extends ResourceSetHandler<PutResourceSetResponse> {
             final ResourceHandlerRequest<ResourceModel> request,
             final Logger logger
     ) {
+        return makeRequest(proxy, request, CallbackContext.builder().build(), ExecutionBudget.unlimited(), logger);
+    }
+
+    @Override
+    protected PutResourceSetResponse makeRequest(
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final CallbackContext progress,
+            final ExecutionBudget budget,
+            final Logger logger
+    ) {
 
-        // make a read request to retrieve an up-to-date ResourceSetUpdateToken
-        logger.log("Retrieving existing ResourceSet");
         if (StringUtils.isBlank(request.getDesiredResourceState().getId())) {
             throw ResourceNotFoundException.builder()
                     .message("Firewall manager ResourceSet with the provided reference ID does not exist").build();
         }
-        final GetResourceSetRequest getResourceSetRequest = GetResourceSetRequest.builder()
-                .identifier(request.getDesiredResourceState().getId())
-                .build();
-        final GetResourceSetResponse getResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
-                getResourceSetRequest,
-                client::getResourceSet);
-        logger.log("ResourceSet retrieved successfully");
-        logRequest(getResourceSetResponse, logger);
-
-        // make the update request
-        logger.log("Updating existing ResourceSet");
-        final PutResourceSetRequest putResourceSetRequest = PutResourceSetRequest.builder()
-                .resourceSet(FmsHelper.convertCFNResourceModelToFMSResourceSet(
-                        request.getDesiredResourceState(),
-                        getResourceSetResponse.resourceSet().updateToken()))
-                .build();
-        final PutResourceSetResponse putResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
-                putResourceSetRequest,
-                client::putResourceSet);
-        logger.log("ResourceSet updated successfully");
-        logRequest(putResourceSetResponse, logger);
+        final OperationGraph graph = new OperationGraph(operationParallelism, budget, logger);
 
-        // make a list request to get the current tags on the ResourceSet
-        logger.log("Retrieving ResourceSet tags");
-        final ListTagsForResourceRequest listTagsForResourceRequest = ListTagsForResourceRequest.builder()
-                .resourceArn(getResourceSetResponse.resourceSetArn())
-                .build();
-        final ListTagsForResourceResponse listTagsForResourceResponse = proxy.injectCredentialsAndInvokeV2(
-                listTagsForResourceRequest,
-                client::listTagsForResource);
-        logger.log("ResourceSet tags retrieved successfully");
-        logRequest(listTagsForResourceResponse, logger);
+        // make a read request to retrieve an up-to-date ResourceSetUpdateToken
+        final OperationGraph.Node<GetResourceSetResponse> getResourceSet = graph.add("GetResourceSet", () -> {
+            logger.log("Retrieving existing ResourceSet");
+            final GetResourceSetRequest getResourceSetRequest = GetResourceSetRequest.builder()
+                    .identifier(request.getDesiredResourceState().getId())
+                    .build();
+            final GetResourceSetResponse getResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
+                    getResourceSetRequest,
+                    client::getResourceSet);
+            logger.log("ResourceSet retrieved successfully");
+            logRequest(getResourceSetResponse, logger);
+            return getResourceSetResponse;
+        });
+
+        // take the current tags and resources from the previous resource state when it is trusted, otherwise list them;
+        // a callback after a checkpoint always lists them, since the stopped invocation may have changed some already
+        final boolean trustPreviousState = request.getPreviousResourceState() != null
+                && progress.getCheckpointCount() == 0
+                && verificationSampler.trustPreviousState();
+        final OperationGraph.Node<List<Tag>> currentTags = trustPreviousState
+                ? graph.add("PreviousTags", () -> {
+                    logger.log("Using the previous ResourceSet tags");
+                    return FmsHelper.convertCFNTagMapToFMSTagSet(request.getPreviousResourceTags());
+                })
+                : addTagReads(graph, getResourceSet, proxy, request, logger);
+        final OperationGraph.Node<Set<String>> currentAssociations = trustPreviousState
+                ? graph.add("PreviousResources", () -> {
+                    logger.log("Using the previous ResourceSet resources");
+                    final Set<String> resources = request.getPreviousResourceState().getResources();
+                    return resources == null ? new HashSet<>() : resources;
+                })
+                : graph.add("ListResourceSetResources", () -> {
+                    // listing the associated resources only needs the ResourceSet id
+                    logger.log("Retrieving ResourceSet resources");
+                    final Set<String> resources = AssociationHelper.listResourceAssociations(
+                            request.getDesiredResourceState().getId(),
+                            client,
+                            proxy,
+                            budget);
+                    logger.log(String.format("Retrieved %d ResourceSet resource/s", resources.size()));
+                    return resources;
+                });
 
-        // determine tags to remove and add
-        final List<String> removeTags = FmsHelper.tagsToRemove(
-                listTagsForResourceResponse.tagList(),
-                request.getDesiredResourceTags());
-        final List<Tag> addTags = FmsHelper.tagsToAdd(
-                listTagsForResourceResponse.tagList(),
-                request.getDesiredResourceTags());
+        // plan only the changes that differ between the current and desired state
+        final OperationGraph.Node<ChangePlan> plan = graph.add("PlanChanges", () -> {
+            final ChangePlan changePlan = ChangePlan.plan(
+                    request.getDesiredResourceState(),
+                    request.getDesiredResourceTags(),
+                    getResourceSet.get().resourceSet(),
+                    currentTags.get(),
+                    currentAssociations.get());
+            logger.log(changePlan.describe());
+            return changePlan;
+        }, getResourceSet, currentTags, currentAssociations);
+
+        // make the update request if the name, description or resource type list changed
+        final OperationGraph.Node<PutResourceSetResponse> putResourceSet = graph.add("PutResourceSet", () -> {
+            if (!plan.get().isPutResourceSet()) {
+                logger.log("No ResourceSet changes to put");
+                return PutResourceSetResponse.builder()
+                        .resourceSet(getResourceSet.get().resourceSet())
+                        .resourceSetArn(getResourceSet.get().resourceSetArn())
+                        .build();
+            }
+            logger.log("Updating existing ResourceSet");
+            final PutResourceSetRequest putResourceSetRequest = PutResourceSetRequest.builder()
+                    .resourceSet(FmsHelper.convertCFNResourceModelToFMSResourceSet(
+                            request.getDesiredResourceState(),
+                            getResourceSet.get().resourceSet().updateToken()))
+                    .build();
+            final PutResourceSetResponse putResourceSetResponse = proxy.injectCredentialsAndInvokeV2(
+                    putResourceSetRequest,
+                    client::putResourceSet);
+            logger.log("ResourceSet updated successfully");
+            logRequest(putResourceSetResponse, logger);
+            return putResourceSetResponse;
+        }, getResourceSet, plan);
 
-        // make an untag request
-        if (!removeTags.isEmpty()) {
+        // make an untag request, which depends on the ResourceSet ARN and tags but not on the ResourceSet update
+        final OperationGraph.Node<UntagResourceResponse> untagResource = graph.add("UntagResource", () -> {
+            final List<String> removeTags = plan.get().getTagsToRemove();
+            if (removeTags.isEmpty()) {
+                logger.log("No tags to remove");
+                return null;
+            }
             logger.log(String.format("Removing %d tag/s", removeTags.size()));
             final UntagResourceRequest untagResourceRequest = UntagResourceRequest.builder()
-                    .resourceArn(getResourceSetResponse.resourceSetArn())
+                    .resourceArn(getResourceSet.get().resourceSetArn())
                     .tagKeys(removeTags)
                     .build();
             final UntagResourceResponse untagResourceResponse = proxy.injectCredentialsAndInvokeV2(
@@ -100,15 +200,19 @@ public class UpdateHandler extends ResourceSetHandler<PutResourceSetResponse> {
                     client::untagResource);
             logger.log("Tags removed successfully");
             logRequest(untagResourceResponse, logger);
-        } else {
-            logger.log("No tags to remove");
-        }
+            return untagResourceResponse;
+        }, getResourceSet, plan);
 
-        // make a tag request
-        if (!addTags.isEmpty()) {
+        // make a tag request after the untag request, since a changed tag value is removed and then added again
+        graph.add("TagResource", () -> {
+            final List<Tag> addTags = plan.get().getTagsToAdd();
+            if (addTags.isEmpty()) {
+                logger.log("No tags to add");
+                return null;
+            }
             logger.log(String.format("Adding %d tag/s", addTags.size()));
             final TagResourceRequest tagResourceRequest = TagResourceRequest.builder()
-                    .resourceArn(getResourceSetResponse.resourceSetArn())
+                    .resourceArn(getResourceSet.get().resourceSetArn())
                     .tagList(addTags)
                     .build();
             final TagResourceResponse tagResourceResponse = proxy.injectCredentialsAndInvokeV2(
@@ -116,20 +220,118 @@ public class UpdateHandler extends ResourceSetHandler<PutResourceSetResponse> {
                     client::tagResource);
             logger.log("Tags added successfully");
             logRequest(tagResourceResponse, logger);
-        } else {
-            logger.log("No tags to add");
+            return tagResourceResponse;
+        }, getResourceSet, plan, untagResource);
+
+        // change the associations once the resource type list is up to date
+        graph.add("UpdateResourceAssociations", () -> {
+            logAffectedPolicies(request, plan.get(), logger);
+            AssociationHelper.applyResourceAssociationChanges(
+                    request.getDesiredResourceState().getId(),
+                    plan.get().getResourcesToDisassociate(),
+                    plan.get().getResourcesToAssociate(),
+                    client,
+                    proxy,
+                    budget,
+                    logger
+            );
+            return null;
+        }, plan, putResourceSet);
+
+        // run the operations, listing the live state on the next update if trusting the previous state failed; an
+        // update stopped by the budget is planned again from the live state by the callback, keeping what it changed
+        try {
+            graph.run();
+        } catch (BudgetExhaustedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (trustPreviousState) {
+                verificationSampler.recordFailure();
+            }
+            throw e;
         }
+        return putResourceSet.get();
+    }
 
-        AssociationHelper.updateResourceAssociations(
-                getResourceSetResponse.resourceSet().id(),
-                request.getDesiredResourceState().getResources(),
-                client,
-                proxy,
-                logger
-        );
+    /**
+     * Log the policies whose scope the association changes of a ResourceSet affect.
+     * @param request CloudFormation's handler request.
+     * @param changePlan Planned changes.
+     * @param logger CloudWatch logger.
+     */
+    private void logAffectedPolicies(
+            final ResourceHandlerRequest<ResourceModel> request,
+            final ChangePlan changePlan,
+            final Logger logger) {
+
+        final int changes = changePlan.getResourcesToAssociate().size() + changePlan.getResourcesToDisassociate().size();
+        if (changes == 0) {
+            return;
+        }
+        final List<String> referencingPolicies = referencingPolicies(
+                request,
+                request.getDesiredResourceState().getId(),
+                logger);
+        if (referencingPolicies != null) {
+            logger.log(String.format("%d association change/s affect %d policy/s: %s",
+                    changes, referencingPolicies.size(), referencingPolicies));
+        }
+    }
 
-        // return the status of the ResourceSet update
-        return putResourceSetResponse;
+    private OperationGraph.Node<List<Tag>> addTagReads(
+            final OperationGraph graph,
+            final OperationGraph.Node<GetResourceSetResponse> getResourceSet,
+            final AmazonWebServicesClientProxy proxy,
+            final ResourceHandlerRequest<ResourceModel> request,
+            final Logger logger
+    ) {
+        // make a list request to get the current tags on the ResourceSet, alongside the read if the ARN is known
+        final String synthesizedResourceSetArn = ArnHelper.synthesizeResourceSetArn(
+                request,
+                request.getDesiredResourceState().getId());
+        final OperationGraph.Node<ListTagsForResourceResponse> listTags = synthesizedResourceSetArn == null
+                ? graph.add("ListTagsForResource",
+                        () -> retrieveTags(proxy, getResourceSet.get().resourceSetArn(), logger),
+                        getResourceSet)
+                : graph.add("ListTagsForResource", () -> {
+                    try {
+                        return retrieveTags(proxy, synthesizedResourceSetArn, logger);
+                    } catch (FmsException e) {
+                        // errors are only surfaced by the read using the ResourceSet ARN
+                        logger.log(String.format("Concurrent tag read failed: %s", e));
+                        return null;
+                    }
+                });
+
+        // the synthesized ARN must match the ResourceSet ARN, otherwise the tags are read again
+        return graph.add("VerifyTags", () -> {
+            if (synthesizedResourceSetArn == null) {
+                return listTags.get().tagList();
+            }
+            if (synthesizedResourceSetArn.equals(getResourceSet.get().resourceSetArn()) && listTags.get() != null) {
+                return listTags.get().tagList();
+            }
+            logger.log(String.format("Synthesized ResourceSet ARN %s could not be used for %s",
+                    synthesizedResourceSetArn, getResourceSet.get().resourceSetArn()));
+            return retrieveTags(proxy, getResourceSet.get().resourceSetArn(), logger).tagList();
+        }, getResourceSet, listTags);
+    }
+
+    private ListTagsForResourceResponse retrieveTags(
+            final AmazonWebServicesClientProxy proxy,
+            final String resourceSetArn,
+            final Logger logger
+    ) {
+        logger.log("Retrieving ResourceSet tags");
+        final ListTagsForResourceRequest listTagsForResourceRequest = ListTagsForResourceRequest.builder()
+                .resourceArn(resourceSetArn)
+                .build();
+        final ListTagsForResourceResponse listTagsForResourceResponse = proxy.injectCredentialsAndInvokeV2(
+                listTagsForResourceRequest,
+                client::listTagsForResource);
+        logger.log("ResourceSet tags retrieved successfully");
+        logRequest(listTagsForResourceResponse, logger);
+        return listTagsForResourceResponse;
     }
 
     @Override
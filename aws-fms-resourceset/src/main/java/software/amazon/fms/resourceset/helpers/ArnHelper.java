@@ -0,0 +1,48 @@
+package software.amazon.fms.resourceset.helpers;
+
+import org.apache.commons.lang3.StringUtils;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+public class ArnHelper {
+    private static final String RESOURCE_SET_ARN_FORMAT = "arn:%s:fms:%s:%s:resource-set/%s";
+
+    /**
+     * Synthesize the ARN of a resource set from its ID and the partition, region and account of a handler request.
+     *
+     * The synthesized ARN lets reads that need the ARN start before the resource set itself has been read. It must
+     * be checked against the ARN FMS returns before any write relies on it.
+     * @param request The handler request, supplying the partition, region and account.
+     * @param resourceSetId The resource set ID.
+     * @return The resource set ARN, or null if the request does not carry all the parts needed.
+     */
+    public static String synthesizeResourceSetArn(
+            final ResourceHandlerRequest<?> request,
+            final String resourceSetId
+    ) {
+        return synthesizeResourceSetArn(
+                request.getAwsPartition(),
+                request.getRegion(),
+                request.getAwsAccountId(),
+                resourceSetId);
+    }
+
+    /**
+     * Synthesize the ARN of a resource set from its parts.
+     * @param partition The AWS partition, such as "aws".
+     * @param region The region the resource set is in.
+     * @param accountId The account the resource set belongs to.
+     * @param resourceSetId The resource set ID.
+     * @return The resource set ARN, or null if any part is blank.
+     */
+    public static String synthesizeResourceSetArn(
+            final String partition,
+            final String region,
+            final String accountId,
+            final String resourceSetId
+    ) {
+        if (StringUtils.isAnyBlank(partition, region, accountId, resourceSetId)) {
+            return null;
+        }
+        return String.format(RESOURCE_SET_ARN_FORMAT, partition, region, accountId, resourceSetId);
+    }
+}
@@ -18,10 +18,14 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class AssociationHelper {
-    private static final int MAX_ASSOCIATION_CHANGES_PER_REQUEST = 100;
+    static final int MAX_ASSOCIATION_CHANGES_PER_REQUEST = 100;
+    private static final String LIST_OPERATION = "ListResourceSetResources";
+    private static final String ASSOCIATE_OPERATION = "BatchAssociateResource";
+    private static final String DISASSOCIATE_OPERATION = "BatchDisassociateResource";
 
     /**
      * Update a resource set to use a desired set of resources.
@@ -37,45 +41,216 @@ public class AssociationHelper {
             final FmsClient fmsClient,
             final AmazonWebServicesClientProxy proxy,
             final Logger logger
+    ) {
+        updateResourceAssociations(
+                resourceSetId,
+                desiredAssociations,
+                fmsClient,
+                proxy,
+                ExecutionBudget.unlimited(),
+                logger
+        );
+    }
+
+    /**
+     * Update a resource set to use a desired set of resources, checking the execution budget before each FMS call.
+     * Associations already changed are kept when the budget runs out, so calling it again completes the update.
+     * @param resourceSetId Resource set to update.
+     * @param desiredAssociations Resources that should be associated to the resource set.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @param budget Time left in the invocation.
+     * @param logger CloudWatch logger.
+     * @throws BudgetExhaustedException If the invocation has no time left for the next FMS call.
+     */
+    public static void updateResourceAssociations(
+            final String resourceSetId,
+            final Set<String> desiredAssociations,
+            final FmsClient fmsClient,
+            final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget,
+            final Logger logger
+    ) {
+        applyPendingAssociations(
+                resourceSetId,
+                planResourceAssociations(resourceSetId, desiredAssociations, fmsClient, proxy, budget),
+                fmsClient,
+                proxy,
+                budget,
+                logger
+        );
+    }
+
+    /**
+     * Work out the association changes a resource set needs to use a desired set of resources.
+     * @param resourceSetId Resource set to update.
+     * @param desiredAssociations Resources that should be associated to the resource set.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @param budget Time left in the invocation.
+     * @return The changes to make.
+     * @throws BudgetExhaustedException If the invocation has no time left to list the current resources.
+     */
+    public static PendingAssociations planResourceAssociations(
+            final String resourceSetId,
+            final Set<String> desiredAssociations,
+            final FmsClient fmsClient,
+            final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget
     ) {
         // list all the resources currently associated with the resource set
-        final Set<String> currentAssociations = listResourceAssociations(resourceSetId, fmsClient, proxy);
+        final Set<String> currentAssociations = listResourceAssociations(resourceSetId, fmsClient, proxy, budget);
 
-        // calculate the resources that need to be disassociated from the resource set
-        final Set<String> resourcesToDisassociate = calculateResourcesToDisassociate(
-                currentAssociations,
-                desiredAssociations
+        // calculate the resources that need to be disassociated from and associated to the resource set
+        return new PendingAssociations(
+                calculateResourcesToDisassociate(currentAssociations, desiredAssociations),
+                calculateResourcesToAssociate(currentAssociations, desiredAssociations)
         );
+    }
 
-        // calculate the resources that need to be associated to the resource set
-        final Set<String> resourcesToAssociate = calculateResourcesToAssociate(
-                currentAssociations,
-                desiredAssociations
+    /**
+     * Disassociate and then associate resources, in batches of at most 100 resources per request.
+     * @param resourceSetId Resource set to update.
+     * @param resourcesToDisassociate Resources to disassociate from the resource set.
+     * @param resourcesToAssociate Resources to associate to the resource set.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @param logger CloudWatch logger.
+     */
+    public static void applyResourceAssociationChanges(
+            final String resourceSetId,
+            final Set<String> resourcesToDisassociate,
+            final Set<String> resourcesToAssociate,
+            final FmsClient fmsClient,
+            final AmazonWebServicesClientProxy proxy,
+            final Logger logger
+    ) {
+        applyResourceAssociationChanges(
+                resourceSetId,
+                resourcesToDisassociate,
+                resourcesToAssociate,
+                fmsClient,
+                proxy,
+                ExecutionBudget.unlimited(),
+                logger
         );
+    }
 
+    /**
+     * Disassociate and then associate resources in batches, checking the execution budget before each batch.
+     * @param resourceSetId Resource set to update.
+     * @param resourcesToDisassociate Resources to disassociate from the resource set.
+     * @param resourcesToAssociate Resources to associate to the resource set.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @param budget Time left in the invocation.
+     * @param logger CloudWatch logger.
+     * @throws BudgetExhaustedException If the invocation has no time left for the next batch.
+     */
+    public static void applyResourceAssociationChanges(
+            final String resourceSetId,
+            final Set<String> resourcesToDisassociate,
+            final Set<String> resourcesToAssociate,
+            final FmsClient fmsClient,
+            final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget,
+            final Logger logger
+    ) {
+        applyPendingAssociations(
+                resourceSetId,
+                new PendingAssociations(resourcesToDisassociate, resourcesToAssociate),
+                fmsClient,
+                proxy,
+                budget,
+                logger
+        );
+    }
+
+    /**
+     * Disassociate and then associate resources in batches, checking the execution budget before each batch and
+     * removing each completed batch from the pending changes, which hold the changes left if the budget runs out.
+     * @param resourceSetId Resource set to update.
+     * @param pending Changes to make, updated as batches complete.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @param budget Time left in the invocation.
+     * @param logger CloudWatch logger.
+     * @throws BudgetExhaustedException If the invocation has no time left for the next batch.
+     */
+    public static void applyPendingAssociations(
+            final String resourceSetId,
+            final PendingAssociations pending,
+            final FmsClient fmsClient,
+            final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget,
+            final Logger logger
+    ) {
         // disassociate the resources from the resource set
-        batchDisassociateResources(resourceSetId, resourcesToDisassociate, fmsClient, proxy, logger);
+        batchDisassociateResources(
+                resourceSetId,
+                new ArrayList<>(pending.getResourcesToDisassociate()),
+                fmsClient,
+                proxy,
+                budget,
+                pending::markDisassociated,
+                logger
+        );
 
         // associate the resources to the resource set
-        batchAssociateResources(resourceSetId, resourcesToAssociate, fmsClient, proxy, logger);
+        batchAssociateResources(
+                resourceSetId,
+                new ArrayList<>(pending.getResourcesToAssociate()),
+                fmsClient,
+                proxy,
+                budget,
+                pending::markAssociated,
+                logger
+        );
     }
 
-    private static Set<String> listResourceAssociations(
+    /**
+     * List all the resources currently associated with a resource set.
+     * @param resourceSetId Resource set to list.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @return URIs of the associated resources.
+     */
+    public static Set<String> listResourceAssociations(
             final String resourceSetId,
             final FmsClient fmsClient,
             final AmazonWebServicesClientProxy proxy
+    ) {
+        return listResourceAssociations(resourceSetId, fmsClient, proxy, ExecutionBudget.unlimited());
+    }
+
+    /**
+     * List all the resources currently associated with a resource set, checking the execution budget before each page.
+     * @param resourceSetId Resource set to list.
+     * @param fmsClient FMS fmsClient.
+     * @param proxy CFN proxy.
+     * @param budget Time left in the invocation.
+     * @return URIs of the associated resources.
+     * @throws BudgetExhaustedException If the invocation has no time left for the next page.
+     */
+    public static Set<String> listResourceAssociations(
+            final String resourceSetId,
+            final FmsClient fmsClient,
+            final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget
     ) {
         final List<Resource> resources = new ArrayList<>();
         String nextToken = null;
         do {
+            budget.checkpoint(LIST_OPERATION);
             ListResourceSetResourcesRequest resourceSetResourcesRequest = ListResourceSetResourcesRequest.builder()
                     .identifier(resourceSetId)
                     .nextToken(nextToken)
                     .build();
 
-            ListResourceSetResourcesResponse resourceSetResourcesResponse = proxy.injectCredentialsAndInvokeV2(
-                    resourceSetResourcesRequest,
-                    fmsClient::listResourceSetResources);
+            ListResourceSetResourcesResponse resourceSetResourcesResponse = budget.track(LIST_OPERATION, () ->
+                    proxy.injectCredentialsAndInvokeV2(
+                            resourceSetResourcesRequest,
+                            fmsClient::listResourceSetResources));
 
             resources.addAll(resourceSetResourcesResponse.items());
             nextToken = resourceSetResourcesResponse.nextToken();
@@ -84,7 +259,7 @@ public class AssociationHelper {
         return resources.stream().map(Resource::uri).collect(Collectors.toSet());
     }
 
-    private static Set<String> calculateResourcesToDisassociate(
+    static Set<String> calculateResourcesToDisassociate(
             final Set<String> currentAssociations,
             final Set<String> desiredAssociations
     ) {
@@ -98,7 +273,7 @@ public class AssociationHelper {
                 .collect(Collectors.toSet());
     }
 
-    private static Set<String> calculateResourcesToAssociate(
+    static Set<String> calculateResourcesToAssociate(
             final Set<String> currentAssociations,
             final Set<String> desiredAssociations
     ) {
@@ -114,9 +289,11 @@ public class AssociationHelper {
 
     private static void batchAssociateResources(
             final String resourceSetId,
-            final Set<String> resources,
+            final List<String> resources,
             final FmsClient fmsClient,
             final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget,
+            final Consumer<List<String>> onBatchCompleted,
             final Logger logger
     ) {
         if (resources.isEmpty()) {
@@ -131,6 +308,7 @@ public class AssociationHelper {
 
         // iterate over each partition of 100 resources and call the associate APIs
         for (final List<String> partition : partitions) {
+            budget.checkpoint(ASSOCIATE_OPERATION);
             logger.log(String.format("Associating batch of %d resource/s", partition.size()));
 
             // call the association API
@@ -138,9 +316,11 @@ public class AssociationHelper {
                     .resourceSetIdentifier(resourceSetId)
                     .items(partition)
                     .build();
-            final BatchAssociateResourceResponse associateResponse = proxy.injectCredentialsAndInvokeV2(
-                    associateRequest,
-                    fmsClient::batchAssociateResource);
+            final BatchAssociateResourceResponse associateResponse = budget.track(
+                    ASSOCIATE_OPERATION,
+                    () -> proxy.injectCredentialsAndInvokeV2(
+                            associateRequest,
+                            fmsClient::batchAssociateResource));
 
             // throw CFN exception for any failed associations
             if (associateResponse.failedItems() != null && associateResponse.failedItems().size() > 0) {
@@ -153,15 +333,18 @@ public class AssociationHelper {
                 throw new CfnGeneralServiceException(message);
             }
 
+            onBatchCompleted.accept(partition);
             logger.log("Batch resource association successful");
         }
     }
 
     private static void batchDisassociateResources(
             final String resourceSetId,
-            final Set<String> resources,
+            final List<String> resources,
             final FmsClient fmsClient,
             final AmazonWebServicesClientProxy proxy,
+            final ExecutionBudget budget,
+            final Consumer<List<String>> onBatchCompleted,
             final Logger logger
     ) {
         if (resources.isEmpty()) {
@@ -176,6 +359,7 @@ public class AssociationHelper {
 
         // iterate over each partition of 100 resources and call the disassociate APIs
         for (final List<String> partition : partitions) {
+            budget.checkpoint(DISASSOCIATE_OPERATION);
             logger.log(String.format("Disassociating batch of %d resource/s", partition.size()));
 
             // call the disassociation API
@@ -183,9 +367,11 @@ public class AssociationHelper {
                     .resourceSetIdentifier(resourceSetId)
                     .items(partition)
                     .build();
-            final BatchDisassociateResourceResponse disassociateResponse = proxy.injectCredentialsAndInvokeV2(
-                    disassociateRequest,
-                    fmsClient::batchDisassociateResource);
+            final BatchDisassociateResourceResponse disassociateResponse = budget.track(
+                    DISASSOCIATE_OPERATION,
+                    () -> proxy.injectCredentialsAndInvokeV2(
+                            disassociateRequest,
+                            fmsClient::batchDisassociateResource));
 
             // throw CFN exception for any failed disassociations
             if (disassociateResponse.failedItems() != null && disassociateResponse.failedItems().size() > 0) {
@@ -198,6 +384,7 @@ public class AssociationHelper {
                 throw new CfnGeneralServiceException(message);
             }
 
+            onBatchCompleted.accept(partition);
             logger.log("Batch resource disassociation successful");
         }
     }
@@ -0,0 +1,115 @@
+package software.amazon.fms.resourceset.helpers;
+
+import lombok.Value;
+import software.amazon.awssdk.services.fms.model.ResourceSet;
+import software.amazon.awssdk.services.fms.model.Tag;
+import software.amazon.fms.resourceset.ResourceModel;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The changes needed to bring a resource set from its current state to its desired state.
+ *
+ * Each part of the plan is independent: the resource set metadata is only put when its name, description or resource
+ * type list changed, tags are only untagged or tagged when their delta is not empty, and associations are only
+ * changed for the resources that differ.
+ */
+@Value
+public class ChangePlan {
+    boolean putResourceSet;
+    List<String> tagsToRemove;
+    List<Tag> tagsToAdd;
+    Set<String> resourcesToDisassociate;
+    Set<String> resourcesToAssociate;
+
+    /**
+     * Plan the changes for a resource set update.
+     * @param desiredModel Desired resource set state.
+     * @param desiredTags Desired resource set tags.
+     * @param currentResourceSet Current resource set metadata.
+     * @param currentTags Current resource set tags.
+     * @param currentAssociations Resources currently associated with the resource set.
+     * @return The plan.
+     */
+    public static ChangePlan plan(
+            final ResourceModel desiredModel,
+            final Map<String, String> desiredTags,
+            final ResourceSet currentResourceSet,
+            final List<Tag> currentTags,
+            final Set<String> currentAssociations
+    ) {
+        return new ChangePlan(
+                metadataChanged(desiredModel, currentResourceSet),
+                FmsHelper.tagsToRemove(currentTags, desiredTags),
+                FmsHelper.tagsToAdd(currentTags, desiredTags),
+                AssociationHelper.calculateResourcesToDisassociate(
+                        currentAssociations,
+                        desiredModel.getResources()),
+                AssociationHelper.calculateResourcesToAssociate(
+                        currentAssociations,
+                        desiredModel.getResources()));
+    }
+
+    /**
+     * Determine whether the desired name, description or resource type list differs from the current resource set.
+     * @param desiredModel Desired resource set state.
+     * @param currentResourceSet Current resource set metadata.
+     * @return True if the resource set must be put.
+     */
+    static boolean metadataChanged(final ResourceModel desiredModel, final ResourceSet currentResourceSet) {
+        return !Objects.equals(desiredModel.getName(), currentResourceSet.name())
+                || !Objects.toString(desiredModel.getDescription(), "")
+                        .equals(Objects.toString(currentResourceSet.description(), ""))
+                || !asSet(desiredModel.getResourceTypeList()).equals(asSet(currentResourceSet.resourceTypeList()));
+    }
+
+    /**
+     * Estimate the number of write calls the plan makes.
+     * @return Estimated number of FMS write calls.
+     */
+    public int estimatedCallCount() {
+        return (putResourceSet ? 1 : 0)
+                + (tagsToRemove.isEmpty() ? 0 : 1)
+                + (tagsToAdd.isEmpty() ? 0 : 1)
+                + batchCount(resourcesToDisassociate.size())
+                + batchCount(resourcesToAssociate.size());
+    }
+
+    /**
+     * Determine whether the plan makes no changes at all.
+     * @return True if the resource set is already in its desired state.
+     */
+    public boolean isEmpty() {
+        return estimatedCallCount() == 0;
+    }
+
+    /**
+     * Describe the plan for the handler log.
+     * @return Single line description of the plan.
+     */
+    public String describe() {
+        return String.format(
+                "Update plan: put ResourceSet %s, remove %d tag/s, add %d tag/s, "
+                        + "disassociate %d resource/s, associate %d resource/s, %d estimated write call/s",
+                putResourceSet ? "yes" : "no",
+                tagsToRemove.size(),
+                tagsToAdd.size(),
+                resourcesToDisassociate.size(),
+                resourcesToAssociate.size(),
+                estimatedCallCount());
+    }
+
+    private static int batchCount(final int resourceCount) {
+        return (resourceCount + AssociationHelper.MAX_ASSOCIATION_CHANGES_PER_REQUEST - 1)
+                / AssociationHelper.MAX_ASSOCIATION_CHANGES_PER_REQUEST;
+    }
+
+    private static Set<String> asSet(final Collection<String> values) {
+        return values == null ? new HashSet<>() : new HashSet<>(values);
+    }
+}
@@ -0,0 +1,145 @@
+package software.amazon.fms.resourceset.helpers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived cache of list pages that survives across invocations on a warm handler instance.
+ *
+ * Pages are fetched ahead by one paging session and are only meant for that session: each page is served once, and a
+ * new listing or a change to the listed resources drops the pages cached for the account and region.
+ * @param <T> Type of the cached page.
+ */
+public class ListPageCache<T> {
+
+    /** Separator used when building cache keys, never part of an account ID or region. */
+    private static final String KEY_SEPARATOR = "|";
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<String, Entry<T>> pages;
+
+    /**
+     * Create a cache that uses the system clock.
+     * @param ttlMillis  Time in milliseconds a page remains servable after it was fetched.
+     * @param maxEntries Maximum number of pages held, the least recently used page is evicted first.
+     */
+    public ListPageCache(final long ttlMillis, final int maxEntries) {
+
+        this(ttlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a cache with a custom clock, for use in tests.
+     * @param ttlMillis  Time in milliseconds a page remains servable after it was fetched.
+     * @param maxEntries Maximum number of pages held, the least recently used page is evicted first.
+     * @param clock      Clock returning the current time in milliseconds.
+     */
+    public ListPageCache(final long ttlMillis, final int maxEntries, final LongSupplier clock) {
+
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Build a cache key scoping a page token to the caller's account and region.
+     * @param awsAccountId Account the listing was made for.
+     * @param region       Region the listing was made in.
+     * @param nextToken    FMS token that the cached page is the response to.
+     * @return Cache key.
+     */
+    public static String key(final String awsAccountId, final String region, final String nextToken) {
+
+        return awsAccountId + KEY_SEPARATOR + region + KEY_SEPARATOR + nextToken;
+    }
+
+    /**
+     * Retrieve a page if it is cached and has not expired.
+     * @param key Cache key built with {@link #key(String, String, String)}.
+     * @return The cached page, or null on a miss.
+     */
+    public synchronized T get(final String key) {
+
+        final Entry<T> entry = pages.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.fetchedAt > ttlMillis) {
+            pages.remove(key);
+            return null;
+        }
+        return entry.page;
+    }
+
+    /**
+     * Retrieve a page if it is cached and has not expired, removing it so it is served at most once.
+     * @param key Cache key built with {@link #key(String, String, String)}.
+     * @return The cached page, or null on a miss.
+     */
+    public synchronized T take(final String key) {
+
+        final T page = get(key);
+        pages.remove(key);
+        return page;
+    }
+
+    /**
+     * Drop every page cached for an account and region, once a new listing starts or a listed resource changes.
+     * @param awsAccountId Account the listing was made for.
+     * @param region       Region the listing was made in.
+     */
+    public synchronized void invalidate(final String awsAccountId, final String region) {
+
+        final String prefix = key(awsAccountId, region, "");
+        pages.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Store a page.
+     * @param key  Cache key built with {@link #key(String, String, String)}.
+     * @param page Page to cache.
+     */
+    public synchronized void put(final String key, final T page) {
+
+        pages.put(key, new Entry<>(page, clock.getAsLong()));
+
+        // evict the least recently used pages once the cache is over capacity
+        final Iterator<String> keys = pages.keySet().iterator();
+        while (pages.size() > maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * Number of pages currently held, including expired pages not yet evicted.
+     * @return Number of cached pages.
+     */
+    public synchronized int size() {
+
+        return pages.size();
+    }
+
+    /** Remove every cached page. */
+    public synchronized void clear() {
+
+        pages.clear();
+    }
+
+    private static final class Entry<T> {
+
+        private final T page;
+        private final long fetchedAt;
+
+        private Entry(final T page, final long fetchedAt) {
+
+            this.page = page;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package software.amazon.fms.resourceset.helpers;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expected duration of each FMS operation, learned from the operations handlers have run.
+ *
+ * Each observed duration moves the estimate of its operation a fixed fraction towards it, so the estimate follows
+ * changes in FMS latency without being thrown off by a single slow call. Operations that have not been observed yet
+ * are estimated at a conservative default. The estimates are kept for the lifetime of the handler instance.
+ */
+public class OperationCostModel {
+
+    /** Estimate in milliseconds for an operation that has not been observed yet. */
+    public static final long DEFAULT_ESTIMATE_MILLIS = 1000;
+
+    /** Fraction of the difference between an observed duration and the estimate the estimate moves by. */
+    static final double SMOOTHING = 0.3;
+
+    private final Map<String, Double> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * Record the duration of an operation.
+     * @param operation Operation name.
+     * @param millis    Milliseconds the operation took.
+     */
+    public void record(final String operation, final long millis) {
+
+        estimates.merge(operation, (double) millis,
+                (estimate, observed) -> estimate + SMOOTHING * (observed - estimate));
+    }
+
+    /**
+     * Estimate the duration of an operation.
+     * @param operation Operation name.
+     * @return Expected milliseconds the operation takes.
+     */
+    public long estimateMillis(final String operation) {
+
+        final Double estimate = estimates.get(operation);
+        return estimate == null ? DEFAULT_ESTIMATE_MILLIS : Math.round(estimate);
+    }
+
+    /**
+     * Get the current estimates, for the handler log.
+     * @return Expected milliseconds of each observed operation, by operation name.
+     */
+    public Map<String, Long> snapshot() {
+
+        final Map<String, Long> snapshot = new TreeMap<>();
+        estimates.forEach((operation, estimate) -> snapshot.put(operation, Math.round(estimate)));
+        return snapshot;
+    }
+}
@@ -0,0 +1,244 @@
+package software.amazon.fms.resourceset.helpers;
+
+import software.amazon.cloudformation.proxy.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Dependency graph of the FMS operations a handler makes.
+ *
+ * Handlers declare each operation as a node together with the nodes whose results it needs. Running the graph starts
+ * every node as soon as its dependencies have completed, so independent operations run concurrently. The first
+ * operation to fail cancels the rest and its exception is rethrown unchanged, keeping the handler error mapping intact.
+ * With a parallelism of one, operations run one after the other on the calling thread, in declaration order.
+ * Operations are only started while the execution budget covers them. Once it does not, the graph lets the running
+ * operations complete and throws {@link BudgetExhaustedException}, so no FMS call is cut off halfway.
+ */
+public class OperationGraph {
+
+    private final List<Node<?>> nodes = new ArrayList<>();
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final int parallelism;
+    private final ExecutionBudget budget;
+    private final Logger logger;
+
+    /**
+     * Create an empty graph.
+     * @param parallelism Maximum number of operations running at the same time.
+     * @param logger      CloudWatch logger, receives the per-operation timings.
+     */
+    public OperationGraph(final int parallelism, final Logger logger) {
+
+        this(parallelism, ExecutionBudget.unlimited(), logger);
+    }
+
+    /**
+     * Create an empty graph that only starts operations the execution budget covers.
+     * @param parallelism Maximum number of operations running at the same time.
+     * @param budget      Time left in the invocation, receives the per-operation timings.
+     * @param logger      CloudWatch logger, receives the per-operation timings.
+     */
+    public OperationGraph(final int parallelism, final ExecutionBudget budget, final Logger logger) {
+
+        this.parallelism = parallelism;
+        this.budget = budget;
+        this.logger = logger;
+    }
+
+    /**
+     * Declare an operation. Dependencies must be declared before the operations that depend on them.
+     * @param name         Operation name, used in the timings.
+     * @param operation    The operation, may read the results of its dependencies.
+     * @param dependencies Nodes that must complete before the operation starts.
+     * @param <T>          Type of the operation result.
+     * @return Node holding the operation result once it has run.
+     */
+    public <T> Node<T> add(final String name, final Supplier<T> operation, final Node<?>... dependencies) {
+
+        final Node<T> node = new Node<>(name, operation, Arrays.asList(dependencies));
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Run every operation, returning once all have completed.
+     * @throws BudgetExhaustedException If the budget ran out before every operation started.
+     * @throws RuntimeException The exception of the first operation to fail.
+     */
+    public void run() {
+
+        if (parallelism <= 1) {
+            runSerially();
+            return;
+        }
+
+        final ExecutorService executor = ParallelHelper.newWorkerPool(Math.min(parallelism, nodes.size()));
+        final CompletionService<Node<?>> completionService = new ExecutorCompletionService<>(executor);
+        final List<Future<Node<?>>> futures = new ArrayList<>(nodes.size());
+        final Set<Node<?>> waiting = new LinkedHashSet<>(nodes);
+        Node<?> unaffordable = null;
+        int running = 0;
+        try {
+            while ((unaffordable == null && !waiting.isEmpty()) || running > 0) {
+
+                // start every node whose dependencies have completed, until the budget does not cover one
+                final Iterator<Node<?>> iterator = waiting.iterator();
+                while (unaffordable == null && iterator.hasNext()) {
+                    final Node<?> node = iterator.next();
+                    if (!node.isReady()) {
+                        continue;
+                    }
+                    if (!budget.canAfford(node.getName())) {
+                        unaffordable = node;
+                        continue;
+                    }
+                    iterator.remove();
+                    futures.add(completionService.submit(node::execute, node));
+                    running++;
+                }
+                if (running == 0) {
+                    if (unaffordable != null) {
+                        throw budget.exhausted(unaffordable.getName());
+                    }
+                    throw new IllegalStateException("Operation depends on an operation outside of the graph");
+                }
+
+                // wait for the next node to complete, rethrowing its failure
+                final Node<?> completed = completionService.take().get();
+                recordTiming(completed);
+                running--;
+            }
+            if (unaffordable != null) {
+                throw budget.exhausted(unaffordable.getName());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running FMS operations", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+            logTimings();
+        }
+    }
+
+    private void runSerially() {
+
+        try {
+            for (final Node<?> node : nodes) {
+                budget.checkpoint(node.getName());
+                node.execute();
+                recordTiming(node);
+            }
+        } finally {
+            logTimings();
+        }
+    }
+
+    private void recordTiming(final Node<?> node) {
+
+        timings.put(node.getName(), node.getElapsedMillis());
+        budget.record(node.getName(), node.getElapsedMillis());
+    }
+
+    /**
+     * Get the time each completed operation took.
+     * @return Milliseconds taken by each completed operation, in order of completion.
+     */
+    public Map<String, Long> getTimings() {
+
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    private void logTimings() {
+
+        final Map<String, Long> completedTimings = getTimings();
+        if (!completedTimings.isEmpty()) {
+            logger.log(String.format("Operation timings: %s", completedTimings.entrySet().stream()
+                    .map(timing -> String.format("%s=%dms", timing.getKey(), timing.getValue()))
+                    .collect(Collectors.joining(", "))));
+        }
+    }
+
+    /**
+     * Operation in the graph.
+     * @param <T> Type of the operation result.
+     */
+    public static final class Node<T> {
+
+        private final String name;
+        private final Supplier<T> operation;
+        private final List<Node<?>> dependencies;
+        private volatile boolean completed;
+        private volatile T result;
+        private volatile long elapsedMillis;
+
+        private Node(final String name, final Supplier<T> operation, final List<Node<?>> dependencies) {
+
+            this.name = name;
+            this.operation = operation;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Get the operation result.
+         * @return The operation result.
+         * @throws IllegalStateException If the operation has not completed.
+         */
+        public T get() {
+
+            if (!completed) {
+                throw new IllegalStateException(String.format("Operation %s has not completed", name));
+            }
+            return result;
+        }
+
+        String getName() {
+
+            return name;
+        }
+
+        long getElapsedMillis() {
+
+            return elapsedMillis;
+        }
+
+        private boolean isReady() {
+
+            return dependencies.stream().allMatch(dependency -> dependency.completed);
+        }
+
+        private void execute() {
+
+            final long start = System.nanoTime();
+            result = operation.get();
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            completed = true;
+        }
+    }
+}
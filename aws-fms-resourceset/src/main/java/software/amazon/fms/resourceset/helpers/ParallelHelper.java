@@ -0,0 +1,85 @@
+package software.amazon.fms.resourceset.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+public class ParallelHelper {
+
+    /**
+     * Run tasks on a bounded pool of worker threads and collect their results in task order.
+     *
+     * Tasks that fail, or that have not finished by the deadline, yield a null result. Unfinished tasks are
+     * cancelled once the deadline passes.
+     * @param tasks          Tasks to run.
+     * @param parallelism    Maximum number of tasks running at the same time.
+     * @param deadlineMillis Wall-clock time in milliseconds after which results are no longer awaited.
+     * @param <R>            Type of the task results.
+     * @return Results in task order, null for each failed or unfinished task.
+     */
+    public static <R> List<R> runConcurrently(
+            final List<? extends Supplier<? extends R>> tasks,
+            final int parallelism,
+            final long deadlineMillis
+    ) {
+
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final ExecutorService executor = newWorkerPool(Math.min(parallelism, tasks.size()));
+        try {
+            // submit every task, the pool size bounds how many run at once
+            final List<Future<? extends R>> futures = new ArrayList<>(tasks.size());
+            for (final Supplier<? extends R> task : tasks) {
+                futures.add(executor.submit(task::get));
+            }
+
+            // collect the results until the deadline passes
+            final List<R> results = new ArrayList<>(tasks.size());
+            for (final Future<? extends R> future : futures) {
+                results.add(awaitResult(future, deadlineMillis));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create a fixed pool of daemon worker threads, so abandoned work never keeps the JVM alive.
+     * @param size Number of worker threads.
+     * @return The executor service.
+     */
+    public static ExecutorService newWorkerPool(final int size) {
+
+        return Executors.newFixedThreadPool(Math.max(1, size), runnable -> {
+            final Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static <R> R awaitResult(final Future<? extends R> future, final long deadlineMillis) {
+
+        final long remainingMillis = deadlineMillis - System.currentTimeMillis();
+        try {
+            if (remainingMillis > 0) {
+                return future.get(remainingMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            // failed and unfinished tasks yield no result
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        future.cancel(true);
+        return null;
+    }
+}
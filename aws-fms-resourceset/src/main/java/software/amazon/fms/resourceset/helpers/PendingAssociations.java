@@ -0,0 +1,88 @@
+package software.amazon.fms.resourceset.helpers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Association changes a resource set still needs, kept up to date as batches complete so a request stopped by its
+ * execution budget can carry the rest to its callback instead of listing the resources again.
+ */
+public class PendingAssociations {
+    private final Set<String> resourcesToDisassociate;
+    private final Set<String> resourcesToAssociate;
+
+    /**
+     * Create the pending changes.
+     * @param resourcesToDisassociate Resources to disassociate from the resource set.
+     * @param resourcesToAssociate Resources to associate to the resource set.
+     */
+    public PendingAssociations(
+            final Collection<String> resourcesToDisassociate,
+            final Collection<String> resourcesToAssociate
+    ) {
+        this.resourcesToDisassociate = new LinkedHashSet<>(resourcesToDisassociate);
+        this.resourcesToAssociate = new LinkedHashSet<>(resourcesToAssociate);
+    }
+
+    /**
+     * Decode pending changes carried in the CallbackContext.
+     * @param encoded Changes produced by {@link #encode()}.
+     * @return The pending changes.
+     * @throws IllegalArgumentException If the changes are not a valid encoding.
+     */
+    public static PendingAssociations decode(final String encoded) {
+        final StateCodec.Reader reader = StateCodec.reader(encoded);
+        final PendingAssociations pending = new PendingAssociations(
+                reader.readSortedStrings(),
+                reader.readSortedStrings());
+        if (!reader.isAtEnd()) {
+            throw new IllegalArgumentException("Corrupt handler state");
+        }
+        return pending;
+    }
+
+    /**
+     * Encode the pending changes for the CallbackContext.
+     * @return Compact base64 encoding of the changes.
+     */
+    public String encode() {
+        return StateCodec.writer()
+                .writeSortedStrings(resourcesToDisassociate)
+                .writeSortedStrings(resourcesToAssociate)
+                .encode();
+    }
+
+    /**
+     * Get the resources still to disassociate.
+     * @return Unmodifiable view of the resources.
+     */
+    public Set<String> getResourcesToDisassociate() {
+        return Collections.unmodifiableSet(resourcesToDisassociate);
+    }
+
+    /**
+     * Get the resources still to associate.
+     * @return Unmodifiable view of the resources.
+     */
+    public Set<String> getResourcesToAssociate() {
+        return Collections.unmodifiableSet(resourcesToAssociate);
+    }
+
+    /**
+     * Determine whether every change has been made.
+     * @return True if no change is pending.
+     */
+    public boolean isEmpty() {
+        return resourcesToDisassociate.isEmpty() && resourcesToAssociate.isEmpty();
+    }
+
+    void markDisassociated(final Collection<String> resources) {
+        resourcesToDisassociate.removeAll(resources);
+    }
+
+    void markAssociated(final Collection<String> resources) {
+        resourcesToAssociate.removeAll(resources);
+    }
+}
@@ -0,0 +1,134 @@
+package software.amazon.fms.resourceset.helpers;
+
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries the FMS calls FMS throttles on the calling thread.
+ *
+ * A throttled call waits an exponentially growing, jittered delay before its next attempt. The delay is shared: every
+ * call of the retrier holds off until it has passed, so a throttled account is not hit by the other threads while one
+ * of them backs off. Calls that fail for any other reason, or are still throttled after the last attempt, fail with
+ * the exception of their last attempt. A retrier holds no threads, so it needs no closing.
+ */
+public class Retrier {
+
+    /** Default number of attempts of a call, including the first one. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 6;
+
+    /** Default delay in milliseconds after the first throttled attempt, doubled after each further one. */
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 200;
+
+    /** Default longest delay in milliseconds between two attempts. */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 20_000;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /** Time in milliseconds before which no call is attempted. */
+    private final AtomicLong pausedUntil = new AtomicLong();
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+
+    /**
+     * Create a retrier with the default retry policy.
+     */
+    public Retrier() {
+
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Create a retrier.
+     * @param maxAttempts Number of attempts of a call, including the first one.
+     * @param baseDelayMillis Delay in milliseconds after the first throttled attempt.
+     * @param maxDelayMillis Longest delay in milliseconds between two attempts.
+     */
+    public Retrier(final int maxAttempts, final long baseDelayMillis, final long maxDelayMillis) {
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Run a call on the calling thread, retrying it while it is throttled.
+     * @param call FMS call.
+     * @param <T> Type of the call result.
+     * @return The call result.
+     */
+    public <T> T call(final Supplier<T> call) {
+
+        for (int attempt = 1; ; attempt++) {
+            awaitPause();
+            attempts.incrementAndGet();
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (!isThrottle(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                throttles.incrementAndGet();
+                final long resumeAt = System.currentTimeMillis() + backoffMillis(attempt);
+                pausedUntil.accumulateAndGet(resumeAt, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Determine whether an exception is FMS throttling a call.
+     * @param e Exception a call failed with.
+     * @return True if the call was throttled and can be retried later.
+     */
+    public static boolean isThrottle(final Throwable e) {
+
+        return e instanceof SdkServiceException && ((SdkServiceException) e).isThrottlingException();
+    }
+
+    /**
+     * Get the number of call attempts made.
+     * @return Number of attempts, including retries.
+     */
+    public long getAttemptCount() {
+
+        return attempts.get();
+    }
+
+    /**
+     * Get the number of throttled attempts that were retried.
+     * @return Number of throttled attempts.
+     */
+    public long getThrottleCount() {
+
+        return throttles.get();
+    }
+
+    /**
+     * Delay before the next attempt, half of it fixed and half random so throttled threads do not retry together.
+     * @param attempt Number of the throttled attempt.
+     * @return Delay in milliseconds.
+     */
+    private long backoffMillis(final int attempt) {
+
+        final long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    private void awaitPause() {
+
+        long remainingMillis;
+        while ((remainingMillis = pausedUntil.get() - System.currentTimeMillis()) > 0) {
+            try {
+                Thread.sleep(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting out FMS throttling", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package software.amazon.fms.resourceset.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of handler state carried in the CallbackContext as a single base64 string.
+ *
+ * Numbers are written as unsigned varints, so small cursors and counts take a single byte. Sorted string lists are
+ * front coded: each entry only stores the length of the prefix it shares with the entry before it and the remaining
+ * suffix, which removes most of the repetition in lists of resource URIs. The payload is deflated when that makes it
+ * smaller, which a flag in the header records, and the header starts with a version so the format can change.
+ */
+public final class StateCodec {
+    static final byte VERSION = 1;
+    private static final byte FLAG_DEFLATED = 1;
+    private static final int HEADER_LENGTH = 2;
+
+    private StateCodec() {
+    }
+
+    /**
+     * Create a writer for a new state.
+     * @return Empty writer.
+     */
+    public static Writer writer() {
+        return new Writer();
+    }
+
+    /**
+     * Read an encoded state.
+     * @param encoded State produced by {@link Writer#encode()}.
+     * @return Reader positioned at the start of the state.
+     * @throws IllegalArgumentException If the state is not valid base64 or has an unknown version.
+     */
+    public static Reader reader(final String encoded) {
+        final byte[] bytes = Base64.getDecoder().decode(encoded);
+        if (bytes.length < HEADER_LENGTH || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported handler state encoding");
+        }
+        final byte[] payload = new byte[bytes.length - HEADER_LENGTH];
+        System.arraycopy(bytes, HEADER_LENGTH, payload, 0, payload.length);
+        return new Reader((bytes[1] & FLAG_DEFLATED) != 0 ? inflate(payload) : payload);
+    }
+
+    private static byte[] deflate(final byte[] payload) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] payload) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+            final byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                final int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated handler state");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt handler state", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Writes the fields of a state in order.
+     */
+    public static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private Writer() {
+        }
+
+        /**
+         * Write a non-negative number, such as a cursor or a count.
+         * @param value Number to write.
+         * @return This writer.
+         * @throws IllegalArgumentException If the number is negative.
+         */
+        public Writer writeVarint(final long value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Varints must not be negative");
+            }
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                out.write((int) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.write((int) remaining);
+            return this;
+        }
+
+        /**
+         * Write a string, or null.
+         * @param value String to write.
+         * @return This writer.
+         */
+        public Writer writeString(final String value) {
+            if (value == null) {
+                return writeVarint(0);
+            }
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        /**
+         * Write a list of strings in sorted order, front coding each entry against the entry before it.
+         * @param values Strings to write, in any order.
+         * @return This writer.
+         */
+        public Writer writeSortedStrings(final Collection<String> values) {
+            final List<String> sorted = new ArrayList<>(values);
+            sorted.sort(null);
+            writeVarint(sorted.size());
+            String previous = "";
+            for (final String value : sorted) {
+                final int shared = sharedPrefixLength(previous, value);
+                writeVarint(shared);
+                writeString(value.substring(shared));
+                previous = value;
+            }
+            return this;
+        }
+
+        /**
+         * Finish the state.
+         * @return The state as a base64 string, deflated if that makes it smaller.
+         */
+        public String encode() {
+            final byte[] payload = out.toByteArray();
+            final byte[] deflated = deflate(payload);
+            final boolean useDeflated = deflated.length < payload.length;
+            final byte[] body = useDeflated ? deflated : payload;
+            final byte[] bytes = new byte[HEADER_LENGTH + body.length];
+            bytes[0] = VERSION;
+            bytes[1] = useDeflated ? FLAG_DEFLATED : 0;
+            System.arraycopy(body, 0, bytes, HEADER_LENGTH, body.length);
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+
+        private static int sharedPrefixLength(final String previous, final String value) {
+            final int limit = Math.min(previous.length(), value.length());
+            int shared = 0;
+            while (shared < limit && previous.charAt(shared) == value.charAt(shared)) {
+                shared++;
+            }
+            // never split a surrogate pair, the suffix is written as UTF-8 on its own
+            if (shared > 0 && shared < value.length() && Character.isHighSurrogate(value.charAt(shared - 1))) {
+                shared--;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Reads the fields of a state in the order they were written.
+     */
+    public static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Read a number written with {@link Writer#writeVarint(long)}.
+         * @return The number.
+         * @throws IllegalArgumentException If the state ends in the middle of the number.
+         */
+        public long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= bytes.length || shift > 63) {
+                    throw new IllegalArgumentException("Truncated handler state");
+                }
+                final int b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        /**
+         * Read a string written with {@link Writer#writeString(String)}.
+         * @return The string, or null.
+         * @throws IllegalArgumentException If the state ends in the middle of the string.
+         */
+        public String readString() {
+            final long length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > bytes.length - position) {
+                throw new IllegalArgumentException("Truncated handler state");
+            }
+            final String value = new String(bytes, position, (int) (length - 1), StandardCharsets.UTF_8);
+            position += (int) (length - 1);
+            return value;
+        }
+
+        /**
+         * Read a list written with {@link Writer#writeSortedStrings(Collection)}.
+         * @return The strings, in sorted order.
+         * @throws IllegalArgumentException If the state ends in the middle of the list or an entry is malformed.
+         */
+        public List<String> readSortedStrings() {
+            final long count = readVarint();
+            if (count > bytes.length - position) {
+                // every entry takes at least two bytes, so a larger count can only come from a corrupt state
+                throw new IllegalArgumentException("Truncated handler state");
+            }
+            final List<String> values = new ArrayList<>((int) count);
+            String previous = "";
+            for (long i = 0; i < count; i++) {
+                final long shared = readVarint();
+                final String suffix = readString();
+                if (shared > previous.length() || suffix == null) {
+                    throw new IllegalArgumentException("Corrupt handler state");
+                }
+                previous = previous.substring(0, (int) shared) + suffix;
+                values.add(previous);
+            }
+            return values;
+        }
+
+        /**
+         * Determine whether every field has been read.
+         * @return True if the reader is at the end of the state.
+         */
+        public boolean isAtEnd() {
+            return position == bytes.length;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package software.amazon.fms.resourceset.helpers;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which updates may trust the previous resource state CloudFormation provides instead of listing it again.
+ *
+ * Trusting the previous state saves the listing calls, but misses changes made outside of CloudFormation. Every Nth
+ * update, and the update following a failed trusted update, lists the live state in full so such drift is corrected.
+ * The counters are kept for the lifetime of the handler instance.
+ */
+public class VerificationSampler {
+
+    private final int verificationInterval;
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicBoolean verifyNext = new AtomicBoolean();
+
+    /**
+     * Create a sampler.
+     * @param verificationInterval Every how many updates the live state is listed in full, zero or less to always list.
+     */
+    public VerificationSampler(final int verificationInterval) {
+
+        this.verificationInterval = verificationInterval;
+    }
+
+    /**
+     * Create a sampler configured by an environment variable holding the verification interval.
+     * @param environmentVariable Name of the environment variable.
+     * @return The sampler, which always lists the live state if the variable is unset or not a number.
+     */
+    public static VerificationSampler fromEnvironment(final String environmentVariable) {
+
+        final String value = System.getenv(environmentVariable);
+        if (value == null) {
+            return new VerificationSampler(0);
+        }
+        try {
+            return new VerificationSampler(Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return new VerificationSampler(0);
+        }
+    }
+
+    /**
+     * Decide whether the next update may trust the previous resource state.
+     *
+     * @return True if the update may skip listing the live state.
+     */
+    public boolean trustPreviousState() {
+
+        if (verificationInterval <= 0) {
+            return false;
+        }
+        if (verifyNext.getAndSet(false)) {
+            return false;
+        }
+        return updates.incrementAndGet() % verificationInterval != 0;
+    }
+
+    /**
+     * Record that an update trusting the previous resource state failed, so the next update lists the live state.
+     */
+    public void recordFailure() {
+
+        verifyNext.set(true);
+    }
+}
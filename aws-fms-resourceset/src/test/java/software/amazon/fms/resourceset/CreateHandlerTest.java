@@ -18,6 +18,8 @@ import software.amazon.awssdk.services.fms.model.BatchDisassociateResourceRespon
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetRequest;
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetResponse;
 import software.amazon.awssdk.services.fms.model.FmsRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.GetResourceSetResponse;
 import software.amazon.awssdk.services.fms.model.InternalErrorException;
 import software.amazon.awssdk.services.fms.model.InvalidInputException;
 import software.amazon.awssdk.services.fms.model.InvalidOperationException;
@@ -36,12 +38,18 @@ import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.fms.resourceset.helpers.CfnSampleHelper;
+import software.amazon.fms.resourceset.helpers.ExecutionBudget;
 import software.amazon.fms.resourceset.helpers.FmsSampleHelper;
+import software.amazon.fms.resourceset.helpers.OperationCostModel;
+import software.amazon.fms.resourceset.helpers.PendingAssociations;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -243,6 +251,167 @@ class CreateHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestResumeAfterAssociationFailure() {
+
+        // stub the response for the create request
+        final PutResourceSetResponse describeResponse = FmsSampleHelper.samplePutResourceSetAllParametersResponse();
+        doReturn(describeResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the read request
+        final GetResourceSetResponse describeGetResponse = FmsSampleHelper.sampleGetResourceSetAllParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resource set resources request
+        final ListResourceSetResourcesResponse listResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(listResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // mock an InternalErrorException from the first batch associate request only
+        final BatchAssociateResourceResponse batchAssociateResourceResponse =
+                FmsSampleHelper.sampleBatchAssociateResourceResponse(false);
+        doThrow(InternalErrorException.builder().build())
+                .doReturn(batchAssociateResourceResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(BatchAssociateResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state
+        final ResourceModel requestModel = CfnSampleHelper.sampleAllParametersResourceModel(false, false, false);
+
+        // send the create request, then re-invoke it with the same token and the returned progress
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .clientRequestToken(UUID.randomUUID().toString())
+                .desiredResourceState(requestModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> failedResponse =
+                handler.handleRequest(proxy, request, null, logger);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, failedResponse.getCallbackContext(), logger);
+
+        // verify stub calls, the re-invocation reads the resourceSet instead of creating another one
+        verify(proxy, times(6)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.samplePutResourceSetAllParametersRequest(false),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
+                FmsSampleHelper.sampleBatchAssociateResourceRequest(),
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
+                FmsSampleHelper.sampleBatchAssociateResourceRequest()
+        ));
+
+        // assertions
+        assertThat(failedResponse.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(failedResponse.getCallbackContext().getResourceId()).isEqualTo(FmsSampleHelper.sampleResourceSetId);
+        assertThat(failedResponse.getCallbackContext().hasCompleted(CreateHandler.PUT_RESOURCE_SET_STEP)).isTrue();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestBudgetExhaustedResumes() {
+
+        // stub the response for the create request
+        final PutResourceSetResponse describeResponse = FmsSampleHelper.samplePutResourceSetAllParametersResponse();
+        doReturn(describeResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(PutResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the read request
+        final GetResourceSetResponse describeGetResponse = FmsSampleHelper.sampleGetResourceSetAllParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resource set resources request, which uses up the budget
+        final AtomicLong clock = new AtomicLong();
+        final ListResourceSetResourcesResponse listResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doAnswer(invocation -> {
+            clock.set(1000);
+            return listResourceSetResourcesResponse;
+        })
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the batch associate request
+        final BatchAssociateResourceResponse batchAssociateResourceResponse =
+                FmsSampleHelper.sampleBatchAssociateResourceResponse(false);
+        doReturn(batchAssociateResourceResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(BatchAssociateResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request resource state
+        final ResourceModel requestModel = CfnSampleHelper.sampleAllParametersResourceModel(false, false, false);
+
+        // send the create request with too little budget to associate the resources, then the callback
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .clientRequestToken(UUID.randomUUID().toString())
+                .desiredResourceState(requestModel)
+                .build();
+        handler.setBudgets(() -> new ExecutionBudget(
+                OperationCostModel.DEFAULT_ESTIMATE_MILLIS + 500, 0, new OperationCostModel(), clock::get));
+        final ProgressEvent<ResourceModel, CallbackContext> checkpointResponse =
+                handler.handleRequest(proxy, request, null, logger);
+        handler.setBudgets(ExecutionBudget::unlimited);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, checkpointResponse.getCallbackContext(), logger);
+
+        // verify stub calls, the callback reads the resourceSet and associates the pending resources without listing
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.samplePutResourceSetAllParametersRequest(false),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleBatchAssociateResourceRequest()
+        ));
+
+        // assertions
+        assertThat(checkpointResponse.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+        assertThat(checkpointResponse.getCallbackDelaySeconds()).isEqualTo(0);
+        assertThat(checkpointResponse.getCallbackContext().hasCompleted(CreateHandler.PUT_RESOURCE_SET_STEP)).isTrue();
+        assertThat(checkpointResponse.getCallbackContext().getCheckpointCount()).isEqualTo(1);
+        assertThat(PendingAssociations.decode(checkpointResponse.getCallbackContext().getPendingAssociations())
+                .getResourcesToAssociate()).isEqualTo(requestModel.getResources());
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
     @Test
     void handleRequestResourceNotFoundException() {
 
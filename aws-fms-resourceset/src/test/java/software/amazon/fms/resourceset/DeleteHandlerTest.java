@@ -1,6 +1,7 @@
 package software.amazon.fms.resourceset;
 
 import java.time.Duration;
+import java.util.Collections;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
@@ -9,8 +10,13 @@ import software.amazon.awssdk.services.fms.FmsClient;
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetRequest;
 import software.amazon.awssdk.services.fms.model.DeleteResourceSetResponse;
 import software.amazon.awssdk.services.fms.model.FmsRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
 import software.amazon.awssdk.services.fms.model.InternalErrorException;
 import software.amazon.awssdk.services.fms.model.InvalidOperationException;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
 import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
@@ -23,6 +29,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.fms.resourceset.helpers.BaseSampleHelper;
 import software.amazon.fms.resourceset.helpers.CfnSampleHelper;
 import software.amazon.fms.resourceset.helpers.FmsSampleHelper;
 
@@ -218,4 +225,173 @@ public class DeleteHandlerTest {
         assertThat(response.getResourceModels()).isNull();
         assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
     }
+
+    @Test
+    void handleRequestResourceSetInUse() {
+
+        // stub the read of a policy still referencing the ResourceSet
+        doReturn(samplePolicyResponse("policy-1", BaseSampleHelper.sampleResourceSetId))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetPolicyRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // index a policy referencing the ResourceSet
+        final ResourceSetDependencyIndex dependencyIndex = loadedDependencyIndex();
+        dependencyIndex.put("policy-1", Collections.singletonList(BaseSampleHelper.sampleResourceSetId));
+        handler.setDependencyIndex(dependencyIndex);
+
+        // create the delete request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // the delete is rejected once the policy read confirms the reference
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(captor.capture(), ArgumentMatchers.any());
+        assertThat(captor.getValue()).isInstanceOf(GetPolicyRequest.class);
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+        assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.InvalidRequest);
+        assertThat(response.getMessage()).contains("policy-1");
+    }
+
+    @Test
+    void handleRequestPolicyReleasedSinceIndexed() {
+
+        // stub a policy deleted and a policy updated since the index was loaded, then the delete request
+        doThrow(ResourceNotFoundException.builder().build())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.eq(GetPolicyRequest.builder().policyId("policy-1").build()),
+                        ArgumentMatchers.any()
+                );
+        doReturn(samplePolicyResponse("policy-2", "other-resource-set"))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.eq(GetPolicyRequest.builder().policyId("policy-2").build()),
+                        ArgumentMatchers.any()
+                );
+        doReturn(FmsSampleHelper.sampleDeleteResourceSetResponse())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(DeleteResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // index both policies as referencing the ResourceSet
+        final ResourceSetDependencyIndex dependencyIndex = loadedDependencyIndex();
+        dependencyIndex.put("policy-1", Collections.singletonList(BaseSampleHelper.sampleResourceSetId));
+        dependencyIndex.put("policy-2", Collections.singletonList(BaseSampleHelper.sampleResourceSetId));
+        handler.setDependencyIndex(dependencyIndex);
+
+        // create the delete request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // the delete goes ahead and the index follows the policy reads
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(captor.capture(), ArgumentMatchers.any());
+        assertThat(captor.getAllValues().get(2)).isEqualTo(FmsSampleHelper.sampleDeleteResourceSetRequest());
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(dependencyIndex.referencingPolicies(BaseSampleHelper.sampleResourceSetId)).isEmpty();
+        assertThat(dependencyIndex.referencingPolicies("other-resource-set")).containsExactly("policy-2");
+        assertThat(dependencyIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    void handleRequestLeavesStaleDependencyIndexToFms() {
+
+        // stub the response for the delete request
+        doReturn(FmsSampleHelper.sampleDeleteResourceSetResponse())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(DeleteResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // attach an index that was never loaded
+        final ResourceSetDependencyIndex dependencyIndex =
+                new ResourceSetDependencyIndex(1, Duration.ofMinutes(5).toMillis());
+        handler.setDependencyIndex(dependencyIndex);
+
+        // create the delete request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // the delete goes straight to FMS without loading the index
+        verify(proxy, times(1)).injectCredentialsAndInvokeV2(captor.capture(), ArgumentMatchers.any());
+        assertThat(captor.getValue()).isEqualTo(FmsSampleHelper.sampleDeleteResourceSetRequest());
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(dependencyIndex.isCurrent()).isFalse();
+    }
+
+    @Test
+    void dependencyIndexesAreKeptPerAccountAndRegion() {
+
+        final ResourceSetDependencyIndex dependencyIndex =
+                ResourceSetHandler.dependencyIndex("123456789012", "us-east-1");
+
+        // assertions
+        assertThat(ResourceSetHandler.dependencyIndex("123456789012", "us-east-1")).isSameAs(dependencyIndex);
+        assertThat(ResourceSetHandler.dependencyIndex("123456789012", "eu-west-1")).isNotSameAs(dependencyIndex);
+        assertThat(ResourceSetHandler.dependencyIndex("210987654321", "us-east-1")).isNotSameAs(dependencyIndex);
+    }
+
+    @Test
+    void handleRequestRemovesResourceSetFromDependencyIndex() {
+
+        // stub the response for the delete request
+        doReturn(FmsSampleHelper.sampleDeleteResourceSetResponse())
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(DeleteResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // index a policy referencing another ResourceSet only
+        final ResourceSetDependencyIndex dependencyIndex = loadedDependencyIndex();
+        dependencyIndex.put("policy-1", Collections.singletonList("other-resource-set"));
+        handler.setDependencyIndex(dependencyIndex);
+
+        // create the delete request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(CfnSampleHelper.sampleBareResourceModel(true))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // assertions
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(dependencyIndex.referencingPolicies(BaseSampleHelper.sampleResourceSetId)).isEmpty();
+        assertThat(dependencyIndex.referencingPolicies("other-resource-set")).containsExactly("policy-1");
+    }
+
+    private ResourceSetDependencyIndex loadedDependencyIndex() {
+
+        // an account without policies, so the index is current
+        doReturn(ListPoliciesResponse.builder().build())
+                .when(client)
+                .listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        final ResourceSetDependencyIndex dependencyIndex =
+                new ResourceSetDependencyIndex(1, Duration.ofMinutes(5).toMillis());
+        dependencyIndex.load(client);
+        return dependencyIndex;
+    }
+
+    private static GetPolicyResponse samplePolicyResponse(final String policyId, final String resourceSetId) {
+
+        return GetPolicyResponse.builder()
+                .policy(Policy.builder()
+                        .policyId(policyId)
+                        .resourceSetIds(resourceSetId)
+                        .build())
+                .build();
+    }
 }
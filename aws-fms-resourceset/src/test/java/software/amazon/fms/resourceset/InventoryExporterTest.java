@@ -0,0 +1,135 @@
+package software.amazon.fms.resourceset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.FmsException;
+import software.amazon.awssdk.services.fms.model.GetResourceSetRequest;
+import software.amazon.awssdk.services.fms.model.InvalidOperationException;
+import software.amazon.awssdk.services.fms.model.ListResourceSetResourcesRequest;
+import software.amazon.awssdk.services.fms.model.ListResourceSetsRequest;
+import software.amazon.awssdk.services.fms.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+import software.amazon.fms.resourceset.helpers.FmsSampleHelper;
+import software.amazon.fms.resourceset.helpers.Retrier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+public class InventoryExporterTest {
+
+    @Mock
+    private FmsClient client;
+
+    @Test
+    void exportSuccess() throws IOException {
+
+        // stub a single resource set with two resources
+        doReturn(FmsSampleHelper.sampleListResourceSets(null))
+                .when(client)
+                .listResourceSets(ArgumentMatchers.any(ListResourceSetsRequest.class));
+        doReturn(FmsSampleHelper.sampleGetResourceSetAllParametersResponse())
+                .when(client)
+                .getResourceSet(ArgumentMatchers.any(GetResourceSetRequest.class));
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(true, false))
+                .when(client)
+                .listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+        doReturn(FmsSampleHelper.sampleListResourceSetResourcesResponseMultipleResources())
+                .when(client)
+                .listResourceSetResources(ArgumentMatchers.any(ListResourceSetResourcesRequest.class));
+
+        // export the inventory
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final InventoryExporter.ExportSummary summary = new InventoryExporter(client, 2).export(outputStream);
+
+        // assertions
+        final List<String> lines = Arrays.asList(outputStream.toString(StandardCharsets.UTF_8.name()).split("\n"));
+        assertThat(summary.getResourceSetCount()).isEqualTo(1);
+        assertThat(summary.getResourceCount()).isEqualTo(2);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).startsWith("{\"type\":\"resourceSet\",\"id\":\"" + FmsSampleHelper.sampleResourceSetId);
+        assertThat(lines.get(0)).contains("\"tags\":{\"key1\":\"value\"}");
+        assertThat(lines.subList(1, 3)).allMatch(line -> line.startsWith("{\"type\":\"resource\","));
+    }
+
+    @Test
+    void exportSkipsDeletedResourceSet() throws IOException {
+
+        // stub a resource set that is deleted before it is read
+        doReturn(FmsSampleHelper.sampleListResourceSets(null))
+                .when(client)
+                .listResourceSets(ArgumentMatchers.any(ListResourceSetsRequest.class));
+        doThrow(ResourceNotFoundException.builder().build())
+                .when(client)
+                .getResourceSet(ArgumentMatchers.any(GetResourceSetRequest.class));
+
+        // export the inventory
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final InventoryExporter.ExportSummary summary = new InventoryExporter(client, 2).export(outputStream);
+
+        // assertions
+        assertThat(summary.getResourceSetCount()).isEqualTo(0);
+        assertThat(summary.getResourceCount()).isEqualTo(0);
+        assertThat(outputStream.size()).isEqualTo(0);
+    }
+
+    @Test
+    void exportRetriesThrottledCalls() throws IOException {
+
+        // stub a single resource set whose read is throttled once
+        doReturn(FmsSampleHelper.sampleListResourceSets(null))
+                .when(client)
+                .listResourceSets(ArgumentMatchers.any(ListResourceSetsRequest.class));
+        doThrow(FmsException.builder().statusCode(429).message("Rate exceeded").build())
+                .doReturn(FmsSampleHelper.sampleGetResourceSetAllParametersResponse())
+                .when(client)
+                .getResourceSet(ArgumentMatchers.any(GetResourceSetRequest.class));
+        doReturn(FmsSampleHelper.sampleListTagsForResourceResponse(true, false))
+                .when(client)
+                .listTagsForResource(ArgumentMatchers.any(ListTagsForResourceRequest.class));
+        doReturn(FmsSampleHelper.sampleListResourceSetResourcesResponseMultipleResources())
+                .when(client)
+                .listResourceSetResources(ArgumentMatchers.any(ListResourceSetResourcesRequest.class));
+
+        // export the inventory
+        final Retrier retries = new Retrier(3, 1, 5);
+        final InventoryExporter.ExportSummary summary =
+                new InventoryExporter(client, 2, retries).export(new ByteArrayOutputStream());
+
+        // assertions
+        assertThat(summary.getResourceSetCount()).isEqualTo(1);
+        assertThat(summary.getResourceCount()).isEqualTo(2);
+        assertThat(retries.getThrottleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void exportFailsOnFailedResourceSet() {
+
+        // stub a resource set that cannot be read
+        doReturn(FmsSampleHelper.sampleListResourceSets(null))
+                .when(client)
+                .listResourceSets(ArgumentMatchers.any(ListResourceSetsRequest.class));
+        doThrow(InvalidOperationException.builder().message("Denied").build())
+                .when(client)
+                .getResourceSet(ArgumentMatchers.any(GetResourceSetRequest.class));
+
+        // export the inventory
+        final InventoryExporter exporter = new InventoryExporter(client, 2, new Retrier(3, 1, 5));
+
+        // assertions
+        assertThatThrownBy(() -> exporter.export(new ByteArrayOutputStream()))
+                .isInstanceOf(InvalidOperationException.class);
+    }
+}
@@ -30,6 +30,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.fms.resourceset.helpers.CfnSampleHelper;
 import software.amazon.fms.resourceset.helpers.FmsSampleHelper;
 
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -62,6 +65,7 @@ public class ListHandlerTest {
         logger = mock(Logger.class);
         configuration = new Configuration();
         handler = new ListHandler(client);
+        ListHandler.PAGE_CACHE.clear();
     }
 
     @Test
@@ -107,6 +111,57 @@ public class ListHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestFullPagePrefetchSuccess() {
+        // stub a full first page followed by a final page
+        doReturn(
+                FmsSampleHelper.sampleListResourceSets(ListHandler.MAX_RESULTS, "page2"),
+                FmsSampleHelper.sampleListResourceSets(1, null))
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetsRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // list the first page
+        final ResourceModel requestModel = CfnSampleHelper.sampleBareResourceModel(true);
+        final ResourceHandlerRequest<ResourceModel> firstRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> firstResponse =
+                handler.handleRequest(proxy, firstRequest, null, logger);
+
+        // list the second page, which was fetched ahead
+        final ResourceHandlerRequest<ResourceModel> secondRequest = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .awsAccountId("000000000000")
+                .region("us-east-1")
+                .nextToken(firstResponse.getNextToken())
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> secondResponse =
+                new ListHandler(client).handleRequest(proxy, secondRequest, null, logger);
+
+        // verify stub calls
+        verify(proxy, times(2)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues().stream()
+                .map(r -> ((ListResourceSetsRequest) r).maxResults())
+                .collect(Collectors.toList()))
+                .isEqualTo(Arrays.asList(ListHandler.MAX_RESULTS, ListHandler.MAX_PAGE_SIZE));
+
+        // assertions
+        assertThat(firstResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(firstResponse.getResourceModels().size()).isEqualTo(ListHandler.MAX_RESULTS);
+        assertThat(firstResponse.getNextToken()).isEqualTo("page2");
+        assertThat(secondResponse.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(secondResponse.getResourceModels().size()).isEqualTo(1);
+        assertThat(secondResponse.getNextToken()).isNull();
+    }
+
     @Test
     void handleRequestWithNextTokenSuccess() {
 
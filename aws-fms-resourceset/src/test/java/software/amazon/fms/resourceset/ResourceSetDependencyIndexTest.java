@@ -0,0 +1,135 @@
+package software.amazon.fms.resourceset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.fms.FmsClient;
+import software.amazon.awssdk.services.fms.model.GetPolicyRequest;
+import software.amazon.awssdk.services.fms.model.GetPolicyResponse;
+import software.amazon.awssdk.services.fms.model.ListPoliciesRequest;
+import software.amazon.awssdk.services.fms.model.ListPoliciesResponse;
+import software.amazon.awssdk.services.fms.model.Policy;
+import software.amazon.awssdk.services.fms.model.PolicySummary;
+import software.amazon.awssdk.services.fms.model.ResourceNotFoundException;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+public class ResourceSetDependencyIndexTest {
+
+    @Mock
+    private FmsClient client;
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    private final ResourceSetDependencyIndex index = new ResourceSetDependencyIndex(4, 100, now::get);
+
+    @Test
+    void loadIndexesEveryPolicy() {
+
+        // two pages of policies, one without resource sets
+        doAnswer(invocation -> {
+            final ListPoliciesRequest request = invocation.getArgument(0);
+            return request.nextToken() == null
+                    ? ListPoliciesResponse.builder().policyList(summary("policy-1"), summary("policy-2"))
+                            .nextToken("page-2").build()
+                    : ListPoliciesResponse.builder().policyList(summary("policy-3")).build();
+        }).when(client).listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        doAnswer(invocation -> {
+            final String policyId = ((GetPolicyRequest) invocation.getArgument(0)).policyId();
+            switch (policyId) {
+                case "policy-1":
+                    return getPolicyResponse(policyId, "set-a", "set-b");
+                case "policy-2":
+                    return getPolicyResponse(policyId, "set-b");
+                default:
+                    return getPolicyResponse(policyId);
+            }
+        }).when(client).getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+
+        final ResourceSetDependencyIndex.LoadResult result = index.load(client);
+
+        assertThat(result.getIndexed()).isEqualTo(3);
+        assertThat(result.getFailed()).isZero();
+        assertThat(index.isCurrent()).isTrue();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.referencingPolicies("set-a")).containsExactly("policy-1");
+        assertThat(index.referencingPolicies("set-b")).containsExactly("policy-1", "policy-2");
+        assertThat(index.referencingPolicies("set-c")).isEmpty();
+    }
+
+    @Test
+    void failedReadLeavesIndexNotCurrent() {
+
+        doReturn(ListPoliciesResponse.builder().policyList(summary("policy-1"), summary("policy-2")).build())
+                .when(client).listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+        doAnswer(invocation -> {
+            final String policyId = ((GetPolicyRequest) invocation.getArgument(0)).policyId();
+            if (policyId.equals("policy-2")) {
+                throw ResourceNotFoundException.builder().build();
+            }
+            return getPolicyResponse(policyId, "set-a");
+        }).when(client).getPolicy(ArgumentMatchers.any(GetPolicyRequest.class));
+
+        final ResourceSetDependencyIndex.LoadResult result = index.load(client);
+
+        assertThat(result.getIndexed()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(index.isCurrent()).isFalse();
+        assertThat(index.referencingPolicies("set-a")).containsExactly("policy-1");
+    }
+
+    @Test
+    void loadExpires() {
+
+        doReturn(ListPoliciesResponse.builder().build())
+                .when(client).listPolicies(ArgumentMatchers.any(ListPoliciesRequest.class));
+
+        assertThat(index.isCurrent()).isFalse();
+        index.load(client);
+        assertThat(index.isCurrent()).isTrue();
+        now.addAndGet(101);
+        assertThat(index.isCurrent()).isFalse();
+    }
+
+    @Test
+    void changesKeepBothDirectionsInStep() {
+
+        index.put("policy-1", Arrays.asList("set-a", "set-b"));
+        index.put("policy-2", Arrays.asList("set-b"));
+
+        // a changed policy loses the references it no longer has
+        index.put("policy-1", Arrays.asList("set-c"));
+        assertThat(index.referencingPolicies("set-a")).isEmpty();
+        assertThat(index.referencingPolicies("set-b")).containsExactly("policy-2");
+        assertThat(index.referencingPolicies("set-c")).containsExactly("policy-1");
+
+        // a deleted resource set is removed from its policies
+        index.removeResourceSet("set-b");
+        assertThat(index.referencingPolicies("set-b")).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+
+        index.removePolicy("policy-1");
+        assertThat(index.referencingPolicies("set-c")).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    private static PolicySummary summary(final String policyId) {
+
+        return PolicySummary.builder().policyId(policyId).build();
+    }
+
+    private static GetPolicyResponse getPolicyResponse(final String policyId, final String... resourceSetIds) {
+
+        return GetPolicyResponse.builder()
+                .policy(Policy.builder().policyId(policyId).resourceSetIds(resourceSetIds).build())
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package software.amazon.fms.resourceset;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Map;
 
 import org.mockito.ArgumentCaptor;
@@ -39,8 +40,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.fms.resourceset.helpers.ArnHelper;
 import software.amazon.fms.resourceset.helpers.CfnSampleHelper;
 import software.amazon.fms.resourceset.helpers.FmsSampleHelper;
+import software.amazon.fms.resourceset.helpers.VerificationSampler;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
@@ -73,7 +76,7 @@ public class UpdateHandlerTest {
         proxy = mock(AmazonWebServicesClientProxy.class);
         logger = mock(Logger.class);
         configuration = new Configuration();
-        handler = new UpdateHandler(client);
+        handler = new UpdateHandler(client, 1);
     }
 
     @Test
@@ -89,6 +92,69 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false, false);
+
+        // create the update request and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                handler.handleRequest(proxy, request, null, logger);
+
+        // verify stub calls
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+        ));
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getCallbackContext()).isNull();
+        assertThat(response.getCallbackDelaySeconds()).isEqualTo(0);
+        assertThat(response.getResourceModels()).isNull();
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestMetadataChangedSuccess() {
+
+        // stub the response for the read request, whose description is removed by the update
+        final GetResourceSetResponse describeGetResponse =
+                FmsSampleHelper.sampleGetResourceSetAllParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
         // stub the response for the update request
         final PutResourceSetResponse describePutResponse =
                 FmsSampleHelper.samplePutResourceSetRequiredParametersResponse();
@@ -136,9 +202,9 @@ public class UpdateHandlerTest {
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
-                FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false),
                 FmsSampleHelper.sampleListTagsForResourceRequest(),
-                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
+                FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false)
         ));
 
         // assertions
@@ -151,11 +217,15 @@ public class UpdateHandlerTest {
     }
 
     @Test
-    void handleRequestBatchAssociate() {
+    void handleRequestConcurrentTagReadSuccess() {
 
-        // stub the response for the read request
+        // stub the response for the read request, with an ARN matching the request context
+        final String resourceSetArn = ArnHelper.synthesizeResourceSetArn(
+                "aws", "us-east-1", FmsSampleHelper.sampleAccountId, FmsSampleHelper.sampleResourceSetId);
         final GetResourceSetResponse describeGetResponse =
-                FmsSampleHelper.sampleGetResourceSetAllParametersResponse();
+                FmsSampleHelper.sampleGetResourceSetRequiredParametersResponse().toBuilder()
+                        .resourceSetArn(resourceSetArn)
+                        .build();
         doReturn(describeGetResponse)
                 .when(proxy)
                 .injectCredentialsAndInvokeV2(
@@ -163,13 +233,66 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
-        // stub the response for the update request
-        final PutResourceSetResponse describePutResponse =
-                FmsSampleHelper.samplePutResourceSetAllParametersResponse();
-        doReturn(describePutResponse)
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
                 .when(proxy)
                 .injectCredentialsAndInvokeV2(
-                        ArgumentMatchers.isA(PutResourceSetRequest.class),
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false, false);
+
+        // create the update request with enough context to synthesize the ResourceSet ARN and send it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .awsPartition("aws")
+                .region("us-east-1")
+                .awsAccountId(FmsSampleHelper.sampleAccountId)
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(client).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, the tag and association reads run alongside the ResourceSet read so their positions are not fixed
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).containsExactlyInAnyOrder(
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                ListTagsForResourceRequest.builder().resourceArn(resourceSetArn).build(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+        );
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestBatchAssociate() {
+
+        // stub the response for the read request
+        final GetResourceSetResponse describeGetResponse =
+                FmsSampleHelper.sampleGetResourceSetAllParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetResourceSetRequest.class),
                         ArgumentMatchers.any()
                 );
 
@@ -215,13 +338,12 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
-                FmsSampleHelper.samplePutResourceSetAllParametersRequest(true),
                 FmsSampleHelper.sampleListTagsForResourceRequest(),
                 FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.sampleBatchAssociateResourceRequest()
@@ -250,16 +372,6 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
-        // stub the response for the update request
-        final PutResourceSetResponse describePutResponse =
-                FmsSampleHelper.samplePutResourceSetAllParametersResponse();
-        doReturn(describePutResponse)
-                .when(proxy)
-                .injectCredentialsAndInvokeV2(
-                        ArgumentMatchers.isA(PutResourceSetRequest.class),
-                        ArgumentMatchers.any()
-                );
-
         // stub the response for the list tags request
         final ListTagsForResourceResponse describeListResponse =
                 FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
@@ -302,13 +414,12 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
-                FmsSampleHelper.samplePutResourceSetAllParametersRequest(true),
                 FmsSampleHelper.sampleListTagsForResourceRequest(),
                 FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.sampleBatchDisassociateResourceRequest()
@@ -336,15 +447,6 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
-        // stub the response for the update request
-        final PutResourceSetResponse describePutResponse = FmsSampleHelper.samplePutResourceSetRequiredParametersResponse();
-        doReturn(describePutResponse)
-                .when(proxy)
-                .injectCredentialsAndInvokeV2(
-                        ArgumentMatchers.isA(PutResourceSetRequest.class),
-                        ArgumentMatchers.any()
-                );
-
         // stub the response for the list tags request
         final ListTagsForResourceResponse describeListResponse =
                 FmsSampleHelper.sampleListTagsForResourceResponse(true, false);
@@ -385,16 +487,15 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
-                FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false),
                 FmsSampleHelper.sampleListTagsForResourceRequest(),
-                FmsSampleHelper.sampleUntagResourceRequest(true, false),
-                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
+                FmsSampleHelper.sampleUntagResourceRequest(true, false)
         ));
 
         // assertions
@@ -418,15 +519,6 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
-        // stub the response for the update request
-        final PutResourceSetResponse describePutResponse = FmsSampleHelper.samplePutResourceSetRequiredParametersResponse();
-        doReturn(describePutResponse)
-                .when(proxy)
-                .injectCredentialsAndInvokeV2(
-                        ArgumentMatchers.isA(PutResourceSetRequest.class),
-                        ArgumentMatchers.any()
-                );
-
         // stub the response for the list tags request
         final ListTagsForResourceResponse describeListResponse =
                 FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
@@ -471,16 +563,15 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
-                FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false),
                 FmsSampleHelper.sampleListTagsForResourceRequest(),
-                FmsSampleHelper.sampleTagResourceRequest(true, false),
-                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
+                FmsSampleHelper.sampleTagResourceRequest(true, false)
         ));
 
         // assertions
@@ -505,15 +596,6 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
-        // stub the response for the update request
-        final PutResourceSetResponse describePutResponse = FmsSampleHelper.samplePutResourceSetRequiredParametersResponse();
-        doReturn(describePutResponse)
-                .when(proxy)
-                .injectCredentialsAndInvokeV2(
-                        ArgumentMatchers.isA(PutResourceSetRequest.class),
-                        ArgumentMatchers.any()
-                );
-
         // stub the response for the list tags request
         final ListTagsForResourceResponse describeListResponse =
                 FmsSampleHelper.sampleListTagsForResourceResponse(true, false);
@@ -567,17 +649,16 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(6)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(5)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
-                FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false),
                 FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.sampleUntagResourceRequest(true, false),
-                FmsSampleHelper.sampleTagResourceRequest(false, true),
-                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+                FmsSampleHelper.sampleTagResourceRequest(false, true)
         ));
 
         // assertions
@@ -589,6 +670,136 @@ public class UpdateHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    void handleRequestTrustPreviousStateSuccess() {
+
+        // stub the response for the read request
+        final GetResourceSetResponse describeGetResponse =
+                FmsSampleHelper.sampleGetResourceSetAllParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the untag resource request
+        final UntagResourceResponse describeUntagResponse = FmsSampleHelper.sampleUntagResourceResponse();
+        doReturn(describeUntagResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(UntagResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the batch disassociate request
+        final BatchDisassociateResourceResponse describeDisassociateResponse =
+                FmsSampleHelper.sampleBatchDisassociateResourceResponse(false);
+        doReturn(describeDisassociateResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(BatchDisassociateResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel previousModel = CfnSampleHelper.sampleAllParametersResourceModel(true, true, false);
+        previousModel.setResources(new HashSet<>(Arrays.asList(
+                FmsSampleHelper.sampleResourceUri,
+                FmsSampleHelper.sampleResourceUri2)));
+        final ResourceModel requestModel = CfnSampleHelper.sampleAllParametersResourceModel(true, false, false);
+
+        // create the update request carrying the previous state and send it to a handler trusting it
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestModel)
+                .previousResourceState(previousModel)
+                .previousResourceTags(configuration.resourceDefinedTags(previousModel))
+                .build();
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(client, 1, new VerificationSampler(100)).handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, neither the tags nor the resources are listed
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleUntagResourceRequest(true, false),
+                FmsSampleHelper.sampleBatchDisassociateResourceRequest()
+        ));
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModel()).isEqualTo(requestModel);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
+    @Test
+    void handleRequestTrustPreviousStateSampledVerification() {
+
+        // stub the response for the read request
+        final GetResourceSetResponse describeGetResponse =
+                FmsSampleHelper.sampleGetResourceSetRequiredParametersResponse();
+        doReturn(describeGetResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(GetResourceSetRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // model the pre-request and post-request resource state
+        final ResourceModel requestExpectedModel = CfnSampleHelper.sampleRequiredParametersResourceModel(true, false, false, false);
+
+        // send the same update twice to a handler verifying every second update
+        final ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
+                .desiredResourceState(requestExpectedModel)
+                .previousResourceState(requestExpectedModel)
+                .build();
+        final UpdateHandler samplingHandler = new UpdateHandler(client, 1, new VerificationSampler(2));
+        samplingHandler.handleRequest(proxy, request, null, logger);
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+                samplingHandler.handleRequest(proxy, request, null, logger);
+
+        // verify stub calls, only the second update lists the tags and resources
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
+                captor.capture(),
+                ArgumentMatchers.any()
+        );
+        assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest()
+        ));
+
+        // assertions
+        assertThat(response).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getErrorCode()).isNull();
+    }
+
     @Test
     void handleRequestResourceNotFoundException() {
 
@@ -601,6 +812,26 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
         // mock a ResourceNotFoundException from the FMS API
         doThrow(ResourceNotFoundException.builder().build())
                 .when(proxy)
@@ -620,12 +851,14 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(2)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false)
         ));
 
@@ -651,6 +884,26 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
         // mock an InvalidInputException from the FMS API
         doThrow(InvalidInputException.builder().build())
                 .when(proxy)
@@ -670,12 +923,14 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(2)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false)
         ));
 
@@ -701,6 +956,26 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
         // mock an InvalidTypeException from the FMS API
         doThrow(InvalidTypeException.builder().build())
                 .when(proxy)
@@ -720,12 +995,14 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(2)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false)
         ));
 
@@ -751,6 +1028,26 @@ public class UpdateHandlerTest {
                         ArgumentMatchers.any()
                 );
 
+        // stub the response for the list tags request
+        final ListTagsForResourceResponse describeListResponse =
+                FmsSampleHelper.sampleListTagsForResourceResponse(false, false);
+        doReturn(describeListResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListTagsForResourceRequest.class),
+                        ArgumentMatchers.any()
+                );
+
+        // stub the response for the list resourceSet resources request
+        final ListResourceSetResourcesResponse describeListResourceSetResourcesResponse =
+                FmsSampleHelper.sampleListResourceSetResourcesResponseEmptyResource();
+        doReturn(describeListResourceSetResourcesResponse)
+                .when(proxy)
+                .injectCredentialsAndInvokeV2(
+                        ArgumentMatchers.isA(ListResourceSetResourcesRequest.class),
+                        ArgumentMatchers.any()
+                );
+
         // mock a LimitExceededException from the FMS API
         doThrow(InternalErrorException.builder().build())
                 .when(proxy)
@@ -770,12 +1067,14 @@ public class UpdateHandlerTest {
                 handler.handleRequest(proxy, request, null, logger);
 
         // verify stub calls
-        verify(proxy, times(2)).injectCredentialsAndInvokeV2(
+        verify(proxy, times(4)).injectCredentialsAndInvokeV2(
                 captor.capture(),
                 ArgumentMatchers.any()
         );
         assertThat(captor.getAllValues()).isEqualTo(Arrays.asList(
                 FmsSampleHelper.sampleGetResourceSetRequest(),
+                FmsSampleHelper.sampleListTagsForResourceRequest(),
+                FmsSampleHelper.sampleListResourceSetResourcesRequest(),
                 FmsSampleHelper.samplePutResourceSetRequiredParametersRequest(true, false, false)
         ));
 
@@ -277,6 +277,19 @@ public class FmsSampleHelper extends BaseSampleHelper {
                 .build();
     }
 
+    /**
+     * Assembles a sample ListResourceSets response holding a page of identical resourceSet summaries.
+     * @param pageSize Number of resourceSet summaries in the page.
+     * @param nextToken Token of the following page.
+     * @return The assembled response.
+     */
+    public static ListResourceSetsResponse sampleListResourceSets(final int pageSize, final String nextToken) {
+        return ListResourceSetsResponse.builder()
+                .resourceSets(Collections.nCopies(pageSize, sampleResourceSetSummary().build()))
+                .nextToken(nextToken)
+                .build();
+    }
+
     /**
      * Assembles a sample FMS resourceSet summary.
      * @return The assembled resourceSet summary  builder.
@@ -0,0 +1,102 @@
+package software.amazon.fms.resourceset.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Encoded size and encode/decode time of pending associations, compared with a JSON array of the same URIs.
+ * Run with: mvn test -Dtest=StateCodecBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StateCodecBenchmarkTest {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    @Test
+    void benchmark10kPendingEntries() {
+
+        benchmark(10_000);
+    }
+
+    @Test
+    void benchmark100kPendingEntries() {
+
+        benchmark(100_000);
+    }
+
+    private static void benchmark(final int entries) {
+
+        final Set<String> toDisassociate = sampleUris(entries / 10, 1);
+        final Set<String> toAssociate = sampleUris(entries - entries / 10, 2);
+        final PendingAssociations pending = new PendingAssociations(toDisassociate, toAssociate);
+
+        // warm up the JIT before measuring
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            PendingAssociations.decode(pending.encode());
+        }
+
+        String encoded = null;
+        long encodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        PendingAssociations decoded = null;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            final long encodeStart = System.nanoTime();
+            encoded = pending.encode();
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - encodeStart);
+
+            final long decodeStart = System.nanoTime();
+            decoded = PendingAssociations.decode(encoded);
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - decodeStart);
+        }
+
+        System.out.printf(
+                "%d pending entries: JSON %d bytes, encoded %d bytes (%.1f%%), encode %d ms, decode %d ms%n",
+                entries,
+                jsonLength(toDisassociate) + jsonLength(toAssociate),
+                encoded.length(),
+                100.0 * encoded.length() / (jsonLength(toDisassociate) + jsonLength(toAssociate)),
+                TimeUnit.NANOSECONDS.toMillis(encodeNanos),
+                TimeUnit.NANOSECONDS.toMillis(decodeNanos));
+
+        assertThat(decoded.getResourcesToDisassociate()).isEqualTo(toDisassociate);
+        assertThat(decoded.getResourcesToAssociate()).isEqualTo(toAssociate);
+    }
+
+    private static Set<String> sampleUris(final int count, final long seed) {
+
+        // instance and volume ARNs spread over a few accounts and regions, like a large resource set
+        final Random random = new Random(seed);
+        final String[] regions = {"us-east-1", "us-west-2", "eu-west-1"};
+        final List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            accounts.add(String.format("%012d", Math.abs(random.nextLong()) % 1_000_000_000_000L));
+        }
+        final Set<String> uris = new HashSet<>();
+        while (uris.size() < count) {
+            final boolean instance = random.nextBoolean();
+            uris.add(String.format("arn:aws:ec2:%s:%s:%s/%s-%017x",
+                    regions[random.nextInt(regions.length)],
+                    accounts.get(random.nextInt(accounts.size())),
+                    instance ? "instance" : "volume",
+                    instance ? "i" : "vol",
+                    random.nextLong() & 0xFFFFFFFFFFFFFFFL));
+        }
+        return uris;
+    }
+
+    private static long jsonLength(final Set<String> uris) {
+
+        // quotes around each URI, commas between them and the brackets around the array
+        return uris.stream().mapToLong(uri -> uri.length() + 3).sum() + 1;
+    }
+}